@@ -0,0 +1,86 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+/**
+ * <p>
+ *   Base abstract implementation of {@link IBatchedElementMarkupHandler} that delegates all of its events
+ *   (batched or not) to another handler passed during construction.
+ * </p>
+ * <p>
+ *   If the next handler does not implement {@link IBatchedElementMarkupHandler}, it is wrapped into an
+ *   {@link ElementExpandingMarkupHandler} so that it receives batched element events as classic ones. This
+ *   means that {@link #getNext()} might not return the exact handler specified at construction.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public abstract class AbstractChainedBatchedElementMarkupHandler
+        extends AbstractChainedMarkupHandler implements IBatchedElementMarkupHandler {
+
+
+    private final IBatchedElementMarkupHandler nextBatched;
+
+
+    /**
+     * <p>
+     *   Create a new instance of this handler, specifying the handler that will be used as next step in the
+     *   chain.
+     * </p>
+     *
+     * @param next the next step in the chain.
+     */
+    protected AbstractChainedBatchedElementMarkupHandler(final IMarkupHandler next) {
+        super(next == null? null : ElementExpandingMarkupHandler.forHandler(next));
+        this.nextBatched = (IBatchedElementMarkupHandler) getNext();
+    }
+
+
+
+
+    public void handleStandaloneElement(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final ElementAttributes attributes,
+            final boolean minimized,
+            final int line, final int col,
+            final int endLine, final int endCol)
+            throws ParseException {
+        this.nextBatched.handleStandaloneElement(
+                buffer, nameOffset, nameLen, attributes, minimized, line, col, endLine, endCol);
+    }
+
+
+    public void handleOpenElement(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final ElementAttributes attributes,
+            final int line, final int col,
+            final int endLine, final int endCol)
+            throws ParseException {
+        this.nextBatched.handleOpenElement(buffer, nameOffset, nameLen, attributes, line, col, endLine, endCol);
+    }
+
+
+}
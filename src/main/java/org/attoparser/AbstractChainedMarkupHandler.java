@@ -83,6 +83,44 @@ protected final IMarkupHandler getNext() {
     }
 
 
+    /**
+     * <p>
+     *   Return the mask of secondary events the next handler in the chain (and any handlers after it) is
+     *   interested in.
+     * </p>
+     *
+     * @return the event interest mask of the next handler in the chain.
+     * @see IMarkupEventInterest
+     * @since 2.0.8
+     */
+    protected final int getNextMarkupEventInterest() {
+        return MarkupEventInterestUtil.getMarkupEventInterest(this.next);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the mask of secondary events this handler is interested in.
+     * </p>
+     * <p>
+     *   By default, this mask combines the events whose handling methods are overridden by the subclass with
+     *   those the next handler in the chain is interested in (events not overridden are simply delegated to it).
+     *   Subclasses can override this method in order to declare a more specific mask.
+     * </p>
+     *
+     * @return the event interest mask.
+     * @see IMarkupEventInterest
+     * @since 2.0.8
+     */
+    @Override
+    public int getMarkupEventInterest() {
+        return MarkupEventInterestUtil.computeOverriddenEventInterest(getClass(), AbstractChainedMarkupHandler.class) |
+                getNextMarkupEventInterest();
+    }
+
+
 
 
     public void setParseConfiguration(final ParseConfiguration parseConfiguration) {
@@ -38,7 +38,7 @@
  * @since 2.0.0
  *
  */
-public abstract class AbstractMarkupHandler implements IMarkupHandler {
+public abstract class AbstractMarkupHandler implements IMarkupHandler, IMarkupEventInterest {
 
 
 
@@ -49,6 +49,26 @@ protected AbstractMarkupHandler() {
 
 
 
+    /**
+     * <p>
+     *   Returns the mask of secondary events this handler is interested in.
+     * </p>
+     * <p>
+     *   By default, this mask is computed from the event handling methods overridden by the subclass: methods
+     *   not overridden do nothing, so the corresponding events can be safely skipped by the parser. Subclasses
+     *   can override this method in order to declare a more specific mask.
+     * </p>
+     *
+     * @return the event interest mask.
+     * @see IMarkupEventInterest
+     * @since 2.0.8
+     */
+    public int getMarkupEventInterest() {
+        return MarkupEventInterestUtil.computeOverriddenEventInterest(getClass(), AbstractMarkupHandler.class);
+    }
+
+
+
     public void setParseConfiguration(final ParseConfiguration parseConfiguration) {
         // Nothing to do. By default handlers will not be interested in using this object at all.
         // Implementations will have to explicitly override if they need to use it.
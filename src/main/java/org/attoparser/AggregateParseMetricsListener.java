@@ -0,0 +1,269 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * <p>
+ *   Thread-safe implementation of {@link IParseMetricsListener} that aggregates the metrics of all the documents
+ *   parsed, normally for producing process-wide statistics.
+ * </p>
+ * <p>
+ *   Counters and times are added up, and maximum values (buffer size, element depth and parsing time of the
+ *   slowest document) are kept. A single instance of this class can be shared among several parsers.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final AggregateParseMetricsListener metrics = new AggregateParseMetricsListener();
+ *   final IMarkupParser parser =
+ *       new MarkupParser(ParseConfiguration.htmlConfiguration(), metrics);
+ *   ...
+ *   System.out.println(metrics);
+ * </code></pre>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class AggregateParseMetricsListener implements IParseMetricsListener {
+
+    private final AtomicLong documents = new AtomicLong(0L);
+    private final AtomicLong failedDocuments = new AtomicLong(0L);
+    private final AtomicLong charsRead = new AtomicLong(0L);
+    private final AtomicLong readerCalls = new AtomicLong(0L);
+    private final AtomicLong bufferGrowths = new AtomicLong(0L);
+    private final AtomicLong maxBufferSize = new AtomicLong(0L);
+    private final AtomicLongArray eventCounts = new AtomicLongArray(ParseMetrics.Event.values().length);
+    private final AtomicLong maxElementDepth = new AtomicLong(0L);
+    private final AtomicLong handlerTimeNanos = new AtomicLong(0L);
+    private final AtomicLong totalTimeNanos = new AtomicLong(0L);
+    private final AtomicLong maxTotalTimeNanos = new AtomicLong(0L);
+
+
+
+    public AggregateParseMetricsListener() {
+        super();
+    }
+
+
+
+
+    public void handleParseMetrics(final ParseMetrics metrics) {
+
+        this.documents.incrementAndGet();
+        if (!metrics.successful) {
+            this.failedDocuments.incrementAndGet();
+        }
+        this.charsRead.addAndGet(metrics.charsRead);
+        this.readerCalls.addAndGet(metrics.readerCalls);
+        this.bufferGrowths.addAndGet(metrics.bufferGrowths);
+        max(this.maxBufferSize, metrics.maxBufferSize);
+        for (int i = 0; i < metrics.eventCounts.length; i++) {
+            if (metrics.eventCounts[i] != 0L) {
+                this.eventCounts.addAndGet(i, metrics.eventCounts[i]);
+            }
+        }
+        max(this.maxElementDepth, metrics.maxElementDepth);
+        this.handlerTimeNanos.addAndGet(metrics.handlerTimeNanos);
+        this.totalTimeNanos.addAndGet(metrics.totalTimeNanos);
+        max(this.maxTotalTimeNanos, metrics.totalTimeNanos);
+
+    }
+
+
+    private static void max(final AtomicLong max, final long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the number of documents parsed.
+     * </p>
+     *
+     * @return the number of documents.
+     */
+    public long getDocuments() {
+        return this.documents.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of documents which parsing raised an exception.
+     * </p>
+     *
+     * @return the number of failed documents.
+     */
+    public long getFailedDocuments() {
+        return this.failedDocuments.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total amount of chars read.
+     * </p>
+     *
+     * @return the amount of chars read.
+     */
+    public long getCharsRead() {
+        return this.charsRead.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total number of calls performed to document readers.
+     * </p>
+     *
+     * @return the number of reader calls.
+     */
+    public long getReaderCalls() {
+        return this.readerCalls.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total number of buffer growths.
+     * </p>
+     *
+     * @return the number of buffer growths.
+     */
+    public long getBufferGrowths() {
+        return this.bufferGrowths.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the size (in chars) of the largest buffer used for parsing any document.
+     * </p>
+     *
+     * @return the size of the largest buffer.
+     */
+    public long getMaxBufferSize() {
+        return this.maxBufferSize.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total number of events of the specified type.
+     * </p>
+     *
+     * @param event the type of event.
+     * @return the number of events.
+     */
+    public long getEventCount(final ParseMetrics.Event event) {
+        if (event == null) {
+            throw new IllegalArgumentException("Event cannot be null");
+        }
+        return this.eventCounts.get(event.ordinal());
+    }
+
+
+    /**
+     * <p>
+     *   Returns the maximum element depth reached in any document.
+     * </p>
+     *
+     * @return the maximum element depth.
+     */
+    public long getMaxElementDepth() {
+        return this.maxElementDepth.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total time spent in handlers, in nanoseconds.
+     * </p>
+     *
+     * @return the handler time.
+     */
+    public long getHandlerTimeNanos() {
+        return this.handlerTimeNanos.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total time spent in parsing operations, in nanoseconds.
+     * </p>
+     *
+     * @return the total time.
+     */
+    public long getTotalTimeNanos() {
+        return this.totalTimeNanos.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the time spent parsing the slowest document, in nanoseconds.
+     * </p>
+     *
+     * @return the maximum total time.
+     */
+    public long getMaxTotalTimeNanos() {
+        return this.maxTotalTimeNanos.get();
+    }
+
+
+
+
+    @Override
+    public String toString() {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("{documents=").append(getDocuments());
+        strBuilder.append(", failedDocuments=").append(getFailedDocuments());
+        strBuilder.append(", totalTimeNanos=").append(getTotalTimeNanos());
+        strBuilder.append(", handlerTimeNanos=").append(getHandlerTimeNanos());
+        strBuilder.append(", maxTotalTimeNanos=").append(getMaxTotalTimeNanos());
+        strBuilder.append(", charsRead=").append(getCharsRead());
+        strBuilder.append(", readerCalls=").append(getReaderCalls());
+        strBuilder.append(", bufferGrowths=").append(getBufferGrowths());
+        strBuilder.append(", maxBufferSize=").append(getMaxBufferSize());
+        strBuilder.append(", maxElementDepth=").append(getMaxElementDepth());
+        final ParseMetrics.Event[] events = ParseMetrics.Event.values();
+        for (int i = 0; i < events.length; i++) {
+            strBuilder.append(", ").append(events[i]).append('=').append(this.eventCounts.get(i));
+        }
+        strBuilder.append('}');
+        return strBuilder.toString();
+    }
+
+
+}
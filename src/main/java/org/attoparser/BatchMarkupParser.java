@@ -0,0 +1,352 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import org.attoparser.config.ParseConfiguration;
+
+
+/**
+ * <p>
+ *   Parser for large amounts of (usually small) documents, which parses them concurrently on a
+ *   caller-supplied {@link Executor}.
+ * </p>
+ * <p>
+ *   Documents can be specified as <tt>String</tt>, <tt>char[]</tt> or <tt>Reader</tt> objects, by means
+ *   of an {@link Iterator} (which allows documents to be produced lazily, e.g. from a stream) or an
+ *   {@link Iterable}. Handlers for each document are created, and the outcome of each parsing operation is
+ *   reported, by means of an {@link IBatchParseHandler}.
+ * </p>
+ * <p>
+ *   Compared to calling {@link MarkupParser#parse(Reader, IMarkupHandler)} for each document, this class:
+ * </p>
+ * <ul>
+ *   <li>Reuses a <em>parse context</em> per worker among all the documents it parses: a buffer
+ *       (owned by the worker, so that no synchronization is needed for obtaining it), the element stack
+ *       and the repository of element and attribute names. At most <tt>maxInFlight</tt> contexts are
+ *       created, and they are not bound to threads, so this works the same with pools of platform
+ *       threads and with virtual threads (one per task).</li>
+ *   <li>Applies <em>back-pressure</em>: no more than <tt>maxInFlight</tt> documents are submitted to the
+ *       executor at the same time, so the thread calling <tt>parse</tt> will block (without consuming
+ *       any more documents from the iterator) until some of these documents are finished.</li>
+ *   <li>Isolates errors per document: an exception raised while parsing a document is reported to
+ *       {@link IBatchParseHandler#handleDocumentFailed(int, Exception)} and does not affect any other
+ *       documents in the batch.</li>
+ * </ul>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final ExecutorService executor = Executors.newFixedThreadPool(8);
+ *   final BatchMarkupParser parser =
+ *       new BatchMarkupParser(ParseConfiguration.htmlConfiguration(), executor, 16);
+ *   ...
+ *   parser.parse(snippets, batchParseHandler);
+ * </code></pre>
+ * <p>
+ *   This class is thread-safe, and the same instance can be used for parsing several batches at the same time
+ *   (even if they will share parse contexts and the limit of documents in flight).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class BatchMarkupParser {
+
+    private final ParseConfiguration configuration;
+    private final Executor executor;
+    private final int bufferSize;
+
+    private final Semaphore inFlight;
+    private final Queue<WorkerContext> contexts = new ConcurrentLinkedQueue<WorkerContext>();
+
+
+
+    /**
+     * <p>
+     *   Creates a new batch parser, using buffers of the default size.
+     * </p>
+     *
+     * @param configuration the parse configuration to be used for all documents.
+     * @param executor the executor on which documents will be parsed.
+     * @param maxInFlight the maximum number of documents being parsed (or waiting to be parsed by the executor)
+     *                    at the same time.
+     */
+    public BatchMarkupParser(final ParseConfiguration configuration, final Executor executor, final int maxInFlight) {
+        this(configuration, executor, maxInFlight, MarkupParser.DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new batch parser.
+     * </p>
+     *
+     * @param configuration the parse configuration to be used for all documents.
+     * @param executor the executor on which documents will be parsed.
+     * @param maxInFlight the maximum number of documents being parsed (or waiting to be parsed by the executor)
+     *                    at the same time.
+     * @param bufferSize the size of the buffer owned by each worker context.
+     */
+    public BatchMarkupParser(
+            final ParseConfiguration configuration, final Executor executor, final int maxInFlight,
+            final int bufferSize) {
+        super();
+        if (configuration == null) {
+            throw new IllegalArgumentException("Configuration cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Maximum number of documents in flight must be greater than zero");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than zero");
+        }
+        this.configuration = configuration;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Parses all the documents in the specified iterable, blocking until all of them have been parsed.
+     * </p>
+     *
+     * @param documents the documents (<tt>String</tt>, <tt>char[]</tt> or <tt>Reader</tt> objects).
+     * @param batchParseHandler the handler creating markup handlers and receiving the outcome of each document.
+     * @throws InterruptedException if the calling thread is interrupted while waiting. Documents already
+     *                              submitted to the executor will still be parsed.
+     */
+    public void parse(final Iterable<?> documents, final IBatchParseHandler batchParseHandler)
+            throws InterruptedException {
+        if (documents == null) {
+            throw new IllegalArgumentException("Documents cannot be null");
+        }
+        parse(documents.iterator(), batchParseHandler);
+    }
+
+
+    /**
+     * <p>
+     *   Parses all the documents returned by the specified iterator, blocking until all of them have been
+     *   parsed. Documents are obtained from the iterator only as the limit of documents in flight allows.
+     * </p>
+     *
+     * @param documents the documents (<tt>String</tt>, <tt>char[]</tt> or <tt>Reader</tt> objects).
+     * @param batchParseHandler the handler creating markup handlers and receiving the outcome of each document.
+     * @throws InterruptedException if the calling thread is interrupted while waiting. Documents already
+     *                              submitted to the executor will still be parsed.
+     */
+    public void parse(final Iterator<?> documents, final IBatchParseHandler batchParseHandler)
+            throws InterruptedException {
+
+        if (documents == null) {
+            throw new IllegalArgumentException("Documents cannot be null");
+        }
+        if (batchParseHandler == null) {
+            throw new IllegalArgumentException("Batch parse handler cannot be null");
+        }
+
+        // Each batch counts its own documents in flight so that we can wait for them to finish, whereas the
+        // instance-wide semaphore applies the back-pressure limit
+        final Semaphore batchInFlight = new Semaphore(0);
+        int documentIndex = 0;
+
+        try {
+
+            while (documents.hasNext()) {
+
+                // Permits are acquired before obtaining the document, so that no more documents are consumed
+                // from the iterator than can be put in flight
+                this.inFlight.acquire();
+
+                final Object document;
+                try {
+                    document = documents.next();
+                } catch (final RuntimeException e) {
+                    this.inFlight.release();
+                    throw e;
+                }
+
+                final DocumentTask task =
+                        new DocumentTask(this, document, documentIndex++, batchParseHandler, batchInFlight);
+                try {
+                    this.executor.execute(task);
+                } catch (final RuntimeException e) {
+                    // Typically a RejectedExecutionException: the document fails, the batch goes on
+                    task.fail(e);
+                    task.release();
+                }
+
+            }
+
+        } finally {
+            // Wait for all documents in this batch to finish (also when interrupted or if the iterator fails,
+            // so that no handlers are called after this method returns)
+            batchInFlight.acquireUninterruptibly(documentIndex);
+        }
+
+    }
+
+
+
+
+    private WorkerContext acquireContext() {
+        final WorkerContext context = this.contexts.poll();
+        if (context != null) {
+            return context;
+        }
+        // At most maxInFlight contexts will ever be created, as there are no more tasks running at the same time
+        return new WorkerContext(this.configuration, this.bufferSize);
+    }
+
+
+    private void releaseContext(final WorkerContext context) {
+        this.contexts.offer(context);
+    }
+
+
+
+
+    /*
+     * Worker parse contexts are used by one task at a time. Each one contains its own parser (with a pool of
+     * just one buffer, owned by this context) and the reusable state of the markup event processor.
+     */
+    private static final class WorkerContext {
+
+        private final MarkupParser parser;
+        private final MarkupEventProcessorHandler.ReusableContext reusableContext;
+
+        WorkerContext(final ParseConfiguration configuration, final int bufferSize) {
+            super();
+            this.parser = new MarkupParser(configuration, 1, bufferSize);
+            this.reusableContext = new MarkupEventProcessorHandler.ReusableContext();
+        }
+
+        void parse(final Object document, final IMarkupHandler handler) throws ParseException {
+            if (document instanceof String) {
+                this.parser.parseWithContext((String) document, handler, this.reusableContext);
+            } else if (document instanceof char[]) {
+                final char[] chars = (char[]) document;
+                this.parser.parseWithContext(chars, 0, chars.length, handler, this.reusableContext);
+            } else if (document instanceof Reader) {
+                this.parser.parseWithContext((Reader) document, handler, this.reusableContext);
+            } else {
+                throw new IllegalArgumentException(
+                        "Cannot parse document of class " + (document == null ? "null" : document.getClass().getName()) +
+                        ": only String, char[] and Reader documents are allowed");
+            }
+        }
+
+    }
+
+
+
+
+    private static final class DocumentTask implements Runnable {
+
+        private final BatchMarkupParser batchParser;
+        private final Object document;
+        private final int documentIndex;
+        private final IBatchParseHandler batchParseHandler;
+        private final Semaphore batchInFlight;
+
+        DocumentTask(
+                final BatchMarkupParser batchParser, final Object document, final int documentIndex,
+                final IBatchParseHandler batchParseHandler, final Semaphore batchInFlight) {
+            super();
+            this.batchParser = batchParser;
+            this.document = document;
+            this.documentIndex = documentIndex;
+            this.batchParseHandler = batchParseHandler;
+            this.batchInFlight = batchInFlight;
+        }
+
+
+        public void run() {
+
+            try {
+
+                final IMarkupHandler handler;
+                try {
+
+                    handler = this.batchParseHandler.createHandler(this.documentIndex);
+                    if (handler == null) {
+                        throw new IllegalArgumentException(
+                                "Handler created for document " + this.documentIndex + " is null");
+                    }
+
+                    final WorkerContext context = this.batchParser.acquireContext();
+                    try {
+                        context.parse(this.document, handler);
+                    } finally {
+                        this.batchParser.releaseContext(context);
+                    }
+
+                } catch (final Exception e) {
+                    fail(e);
+                    return;
+                }
+
+                try {
+                    this.batchParseHandler.handleDocumentParsed(this.documentIndex, handler);
+                } catch (final RuntimeException ignored) {
+                    // Failures in the batch parse handler itself should not affect the rest of the batch
+                }
+
+            } finally {
+                release();
+            }
+
+        }
+
+
+        void fail(final Exception e) {
+            try {
+                this.batchParseHandler.handleDocumentFailed(this.documentIndex, e);
+            } catch (final RuntimeException ignored) {
+                // Failures in the batch parse handler itself should not affect the rest of the batch
+            }
+        }
+
+
+        void release() {
+            this.batchParser.inFlight.release();
+            this.batchInFlight.release();
+        }
+
+    }
+
+
+}
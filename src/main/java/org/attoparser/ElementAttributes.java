@@ -0,0 +1,553 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import org.attoparser.util.TextUtil;
+
+
+/**
+ * <p>
+ *   Sequence of attributes of the open or standalone element currently being reported, tokenized only when
+ *   needed. Used when <em>lazy attribute parsing</em> is enabled at the parse configuration (see
+ *   {@link org.attoparser.config.ParseConfiguration#setLazyAttributeParsing(boolean)}), and for reporting
+ *   elements to {@link IBatchedElementMarkupHandler} implementations.
+ * </p>
+ * <p>
+ *   In lazy mode, the parser does not tokenize attributes nor report <tt>handleAttribute</tt> or
+ *   <tt>handleInnerWhiteSpace</tt> events for open or standalone elements. Instead, the span of the element's
+ *   markup between its name and its closing <tt>&gt;</tt> (or <tt>/&gt;</tt>) is made available through
+ *   {@link ParseStatus#getElementAttributes()} during the <tt>handleOpenElementStart</tt>,
+ *   <tt>handleOpenElementEnd</tt>, <tt>handleStandaloneElementStart</tt> and <tt>handleStandaloneElementEnd</tt>
+ *   events, and handlers that need the attributes can obtain them on demand by calling
+ *   {@link #parse(IAttributeSequenceHandler)}, which reports exactly the same events the parser would have.
+ * </p>
+ * <p>
+ *   Once parsed, attributes are kept in a <em>flyweight attribute table</em> of offsets into the buffer, so that
+ *   all the handlers in a chain can access them by index (see {@link #getAttributeCount()} and the
+ *   <tt>get*(index)</tt> methods) without the attribute sequence being tokenized more than once, and
+ *   without any objects being created per attribute.
+ * </p>
+ * <p>
+ *   A single instance of this class is reused for all the elements in a document, and it points to the parser's
+ *   own buffer, so its contents are only valid during the events of the element it refers to.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ElementAttributes {
+
+    // Each entry in the table is either an attribute or a run of inner white space, in order of appearance
+    private static final int ENTRY_SIZE = 15;
+    private static final int ENTRY_WHITE_SPACE = 0;
+    private static final int ENTRY_ATTRIBUTE = 1;
+    private static final int DEFAULT_TABLE_ENTRIES = 8;
+
+    private char[] buffer;
+    private int offset;
+    private int len;
+    private int line;
+    private int col;
+
+    private final IAttributeSequenceHandler tableBuilder = new TableBuilder();
+    private boolean tableBuilt = false;
+    private int[] table = new int[DEFAULT_TABLE_ENTRIES * ENTRY_SIZE];
+    private int tableSize = 0; // in entries
+    private int[] attributeEntries = new int[DEFAULT_TABLE_ENTRIES];
+    private int attributeCount = 0;
+
+
+
+    ElementAttributes() {
+        super();
+    }
+
+
+
+
+    void reset(final char[] buffer, final int offset, final int len, final int line, final int col) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.len = len;
+        this.line = line;
+        this.col = col;
+        this.tableBuilt = false;
+        this.tableSize = 0;
+        this.attributeCount = 0;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the buffer containing the unparsed attribute sequence.
+     * </p>
+     *
+     * @return the buffer.
+     */
+    public char[] getBuffer() {
+        return this.buffer;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the offset of the unparsed attribute sequence in the buffer. This is the position right after the
+     *   element name.
+     * </p>
+     *
+     * @return the offset of the attribute sequence.
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the length of the unparsed attribute sequence, including any white space that might appear
+     *   before, between or after attributes.
+     * </p>
+     *
+     * @return the length of the attribute sequence.
+     */
+    public int getLen() {
+        return this.len;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the line in the document where the attribute sequence starts.
+     * </p>
+     *
+     * @return the line.
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the column in the document where the attribute sequence starts.
+     * </p>
+     *
+     * @return the column.
+     */
+    public int getCol() {
+        return this.col;
+    }
+
+
+    /**
+     * <p>
+     *   Determines whether the current element has no attributes at all, i.e. whether the attribute sequence is
+     *   empty or contains only white space. This does not require tokenizing the attributes.
+     * </p>
+     *
+     * @return true if the element has no attributes, false if not.
+     */
+    public boolean isEmpty() {
+        final int maxi = this.offset + this.len;
+        for (int i = this.offset; i < maxi; i++) {
+            if (!Character.isWhitespace(this.buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Tokenizes the attribute sequence, reporting its attributes and inner white space to the specified
+     *   handler exactly as the parser would have done if lazy attribute parsing was not enabled.
+     * </p>
+     * <p>
+     *   This method can be called more than once for the same element: the attribute sequence is only tokenized
+     *   the first time, and subsequent calls simply replay the events from the attribute table.
+     * </p>
+     *
+     * @param handler the handler the attribute and inner white space events will be reported to.
+     * @throws ParseException if the attribute sequence cannot be parsed.
+     */
+    public void parse(final IAttributeSequenceHandler handler) throws ParseException {
+
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+
+        buildTable();
+
+        int e;
+        for (int i = 0; i < this.tableSize; i++) {
+            e = i * ENTRY_SIZE;
+            if (this.table[e] == ENTRY_ATTRIBUTE) {
+                handler.handleAttribute(
+                        this.buffer,
+                        this.table[e + 1], this.table[e + 2], this.table[e + 3], this.table[e + 4],
+                        this.table[e + 5], this.table[e + 6], this.table[e + 7], this.table[e + 8],
+                        this.table[e + 9], this.table[e + 10], this.table[e + 11], this.table[e + 12],
+                        this.table[e + 13], this.table[e + 14]);
+            } else {
+                handler.handleInnerWhiteSpace(
+                        this.buffer, this.table[e + 1], this.table[e + 2], this.table[e + 3], this.table[e + 4]);
+            }
+        }
+
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the number of attributes of the element, tokenizing the attribute sequence if needed.
+     * </p>
+     *
+     * @return the number of attributes.
+     * @throws ParseException if the attribute sequence cannot be parsed.
+     */
+    public int getAttributeCount() throws ParseException {
+        buildTable();
+        return this.attributeCount;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the index of the attribute with the specified name, tokenizing the attribute sequence if needed.
+     * </p>
+     *
+     * @param caseSensitive whether the attribute name should be matched in a case-sensitive way.
+     * @param name the name of the attribute.
+     * @return the index of the attribute, or <tt>-1</tt> if the element has no such attribute.
+     * @throws ParseException if the attribute sequence cannot be parsed.
+     */
+    public int indexOf(final boolean caseSensitive, final String name) throws ParseException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        buildTable();
+        int e;
+        for (int i = 0; i < this.attributeCount; i++) {
+            e = this.attributeEntries[i];
+            if (TextUtil.equals(caseSensitive, name, 0, name.length(), this.buffer, this.table[e + 1], this.table[e + 2])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the offset in the buffer of the name of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the offset of the name.
+     */
+    public int getNameOffset(final int index) {
+        return attributeValue(index, 1);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the length of the name of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the length of the name.
+     */
+    public int getNameLen(final int index) {
+        return attributeValue(index, 2);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the line of the name of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the line of the name.
+     */
+    public int getNameLine(final int index) {
+        return attributeValue(index, 3);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the column of the name of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the column of the name.
+     */
+    public int getNameCol(final int index) {
+        return attributeValue(index, 4);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the offset in the buffer of the operator (<tt>=</tt> and any surrounding white space) of the
+     *   attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the offset of the operator.
+     */
+    public int getOperatorOffset(final int index) {
+        return attributeValue(index, 5);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the length of the operator of the attribute at the specified index (<tt>0</tt> if the attribute
+     *   has no value).
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the length of the operator.
+     */
+    public int getOperatorLen(final int index) {
+        return attributeValue(index, 6);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the line of the operator of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the line of the operator.
+     */
+    public int getOperatorLine(final int index) {
+        return attributeValue(index, 7);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the column of the operator of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the column of the operator.
+     */
+    public int getOperatorCol(final int index) {
+        return attributeValue(index, 8);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the offset in the buffer of the value of the attribute at the specified index, without quotes.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the offset of the value content.
+     */
+    public int getValueContentOffset(final int index) {
+        return attributeValue(index, 9);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the length of the value of the attribute at the specified index, without quotes.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the length of the value content.
+     */
+    public int getValueContentLen(final int index) {
+        return attributeValue(index, 10);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the offset in the buffer of the value of the attribute at the specified index, including quotes.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the offset of the outer value.
+     */
+    public int getValueOuterOffset(final int index) {
+        return attributeValue(index, 11);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the length of the value of the attribute at the specified index, including quotes.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the length of the outer value.
+     */
+    public int getValueOuterLen(final int index) {
+        return attributeValue(index, 12);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the line of the value of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the line of the value.
+     */
+    public int getValueLine(final int index) {
+        return attributeValue(index, 13);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the column of the value of the attribute at the specified index.
+     * </p>
+     *
+     * @param index the index of the attribute.
+     * @return the column of the value.
+     */
+    public int getValueCol(final int index) {
+        return attributeValue(index, 14);
+    }
+
+
+
+
+    private int attributeValue(final int index, final int field) {
+        if (!this.tableBuilt) {
+            throw new IllegalStateException(
+                    "Attributes have not been parsed yet: call getAttributeCount() before accessing them by index");
+        }
+        if (index < 0 || index >= this.attributeCount) {
+            throw new IndexOutOfBoundsException("Invalid attribute index: " + index);
+        }
+        return this.table[this.attributeEntries[index] + field];
+    }
+
+
+    private void buildTable() throws ParseException {
+        if (this.tableBuilt) {
+            return;
+        }
+        this.tableSize = 0;
+        this.attributeCount = 0;
+        if (this.len > 0) {
+            ParsingAttributeSequenceUtil.parseAttributeSequence(
+                    this.buffer, this.offset, this.len, this.line, this.col, this.tableBuilder);
+        }
+        this.tableBuilt = true;
+    }
+
+
+    private int addEntry(final int type) {
+        if ((this.tableSize + 1) * ENTRY_SIZE > this.table.length) {
+            final int[] newTable = new int[this.table.length * 2];
+            System.arraycopy(this.table, 0, newTable, 0, this.tableSize * ENTRY_SIZE);
+            this.table = newTable;
+        }
+        final int e = this.tableSize * ENTRY_SIZE;
+        this.table[e] = type;
+        this.tableSize++;
+        return e;
+    }
+
+
+
+
+    /*
+     * Fills the attribute table with the results of tokenizing the attribute sequence
+     */
+    private final class TableBuilder implements IAttributeSequenceHandler {
+
+        public void handleAttribute(
+                final char[] buffer,
+                final int nameOffset, final int nameLen,
+                final int nameLine, final int nameCol,
+                final int operatorOffset, final int operatorLen,
+                final int operatorLine, final int operatorCol,
+                final int valueContentOffset, final int valueContentLen,
+                final int valueOuterOffset, final int valueOuterLen,
+                final int valueLine, final int valueCol) {
+
+            final int e = addEntry(ENTRY_ATTRIBUTE);
+            final int[] t = ElementAttributes.this.table;
+            t[e + 1] = nameOffset;
+            t[e + 2] = nameLen;
+            t[e + 3] = nameLine;
+            t[e + 4] = nameCol;
+            t[e + 5] = operatorOffset;
+            t[e + 6] = operatorLen;
+            t[e + 7] = operatorLine;
+            t[e + 8] = operatorCol;
+            t[e + 9] = valueContentOffset;
+            t[e + 10] = valueContentLen;
+            t[e + 11] = valueOuterOffset;
+            t[e + 12] = valueOuterLen;
+            t[e + 13] = valueLine;
+            t[e + 14] = valueCol;
+
+            if (ElementAttributes.this.attributeCount == ElementAttributes.this.attributeEntries.length) {
+                final int[] newAttributeEntries = new int[ElementAttributes.this.attributeEntries.length * 2];
+                System.arraycopy(
+                        ElementAttributes.this.attributeEntries, 0, newAttributeEntries, 0,
+                        ElementAttributes.this.attributeCount);
+                ElementAttributes.this.attributeEntries = newAttributeEntries;
+            }
+            ElementAttributes.this.attributeEntries[ElementAttributes.this.attributeCount++] = e;
+
+        }
+
+        public void handleInnerWhiteSpace(
+                final char[] buffer,
+                final int offset, final int len,
+                final int line, final int col) {
+
+            final int e = addEntry(ENTRY_WHITE_SPACE);
+            final int[] t = ElementAttributes.this.table;
+            t[e + 1] = offset;
+            t[e + 2] = len;
+            t[e + 3] = line;
+            t[e + 4] = col;
+
+        }
+
+    }
+
+
+}
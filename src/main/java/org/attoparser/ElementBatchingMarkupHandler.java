@@ -0,0 +1,178 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+/*
+ * Converts the classic sequence of element events into batched element events for an
+ * IBatchedElementMarkupHandler. The parser places this handler right before the user's handler, after
+ * the markup event processor (and the HTML handler, if in HTML mode), so that all element events it
+ * receives refer to structures in the source buffer.
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+final class ElementBatchingMarkupHandler extends AbstractChainedMarkupHandler {
+
+    private final IBatchedElementMarkupHandler handler;
+
+    // Only used if attributes are not being parsed lazily by the parser
+    private final ElementAttributes attributes = new ElementAttributes();
+
+    private ParseStatus status;
+    private int elementLine;
+    private int elementCol;
+    private boolean inElement = false;
+
+
+
+    ElementBatchingMarkupHandler(final IBatchedElementMarkupHandler handler) {
+        super(handler);
+        this.handler = handler;
+    }
+
+
+
+
+    @Override
+    public int getMarkupEventInterest() {
+        // Inner white space in open and standalone elements is dropped here, but not that in close elements
+        return getNextMarkupEventInterest();
+    }
+
+
+    @Override
+    public void setParseStatus(final ParseStatus status) {
+        this.status = status;
+        super.setParseStatus(status);
+    }
+
+
+
+
+    @Override
+    public void handleStandaloneElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final boolean minimized,
+            final int line, final int col)
+            throws ParseException {
+        this.elementLine = line;
+        this.elementCol = col;
+        this.inElement = true;
+    }
+
+
+    @Override
+    public void handleStandaloneElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final boolean minimized,
+            final int line, final int col)
+            throws ParseException {
+        this.inElement = false;
+        this.handler.handleStandaloneElement(
+                buffer, nameOffset, nameLen, computeAttributes(buffer, nameOffset, nameLen, (minimized? 2 : 1)),
+                minimized, this.elementLine, this.elementCol, line, col);
+    }
+
+
+    @Override
+    public void handleOpenElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        this.elementLine = line;
+        this.elementCol = col;
+        this.inElement = true;
+    }
+
+
+    @Override
+    public void handleOpenElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        this.inElement = false;
+        this.handler.handleOpenElement(
+                buffer, nameOffset, nameLen, computeAttributes(buffer, nameOffset, nameLen, 1),
+                this.elementLine, this.elementCol, line, col);
+    }
+
+
+    @Override
+    public void handleAttribute(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int nameLine, final int nameCol,
+            final int operatorOffset, final int operatorLen,
+            final int operatorLine, final int operatorCol,
+            final int valueContentOffset, final int valueContentLen,
+            final int valueOuterOffset, final int valueOuterLen,
+            final int valueLine, final int valueCol)
+            throws ParseException {
+        // Attributes of open and standalone elements will be reported with the element end
+        if (!this.inElement) {
+            super.handleAttribute(
+                    buffer,
+                    nameOffset, nameLen, nameLine, nameCol,
+                    operatorOffset, operatorLen, operatorLine, operatorCol,
+                    valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
+        }
+    }
+
+
+    @Override
+    public void handleInnerWhiteSpace(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // Inner white space of open and standalone elements will be reported with the element end
+        if (!this.inElement) {
+            super.handleInnerWhiteSpace(buffer, offset, len, line, col);
+        }
+    }
+
+
+
+
+    private ElementAttributes computeAttributes(
+            final char[] buffer, final int nameOffset, final int nameLen, final int elementEndLen) {
+
+        if (this.status.elementAttributes != null) {
+            return this.status.elementAttributes;
+        }
+
+        // Attributes have already been parsed, but there is no need to keep them as we can simply compute their
+        // span from the current structure. Element names cannot contain line feeds, so the col is easy to compute.
+        final int attributesOffset = nameOffset + nameLen;
+        final int attributesEnd = (this.status.structureOffset + this.status.structureLen) - elementEndLen;
+        this.attributes.reset(
+                buffer, attributesOffset, Math.max(0, attributesEnd - attributesOffset),
+                this.elementLine, this.elementCol + 1 + nameLen);
+        return this.attributes;
+
+    }
+
+
+}
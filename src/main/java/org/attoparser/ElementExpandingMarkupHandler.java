@@ -0,0 +1,110 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+/**
+ * <p>
+ *   Adapter that allows any {@link IMarkupHandler} to receive the events of an
+ *   {@link IBatchedElementMarkupHandler}, by expanding batched element events back into the classic sequence
+ *   of element start, attribute, inner white space and element end events. All other events are simply
+ *   delegated.
+ * </p>
+ * <p>
+ *   Normally there is no need to create instances of this class directly, as
+ *   {@link AbstractChainedBatchedElementMarkupHandler} wraps the next handler in the chain when needed.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ElementExpandingMarkupHandler
+        extends AbstractChainedMarkupHandler implements IBatchedElementMarkupHandler {
+
+
+    /**
+     * <p>
+     *   Returns a batched view of the specified handler: the handler itself if it already implements
+     *   {@link IBatchedElementMarkupHandler}, or a new adapter wrapping it if not.
+     * </p>
+     *
+     * @param handler the handler.
+     * @return the batched element handler.
+     */
+    public static IBatchedElementMarkupHandler forHandler(final IMarkupHandler handler) {
+        if (handler instanceof IBatchedElementMarkupHandler) {
+            return (IBatchedElementMarkupHandler) handler;
+        }
+        return new ElementExpandingMarkupHandler(handler);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this adapter, expanding batched element events for the specified handler.
+     * </p>
+     *
+     * @param handler the handler that will receive the classic events.
+     */
+    public ElementExpandingMarkupHandler(final IMarkupHandler handler) {
+        super(handler);
+    }
+
+
+
+
+    public void handleStandaloneElement(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final ElementAttributes attributes,
+            final boolean minimized,
+            final int line, final int col,
+            final int endLine, final int endCol)
+            throws ParseException {
+
+        final IMarkupHandler next = getNext();
+        next.handleStandaloneElementStart(buffer, nameOffset, nameLen, minimized, line, col);
+        attributes.parse(next);
+        next.handleStandaloneElementEnd(buffer, nameOffset, nameLen, minimized, endLine, endCol);
+
+    }
+
+
+    public void handleOpenElement(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final ElementAttributes attributes,
+            final int line, final int col,
+            final int endLine, final int endCol)
+            throws ParseException {
+
+        final IMarkupHandler next = getNext();
+        next.handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
+        attributes.parse(next);
+        next.handleOpenElementEnd(buffer, nameOffset, nameLen, endLine, endCol);
+
+    }
+
+
+}
@@ -102,6 +102,12 @@ public void handleOpenElementEnd(
             throws ParseException {
 
 
+        if (status.elementAttributes != null &&
+                TextUtil.equals(true, this.nameLower, 0, this.nameLower.length, ELEMENT_SCRIPT_NAME, 0, ELEMENT_SCRIPT_NAME.length)) {
+            // Attributes are being parsed lazily, so we need to look for the 'type' attribute ourselves
+            status.elementAttributes.parse(new ScriptTypeAttributeHandler(status));
+        }
+
         handler.handleOpenElementEnd(buffer, nameOffset, nameLen, line, col);
 
         if (status.shouldDisableParsing) {
@@ -130,6 +136,24 @@ public void handleAttribute(
             final boolean autoOpenEnabled, final boolean autoCloseEnabled)
             throws ParseException {
 
+        checkScriptTypeAttribute(buffer, nameOffset, nameLen, valueContentOffset, valueContentLen, status);
+
+        handler.handleAttribute(
+                buffer,
+                nameOffset, nameLen, nameLine, nameCol,
+                operatorOffset, operatorLen, operatorLine, operatorCol,
+                valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
+
+    }
+
+
+
+    private void checkScriptTypeAttribute(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int valueContentOffset, final int valueContentLen,
+            final ParseStatus status) {
+
         if (TextUtil.equals(false, buffer, nameOffset, nameLen, ATTRIBUTE_TYPE_NAME, 0, ATTRIBUTE_TYPE_NAME.length)) {
             // We are processing a 'type' attribute...
             if (TextUtil.equals(true, this.nameLower, 0, this.nameLower.length, ELEMENT_SCRIPT_NAME, 0, ELEMENT_SCRIPT_NAME.length)) {
@@ -168,12 +192,6 @@ public void handleAttribute(
             }
         }
 
-        handler.handleAttribute(
-                buffer,
-                nameOffset, nameLen, nameLine, nameCol,
-                operatorOffset, operatorLen, operatorLine, operatorCol,
-                valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
-
     }
 
 
@@ -199,4 +217,41 @@ private char[] computeLimitSequence(final char[] buffer, final int nameOffset, f
 
 
     
+
+
+
+    /*
+     * Looks for the 'type' attribute of <script> elements when attributes are parsed lazily
+     */
+    private final class ScriptTypeAttributeHandler implements IAttributeSequenceHandler {
+
+        private final ParseStatus status;
+
+        ScriptTypeAttributeHandler(final ParseStatus status) {
+            super();
+            this.status = status;
+        }
+
+        public void handleAttribute(
+                final char[] buffer,
+                final int nameOffset, final int nameLen,
+                final int nameLine, final int nameCol,
+                final int operatorOffset, final int operatorLen,
+                final int operatorLine, final int operatorCol,
+                final int valueContentOffset, final int valueContentLen,
+                final int valueOuterOffset, final int valueOuterLen,
+                final int valueLine, final int valueCol) {
+            checkScriptTypeAttribute(buffer, nameOffset, nameLen, valueContentOffset, valueContentLen, this.status);
+        }
+
+        public void handleInnerWhiteSpace(
+                final char[] buffer,
+                final int offset, final int len,
+                final int line, final int col) {
+            // Nothing to do here
+        }
+
+    }
+
+
 }
\ No newline at end of file
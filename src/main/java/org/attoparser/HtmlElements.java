@@ -30,6 +30,7 @@
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.attoparser.util.FlightRecorderUtil;
 import org.attoparser.util.TextUtil;
 
 
@@ -323,11 +324,16 @@ private HtmlElement storeElement(final char[] text, final int offset, final int
                 return this.repository.get(index);
             }
 
-            final HtmlElement element = new HtmlElement(new String(text, offset, len).toLowerCase());
+            final Object growthEvent = FlightRecorderUtil.begin(FlightRecorderUtil.HTML_ELEMENT_REPOSITORY_GROWTH);
+
+            final String elementName = new String(text, offset, len).toLowerCase();
+            final HtmlElement element = new HtmlElement(elementName);
 
             // binary Search returned (-(insertion point) - 1)
             this.repository.add(((index + 1) * -1), element);
 
+            FlightRecorderUtil.commit(growthEvent, elementName, Integer.valueOf(this.repository.size()));
+
             return element;
 
         }
@@ -63,6 +63,14 @@ final class HtmlMarkupHandler extends AbstractMarkupHandler {
 
 
 
+    @Override
+    public int getMarkupEventInterest() {
+        // Secondary events are simply delegated to the next handler
+        return MarkupEventInterestUtil.getMarkupEventInterest(this.next);
+    }
+
+
+
     @Override
     public void setParseStatus(final ParseStatus status) {
         // This will be ALWAYS called, so there is no need to actually check whether this property is null when using it
@@ -0,0 +1,84 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+/**
+ * <p>
+ *   Interface to be implemented by objects in charge of creating the markup handlers for the documents parsed
+ *   by a {@link BatchMarkupParser}, and of receiving the outcome of each of these parsing operations.
+ * </p>
+ * <p>
+ *   Documents are identified by their index in the sequence of documents passed to the batch parser. As
+ *   documents are parsed concurrently, all methods in this interface can be called from several threads at
+ *   the same time, so implementations <strong>must be thread-safe</strong>. Note, however, that the handler
+ *   created for a document will only be used by one thread.
+ * </p>
+ * <p>
+ *   Exceptions raised by {@link #handleDocumentParsed(int, IMarkupHandler)} and
+ *   {@link #handleDocumentFailed(int, Exception)} are ignored, so that they do not affect the rest of the batch.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public interface IBatchParseHandler {
+
+
+    /**
+     * <p>
+     *   Create the markup handler that will be used for parsing a document.
+     * </p>
+     *
+     * @param documentIndex the index of the document.
+     * @return the markup handler to be used for the document (cannot be null).
+     */
+    public IMarkupHandler createHandler(final int documentIndex);
+
+
+    /**
+     * <p>
+     *   Called once a document has been successfully parsed.
+     * </p>
+     *
+     * @param documentIndex the index of the document.
+     * @param handler the markup handler used for the document (as created by {@link #createHandler(int)}).
+     */
+    public void handleDocumentParsed(final int documentIndex, final IMarkupHandler handler);
+
+
+    /**
+     * <p>
+     *   Called if parsing a document fails. Failures are isolated to the document they happen at, so that
+     *   the rest of the documents in the batch will still be parsed.
+     * </p>
+     * <p>
+     *   The exception received will normally be a {@link ParseException}, but it can also be any runtime
+     *   exception raised when creating the handler, or by the executor when rejecting the document's task.
+     * </p>
+     *
+     * @param documentIndex the index of the document.
+     * @param exception the exception that made parsing fail.
+     */
+    public void handleDocumentFailed(final int documentIndex, final Exception exception);
+
+
+}
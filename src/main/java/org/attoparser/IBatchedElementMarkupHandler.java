@@ -0,0 +1,129 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+/**
+ * <p>
+ *   Optional interface for markup handlers capable of receiving each open or standalone element (its name and all
+ *   its attributes) in one single <em>batched</em> call, instead of as a sequence of start, attribute, inner white
+ *   space and end events.
+ * </p>
+ * <p>
+ *   When the handler passed to {@link MarkupParser} implements this interface, open and standalone elements will
+ *   be reported to it by means of {@link #handleOpenElement(char[], int, int, ElementAttributes, int, int, int, int)}
+ *   and {@link #handleStandaloneElement(char[], int, int, ElementAttributes, boolean, int, int, int, int)}, and
+ *   the <tt>handleOpenElementStart</tt>, <tt>handleOpenElementEnd</tt>, <tt>handleStandaloneElementStart</tt>,
+ *   <tt>handleStandaloneElementEnd</tt>, <tt>handleAttribute</tt> and <tt>handleInnerWhiteSpace</tt> methods
+ *   will not be called for them. All other events (including close elements and auto-open/auto-close events)
+ *   are reported as usual.
+ * </p>
+ * <p>
+ *   Attributes are reported as an {@link ElementAttributes} flyweight object, reused for every element, which is
+ *   only tokenized if (and when) it is accessed. Combining this interface with
+ *   {@link org.attoparser.config.ParseConfiguration#setLazyAttributeParsing(boolean) lazy attribute parsing}
+ *   avoids attribute tokenization altogether for elements whose attributes no handler asks for.
+ * </p>
+ * <p>
+ *   Chains of handlers implementing this interface can be built by extending
+ *   {@link AbstractChainedBatchedElementMarkupHandler}, which forwards batched element events as such to the next
+ *   handler, expanding them back into classic events (see {@link ElementExpandingMarkupHandler}) only for handlers
+ *   that do not implement this interface. This way, per-element dispatch costs one call per handler in the chain,
+ *   regardless of the number of attributes. Handlers needing to modify attributes should report the modified
+ *   element to the next handler in the chain by means of classic events.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 2.0.8
+ * @see ElementAttributes
+ * @see ElementExpandingMarkupHandler
+ *
+ */
+public interface IBatchedElementMarkupHandler extends IMarkupHandler {
+
+
+    /**
+     * <p>
+     *   Called when a standalone element (an element with no closing tag) is found, including all its attributes.
+     * </p>
+     * <p>
+     *   Artifacts are reported using the document <tt>buffer</tt> directly, and this buffer
+     *   should not be considered to be immutable, so reported structures should be copied if they need
+     *   to be stored. The <tt>attributes</tt> object is reused for every element, and is only valid
+     *   during this call.
+     * </p>
+     * <p>
+     *   <b>Implementations of this handler should never modify the document buffer.</b>
+     * </p>
+     *
+     * @param buffer the document buffer (not copied)
+     * @param nameOffset the offset (position in buffer) where the element name appears.
+     * @param nameLen the length (in chars) of the element name.
+     * @param attributes the attributes of the element.
+     * @param minimized whether the element has been found minimized (&lt;element/&gt;)in code or not.
+     * @param line the line in the original document where this artifact starts.
+     * @param col the column in the original document where this artifact starts.
+     * @param endLine the line in the original document where the element ending structure appears.
+     * @param endCol the column in the original document where the element ending structure appears.
+     * @throws ParseException if any exceptions occur during handling.
+     */
+    public void handleStandaloneElement(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final ElementAttributes attributes,
+            final boolean minimized,
+            final int line, final int col,
+            final int endLine, final int endCol)
+            throws ParseException;
+
+
+    /**
+     * <p>
+     *   Called when an open element (an <i>open tag</i>) is found, including all its attributes.
+     * </p>
+     * <p>
+     *   Artifacts are reported using the document <tt>buffer</tt> directly, and this buffer
+     *   should not be considered to be immutable, so reported structures should be copied if they need
+     *   to be stored. The <tt>attributes</tt> object is reused for every element, and is only valid
+     *   during this call.
+     * </p>
+     * <p>
+     *   <b>Implementations of this handler should never modify the document buffer.</b>
+     * </p>
+     *
+     * @param buffer the document buffer (not copied)
+     * @param nameOffset the offset (position in buffer) where the element name appears.
+     * @param nameLen the length (in chars) of the element name.
+     * @param attributes the attributes of the element.
+     * @param line the line in the original document where this artifact starts.
+     * @param col the column in the original document where this artifact starts.
+     * @param endLine the line in the original document where the element ending structure appears.
+     * @param endCol the column in the original document where the element ending structure appears.
+     * @throws ParseException if any exceptions occur during handling.
+     */
+    public void handleOpenElement(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final ElementAttributes attributes,
+            final int line, final int col,
+            final int endLine, final int endCol)
+            throws ParseException;
+
+
+}
@@ -0,0 +1,74 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.attoparser;
+
+/**
+ * <p>
+ *   Interface to be implemented by handlers that can declare which kinds of <em>secondary</em> events they are
+ *   interested in (comments, CDATA sections, DOCTYPE clauses, XML declarations, processing instructions and
+ *   inner white space in elements).
+ * </p>
+ * <p>
+ *   Before parsing, parsers ask the handler chain for its event interest mask. Structures corresponding to events
+ *   nobody in the chain is interested in are then skipped by the parser at scan speed: their end is located, but they
+ *   are not parsed into their different parts, not validated, and no events are fired for them. Note that text and
+ *   element events (including attributes) are always fired.
+ * </p>
+ * <p>
+ *   Both {@link AbstractMarkupHandler} and {@link AbstractChainedMarkupHandler} implement this interface,
+ *   computing their mask from the event handling methods their subclasses override (chained handlers also
+ *   adding the mask of the next handler in the chain). Subclasses can override
+ *   {@link #getMarkupEventInterest()} in order to declare a more specific mask. Handlers not implementing
+ *   this interface are considered interested in all events.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 2.0.8
+ *
+ */
+public interface IMarkupEventInterest {
+
+    public static final int NO_EVENTS = 0;
+    public static final int EVENT_COMMENT = 1;
+    public static final int EVENT_CDATA_SECTION = 1 << 1;
+    public static final int EVENT_DOCTYPE = 1 << 2;
+    public static final int EVENT_XML_DECLARATION = 1 << 3;
+    public static final int EVENT_PROCESSING_INSTRUCTION = 1 << 4;
+    public static final int EVENT_INNER_WHITE_SPACE = 1 << 5;
+    public static final int ALL_EVENTS =
+            EVENT_COMMENT | EVENT_CDATA_SECTION | EVENT_DOCTYPE | EVENT_XML_DECLARATION |
+            EVENT_PROCESSING_INSTRUCTION | EVENT_INNER_WHITE_SPACE;
+
+
+    /**
+     * <p>
+     *   Returns the mask of secondary events this handler (and any handlers after it in the chain) is
+     *   interested in, as a combination of the <tt>EVENT_*</tt> constants in this interface.
+     * </p>
+     * <p>
+     *   This method is called by the parser after {@link IMarkupHandler#setParseConfiguration(org.attoparser.config.ParseConfiguration)}
+     *   and before any events are fired.
+     * </p>
+     *
+     * @return the event interest mask.
+     */
+    public int getMarkupEventInterest();
+
+}
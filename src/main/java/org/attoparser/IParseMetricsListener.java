@@ -0,0 +1,58 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+/**
+ * <p>
+ *   Interface to be implemented by objects wanting to receive the {@link ParseMetrics} of each document parsed
+ *   by a {@link MarkupParser}.
+ * </p>
+ * <p>
+ *   Metrics listeners are specified at parser construction time, and will therefore be called for every
+ *   parsing operation performed by the parser, possibly from several threads at the same time. So
+ *   implementations of this interface <strong>must be thread-safe</strong>. See
+ *   {@link AggregateParseMetricsListener} for an implementation aggregating the metrics of all the documents
+ *   parsed.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public interface IParseMetricsListener {
+
+
+    /**
+     * <p>
+     *   Called once the parsing of a document has finished, either successfully or not (see
+     *   {@link ParseMetrics#isSuccessful()}).
+     * </p>
+     * <p>
+     *   Implementations should not raise any exceptions, as these would be reported instead of any
+     *   exceptions raised during parsing.
+     * </p>
+     *
+     * @param metrics the metrics of the parsed document.
+     */
+    public void handleParseMetrics(final ParseMetrics metrics);
+
+
+}
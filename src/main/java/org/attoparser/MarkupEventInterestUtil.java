@@ -0,0 +1,119 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/*
+ * Utility methods for computing which event handling methods are overridden by handler classes, and
+ * therefore which events they are interested in.
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+final class MarkupEventInterestUtil {
+
+    private static final String[] EVENT_METHOD_NAMES =
+            new String[] {
+                    "handleComment", "handleCDATASection", "handleDocType", "handleXmlDeclaration",
+                    "handleProcessingInstruction", "handleInnerWhiteSpace" };
+    private static final int[] EVENT_MASKS =
+            new int[] {
+                    IMarkupEventInterest.EVENT_COMMENT, IMarkupEventInterest.EVENT_CDATA_SECTION,
+                    IMarkupEventInterest.EVENT_DOCTYPE, IMarkupEventInterest.EVENT_XML_DECLARATION,
+                    IMarkupEventInterest.EVENT_PROCESSING_INSTRUCTION, IMarkupEventInterest.EVENT_INNER_WHITE_SPACE };
+
+
+    // Overridden methods for each handler class, one map per base class. Keys are weak so that these caches do not
+    // prevent handler classes (and their class loaders, e.g. those of web applications) from being unloaded. Values
+    // only contain method names, so they do not reference the handler classes either.
+    private static final Map<Class<?>, Set<String>> OVERRIDDEN_FROM_ABSTRACT =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, Set<String>>(20));
+    private static final Map<Class<?>, Set<String>> OVERRIDDEN_FROM_ABSTRACT_CHAINED =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, Set<String>>(20));
+
+
+
+    static int getMarkupEventInterest(final IMarkupHandler handler) {
+        if (handler instanceof IMarkupEventInterest) {
+            return ((IMarkupEventInterest) handler).getMarkupEventInterest();
+        }
+        return IMarkupEventInterest.ALL_EVENTS;
+    }
+
+
+    static int computeOverriddenEventInterest(final Class<?> handlerClass, final Class<?> baseClass) {
+        final Set<String> overriddenMethods = getOverriddenMethods(handlerClass, baseClass);
+        int interest = IMarkupEventInterest.NO_EVENTS;
+        for (int i = 0; i < EVENT_METHOD_NAMES.length; i++) {
+            if (overriddenMethods.contains(EVENT_METHOD_NAMES[i])) {
+                interest |= EVENT_MASKS[i];
+            }
+        }
+        return interest;
+    }
+
+
+    /*
+     * Returns the names of the IMarkupHandler methods whose implementations in the handler class are not the ones
+     * declared at the base class (AbstractMarkupHandler or AbstractChainedMarkupHandler).
+     */
+    private static Set<String> getOverriddenMethods(final Class<?> handlerClass, final Class<?> baseClass) {
+
+        final Map<Class<?>, Set<String>> overriddenMethodsByClass =
+                (AbstractChainedMarkupHandler.class.equals(baseClass)?
+                        OVERRIDDEN_FROM_ABSTRACT_CHAINED : OVERRIDDEN_FROM_ABSTRACT);
+
+        Set<String> overriddenMethods = overriddenMethodsByClass.get(handlerClass);
+        if (overriddenMethods != null) {
+            return overriddenMethods;
+        }
+
+        overriddenMethods = new HashSet<String>(40);
+        for (final Method method : IMarkupHandler.class.getMethods()) {
+            try {
+                final Method handlerMethod = handlerClass.getMethod(method.getName(), method.getParameterTypes());
+                if (!baseClass.equals(handlerMethod.getDeclaringClass())) {
+                    overriddenMethods.add(method.getName());
+                }
+            } catch (final NoSuchMethodException e) {
+                // Cannot happen: the class implements IMarkupHandler
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // Concurrent computations for the same class produce equal sets, so there is no need to check for any
+        overriddenMethodsByClass.put(handlerClass, overriddenMethods);
+        return overriddenMethods;
+
+    }
+
+
+
+    private MarkupEventInterestUtil() {
+        super();
+    }
+
+}
@@ -65,6 +65,10 @@ final class MarkupEventProcessorHandler extends AbstractChainedMarkupHandler {
 
     private boolean requireWellFormedAttributeValues;
     private boolean requireUniqueAttributesInElement;
+    private boolean validateAttributes;
+
+    private int maxElementDepth;
+    private int maxAttributesPerElement;
 
     private boolean validateProlog;
     private boolean prologPresenceForbidden;
@@ -85,17 +89,44 @@ final class MarkupEventProcessorHandler extends AbstractChainedMarkupHandler {
     private char[] rootElementName = null;
     private char[][] currentElementAttributeNames = null;
     private int currentElementAttributeNamesSize = 0;
+    private int currentElementAttributeCount = 0;
+    private int elementDepth = 0; // Only used for checking depth limits when there is no element stack
 
 
     private boolean closeElementIsMatched = true;
 
+    // Only used for validating attributes when these are parsed lazily
+    private final IAttributeSequenceHandler attributeValidator = new AttributeValidator();
+
+
+    // Only used when parsing in batches, for reusing the stack and names repository among documents
+    private final ReusableContext reusableContext;
+
 
     MarkupEventProcessorHandler(final IMarkupHandler handler) {
+        this(handler, null);
+    }
+
+
+    MarkupEventProcessorHandler(final IMarkupHandler handler, final ReusableContext reusableContext) {
 
         super(handler);
 
+        this.reusableContext = reusableContext;
+
+    }
+
+
 
 
+    @Override
+    public int getMarkupEventInterest() {
+        // DOCTYPE clauses and XML declarations are only needed here for validating the prolog
+        int interest = getNextMarkupEventInterest();
+        if (this.validateProlog) {
+            interest |= (EVENT_DOCTYPE | EVENT_XML_DECLARATION);
+        }
+        return interest;
     }
 
 
@@ -137,13 +168,33 @@ public void setParseConfiguration(final ParseConfiguration parseConfiguration) {
         this.uniqueRootElementPresence = parseConfiguration.getUniqueRootElementPresence();
         this.requireWellFormedAttributeValues = parseConfiguration.isXmlWellFormedAttributeValuesRequired();
         this.requireUniqueAttributesInElement = parseConfiguration.isUniqueAttributesInElementRequired();
+        this.maxElementDepth = parseConfiguration.getMaxElementDepth();
+        this.maxAttributesPerElement = parseConfiguration.getMaxAttributesPerElement();
+        this.validateAttributes =
+                ((this.useStack && this.requireUniqueAttributesInElement) || this.requireWellFormedAttributeValues ||
+                        this.maxAttributesPerElement > 0);
+        this.elementDepth = 0;
 
         this.validateProlog = this.prologParseConfiguration.isValidateProlog();
         this.prologPresenceForbidden = this.prologParseConfiguration.getPrologPresence().isForbidden();
         this.xmlDeclarationPresenceForbidden = this.prologParseConfiguration.getXmlDeclarationPresence().isRequired();
         this.doctypePresenceForbidden = this.prologParseConfiguration.getDoctypePresence().isRequired();
 
-        if (this.useStack) {
+        if (this.useStack && this.reusableContext != null) {
+
+            if (this.reusableContext.elementStack == null ||
+                    this.reusableContext.structureNamesRepository.repositorySize > ReusableContext.MAX_REUSED_STRUCTURE_NAMES) {
+                // Repositories are not reused forever, as documents could contain an unlimited amount of names
+                this.reusableContext.elementStack = new char[DEFAULT_STACK_LEN][];
+                this.reusableContext.structureNamesRepository = new StructureNamesRepository();
+            }
+
+            this.elementStack = this.reusableContext.elementStack;
+            this.elementStackSize = 0;
+
+            this.structureNamesRepository = this.reusableContext.structureNamesRepository;
+
+        } else if (this.useStack) {
 
             this.elementStack = new char[DEFAULT_STACK_LEN][];
             this.elementStackSize = 0;
@@ -168,7 +219,8 @@ public void setParseConfiguration(final ParseConfiguration parseConfiguration) {
     public void handleDocumentEnd(final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
             throws ParseException {
 
-        if (this.requireBalancedElements && this.elementStackSize > 0) {
+        // In error-collecting mode, unclosed elements will be reported (and auto-closed) when cleaning the stack
+        if (this.requireBalancedElements && this.elementStackSize > 0 && this.status.errorReport == null) {
             final char[] popped = popFromStack();
             throw new ParseException(
                 "Malformed markup: element " +
@@ -179,8 +231,11 @@ public void handleDocumentEnd(final long endTimeNanos, final long totalTimeNanos
         if (!this.elementRead && (
                 (this.validPrologDocTypeRead && this.uniqueRootElementPresence.isDependsOnPrologDoctype()) ||
                 this.uniqueRootElementPresence.isRequiredAlways())) {
-            throw new ParseException(
-                    "Malformed markup: no root element present");
+            if (this.status.errorReport == null) {
+                throw new ParseException(
+                        "Malformed markup: no root element present");
+            }
+            this.status.errorReport.addProblem("Malformed markup: no root element present", line, col);
         }
 
         if (this.useStack) {
@@ -209,25 +264,21 @@ public void handleXmlDeclaration(
             throws ParseException {
 
         if (this.validateProlog && (this.prologPresenceForbidden || this.xmlDeclarationPresenceForbidden)) {
-            throw new ParseException(
+            problem(
                     "An XML Declaration has been found, but it wasn't allowed",
                     line, col);
-        }
-
-        if (this.validateProlog) {
+        } else if (this.validateProlog) {
 
             if (this.validPrologXmlDeclarationRead) {
-                throw new ParseException(
+                problem(
                         "Malformed markup: Only one XML Declaration can appear in document",
                         line, col);
-            }
-            if (this.validPrologDocTypeRead) {
-                throw new ParseException(
+            } else if (this.validPrologDocTypeRead) {
+                problem(
                         "Malformed markup: XML Declaration must appear before DOCTYPE",
                         line, col);
-            }
-            if (this.elementRead) {
-                throw new ParseException(
+            } else if (this.elementRead) {
+                problem(
                         "Malformed markup: XML Declaration must appear before any " +
                         "elements in document",
                         line, col);
@@ -270,6 +321,8 @@ public void handleStandaloneElementStart(
 
         }
 
+        this.currentElementAttributeCount = 0;
+
         /*
          * Perform the handling of the standalone element start
          * These events might require previous auto-* operations, in which case these
@@ -300,7 +353,7 @@ public void handleStandaloneElementStart(
                 getNext().handleStandaloneElementStart(buffer, nameOffset, nameLen, minimized, line, col);
             }
             if (!this.status.avoidStacking) {
-                pushToStack(buffer, nameOffset, nameLen);
+                pushToStack(buffer, nameOffset, nameLen, line, col);
             }
         } else {
             if (this.status.autoOpenParents != null || this.status.autoCloseRequired != null) {
@@ -323,9 +376,16 @@ public void handleStandaloneElementEnd(
             final int line, final int col)
             throws ParseException {
 
+        if (this.validateAttributes && this.status.elementAttributes != null) {
+            // Attributes have not been parsed (and therefore validated) yet, so we need to do it now
+            this.status.elementAttributes.parse(this.attributeValidator);
+        }
+
         this.elementRead = true;
         getNext().handleStandaloneElementEnd(buffer, nameOffset, nameLen, minimized, line, col);
 
+        checkDocumentEnd();
+
     }
 
 
@@ -348,6 +408,8 @@ public void handleOpenElementStart(
 
         }
 
+        this.currentElementAttributeCount = 0;
+
         /*
          * Perform the handling of the open element start
          * These events might require previous auto-* operations, in which case these
@@ -379,7 +441,7 @@ public void handleOpenElementStart(
             }
             if (!this.status.avoidStacking) {
                 // Can be an HTML void element
-                pushToStack(buffer, nameOffset, nameLen);
+                pushToStack(buffer, nameOffset, nameLen, line, col);
             }
         } else {
             if (this.status.autoOpenParents != null || this.status.autoCloseRequired != null) {
@@ -388,6 +450,14 @@ public void handleOpenElementStart(
                 this.status.autoOpenCloseDone = true;
                 getNext().handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
             }
+            if ((this.maxElementDepth > 0 || this.status.rootElementEndsDocument) && !this.status.avoidStacking) {
+                // No stack, but we still need to keep track of depth
+                if (this.maxElementDepth > 0 && this.elementDepth >= this.maxElementDepth) {
+                    throw new ParseLimitExceededException(
+                            ParseLimitExceededException.Limit.MAX_ELEMENT_DEPTH, this.maxElementDepth, line, col);
+                }
+                this.elementDepth++;
+            }
         }
 
     }
@@ -398,9 +468,17 @@ public void handleOpenElementEnd(
             final int line, final int col)
             throws ParseException {
 
+        if (this.validateAttributes && this.status.elementAttributes != null) {
+            // Attributes have not been parsed (and therefore validated) yet, so we need to do it now
+            this.status.elementAttributes.parse(this.attributeValidator);
+        }
+
         this.elementRead = true;
         getNext().handleOpenElementEnd(buffer, nameOffset, nameLen, line, col);
 
+        // Only ends the document if the element has not been stacked (e.g. an HTML void element)
+        checkDocumentEnd();
+
     }
 
 
@@ -453,6 +531,11 @@ public void handleCloseElementStart(
 
         }
 
+        this.closeElementIsMatched = (this.elementDepth > 0);
+        if (this.elementDepth > 0) {
+            this.elementDepth--;
+        }
+
         getNext().handleCloseElementStart(buffer, nameOffset, nameLen, line, col);
 
     }
@@ -472,6 +555,10 @@ public void handleCloseElementEnd(
 
         getNext().handleCloseElementEnd(buffer, nameOffset, nameLen, line, col);
 
+        if (this.closeElementIsMatched) {
+            checkDocumentEnd();
+        }
+
     }
 
 
@@ -532,8 +619,44 @@ public void handleAttribute(
             final int valueLine, final int valueCol)
             throws ParseException {
 
+        validateAttribute(
+                buffer,
+                nameOffset, nameLen, nameLine, nameCol,
+                operatorOffset, operatorLen, operatorLine, operatorCol,
+                valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
+
+        getNext().handleAttribute(
+                buffer,
+                nameOffset, nameLen, nameLine, nameCol,
+                operatorOffset, operatorLen, operatorLine, operatorCol,
+                valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
+
+    }
+
+
+
+
+    private void validateAttribute(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int nameLine, final int nameCol,
+            final int operatorOffset, final int operatorLen,
+            final int operatorLine, final int operatorCol,
+            final int valueContentOffset, final int valueContentLen,
+            final int valueOuterOffset, final int valueOuterLen,
+            final int valueLine, final int valueCol)
+            throws ParseException {
+
+        if (this.maxAttributesPerElement > 0 && ++this.currentElementAttributeCount > this.maxAttributesPerElement) {
+            throw new ParseLimitExceededException(
+                    ParseLimitExceededException.Limit.MAX_ATTRIBUTES_PER_ELEMENT, this.maxAttributesPerElement,
+                    nameLine, nameCol);
+        }
+
         if (this.useStack && this.requireUniqueAttributesInElement) {
 
+            boolean repeated = false;
+
             // Check attribute name is unique in this element
             if (this.currentElementAttributeNames == null) {
                 // we only create this structure if there is at least one attribute
@@ -546,25 +669,35 @@ public void handleAttribute(
                         this.currentElementAttributeNames[i], 0, this.currentElementAttributeNames[i].length,
                         buffer, nameOffset, nameLen)) {
 
-                    throw new ParseException(
+                    problem(
                             "Malformed markup: Attribute \"" + new String(buffer, nameOffset, nameLen) + "\" " +
                             "appears more than once in element",
                             nameLine, nameCol);
+                    // Error-collecting mode: the repeated attribute is reported anyway, and its name needs not be
+                    // stored again.
+                    repeated = true;
+                    break;
 
                 }
 
             }
-            if (this.currentElementAttributeNamesSize == this.currentElementAttributeNames.length) {
+            if (repeated) {
+                // Nothing else to store
+            } else if (this.currentElementAttributeNamesSize == this.currentElementAttributeNames.length) {
                 // we need to grow the array!
                 final char[][] newCurrentElementAttributeNames = new char[this.currentElementAttributeNames.length + DEFAULT_ATTRIBUTE_NAMES_LEN][];
                 System.arraycopy(this.currentElementAttributeNames, 0, newCurrentElementAttributeNames, 0, this.currentElementAttributeNames.length);
                 this.currentElementAttributeNames = newCurrentElementAttributeNames;
             }
 
-            this.currentElementAttributeNames[this.currentElementAttributeNamesSize] =
-                    this.structureNamesRepository.getStructureName(buffer, nameOffset, nameLen);
+            if (!repeated) {
+
+                this.currentElementAttributeNames[this.currentElementAttributeNamesSize] =
+                        this.structureNamesRepository.getStructureName(buffer, nameOffset, nameLen);
 
-            this.currentElementAttributeNamesSize++;
+                this.currentElementAttributeNamesSize++;
+
+            }
 
         }
 
@@ -573,16 +706,13 @@ public void handleAttribute(
 
             // Check there is an operator
             if (operatorLen == 0)  {
-                throw new ParseException(
+                problem(
                         "Malformed markup: Attribute \"" + new String(buffer, nameOffset, nameLen) + "\" " +
                         "must include an equals (=) sign and a value surrounded by quotes",
                         operatorLine, operatorCol);
-            }
-
-
-            // Check attribute is surrounded by commas (double or single)
-            if (valueOuterLen == 0 || valueOuterLen == valueContentLen)  {
-                throw new ParseException(
+            } else if (valueOuterLen == 0 || valueOuterLen == valueContentLen)  {
+                // Check attribute is surrounded by commas (double or single)
+                problem(
                         "Malformed markup: Value for attribute \"" + new String(buffer, nameOffset, nameLen) + "\" " +
                         "must be surrounded by quotes",
                         valueLine, valueCol);
@@ -590,12 +720,6 @@ public void handleAttribute(
 
         }
 
-        getNext().handleAttribute(
-                buffer,
-                nameOffset, nameLen, nameLine, nameCol,
-                operatorOffset, operatorLen, operatorLine, operatorCol,
-                valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
-
     }
 
 
@@ -622,19 +746,15 @@ public void handleDocType(
         if (this.validateProlog) {
 
             if (this.prologPresenceForbidden || this.doctypePresenceForbidden) {
-                throw new ParseException(
+                problem(
                         "A DOCTYPE clause has been found, but it wasn't allowed",
                         outerLine, outerCol);
-            }
-
-            if (this.validPrologDocTypeRead) {
-                throw new ParseException(
+            } else if (this.validPrologDocTypeRead) {
+                problem(
                         "Malformed markup: Only one DOCTYPE clause can appear in document",
                         outerLine, outerCol);
-            }
-
-            if (this.elementRead) {
-                throw new ParseException(
+            } else if (this.elementRead) {
+                problem(
                         "Malformed markup: DOCTYPE must appear before any " +
                         "elements in document",
                         outerLine, outerCol);
@@ -646,10 +766,11 @@ public void handleDocType(
                     final int maxi = keywordOffset + keywordLen;
                     for (int i = keywordOffset; i < maxi; i++) {
                         if (Character.isLowerCase(buffer[i])) {
-                            throw new ParseException(
+                            problem(
                                     "Malformed markup: DOCTYPE requires upper-case " +
                                     "keywords (\"" + new String(buffer, keywordOffset, keywordLen) + "\" was found)",
                                     outerLine, outerCol);
+                            break;
                         }
                     }
                 }
@@ -658,10 +779,11 @@ public void handleDocType(
                     final int maxi = typeOffset + typeLen;
                     for (int i = typeOffset; i < maxi; i++) {
                         if (Character.isLowerCase(buffer[i])) {
-                            throw new ParseException(
+                            problem(
                                     "Malformed markup: DOCTYPE requires upper-case " +
                                     "keywords (\"" + new String(buffer, typeOffset, typeLen) + "\" was found)",
                                     outerLine, outerCol);
+                            break;
                         }
                     }
                 }
@@ -697,6 +819,38 @@ public void handleDocType(
 
 
 
+    @Override
+    public void handleInnerWhiteSpace(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+
+        // Inner white space cannot be skipped by the parser itself (it is found while parsing attributes), so
+        // it is discarded here if nobody in the chain is interested in it
+        if ((this.status.eventInterest & EVENT_INNER_WHITE_SPACE) != 0) {
+            getNext().handleInnerWhiteSpace(buffer, offset, len, line, col);
+        }
+
+    }
+
+
+
+
+
+    /*
+     * Reports a problem found in the document. Normally this means raising an exception, but in error-collecting
+     * mode the problem is just recorded and the caller is expected to apply the corresponding recovery rule.
+     */
+    private void problem(final String message, final int line, final int col) throws ParseException {
+        if (this.status.errorReport == null) {
+            throw new ParseException(message, line, col);
+        }
+        this.status.errorReport.addProblem(message, line, col);
+    }
+
+
+
     private void checkValidRootElement(
             final char[] buffer, final int offset, final int len, final int line, final int col)
             throws ParseException {
@@ -706,7 +860,7 @@ private void checkValidRootElement(
             if (this.elementRead && this.uniqueRootElementPresence.isRequiredAlways()) {
                 // We are not validating the prolog, but anyway we required only one element root
                 // and it seems there are several.
-                throw new ParseException(
+                problem(
                         "Malformed markup: Only one root element is allowed",
                         line, col);
             }
@@ -724,13 +878,11 @@ private void checkValidRootElement(
             if (this.elementRead) {
                 // If we have a DOCTYPE, we will have a root element name and therefore we will
                 // only allow one root element. But it seems there are several.
-                throw new ParseException(
+                problem(
                         "Malformed markup: Only one root element (with name \"" + new String(this.rootElementName) + "\" is allowed",
                         line, col);
-            }
-
-            if (!TextUtil.equals(this.caseSensitive, this.rootElementName, 0, this.rootElementName.length, buffer, offset, len)) {
-                throw new ParseException(
+            } else if (!TextUtil.equals(this.caseSensitive, this.rootElementName, 0, this.rootElementName.length, buffer, offset, len)) {
+                problem(
                     "Malformed markup: Root element should be \"" + new String(this.rootElementName) + "\", " +
                     "but \"" + new String(buffer, offset, len) + "\" has been found",
                     line, col);
@@ -742,6 +894,17 @@ private void checkValidRootElement(
 
 
 
+    private void checkDocumentEnd() {
+        // When parsing multi-document streams, closing the root element ends the current document
+        if (this.status.rootElementEndsDocument &&
+                (this.useStack ? this.elementStackSize == 0 : this.elementDepth == 0)) {
+            this.status.documentEndReached = true;
+        }
+    }
+
+
+
+
     private boolean checkStackForElement(
             final char[] buffer, final int offset, final int len, final int line, final int col)
             throws ParseException {
@@ -758,16 +921,16 @@ private boolean checkStackForElement(
 
                 for (int i = 0; i < peekDelta; i++) {
                     peek = popFromStack();
-                    if (this.autoClose) {
-                        getNext().handleAutoCloseElementStart(peek, 0, peek.length, line, col);
-                        getNext().handleAutoCloseElementEnd(peek, 0, peek.length, line, col);
-                    } else {
-                        // fixing unclosed non-optional tags by auto closing is forbidden!
-                        throw new ParseException(
+                    if (!this.autoClose) {
+                        // fixing unclosed non-optional tags by auto closing is forbidden (except as a
+                        // recovery in error-collecting mode)!
+                        problem(
                                 "Malformed markup: element " +
                                 "\"" + new String(peek, 0, peek.length) + "\"" +
                                 " is never closed", line, col);
                     }
+                    getNext().handleAutoCloseElementStart(peek, 0, peek.length, line, col);
+                    getNext().handleAutoCloseElementEnd(peek, 0, peek.length, line, col);
                 }
                 popFromStack();
 
@@ -777,7 +940,9 @@ private boolean checkStackForElement(
 
             // does not match...
 
-            if (this.requireBalancedElements) {
+            // In error-collecting mode we go on looking for a match: unclosed elements will be reported when
+            // auto-closed, or else the close element will be reported as unmatched
+            if (this.requireBalancedElements && this.status.errorReport == null) {
                 throw new ParseException(
                         "Malformed markup: element " +
                         "\"" + new String(peek, 0, peek.length) + "\"" +
@@ -790,7 +955,7 @@ private boolean checkStackForElement(
 
         // closing element at the root level
         if (this.requireNoUnmatchedCloseElements) {
-            throw new ParseException(
+            problem(
                     "Malformed markup: closing element " +
                     "\"" + new String(buffer, offset, len) + "\"" +
                     " is never open", line, col);
@@ -810,22 +975,23 @@ private void cleanStack(final int line, final int col)
         if (this.elementStackSize > 0) {
 
             // When we arrive here we know that "requireBalancedElements" is
-            // false. If it were true, an exception would have been raised before.
+            // false. If it were true, an exception would have been raised before (unless
+            // we are in error-collecting mode).
 
             char[] popped = popFromStack();
 
             while (popped != null) {
 
-                if (this.autoClose) {
-                    getNext().handleAutoCloseElementStart(popped, 0, popped.length, line, col);
-                    getNext().handleAutoCloseElementEnd(popped, 0, popped.length, line, col);
-                } else {
-                    // fixing unclosed non-optional tags by auto closing is forbidden!
-                    throw new ParseException(
+                if (!this.autoClose) {
+                    // fixing unclosed non-optional tags by auto closing is forbidden (except as a
+                    // recovery in error-collecting mode)!
+                    problem(
                             "Malformed markup: element " +
                             "\"" + new String(popped, 0, popped.length) + "\"" +
                             " is never closed", line, col);
                 }
+                getNext().handleAutoCloseElementStart(popped, 0, popped.length, line, col);
+                getNext().handleAutoCloseElementEnd(popped, 0, popped.length, line, col);
 
                 popped = popFromStack();
 
@@ -891,13 +1057,13 @@ private void autoClose(
             peek = popFromStack();
 
             if (this.requireBalancedElements) {
-                throw new ParseException(
+                problem(
                         "Malformed markup: element " +
                                 "\"" + new String(peek, 0, peek.length) + "\"" +
                                 " is not closed where it should be", line, col);
             }
 
-            if (this.autoClose) {
+            if (this.autoClose || this.requireBalancedElements) {
                 getNext().handleAutoCloseElementStart(peek, 0, peek.length, line, col);
                 getNext().handleAutoCloseElementEnd(peek, 0, peek.length, line, col);
             }
@@ -993,7 +1159,7 @@ private void autoOpen(
             getNext().handleAutoOpenElementStart(autoOpenParents[i], 0, autoOpenParents[i].length, line, col);
             getNext().handleAutoOpenElementEnd(autoOpenParents[i], 0, autoOpenParents[i].length, line, col);
 
-            pushToStack(autoOpenParents[i], 0, autoOpenParents[i].length);
+            pushToStack(autoOpenParents[i], 0, autoOpenParents[i].length, line, col);
 
             i++;
 
@@ -1004,7 +1170,13 @@ private void autoOpen(
 
 
     private void pushToStack(
-            final char[] buffer, final int offset, final int len) {
+            final char[] buffer, final int offset, final int len, final int line, final int col)
+            throws ParseException {
+
+        if (this.maxElementDepth > 0 && this.elementStackSize >= this.maxElementDepth) {
+            throw new ParseLimitExceededException(
+                    ParseLimitExceededException.Limit.MAX_ELEMENT_DEPTH, this.maxElementDepth, line, col);
+        }
 
         if (this.elementStackSize == this.elementStack.length) {
             growStack();
@@ -1044,6 +1216,10 @@ private void growStack() {
         System.arraycopy(this.elementStack, 0, newStack, 0, this.elementStack.length);
         this.elementStack = newStack;
 
+        if (this.reusableContext != null) {
+            this.reusableContext.elementStack = newStack;
+        }
+
     }
 
 
@@ -1052,6 +1228,28 @@ private void growStack() {
 
 
 
+    /*
+     * Element stack and structure names repository that can be reused among the parsing operations executed
+     * (one after the other) by a specific worker in a BatchMarkupParser.
+     *
+     * This class is NOT thread-safe.
+     */
+    static final class ReusableContext {
+
+        private static final int MAX_REUSED_STRUCTURE_NAMES = 1000;
+
+        private char[][] elementStack = null;
+        private StructureNamesRepository structureNamesRepository = null;
+
+        ReusableContext() {
+            super();
+        }
+
+    }
+
+
+
+
     /*
      * In-instance repository for structure names (element + attribute names).
      *
@@ -1181,4 +1379,40 @@ private StandardNamesRepository() {
 
 
 
+
+
+
+    /*
+     * Validates attributes without reporting them, used when attributes are parsed lazily
+     */
+    private final class AttributeValidator implements IAttributeSequenceHandler {
+
+        public void handleAttribute(
+                final char[] buffer,
+                final int nameOffset, final int nameLen,
+                final int nameLine, final int nameCol,
+                final int operatorOffset, final int operatorLen,
+                final int operatorLine, final int operatorCol,
+                final int valueContentOffset, final int valueContentLen,
+                final int valueOuterOffset, final int valueOuterLen,
+                final int valueLine, final int valueCol)
+                throws ParseException {
+            validateAttribute(
+                    buffer,
+                    nameOffset, nameLen, nameLine, nameCol,
+                    operatorOffset, operatorLen, operatorLine, operatorCol,
+                    valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
+        }
+
+        public void handleInnerWhiteSpace(
+                final char[] buffer,
+                final int offset, final int len,
+                final int line, final int col)
+                throws ParseException {
+            // Nothing to validate here
+        }
+
+    }
+
+
 }
\ No newline at end of file
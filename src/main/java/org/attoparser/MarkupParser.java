@@ -19,12 +19,14 @@
  */
 package org.attoparser;
 
+import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 
 import org.attoparser.config.ParseConfiguration;
 import org.attoparser.select.ParseSelection;
+import org.attoparser.util.FlightRecorderUtil;
 
 
 /**
@@ -83,6 +85,21 @@
  *   objects. In such case, the <tt>char[]</tt> documents themselves will be used as buffers, avoiding the need
  *   to allocate pooled buffers or use any additional amount of memory.)</em>
  * </p>
+ * <p>
+ *   Documents already in memory as <tt>String</tt> or any other {@link CharSequence} implementations
+ *   are not read through a <tt>Reader</tt>: they are copied once into a single buffer of the
+ *   required size (a pooled one if it is large enough), which is then parsed as a <tt>char[]</tt> document.
+ *   {@link CharBuffer} documents backed by an accessible array are parsed in place, without any copies.
+ * </p>
+ * <p>
+ *   When documents are read from slow readers, wrapping them in a {@link ReadAheadReader} allows the next
+ *   chunk of the document to be read on a different thread while the current one is being parsed.
+ * </p>
+ * <p>
+ *   Streams of concatenated documents (e.g. back-to-back XML messages) can be parsed from a single
+ *   <tt>Reader</tt> by means of the <tt>parseDocuments(...)</tt> methods, which find document boundaries either
+ *   when the root element is closed or at a specified delimiter.
+ * </p>
  *
  * @author Daniel Fern&aacute;ndez
  * 
@@ -114,6 +131,7 @@ public final class MarkupParser implements IMarkupParser {
 
     private final ParseConfiguration configuration;
     private final BufferPool pool;
+    private final IParseMetricsListener metricsListener;
 
 
 
@@ -157,9 +175,108 @@ public MarkupParser(final ParseConfiguration configuration) {
      * @param bufferSize the default size of the buffers to be instanced for this parser.
      */
     public MarkupParser(final ParseConfiguration configuration, final int poolSize, final int bufferSize) {
+        this(configuration, poolSize, bufferSize, null);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this parser, using the specified configuration, default sizes for pool and
+     *   pooled buffers, and a listener that will receive the {@link ParseMetrics} of every document parsed.
+     * </p>
+     *
+     * @param configuration the parsing configuration to be used.
+     * @param metricsListener the listener that will receive parse metrics.
+     * @since 2.0.8
+     */
+    public MarkupParser(final ParseConfiguration configuration, final IParseMetricsListener metricsListener) {
+        this(configuration, DEFAULT_POOL_SIZE, DEFAULT_BUFFER_SIZE, metricsListener);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this parser, specifying the pool and buffer size, and a listener that will
+     *   receive the {@link ParseMetrics} of every document parsed.
+     * </p>
+     * <p>
+     *   Note collecting metrics adds some overhead to parsing operations (mainly for measuring the time spent
+     *   in handlers), so metrics listeners should only be specified when metrics are actually needed. Also,
+     *   as parsers are thread-safe, metrics listeners will normally need to be thread-safe too.
+     * </p>
+     *
+     * @param configuration the parsing configuration to be used.
+     * @param poolSize the size of the pool of buffers to be used.
+     * @param bufferSize the default size of the buffers to be instanced for this parser.
+     * @param metricsListener the listener that will receive parse metrics (can be null).
+     * @since 2.0.8
+     */
+    public MarkupParser(
+            final ParseConfiguration configuration, final int poolSize, final int bufferSize,
+            final IParseMetricsListener metricsListener) {
+        this(configuration, poolSize, bufferSize, bufferSize, metricsListener);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this parser, specifying the pool size and an <em>adaptive</em> buffer size,
+     *   which starts at <tt>bufferSize</tt> and can grow up to <tt>maxBufferSize</tt>.
+     * </p>
+     * <p>
+     *   When buffer size is adaptive, the parser keeps an exponential moving average of the buffer size that
+     *   each document read from a <tt>Reader</tt> would have ideally needed (the largest of its length and the
+     *   size its buffer had to grow to because of large structures), and adapts the size of the pooled buffers
+     *   to the power-of-two multiple of <tt>bufferSize</tt> that fits this average, never exceeding
+     *   <tt>maxBufferSize</tt>. This way, parsers used for documents that are usually larger than the initial
+     *   buffer size avoid the grow-and-copy cycles and carry-over copies these documents would otherwise need
+     *   at every parsing operation. Buffer size can also go down again if documents become smaller.
+     * </p>
+     * <p>
+     *   Note the maximum size only applies to the pooled buffers: buffers can still grow beyond it during the
+     *   parsing of a specific document if a structure requires it (see
+     *   {@link ParseConfiguration#setMaxStructureSize(int)} for limiting this).
+     * </p>
+     *
+     * @param configuration the parsing configuration to be used.
+     * @param poolSize the size of the pool of buffers to be used.
+     * @param bufferSize the initial (and minimum) size of the buffers to be instanced for this parser.
+     * @param maxBufferSize the maximum size the pooled buffers can adapt to (if equal to <tt>bufferSize</tt>,
+     *                      buffer size will not be adaptive).
+     * @since 2.0.8
+     */
+    public MarkupParser(
+            final ParseConfiguration configuration, final int poolSize, final int bufferSize, final int maxBufferSize) {
+        this(configuration, poolSize, bufferSize, maxBufferSize, null);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this parser, specifying the pool size, an <em>adaptive</em> buffer size
+     *   (see {@link #MarkupParser(ParseConfiguration, int, int, int)}) and a listener that will receive
+     *   the {@link ParseMetrics} of every document parsed.
+     * </p>
+     *
+     * @param configuration the parsing configuration to be used.
+     * @param poolSize the size of the pool of buffers to be used.
+     * @param bufferSize the initial (and minimum) size of the buffers to be instanced for this parser.
+     * @param maxBufferSize the maximum size the pooled buffers can adapt to (if equal to <tt>bufferSize</tt>,
+     *                      buffer size will not be adaptive).
+     * @param metricsListener the listener that will receive parse metrics (can be null).
+     * @since 2.0.8
+     */
+    public MarkupParser(
+            final ParseConfiguration configuration, final int poolSize, final int bufferSize, final int maxBufferSize,
+            final IParseMetricsListener metricsListener) {
         super();
+        if (maxBufferSize < bufferSize) {
+            throw new IllegalArgumentException(
+                    "Maximum buffer size (" + maxBufferSize + ") cannot be less than buffer size (" + bufferSize + ")");
+        }
         this.configuration = configuration;
-        this.pool = new BufferPool(poolSize, bufferSize);
+        this.pool = new BufferPool(poolSize, bufferSize, maxBufferSize);
+        this.metricsListener = metricsListener;
     }
 
 
@@ -172,7 +289,31 @@ public void parse(final String document, final IMarkupHandler handler)
         if (document == null) {
             throw new IllegalArgumentException("Document cannot be null");
         }
-        parse(new StringReader(document), handler);
+        doParse(document, handler, null, null, null);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a document, specified as any kind of {@link CharSequence}, using the specified
+     *   {@link IMarkupHandler}.
+     * </p>
+     * <p>
+     *   {@link CharBuffer} documents backed by an accessible array will be parsed in place. Any other
+     *   documents will be copied into one buffer of the required size.
+     * </p>
+     *
+     * @param document the document to be parsed.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @throws ParseException if the document cannot be parsed.
+     * @since 2.0.8
+     */
+    public void parse(final CharSequence document, final IMarkupHandler handler)
+            throws ParseException {
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
+        doParse(document, handler, null, null, null);
     }
 
 
@@ -185,48 +326,525 @@ public void parse(final char[] document, final IMarkupHandler handler)
     }
 
 
-    public void parse(
-            final char[] document, final int offset, final int len, final IMarkupHandler handler)
+    public void parse(
+            final char[] document, final int offset, final int len, final IMarkupHandler handler)
+            throws ParseException {
+        parse(document, offset, len, handler, null);
+    }
+
+
+    public void parse(
+            final Reader reader, final IMarkupHandler handler)
+            throws ParseException {
+        parse(reader, handler, null);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler}, allowing the operation to be
+     *   cancelled by means of a {@link ParseCancellationToken}.
+     * </p>
+     *
+     * @param document the document to be parsed, as a String.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @throws ParseCancelledException if the token is cancelled (or its deadline exceeded) during parsing.
+     * @throws ParseException if the document cannot be parsed.
+     * @since 2.0.8
+     */
+    public void parse(
+            final String document, final IMarkupHandler handler, final ParseCancellationToken cancellationToken)
+            throws ParseException {
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
+        doParse(document, handler, cancellationToken, null, null);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler}, allowing the operation to be
+     *   cancelled by means of a {@link ParseCancellationToken}.
+     * </p>
+     *
+     * @param document the document to be parsed, as a char[].
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @throws ParseCancelledException if the token is cancelled (or its deadline exceeded) during parsing.
+     * @throws ParseException if the document cannot be parsed.
+     * @since 2.0.8
+     */
+    public void parse(
+            final char[] document, final IMarkupHandler handler, final ParseCancellationToken cancellationToken)
+            throws ParseException {
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
+        parse(document, 0, document.length, handler, cancellationToken);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler}, allowing the operation to be
+     *   cancelled by means of a {@link ParseCancellationToken}.
+     * </p>
+     *
+     * @param document the document to be parsed, as a char[].
+     * @param offset the offset to be applied on the char[] document to determine the start of the document contents.
+     * @param len the length (in chars) of the document stored in the char[].
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @throws ParseCancelledException if the token is cancelled (or its deadline exceeded) during parsing.
+     * @throws ParseException if the document cannot be parsed.
+     * @since 2.0.8
+     */
+    public void parse(
+            final char[] document, final int offset, final int len, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken)
+            throws ParseException {
+        doParse(document, offset, len, handler, cancellationToken, null, null);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler} in <em>error-collecting mode</em>, in which
+     *   the problems found in the document are recorded in the specified {@link ParseErrorReport} instead of
+     *   being thrown as exceptions. See {@link ParseErrorReport} for the recovery rules applied.
+     * </p>
+     *
+     * @param document the document to be parsed, as a String.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @param errorReport the report in which problems will be recorded (will be reset before parsing).
+     * @since 2.0.8
+     */
+    public void parse(
+            final String document, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport) {
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
+        if (errorReport == null) {
+            throw new IllegalArgumentException("Error report cannot be null");
+        }
+        errorReport.reset();
+        try {
+            doParse(document, handler, cancellationToken, errorReport, null);
+        } catch (final ParseException e) {
+            errorReport.setFatalError(e);
+        }
+    }
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler} in <em>error-collecting mode</em>, in which
+     *   the problems found in the document are recorded in the specified {@link ParseErrorReport} instead of
+     *   being thrown as exceptions. See {@link ParseErrorReport} for the recovery rules applied.
+     * </p>
+     *
+     * @param document the document to be parsed, as a char[].
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @param errorReport the report in which problems will be recorded (will be reset before parsing).
+     * @since 2.0.8
+     */
+    public void parse(
+            final char[] document, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport) {
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
+        parse(document, 0, document.length, handler, cancellationToken, errorReport);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler} in <em>error-collecting mode</em>, in which
+     *   the problems found in the document are recorded in the specified {@link ParseErrorReport} instead of
+     *   being thrown as exceptions. See {@link ParseErrorReport} for the recovery rules applied.
+     * </p>
+     *
+     * @param document the document to be parsed, as a char[].
+     * @param offset the offset to be applied on the char[] document to determine the start of the document contents.
+     * @param len the length (in chars) of the document stored in the char[].
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @param errorReport the report in which problems will be recorded (will be reset before parsing).
+     * @since 2.0.8
+     */
+    public void parse(
+            final char[] document, final int offset, final int len, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport) {
+        if (errorReport == null) {
+            throw new IllegalArgumentException("Error report cannot be null");
+        }
+        errorReport.reset();
+        try {
+            doParse(document, offset, len, handler, cancellationToken, errorReport, null);
+        } catch (final ParseException e) {
+            errorReport.setFatalError(e);
+        }
+    }
+
+
+    /*
+     * Used by BatchMarkupParser for parsing documents reusing a per-worker context (element stack and
+     * structure names repository).
+     */
+    void parseWithContext(
+            final CharSequence document, final IMarkupHandler handler,
+            final MarkupEventProcessorHandler.ReusableContext reusableContext)
+            throws ParseException {
+        doParse(document, handler, null, null, reusableContext);
+    }
+
+
+    /*
+     * In-memory documents are not read through a Reader: CharBuffers with an accessible backing array are parsed
+     * in place, and any other char sequences are copied once into a right-sized buffer (pooled, if possible)
+     * which is then parsed as a char[] document.
+     */
+    private void doParse(
+            final CharSequence document, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport,
+            final MarkupEventProcessorHandler.ReusableContext reusableContext)
+            throws ParseException {
+
+        if (document instanceof CharBuffer && ((CharBuffer) document).hasArray()) {
+            final CharBuffer charBuffer = (CharBuffer) document;
+            doParse(
+                    charBuffer.array(), charBuffer.arrayOffset() + charBuffer.position(), charBuffer.remaining(),
+                    handler, cancellationToken, errorReport, reusableContext);
+            return;
+        }
+
+        final int len = document.length();
+
+        // Avoid copying documents that will not be parsed anyway
+        final long maxDocumentSize = this.configuration.getMaxDocumentSize();
+        if (maxDocumentSize > 0L && len > maxDocumentSize) {
+            throw new ParseLimitExceededException(
+                    ParseLimitExceededException.Limit.MAX_DOCUMENT_SIZE, maxDocumentSize, 1, 1);
+        }
+
+        final char[] buffer = this.pool.allocateBufferForContents(len);
+        try {
+            copyChars(document, len, buffer);
+            doParse(buffer, 0, len, handler, cancellationToken, errorReport, reusableContext);
+        } finally {
+            this.pool.releaseBuffer(buffer);
+        }
+
+    }
+
+
+    private static void copyChars(final CharSequence document, final int len, final char[] buffer) {
+        if (document instanceof String) {
+            ((String) document).getChars(0, len, buffer, 0);
+        } else if (document instanceof StringBuilder) {
+            ((StringBuilder) document).getChars(0, len, buffer, 0);
+        } else if (document instanceof StringBuffer) {
+            ((StringBuffer) document).getChars(0, len, buffer, 0);
+        } else if (document instanceof CharBuffer) {
+            // Duplicated so that the position of the original buffer is not modified
+            ((CharBuffer) document).duplicate().get(buffer, 0, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                buffer[i] = document.charAt(i);
+            }
+        }
+    }
+
+
+    /*
+     * Used by BatchMarkupParser for parsing documents reusing a per-worker context (element stack and
+     * structure names repository).
+     */
+    void parseWithContext(
+            final char[] document, final int offset, final int len, final IMarkupHandler handler,
+            final MarkupEventProcessorHandler.ReusableContext reusableContext)
+            throws ParseException {
+        doParse(document, offset, len, handler, null, null, reusableContext);
+    }
+
+
+    private void doParse(
+            final char[] document, final int offset, final int len, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport,
+            final MarkupEventProcessorHandler.ReusableContext reusableContext)
+            throws ParseException {
+
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
+        if (offset < 0 || len < 0) {
+            throw new IllegalArgumentException(
+                    "Neither document offset (" + offset + ") nor document length (" +
+                            len + ") can be less than zero");
+        }
+
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+
+        // Metrics are also collected when a JFR parse event is being recorded, as they provide the event's values
+        final Object parseEvent = FlightRecorderUtil.begin(FlightRecorderUtil.PARSE);
+        final ParseMetrics metrics =
+                (this.metricsListener != null || parseEvent != null ? new ParseMetrics() : null);
+
+        final ParseStatus status = new ParseStatus();
+        final IMarkupHandler markupHandler =
+                createHandlerChain(handler, status, metrics, cancellationToken, errorReport, reusableContext);
+
+        if (metrics == null) {
+            // We already have a suitable char[] buffer, so there is no need to use one from the pool.
+            parseDocument(document, offset, len, markupHandler, status);
+            return;
+        }
+
+        metrics.charsRead = len;
+        metrics.maxBufferSize = len;
+
+        final long startNanos = System.nanoTime();
+        boolean successful = false;
+        try {
+            parseDocument(document, offset, len, markupHandler, status);
+            successful = true;
+        } finally {
+            reportMetrics(handler, metrics, parseEvent, startNanos, successful);
+        }
+
+    }
+
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler}, allowing the operation to be
+     *   cancelled by means of a {@link ParseCancellationToken}.
+     * </p>
+     * <p>
+     *   The reader will be closed when parsing finishes, also when it is cancelled.
+     * </p>
+     *
+     * @param reader a Reader on the document.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @throws ParseCancelledException if the token is cancelled (or its deadline exceeded) during parsing.
+     * @throws ParseException if the document cannot be parsed.
+     * @since 2.0.8
+     */
+    public void parse(
+            final Reader reader, final IMarkupHandler handler, final ParseCancellationToken cancellationToken)
+            throws ParseException {
+        doParse(reader, handler, cancellationToken, null, null);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a document using the specified {@link IMarkupHandler} in <em>error-collecting mode</em>, in which
+     *   the problems found in the document are recorded in the specified {@link ParseErrorReport} instead of
+     *   being thrown as exceptions. See {@link ParseErrorReport} for the recovery rules applied.
+     * </p>
+     * <p>
+     *   The reader will be closed when parsing finishes, also when a fatal error happens.
+     * </p>
+     *
+     * @param reader a Reader on the document.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @param errorReport the report in which problems will be recorded (will be reset before parsing).
+     * @since 2.0.8
+     */
+    public void parse(
+            final Reader reader, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport) {
+        if (errorReport == null) {
+            throw new IllegalArgumentException("Error report cannot be null");
+        }
+        errorReport.reset();
+        try {
+            doParse(reader, handler, cancellationToken, errorReport, null);
+        } catch (final ParseException e) {
+            errorReport.setFatalError(e);
+        }
+    }
+
+
+    /**
+     * <p>
+     *   Parse a stream of concatenated documents (e.g. a stream of back-to-back XML messages), each of them
+     *   ending when its root element is closed.
+     * </p>
+     * <p>
+     *   A complete sequence of events, from {@link IMarkupHandler#handleDocumentStart(long, int, int)} to
+     *   {@link IMarkupHandler#handleDocumentEnd(long, long, int, int)}, will be reported to the handler for each
+     *   document, and markup rules (e.g. unique root element) will be applied to each document separately.
+     *   Line and column numbers are relative to the start of each document. White space between documents is
+     *   not reported, and any other structures after the root element (e.g. comments) will be considered part of
+     *   the next document.
+     * </p>
+     * <p>
+     *   The same buffer and parsing context are used for all the documents, and the reader will
+     *   <strong>not</strong> be closed.
+     * </p>
+     *
+     * @param reader a Reader on the stream of documents.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @return the number of documents parsed.
+     * @throws ParseException if any of the documents cannot be parsed.
+     * @since 2.0.8
+     */
+    public int parseDocuments(final Reader reader, final IMarkupHandler handler)
+            throws ParseException {
+        return doParseDocuments(reader, handler, null, null);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a stream of concatenated documents, each of them ending when its root element is closed, checking
+     *   the specified {@link ParseCancellationToken} for cooperative cancellation. See
+     *   {@link #parseDocuments(Reader, IMarkupHandler)}.
+     * </p>
+     *
+     * @param reader a Reader on the stream of documents.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param cancellationToken the cancellation token (can be null).
+     * @return the number of documents parsed.
+     * @throws ParseCancelledException if the token is cancelled (or its deadline exceeded) during parsing.
+     * @throws ParseException if any of the documents cannot be parsed.
+     * @since 2.0.8
+     */
+    public int parseDocuments(
+            final Reader reader, final IMarkupHandler handler, final ParseCancellationToken cancellationToken)
+            throws ParseException {
+        return doParseDocuments(reader, handler, null, cancellationToken);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a stream of concatenated documents separated by the specified delimiter (e.g. a NUL or
+     *   record separator char), which will not be reported to the handler.
+     * </p>
+     * <p>
+     *   The delimiter is looked for in the stream contents without any markup parsing, so it should never
+     *   appear inside documents. Empty documents (i.e. only white space between two delimiters) are ignored.
+     *   Apart from this, documents are reported in the same way as in
+     *   {@link #parseDocuments(Reader, IMarkupHandler)}, and the reader will <strong>not</strong> be closed.
+     * </p>
+     *
+     * @param reader a Reader on the stream of documents.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param delimiter the delimiter separating documents.
+     * @return the number of documents parsed.
+     * @throws ParseException if any of the documents cannot be parsed.
+     * @since 2.0.8
+     */
+    public int parseDocuments(final Reader reader, final IMarkupHandler handler, final String delimiter)
+            throws ParseException {
+        if (delimiter == null || delimiter.length() == 0) {
+            throw new IllegalArgumentException("Delimiter cannot be null or empty");
+        }
+        return doParseDocuments(reader, handler, delimiter.toCharArray(), null);
+    }
+
+
+    /**
+     * <p>
+     *   Parse a stream of concatenated documents separated by the specified delimiter, checking the specified
+     *   {@link ParseCancellationToken} for cooperative cancellation. See
+     *   {@link #parseDocuments(Reader, IMarkupHandler, String)}.
+     * </p>
+     *
+     * @param reader a Reader on the stream of documents.
+     * @param handler the handler to be used, an {@link IMarkupHandler} implementation.
+     * @param delimiter the delimiter separating documents.
+     * @param cancellationToken the cancellation token (can be null).
+     * @return the number of documents parsed.
+     * @throws ParseCancelledException if the token is cancelled (or its deadline exceeded) during parsing.
+     * @throws ParseException if any of the documents cannot be parsed.
+     * @since 2.0.8
+     */
+    public int parseDocuments(
+            final Reader reader, final IMarkupHandler handler, final String delimiter,
+            final ParseCancellationToken cancellationToken)
+            throws ParseException {
+        if (delimiter == null || delimiter.length() == 0) {
+            throw new IllegalArgumentException("Delimiter cannot be null or empty");
+        }
+        return doParseDocuments(reader, handler, delimiter.toCharArray(), cancellationToken);
+    }
+
+
+    /*
+     * Used by BatchMarkupParser for parsing documents reusing a per-worker context (element stack and
+     * structure names repository).
+     */
+    void parseWithContext(
+            final Reader reader, final IMarkupHandler handler,
+            final MarkupEventProcessorHandler.ReusableContext reusableContext)
+            throws ParseException {
+        doParse(reader, handler, null, null, reusableContext);
+    }
+
+
+    private void doParse(
+            final Reader reader, final IMarkupHandler handler,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport,
+            final MarkupEventProcessorHandler.ReusableContext reusableContext)
             throws ParseException {
 
-        if (document == null) {
-            throw new IllegalArgumentException("Document cannot be null");
-        }
-        if (offset < 0 || len < 0) {
-            throw new IllegalArgumentException(
-                    "Neither document offset (" + offset + ") nor document length (" +
-                            len + ") can be less than zero");
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
         }
 
         if (handler == null) {
             throw new IllegalArgumentException("Handler cannot be null");
         }
 
-        IMarkupHandler markupHandler =
-                (ParseConfiguration.ParsingMode.HTML.equals(this.configuration.getMode()) ?
-                        new HtmlMarkupHandler(handler) : handler);
-
-        // We will not report directly to the specified handler, but instead to an intermediate class that will be in
-        // charge of applying the required markup logic and rules, according to the specified configuration
-        markupHandler = new MarkupEventProcessorHandler(markupHandler);
-
-        markupHandler.setParseConfiguration(this.configuration);
+        // Metrics are also collected when a JFR parse event is being recorded, as they provide the event's values
+        final Object parseEvent = FlightRecorderUtil.begin(FlightRecorderUtil.PARSE);
+        final ParseMetrics metrics =
+                (this.metricsListener != null || parseEvent != null ? new ParseMetrics() : null);
 
         final ParseStatus status = new ParseStatus();
-        markupHandler.setParseStatus(status);
+        final IMarkupHandler markupHandler =
+                createHandlerChain(handler, status, metrics, cancellationToken, errorReport, reusableContext);
 
-        final ParseSelection selection = new ParseSelection();
-        markupHandler.setParseSelection(selection);
+        if (metrics == null) {
+            // We don't already have a suitable char[] buffer, so we expect the parser to use one of its pooled buffers.
+            parseDocument(reader, this.pool.poolBufferSize, markupHandler, status);
+            return;
+        }
 
-        // We already have a suitable char[] buffer, so there is no need to use one from the pool.
-        parseDocument(document, offset, len, markupHandler, status);
+        final long startNanos = System.nanoTime();
+        boolean successful = false;
+        try {
+            parseDocument(reader, this.pool.poolBufferSize, markupHandler, status);
+            successful = true;
+        } finally {
+            reportMetrics(handler, metrics, parseEvent, startNanos, successful);
+        }
 
     }
 
 
 
-    public void parse(
-            final Reader reader, final IMarkupHandler handler)
+
+    private int doParseDocuments(
+            final Reader reader, final IMarkupHandler handler, final char[] delimiter,
+            final ParseCancellationToken cancellationToken)
             throws ParseException {
 
         if (reader == null) {
@@ -237,25 +855,74 @@ public void parse(
             throw new IllegalArgumentException("Handler cannot be null");
         }
 
+        return parseDocuments(reader, delimiter, this.pool.poolBufferSize, handler, cancellationToken);
+
+    }
+
+
+
+
+    /*
+     * Creates the chain of handlers that will receive the parsing events (applying markup rules, HTML-specific
+     * logic and metrics collection before reaching the specified handler), and initializes the parse status.
+     */
+    private IMarkupHandler createHandlerChain(
+            final IMarkupHandler handler, final ParseStatus status, final ParseMetrics metrics,
+            final ParseCancellationToken cancellationToken, final ParseErrorReport errorReport,
+            final MarkupEventProcessorHandler.ReusableContext reusableContext) {
+
         IMarkupHandler markupHandler =
+                (handler instanceof IBatchedElementMarkupHandler ?
+                        new ElementBatchingMarkupHandler((IBatchedElementMarkupHandler) handler) : handler);
+
+        if (metrics != null) {
+            // Handler time is only needed by metrics listeners, JFR parse events only need event counts
+            markupHandler = new MetricsMarkupHandler(markupHandler, metrics, (this.metricsListener != null));
+        }
+
+        markupHandler =
                 (ParseConfiguration.ParsingMode.HTML.equals(this.configuration.getMode()) ?
-                        new HtmlMarkupHandler(handler) : handler);
+                        new HtmlMarkupHandler(markupHandler) : markupHandler);
 
         // We will not report directly to the specified handler, but instead to an intermediate class that will be in
         // charge of applying the required markup logic and rules, according to the specified configuration
-        markupHandler = new MarkupEventProcessorHandler(markupHandler);
+        markupHandler = new MarkupEventProcessorHandler(markupHandler, reusableContext);
 
         markupHandler.setParseConfiguration(this.configuration);
 
-        final ParseStatus status = new ParseStatus();
         markupHandler.setParseStatus(status);
 
         final ParseSelection selection = new ParseSelection();
         markupHandler.setParseSelection(selection);
 
-        // We don't already have a suitable char[] buffer, so we expect the parser to use one of its pooled buffers.
-        parseDocument(reader, this.pool.poolBufferSize, markupHandler, status);
+        status.eventInterest = MarkupEventInterestUtil.getMarkupEventInterest(markupHandler);
+        if (this.configuration.isLazyAttributeParsing()) {
+            status.elementAttributes = new ElementAttributes();
+        }
+
+        status.metrics = metrics;
+        status.cancellationToken = cancellationToken;
+        status.errorReport = errorReport;
+
+        return markupHandler;
+
+    }
+
 
+
+
+    private void reportMetrics(
+            final IMarkupHandler handler, final ParseMetrics metrics, final Object parseEvent,
+            final long startNanos, final boolean successful) {
+        metrics.totalTimeNanos = System.nanoTime() - startNanos;
+        metrics.successful = successful;
+        FlightRecorderUtil.commit(
+                parseEvent,
+                handler.getClass().getName(), Long.valueOf(metrics.charsRead),
+                Long.valueOf(metrics.getTotalEventCount()), Boolean.valueOf(successful));
+        if (this.metricsListener != null) {
+            this.metricsListener.handleParseMetrics(metrics);
+        }
     }
 
 
@@ -271,54 +938,284 @@ void parseDocument(
             final IMarkupHandler handler, final ParseStatus status)
             throws ParseException {
 
+        final StreamState stream = new StreamState();
+
+        try {
+
+            stream.buffer = this.pool.allocateBuffer(suggestedBufferSize);
+            parseDocument(reader, null, stream, handler, status);
+
+        } finally {
+            this.pool.releaseBuffer(stream.buffer);
+            try {
+                reader.close();
+            } catch (final Throwable ignored) {
+                // This exception can be safely ignored
+            }
+        }
+
+    }
+
+
+
+
+    /*
+     * Parses a stream of concatenated documents. Documents end when their root element is closed (delimiter is
+     * null) or at a delimiter. This method receiving the buffer size with package visibility allows
+     * testing different buffer sizes.
+     */
+    int parseDocuments(
+            final Reader reader, final char[] delimiter, final int suggestedBufferSize,
+            final IMarkupHandler handler, final ParseCancellationToken cancellationToken)
+            throws ParseException {
+
+        // Stack and names repository will be reused for all documents in the stream
+        final MarkupEventProcessorHandler.ReusableContext reusableContext =
+                new MarkupEventProcessorHandler.ReusableContext();
+
+        final StreamState stream = new StreamState();
+
+        try {
+
+            stream.buffer = this.pool.allocateBuffer(suggestedBufferSize);
+
+            int documents = 0;
+
+            while (skipToNextDocument(reader, delimiter, stream)) {
+
+                // Metrics are also collected when a JFR parse event is being recorded, as they provide the event's values
+                final Object parseEvent = FlightRecorderUtil.begin(FlightRecorderUtil.PARSE);
+                final ParseMetrics metrics =
+                        (this.metricsListener != null || parseEvent != null ? new ParseMetrics() : null);
+
+                final ParseStatus status = new ParseStatus();
+                final IMarkupHandler markupHandler =
+                        createHandlerChain(handler, status, metrics, cancellationToken, null, reusableContext);
+                status.rootElementEndsDocument = (delimiter == null);
+
+                documents++;
+
+                if (metrics == null) {
+                    parseDocument(reader, delimiter, stream, markupHandler, status);
+                    continue;
+                }
+
+                final long startNanos = System.nanoTime();
+                boolean successful = false;
+                try {
+                    parseDocument(reader, delimiter, stream, markupHandler, status);
+                    successful = true;
+                } finally {
+                    reportMetrics(handler, metrics, parseEvent, startNanos, successful);
+                }
+
+            }
+
+            return documents;
+
+        } catch (final ParseException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        } finally {
+            this.pool.releaseBuffer(stream.buffer);
+        }
+
+    }
+
+
+
+
+    /*
+     * Skips white space between documents (and empty documents between delimiters), leaving the start of the next
+     * document at the beginning of the stream buffer. Returns false if there are no more documents.
+     */
+    private boolean skipToNextDocument(final Reader reader, final char[] delimiter, final StreamState stream)
+            throws IOException {
+
+        final int needed = (delimiter == null ? 1 : delimiter.length);
+        int start = 0;
+
+        while (true) {
+            if (stream.bufferContentSize - start < needed && !stream.endOfStream) {
+                // Not enough contents to know where the next document starts, so we need to read more
+                stream.bufferContentSize -= start;
+                System.arraycopy(stream.buffer, start, stream.buffer, 0, stream.bufferContentSize);
+                start = 0;
+                if (stream.bufferContentSize == stream.buffer.length) {
+                    // Only possible if the delimiter is larger than the buffer
+                    final char[] newBuffer = this.pool.allocateBuffer(stream.buffer.length * 2);
+                    System.arraycopy(stream.buffer, 0, newBuffer, 0, stream.bufferContentSize);
+                    this.pool.releaseBuffer(stream.buffer);
+                    stream.buffer = newBuffer;
+                }
+                final int read =
+                        reader.read(stream.buffer, stream.bufferContentSize, stream.buffer.length - stream.bufferContentSize);
+                if (read != -1) {
+                    stream.bufferContentSize += read;
+                } else {
+                    stream.endOfStream = true;
+                }
+            } else if (delimiter != null && startsWith(stream.buffer, start, stream.bufferContentSize, delimiter)) {
+                start += delimiter.length;
+            } else if (start < stream.bufferContentSize && Character.isWhitespace(stream.buffer[start])) {
+                start++;
+            } else {
+                break;
+            }
+        }
+
+        stream.bufferContentSize -= start;
+        System.arraycopy(stream.buffer, start, stream.buffer, 0, stream.bufferContentSize);
+
+        return (stream.bufferContentSize > 0);
+
+    }
+
+
+
+
+    /*
+     * Parses a document read from a Reader, starting with the contents already at the beginning of the stream
+     * buffer (if any). When parsing streams of concatenated documents (delimiter specified or
+     * status.rootElementEndsDocument set), parsing stops at the end of the document and the contents of the
+     * next ones are left at the beginning of the stream buffer. Neither the buffer is released nor the reader closed.
+     */
+    private void parseDocument(
+            final Reader reader, final char[] delimiter, final StreamState stream,
+            final IMarkupHandler handler, final ParseStatus status)
+            throws ParseException {
+
 
         final long parsingStartTimeNanos = System.nanoTime();
 
-        char[] buffer = null;
+        final boolean multiDocument = (delimiter != null || status.rootElementEndsDocument);
 
         try {
 
+            if (status.cancellationToken != null) {
+                status.cancellationToken.check(1, 1);
+            }
+
             handler.handleDocumentStart(parsingStartTimeNanos, 1, 1);
 
-            int bufferSize = suggestedBufferSize;
-            buffer = this.pool.allocateBuffer(bufferSize);
+            char[] buffer = stream.buffer;
+            final int suggestedBufferSize = buffer.length;
+            int bufferContentSize = stream.bufferContentSize;
 
-            int bufferContentSize = reader.read(buffer);
+            // Resource limits (zero means no limit)
+            final int maxStructureSize = this.configuration.getMaxStructureSize();
+            final long maxDocumentSize = this.configuration.getMaxDocumentSize();
 
-            boolean cont = (bufferContentSize != -1);
+            final ParseMetrics metrics = status.metrics;
+            if (metrics != null) {
+                metrics.maxBufferSize = buffer.length;
+                metrics.charsRead += bufferContentSize;
+            }
 
             status.offset = -1;
             status.line = 1;
             status.col = 1;
             status.inStructure = false;
+            status.buffer = buffer;
+            status.bufferDocumentOffset = 0L;
             status.parsingDisabled = true;
             status.parsingDisabledLimitSequence = null;
             status.autoCloseRequired = null;
             status.autoCloseLimits = null;
+            status.documentEndReached = false;
+            status.maxStructureSize = maxStructureSize;
+
+            if (bufferContentSize == 0) {
+                final int read = reader.read(buffer, 0, buffer.length);
+                if (metrics != null) {
+                    metrics.readerCalls++;
+                    if (read != -1) {
+                        metrics.charsRead += read;
+                    }
+                }
+                if (read != -1) {
+                    bufferContentSize = read;
+                } else {
+                    // Empty document
+                    stream.endOfStream = true;
+                    status.offset = 0;
+                }
+                if (maxDocumentSize > 0L && bufferContentSize > maxDocumentSize) {
+                    throw new ParseLimitExceededException(
+                            ParseLimitExceededException.Limit.MAX_DOCUMENT_SIZE, maxDocumentSize, 1, 1);
+                }
+            }
+
+            int delimiterIndex = -1;
 
-            while (cont) {
+            // Once the end of the stream is reached everything will have been parsed, except when contents
+            // were held back while looking for a delimiter
+            while (!stream.endOfStream || delimiter != null) {
 
-                parseBuffer(buffer, 0, bufferContentSize, handler, status);
+                // Chars that could be the start of a delimiter are not parsed until we have read the rest of it
+                int parseLen = bufferContentSize;
+                if (delimiter != null) {
+                    delimiterIndex = indexOf(buffer, bufferContentSize, delimiter);
+                    if (delimiterIndex != -1) {
+                        parseLen = delimiterIndex;
+                    } else if (!stream.endOfStream) {
+                        parseLen = Math.max(0, bufferContentSize - (delimiter.length - 1));
+                    }
+                }
+
+                parseBuffer(buffer, 0, parseLen, handler, status);
+
+                if (status.documentEndReached || delimiterIndex != -1 || stream.endOfStream) {
+                    break;
+                }
+
+                if (maxStructureSize > 0 && parseLen - status.offset > maxStructureSize) {
+                    // The unfinished structure (or unsplittable text) pending parsing is already too big
+                    throw new ParseLimitExceededException(
+                            ParseLimitExceededException.Limit.MAX_STRUCTURE_SIZE, maxStructureSize,
+                            status.line, status.col);
+                }
 
+                final int bufferSize = buffer.length;
                 int readOffset = 0;
                 int readLen = bufferSize;
 
                 if (status.offset == 0) {
 
                     if (bufferContentSize == bufferSize) {
-                        // Buffer is not big enough, double it!
+                        // Buffer is not big enough, double it! (but never beyond the maximum structure size)
+
+                        if (maxStructureSize > 0 && bufferSize >= maxStructureSize) {
+                            // The structure being parsed does not fit in a buffer of the maximum size
+                            throw new ParseLimitExceededException(
+                                    ParseLimitExceededException.Limit.MAX_STRUCTURE_SIZE, maxStructureSize,
+                                    status.line, status.col);
+                        }
+
+                        final Object growthEvent = FlightRecorderUtil.begin(FlightRecorderUtil.BUFFER_GROWTH);
 
                         char[] newBuffer = null;
                         try {
 
-                            bufferSize *= 2;
-
-                            newBuffer = this.pool.allocateBuffer(bufferSize);
+                            newBuffer =
+                                    this.pool.allocateBuffer(
+                                            (maxStructureSize > 0 ?
+                                                    Math.min(bufferSize * 2, maxStructureSize) : bufferSize * 2));
                             System.arraycopy(buffer, 0, newBuffer, 0, bufferContentSize);
 
                             this.pool.releaseBuffer(buffer);
 
                             buffer = newBuffer;
+                            stream.buffer = buffer;
+
+                            if (metrics != null) {
+                                metrics.bufferGrowths++;
+                                metrics.maxBufferSize = buffer.length;
+                            }
+
+                            FlightRecorderUtil.commit(
+                                    growthEvent, Integer.valueOf(bufferContentSize), Integer.valueOf(buffer.length));
 
                         } catch (final Exception ignored) {
                             this.pool.releaseBuffer(newBuffer);
@@ -329,44 +1226,95 @@ void parseDocument(
                     // it's possible for two reads to occur in a row and 1) read less than the bufferSize and 2)
                     // still not find the next tag/end of structure
                     readOffset = bufferContentSize;
-                    readLen = bufferSize - readOffset;
+                    readLen = buffer.length - readOffset;
 
                 } else if (status.offset < bufferContentSize) {
 
                     System.arraycopy(buffer, status.offset, buffer, 0, bufferContentSize - status.offset);
 
+                    status.bufferDocumentOffset += status.offset;
+
                     readOffset = bufferContentSize - status.offset;
                     readLen = bufferSize - readOffset;
 
                     status.offset = 0;
                     bufferContentSize = readOffset;
 
+                } else {
+
+                    // All buffer contents have been consumed, so it will be completely overwritten
+                    status.bufferDocumentOffset += bufferContentSize;
+
+                    status.offset = 0;
+                    bufferContentSize = 0;
+
+                }
+
+                if (status.cancellationToken != null) {
+                    status.cancellationToken.check(status.line, status.col);
                 }
 
                 final int read = reader.read(buffer, readOffset, readLen);
+                if (metrics != null) {
+                    metrics.readerCalls++;
+                    if (read != -1) {
+                        metrics.charsRead += read;
+                    }
+                }
                 if (read != -1) {
                     bufferContentSize = readOffset + read;
                 } else {
-                    cont = false;
+                    stream.endOfStream = true;
+                }
+
+                // When parsing several documents, the buffer can also contain the following ones, so only the
+                // contents already parsed are known to belong to this document
+                final long documentSize =
+                        status.bufferDocumentOffset + (multiDocument ? status.offset : bufferContentSize);
+                if (maxDocumentSize > 0L && documentSize > maxDocumentSize) {
+                    throw new ParseLimitExceededException(
+                            ParseLimitExceededException.Limit.MAX_DOCUMENT_SIZE, maxDocumentSize,
+                            status.line, status.col);
                 }
 
             }
 
+            final int documentEnd =
+                    (status.documentEndReached ? status.offset : (delimiterIndex != -1 ? delimiterIndex : bufferContentSize));
+            final int nextDocumentStart = (delimiterIndex != -1 ? delimiterIndex + delimiter.length : documentEnd);
+
+            final long documentSize = status.bufferDocumentOffset + documentEnd;
+            if (maxDocumentSize > 0L && documentSize > maxDocumentSize) {
+                throw new ParseLimitExceededException(
+                        ParseLimitExceededException.Limit.MAX_DOCUMENT_SIZE, maxDocumentSize, status.line, status.col);
+            }
+
+            if (this.pool.adaptive) {
+                // The buffer size only counts if it had to grow (documents could be much smaller than the buffer)
+                this.pool.observeDocument(documentSize, (buffer.length > suggestedBufferSize ? buffer.length : 0));
+            }
+
             // Iteration done, now it's time to clean up in case we still have some text to be notified
 
             int lastLine = status.line;
             int lastCol = status.col;
 
             final int lastStart = status.offset;
-            final int lastLen = bufferContentSize - lastStart;
+            final int lastLen = documentEnd - lastStart;
 
             if (lastLen > 0) {
 
                 if (status.inStructure) {
-                    throw new ParseException(
-                            "Incomplete structure: \"" + new String(buffer, lastStart, lastLen) + "\"", status.line, status.col);
+                    final String message = "Incomplete structure: \"" + new String(buffer, lastStart, lastLen) + "\"";
+                    if (status.errorReport != null) {
+                        throw new StacklessParseException(message, status.line, status.col);
+                    }
+                    throw new ParseException(message, status.line, status.col);
                 }
 
+                status.structureOffset = lastStart;
+                status.structureLen = lastLen;
+
                 handler.handleText(buffer, lastStart, lastLen, status.line, status.col);
 
                 // As we have produced an additional text event, we need to fast-forward the
@@ -384,6 +1332,10 @@ void parseDocument(
 
             }
 
+            // Contents of the next documents (if any) are moved to the beginning of the buffer
+            stream.bufferContentSize = bufferContentSize - nextDocumentStart;
+            System.arraycopy(buffer, nextDocumentStart, buffer, 0, stream.bufferContentSize);
+
             final long parsingEndTimeNanos = System.nanoTime();
             handler.handleDocumentEnd(parsingEndTimeNanos, (parsingEndTimeNanos - parsingStartTimeNanos), lastLine, lastCol);
 
@@ -391,15 +1343,40 @@ void parseDocument(
             throw e;
         } catch (final Exception e) {
             throw new ParseException(e);
-        } finally {
-            this.pool.releaseBuffer(buffer);
-            try {
-                reader.close();
-            } catch (final Throwable ignored) {
-                // This exception can be safely ignored
+        }
+
+    }
+
+
+    private static boolean startsWith(final char[] buffer, final int offset, final int len, final char[] sequence) {
+        if (len - offset < sequence.length) {
+            return false;
+        }
+        for (int i = 0; i < sequence.length; i++) {
+            if (buffer[offset + i] != sequence[i]) {
+                return false;
             }
         }
+        return true;
+    }
 
+
+    private static int indexOf(final char[] buffer, final int len, final char[] sequence) {
+        final int maxi = len - sequence.length;
+        final char first = sequence[0];
+        for (int i = 0; i <= maxi; i++) {
+            if (buffer[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < sequence.length && buffer[i + j] == sequence[j]) {
+                j++;
+            }
+            if (j == sequence.length) {
+                return i;
+            }
+        }
+        return -1;
     }
 
 
@@ -419,6 +1396,15 @@ void parseDocument(
             final IMarkupHandler handler, final ParseStatus status)
             throws ParseException {
 
+        final long maxDocumentSize = this.configuration.getMaxDocumentSize();
+        if (maxDocumentSize > 0L && len > maxDocumentSize) {
+            throw new ParseLimitExceededException(
+                    ParseLimitExceededException.Limit.MAX_DOCUMENT_SIZE, maxDocumentSize, 1, 1);
+        }
+
+        if (status.cancellationToken != null) {
+            status.cancellationToken.check(1, 1);
+        }
 
         final long parsingStartTimeNanos = System.nanoTime();
 
@@ -430,6 +1416,8 @@ void parseDocument(
             status.line = 1;
             status.col = 1;
             status.inStructure = false;
+            status.buffer = buffer;
+            status.bufferDocumentOffset = -offset;
             status.parsingDisabled = true;
             status.parsingDisabledLimitSequence = null;
             status.autoCloseRequired = null;
@@ -448,10 +1436,16 @@ void parseDocument(
             if (lastLen > 0) {
 
                 if (status.inStructure) {
-                    throw new ParseException(
-                            "Incomplete structure: \"" + new String(buffer, lastStart, lastLen) + "\"", status.line, status.col);
+                    final String message = "Incomplete structure: \"" + new String(buffer, lastStart, lastLen) + "\"";
+                    if (status.errorReport != null) {
+                        throw new StacklessParseException(message, status.line, status.col);
+                    }
+                    throw new ParseException(message, status.line, status.col);
                 }
 
+                status.structureOffset = lastStart;
+                status.structureLen = lastLen;
+
                 handler.handleText(buffer, lastStart, lastLen, status.line, status.col);
 
                 // As we have produced an additional text event, we need to fast-forward the
@@ -493,6 +1487,18 @@ void parseDocument(
 
     
     
+    private static void checkStructureSize(
+            final ParseStatus status, final int structureStart, final int structureEnd, final int line, final int col)
+            throws ParseException {
+        if (status.maxStructureSize > 0 && (structureEnd - structureStart) + 1 > status.maxStructureSize) {
+            throw new ParseLimitExceededException(
+                    ParseLimitExceededException.Limit.MAX_STRUCTURE_SIZE, status.maxStructureSize, line, col);
+        }
+    }
+
+
+
+
     private void parseBuffer(
             final char[] buffer, final int offset, final int len,
             final IMarkupHandler handler,
@@ -500,6 +1506,8 @@ private void parseBuffer(
             throws ParseException {
 
 
+        status.buffer = buffer;
+
         final int[] locator = new int[] {status.line, status.col};
         
         int currentLine;
@@ -527,6 +1535,11 @@ private void parseBuffer(
             currentLine = locator[0];
             currentCol = locator[1];
 
+            if (status.cancellationToken != null && --status.cancellationCountdown <= 0) {
+                status.cancellationCountdown = ParseCancellationToken.CHECK_INTERVAL_STRUCTURES;
+                status.cancellationToken.check(currentLine, currentCol);
+            }
+
             if (status.parsingDisabledLimitSequence != null) {
                 // We need to disable parsing until we find a specific character sequence.
                 // This allows correct parsing of CDATA (not PCDATA) sections (e.g. <script> tags).
@@ -536,9 +1549,11 @@ private void parseBuffer(
 
                     // Not found, should ask for more buffer
                     if (this.configuration.isTextSplittable()) {
-                        handler.handleText(buffer, current, len - current, currentLine, currentCol);
+                        status.structureOffset = current;
+                        status.structureLen = maxi - current;
+                        handler.handleText(buffer, current, maxi - current, currentLine, currentCol);
                         // No need to change the disability limit, as we havent reached the sequence yet
-                        current = len;
+                        current = maxi;
                     }
 
                     status.offset = current;
@@ -554,6 +1569,8 @@ private void parseBuffer(
                 // a returned Text event (if parsing is not re-enabled with a structure). Parsing-disabled and
                 // parsing-enabled events should not be mixed in order to improve event handling.
 
+                status.structureOffset = current;
+                status.structureLen = sequenceIndex - current;
                 handler.handleText(buffer, current, sequenceIndex - current, currentLine, currentCol);
                 status.parsingDisabledLimitSequence = null;
                 status.parsingDisabled = true;
@@ -574,12 +1591,14 @@ private void parseBuffer(
 
                     if (this.configuration.isTextSplittable()) {
 
-                        handler.handleText(buffer, current, len - current, currentLine, currentCol);
+                        status.structureOffset = current;
+                        status.structureLen = maxi - current;
+                        handler.handleText(buffer, current, maxi - current, currentLine, currentCol);
                         if (status.parsingDisabledLimitSequence != null) {
                             status.parsingDisabled = false;
                         }
 
-                        current = len;
+                        current = maxi;
 
                     }
 
@@ -659,6 +1678,8 @@ private void parseBuffer(
                 if (tagStart > current) {
                     // We avoid empty-string text events
 
+                    status.structureOffset = current;
+                    status.structureLen = (tagStart - current);
                     handler.handleText(
                             buffer, current, (tagStart - current),
                             currentLine, currentCol);
@@ -697,18 +1718,27 @@ private void parseBuffer(
                     return;
                 }
 
+                // Comments, CDATA sections and processing instructions might be longer, and are checked again below
+                checkStructureSize(status, current, tagEnd, currentLine, currentCol);
+
                 
                 if (inOpenElement) {
                     // This is a open/standalone tag (to be determined by looking at the penultimate character)
 
                     if ((buffer[tagEnd - 1] == '/')) {
+                        status.structureOffset = current;
+                        status.structureLen = (tagEnd - current) + 1;
                         ParsingElementMarkupUtil.
                                 parseStandaloneElement(
-                                        buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                                        buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler,
+                                        status.elementAttributes);
                     } else {
+                        status.structureOffset = current;
+                        status.structureLen = (tagEnd - current) + 1;
                         ParsingElementMarkupUtil.
                                 parseOpenElement(
-                                        buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                                        buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler,
+                                        status.elementAttributes);
                     }
 
 
@@ -721,6 +1751,8 @@ private void parseBuffer(
                 } else if (inCloseElement) {
                     // This is a closing tag
 
+                    status.structureOffset = current;
+                    status.structureLen = (tagEnd - current) + 1;
                     ParsingElementMarkupUtil.
                             parseCloseElement(
                                     buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
@@ -750,7 +1782,13 @@ private void parseBuffer(
                         
                     }
 
-                    ParsingCommentMarkupUtil.parseComment(buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    checkStructureSize(status, current, tagEnd, currentLine, currentCol);
+
+                    if ((status.eventInterest & IMarkupEventInterest.EVENT_COMMENT) != 0) {
+                        status.structureOffset = current;
+                        status.structureLen = (tagEnd - current) + 1;
+                        ParsingCommentMarkupUtil.parseComment(buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    }
 
                     if (status.parsingDisabledLimitSequence != null) {
                         status.parsingDisabled = false;
@@ -777,7 +1815,13 @@ private void parseBuffer(
                         
                     }
 
-                    ParsingCDATASectionMarkupUtil.parseCDATASection(buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    checkStructureSize(status, current, tagEnd, currentLine, currentCol);
+
+                    if ((status.eventInterest & IMarkupEventInterest.EVENT_CDATA_SECTION) != 0) {
+                        status.structureOffset = current;
+                        status.structureLen = (tagEnd - current) + 1;
+                        ParsingCDATASectionMarkupUtil.parseCDATASection(buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    }
 
                     if (status.parsingDisabledLimitSequence != null) {
                         status.parsingDisabled = false;
@@ -788,8 +1832,12 @@ private void parseBuffer(
                 } else if (inDocType) {
                     // This is a DOCTYPE clause
 
-                    ParsingDocTypeMarkupUtil.parseDocType(
-                            buffer, current, ((tagEnd - current) + 1), currentLine, currentCol, handler);
+                    if ((status.eventInterest & IMarkupEventInterest.EVENT_DOCTYPE) != 0) {
+                        status.structureOffset = current;
+                        status.structureLen = (tagEnd - current) + 1;
+                        ParsingDocTypeMarkupUtil.parseDocType(
+                                buffer, current, ((tagEnd - current) + 1), currentLine, currentCol, handler);
+                    }
 
                     if (status.parsingDisabledLimitSequence != null) {
                         status.parsingDisabled = false;
@@ -800,8 +1848,12 @@ private void parseBuffer(
                 } else if (inXmlDeclaration) {
                     // This is an XML Declaration
 
-                    ParsingXmlDeclarationMarkupUtil.parseXmlDeclaration(
-                            buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    if ((status.eventInterest & IMarkupEventInterest.EVENT_XML_DECLARATION) != 0) {
+                        status.structureOffset = current;
+                        status.structureLen = (tagEnd - current) + 1;
+                        ParsingXmlDeclarationMarkupUtil.parseXmlDeclaration(
+                                buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    }
 
                     if (status.parsingDisabledLimitSequence != null) {
                         status.parsingDisabled = false;
@@ -828,8 +1880,14 @@ private void parseBuffer(
                         
                     }
 
-                    ParsingProcessingInstructionUtil.parseProcessingInstruction(
-                            buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    checkStructureSize(status, current, tagEnd, currentLine, currentCol);
+
+                    if ((status.eventInterest & IMarkupEventInterest.EVENT_PROCESSING_INSTRUCTION) != 0) {
+                        status.structureOffset = current;
+                        status.structureLen = (tagEnd - current) + 1;
+                        ParsingProcessingInstructionUtil.parseProcessingInstruction(
+                                buffer, current, (tagEnd - current) + 1, currentLine, currentCol, handler);
+                    }
 
                     if (status.parsingDisabledLimitSequence != null) {
                         status.parsingDisabled = false;
@@ -849,6 +1907,11 @@ private void parseBuffer(
                 
                 current = tagEnd + 1;
                 i = current;
+
+                if (status.documentEndReached) {
+                    // Multi-document parsing: the root element has just been closed, so the document ends here
+                    break;
+                }
                 
             }
             
@@ -867,6 +1930,28 @@ private void parseBuffer(
 
 
 
+    /*
+     * State of a stream of concatenated documents being parsed: the buffer (which might grow) and the
+     * contents in it not yet parsed, always starting at the beginning of the buffer.
+     */
+    private static final class StreamState {
+
+        private char[] buffer;
+        private int bufferContentSize;
+        private boolean endOfStream;
+
+        private StreamState() {
+            super();
+        }
+
+    }
+
+
+
+
+
+
+
     /*
      * This class models a pool of buffers, used to keep the amount of
      * large char[] buffer objects required to operate to a minimum.
@@ -874,20 +1959,35 @@ private void parseBuffer(
      * Note this pool never blocks, so if a new buffer is needed and all
      * are currently allocated, a new char[] object is created and returned.
      *
+     * All pooled buffers have the same size. When adaptive, this size can change
+     * between the initial and maximum sizes according to the sizes of the documents
+     * observed, and pooled buffers will be lazily replaced by buffers of the new size.
+     *
      */
     private static final class BufferPool {
 
+        // Weight of each new observation in the moving average of required buffer sizes: 1/(2^EMA_SHIFT)
+        private static final int EMA_SHIFT = 3;
+
         private final char[][] pool;
         private final boolean[] allocated;
-        private final int poolBufferSize;
+        private final int initialPoolBufferSize;
+        private final int maxPoolBufferSize;
+        private final boolean adaptive;
+        private volatile int poolBufferSize;
+        private long requiredSizeAverage;
 
-        private BufferPool(final int poolSize, final int poolBufferSize) {
+        private BufferPool(final int poolSize, final int poolBufferSize, final int maxPoolBufferSize) {
 
             super();
 
             this.pool = new char[poolSize][];
             this.allocated = new boolean[poolSize];
+            this.initialPoolBufferSize = poolBufferSize;
+            this.maxPoolBufferSize = maxPoolBufferSize;
+            this.adaptive = (maxPoolBufferSize > poolBufferSize);
             this.poolBufferSize = poolBufferSize;
+            this.requiredSizeAverage = poolBufferSize;
 
             for (int i = 0; i < this.pool.length; i++) {
                 this.pool[i] = new char[this.poolBufferSize];
@@ -902,35 +2002,90 @@ private synchronized char[] allocateBuffer(final int bufferSize) {
                 // create it without pooling.
                 return new char[bufferSize];
             }
+            final char[] buffer = allocatePooledBuffer();
+            return (buffer != null ? buffer : new char[bufferSize]);
+        }
+
+        /*
+         * Returns a pooled buffer if the contents fit in it and one is available, or else a new (unpooled)
+         * buffer with exactly the size of the contents.
+         */
+        private synchronized char[] allocateBufferForContents(final int contentsSize) {
+            if (contentsSize <= this.poolBufferSize) {
+                final char[] buffer = allocatePooledBuffer();
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+            return new char[contentsSize];
+        }
+
+        private char[] allocatePooledBuffer() {
             for (int i = 0; i < this.pool.length; i++) {
                 if (!this.allocated[i]) {
                     this.allocated[i] = true;
+                    if (this.pool[i] == null) {
+                        // Buffer was discarded after a change in pool buffer size
+                        this.pool[i] = new char[this.poolBufferSize];
+                    }
                     return this.pool[i];
                 }
             }
-            return new char[bufferSize];
+            return null;
         }
 
         private synchronized void releaseBuffer(final char[] buffer) {
             if (buffer == null) {
                 return;
             }
-            if (buffer.length != this.poolBufferSize) {
-                // This buffer cannot be part of the pool - only buffers with a specific size are contained
-                return;
-            }
             for (int i = 0; i < this.pool.length; i++) {
                 if (this.pool[i] == buffer) {
-                    // Found it. Mark it as non-allocated
+                    // Found it. Mark it as non-allocated (and discard it if pool buffer size has changed)
                     this.allocated[i] = false;
+                    if (buffer.length != this.poolBufferSize) {
+                        this.pool[i] = null;
+                    }
                     return;
                 }
             }
             // The buffer wasn't part of our pool. Just return.
         }
 
+        /*
+         * Observes the buffer size a document would have ideally needed (the largest of its size and the size
+         * its buffer had to grow to, if any), and adapts the pool buffer size to the moving average of these sizes.
+         */
+        private synchronized void observeDocument(final long documentSize, final int grownBufferSize) {
 
-    }
+            final long requiredSize = Math.min(Math.max(documentSize, grownBufferSize), this.maxPoolBufferSize);
+            this.requiredSizeAverage += (requiredSize - this.requiredSizeAverage) >> EMA_SHIFT;
+
+            int newPoolBufferSize = this.poolBufferSize;
+            if (this.requiredSizeAverage > newPoolBufferSize) {
+                while (newPoolBufferSize < this.requiredSizeAverage && newPoolBufferSize < this.maxPoolBufferSize) {
+                    newPoolBufferSize = (int) Math.min((long) newPoolBufferSize * 2L, this.maxPoolBufferSize);
+                }
+            } else {
+                // Some hysteresis: we only shrink when the average fits in a quarter of the current size
+                while (newPoolBufferSize > this.initialPoolBufferSize &&
+                        this.requiredSizeAverage <= newPoolBufferSize / 4) {
+                    newPoolBufferSize = Math.max(newPoolBufferSize / 2, this.initialPoolBufferSize);
+                }
+            }
 
+            if (newPoolBufferSize != this.poolBufferSize) {
+                this.poolBufferSize = newPoolBufferSize;
+                for (int i = 0; i < this.pool.length; i++) {
+                    if (!this.allocated[i]) {
+                        // Allocated buffers will be discarded when released
+                        this.pool[i] = null;
+                    }
+                }
+            }
+
+        }
+
+
+    }
 
 }
@@ -0,0 +1,463 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+/*
+ * Collects event counts, element depth and handler time into a ParseMetrics object. The parser places
+ * this handler right before the user's handler, so that it receives events after the parse configuration
+ * has been applied (including auto-open, auto-close and unmatched close element events).
+ *
+ * Handler time is only measured when timing is enabled (i.e. when metrics are reported to a listener), as
+ * it requires two System.nanoTime() calls per event. Otherwise (e.g. when metrics are only needed for a JFR
+ * parse event) this handler only counts events.
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+final class MetricsMarkupHandler extends AbstractChainedMarkupHandler {
+
+    private static final int TEXT = ParseMetrics.Event.TEXT.ordinal();
+    private static final int COMMENT = ParseMetrics.Event.COMMENT.ordinal();
+    private static final int CDATA_SECTION = ParseMetrics.Event.CDATA_SECTION.ordinal();
+    private static final int DOCTYPE = ParseMetrics.Event.DOCTYPE.ordinal();
+    private static final int XML_DECLARATION = ParseMetrics.Event.XML_DECLARATION.ordinal();
+    private static final int PROCESSING_INSTRUCTION = ParseMetrics.Event.PROCESSING_INSTRUCTION.ordinal();
+    private static final int STANDALONE_ELEMENT = ParseMetrics.Event.STANDALONE_ELEMENT.ordinal();
+    private static final int OPEN_ELEMENT = ParseMetrics.Event.OPEN_ELEMENT.ordinal();
+    private static final int CLOSE_ELEMENT = ParseMetrics.Event.CLOSE_ELEMENT.ordinal();
+    private static final int AUTO_OPEN_ELEMENT = ParseMetrics.Event.AUTO_OPEN_ELEMENT.ordinal();
+    private static final int AUTO_CLOSE_ELEMENT = ParseMetrics.Event.AUTO_CLOSE_ELEMENT.ordinal();
+    private static final int UNMATCHED_CLOSE_ELEMENT = ParseMetrics.Event.UNMATCHED_CLOSE_ELEMENT.ordinal();
+    private static final int ATTRIBUTE = ParseMetrics.Event.ATTRIBUTE.ordinal();
+    private static final int INNER_WHITE_SPACE = ParseMetrics.Event.INNER_WHITE_SPACE.ordinal();
+
+    private final ParseMetrics metrics;
+    private final boolean timed;
+    private int depth = 0;
+
+
+
+    MetricsMarkupHandler(final IMarkupHandler handler, final ParseMetrics metrics, final boolean timed) {
+        super(handler);
+        this.metrics = metrics;
+        this.timed = timed;
+    }
+
+
+
+
+    @Override
+    public int getMarkupEventInterest() {
+        // This handler only observes events, so it should not make the parser report any more of them
+        return getNextMarkupEventInterest();
+    }
+
+
+
+
+    private void count(final int event) {
+        this.metrics.eventCounts[event]++;
+    }
+
+
+    private long startTiming() {
+        return (this.timed ? System.nanoTime() : 0L);
+    }
+
+
+    private void stopTiming(final long startNanos) {
+        if (this.timed) {
+            this.metrics.handlerTimeNanos += (System.nanoTime() - startNanos);
+        }
+    }
+
+
+    private void checkDepth(final int depth) {
+        if (depth > this.metrics.maxElementDepth) {
+            this.metrics.maxElementDepth = depth;
+        }
+    }
+
+
+    private void decreaseDepth() {
+        if (this.depth > 0) {
+            this.depth--;
+        }
+    }
+
+
+
+
+    @Override
+    public void handleDocumentStart(
+            final long startTimeNanos, final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleDocumentStart(startTimeNanos, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleDocumentEnd(
+            final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleDocumentEnd(endTimeNanos, totalTimeNanos, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleXmlDeclaration(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int versionOffset, final int versionLen,
+            final int versionLine, final int versionCol,
+            final int encodingOffset, final int encodingLen,
+            final int encodingLine, final int encodingCol,
+            final int standaloneOffset, final int standaloneLen,
+            final int standaloneLine, final int standaloneCol,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        count(XML_DECLARATION);
+        final long startNanos = startTiming();
+        getNext().handleXmlDeclaration(
+                buffer,
+                keywordOffset, keywordLen, keywordLine, keywordCol,
+                versionOffset, versionLen, versionLine, versionCol,
+                encodingOffset, encodingLen, encodingLine, encodingCol,
+                standaloneOffset, standaloneLen, standaloneLine, standaloneCol,
+                outerOffset, outerLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleDocType(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int elementNameOffset, final int elementNameLen,
+            final int elementNameLine, final int elementNameCol,
+            final int typeOffset, final int typeLen,
+            final int typeLine, final int typeCol,
+            final int publicIdOffset, final int publicIdLen,
+            final int publicIdLine, final int publicIdCol,
+            final int systemIdOffset, final int systemIdLen,
+            final int systemIdLine, final int systemIdCol,
+            final int internalSubsetOffset, final int internalSubsetLen,
+            final int internalSubsetLine, final int internalSubsetCol,
+            final int outerOffset, final int outerLen,
+            final int outerLine, final int outerCol)
+            throws ParseException {
+        count(DOCTYPE);
+        final long startNanos = startTiming();
+        getNext().handleDocType(
+                buffer,
+                keywordOffset, keywordLen, keywordLine, keywordCol,
+                elementNameOffset, elementNameLen, elementNameLine, elementNameCol,
+                typeOffset, typeLen, typeLine, typeCol,
+                publicIdOffset, publicIdLen, publicIdLine, publicIdCol,
+                systemIdOffset, systemIdLen, systemIdLine, systemIdCol,
+                internalSubsetOffset, internalSubsetLen, internalSubsetLine, internalSubsetCol,
+                outerOffset, outerLen, outerLine, outerCol);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleCDATASection(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        count(CDATA_SECTION);
+        final long startNanos = startTiming();
+        getNext().handleCDATASection(buffer, contentOffset, contentLen, outerOffset, outerLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleComment(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        count(COMMENT);
+        final long startNanos = startTiming();
+        getNext().handleComment(buffer, contentOffset, contentLen, outerOffset, outerLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleText(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        count(TEXT);
+        final long startNanos = startTiming();
+        getNext().handleText(buffer, offset, len, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleStandaloneElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final boolean minimized, final int line, final int col)
+            throws ParseException {
+        count(STANDALONE_ELEMENT);
+        checkDepth(this.depth + 1);
+        final long startNanos = startTiming();
+        getNext().handleStandaloneElementStart(buffer, nameOffset, nameLen, minimized, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleStandaloneElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final boolean minimized, final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleStandaloneElementEnd(buffer, nameOffset, nameLen, minimized, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleOpenElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        count(OPEN_ELEMENT);
+        checkDepth(++this.depth);
+        final long startNanos = startTiming();
+        getNext().handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleOpenElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleOpenElementEnd(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleAutoOpenElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        count(AUTO_OPEN_ELEMENT);
+        checkDepth(++this.depth);
+        final long startNanos = startTiming();
+        getNext().handleAutoOpenElementStart(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleAutoOpenElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleAutoOpenElementEnd(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleCloseElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        count(CLOSE_ELEMENT);
+        decreaseDepth();
+        final long startNanos = startTiming();
+        getNext().handleCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleCloseElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleAutoCloseElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        count(AUTO_CLOSE_ELEMENT);
+        decreaseDepth();
+        final long startNanos = startTiming();
+        getNext().handleAutoCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleAutoCloseElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleAutoCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementStart(
+            final char[] buffer, 
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        count(UNMATCHED_CLOSE_ELEMENT);
+        final long startNanos = startTiming();
+        getNext().handleUnmatchedCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = startTiming();
+        getNext().handleUnmatchedCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleAttribute(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int nameLine, final int nameCol,
+            final int operatorOffset, final int operatorLen,
+            final int operatorLine, final int operatorCol,
+            final int valueContentOffset, final int valueContentLen,
+            final int valueOuterOffset, final int valueOuterLen,
+            final int valueLine, final int valueCol)
+            throws ParseException {
+        count(ATTRIBUTE);
+        final long startNanos = startTiming();
+        getNext().handleAttribute(
+                buffer,
+                nameOffset, nameLen, nameLine, nameCol,
+                operatorOffset, operatorLen, operatorLine, operatorCol,
+                valueContentOffset, valueContentLen,
+                valueOuterOffset, valueOuterLen, valueLine, valueCol);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleInnerWhiteSpace(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        count(INNER_WHITE_SPACE);
+        final long startNanos = startTiming();
+        getNext().handleInnerWhiteSpace(buffer, offset, len, line, col);
+        stopTiming(startNanos);
+    }
+
+
+
+    @Override
+    public void handleProcessingInstruction(
+            final char[] buffer,
+            final int targetOffset, final int targetLen,
+            final int targetLine, final int targetCol,
+            final int contentOffset, final int contentLen,
+            final int contentLine, final int contentCol,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        count(PROCESSING_INSTRUCTION);
+        final long startNanos = startTiming();
+        getNext().handleProcessingInstruction(
+                buffer,
+                targetOffset, targetLen, targetLine, targetCol,
+                contentOffset, contentLen, contentLine, contentCol,
+                outerOffset, outerLen, line, col);
+        stopTiming(startNanos);
+    }
+
+
+}
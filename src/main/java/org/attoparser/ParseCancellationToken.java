@@ -0,0 +1,168 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * <p>
+ *   Token allowing the cooperative cancellation of parsing operations, either explicitly (by calling
+ *   {@link #cancel()} from any thread) or by means of a deadline.
+ * </p>
+ * <p>
+ *   Tokens are passed to the <tt>parse</tt> methods of {@link MarkupParser}, which will check them
+ *   every time the document buffer is refilled from the reader and every
+ *   {@link #CHECK_INTERVAL_STRUCTURES} markup structures, so that cancellation adds no per-character cost.
+ *   When a token is found to be cancelled, parsing stops with a {@link ParseCancelledException} (and any
+ *   pooled buffers are released as with any other exception).
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final ParseCancellationToken token = ParseCancellationToken.withTimeout(200, TimeUnit.MILLISECONDS);
+ *   try {
+ *       parser.parse(reader, handler, token);
+ *   } catch (final ParseCancelledException e) {
+ *       ...
+ *   }
+ * </code></pre>
+ * <p>
+ *   This class is thread-safe. A token can be shared among several parsing operations (e.g. all the parsing
+ *   operations related to one request).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ParseCancellationToken {
+
+    /**
+     * Number of markup structures (elements, texts, comments...) between cancellation checks.
+     */
+    public static final int CHECK_INTERVAL_STRUCTURES = 1000;
+
+
+    private final boolean hasDeadline;
+    private final long deadlineNanos;
+    private volatile boolean cancelled = false;
+
+
+
+    /**
+     * <p>
+     *   Creates a new token without deadline, which will only be cancelled by calling {@link #cancel()}.
+     * </p>
+     */
+    public ParseCancellationToken() {
+        this(false, 0L);
+    }
+
+
+    private ParseCancellationToken(final boolean hasDeadline, final long deadlineNanos) {
+        super();
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new token with a deadline, expressed as a value of {@link System#nanoTime()}.
+     * </p>
+     *
+     * @param deadlineNanos the deadline, as a {@link System#nanoTime()} value.
+     * @return the new token.
+     */
+    public static ParseCancellationToken withDeadline(final long deadlineNanos) {
+        return new ParseCancellationToken(true, deadlineNanos);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new token with a deadline set at the specified amount of time from now.
+     * </p>
+     *
+     * @param timeout the amount of time from now.
+     * @param unit the unit of the specified amount of time.
+     * @return the new token.
+     */
+    public static ParseCancellationToken withTimeout(final long timeout, final TimeUnit unit) {
+        if (unit == null) {
+            throw new IllegalArgumentException("Time unit cannot be null");
+        }
+        return new ParseCancellationToken(true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Cancels this token. Parsing operations using it will stop at their next check.
+     * </p>
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether this token has been explicitly cancelled or its deadline has passed.
+     * </p>
+     *
+     * @return true if cancelled, false if not.
+     */
+    public boolean isCancelled() {
+        return this.cancelled || isDeadlineExceeded();
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether this token has a deadline and it has passed.
+     * </p>
+     *
+     * @return true if the deadline has been exceeded, false if not.
+     */
+    public boolean isDeadlineExceeded() {
+        // nanoTime values must be compared by subtraction in order to be overflow-safe
+        return this.hasDeadline && (System.nanoTime() - this.deadlineNanos) >= 0L;
+    }
+
+
+
+
+    void check(final int line, final int col) throws ParseCancelledException {
+        if (this.cancelled) {
+            throw new ParseCancelledException(false, line, col);
+        }
+        if (isDeadlineExceeded()) {
+            throw new ParseCancelledException(true, line, col);
+        }
+    }
+
+
+}
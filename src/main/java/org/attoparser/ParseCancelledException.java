@@ -0,0 +1,64 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+
+/**
+ * <p>
+ *   Exception thrown when a parsing operation is stopped because its {@link ParseCancellationToken} has been
+ *   cancelled or its deadline has been exceeded.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public class ParseCancelledException extends ParseException {
+
+    private static final long serialVersionUID = -1385120547367913394L;
+
+    private final boolean deadlineExceeded;
+
+
+
+    public ParseCancelledException(final boolean deadlineExceeded, final int line, final int col) {
+        super((deadlineExceeded? "Parsing cancelled: deadline exceeded" : "Parsing cancelled"), line, col);
+        this.deadlineExceeded = deadlineExceeded;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns whether parsing was cancelled because of the deadline of the cancellation token being
+     *   exceeded (as opposed to the token being explicitly cancelled).
+     * </p>
+     *
+     * @return true if the deadline was exceeded, false if the token was explicitly cancelled.
+     */
+    public boolean isDeadlineExceeded() {
+        return this.deadlineExceeded;
+    }
+
+
+}
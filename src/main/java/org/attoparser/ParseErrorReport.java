@@ -0,0 +1,320 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+/**
+ * <p>
+ *   Report of the problems found during the parsing of a document in <em>error-collecting mode</em>, i.e. when
+ *   the report is passed to one of the <tt>parse</tt> methods of {@link MarkupParser} that accept it.
+ * </p>
+ * <p>
+ *   In error-collecting mode, problems that would normally make parsing fail because of the restrictions set
+ *   at the {@link org.attoparser.config.ParseConfiguration} (element balancing, unique or well-formed
+ *   attributes, prolog and root element validations) are recorded in the report with their position, and
+ *   parsing continues according to these recovery rules:
+ * </p>
+ * <ul>
+ *   <li>Elements that should have been closed (before a close element or at the end of the document) are
+ *       closed by means of auto-close events, even if the configuration does not allow auto-closing.</li>
+ *   <li>Close elements without a matching open element are reported as unmatched close elements.</li>
+ *   <li>Invalid attributes (repeated, without value or with unquoted values) are reported to the handler
+ *       anyway.</li>
+ *   <li>XML declarations, DOCTYPE clauses and root elements which are forbidden, repeated or misplaced are
+ *       reported to the handler anyway.</li>
+ * </ul>
+ * <p>
+ *   Problems that do not allow parsing to continue (incomplete or malformed structures, exceeded resource
+ *   limits, cancellations, exceptions raised by handlers) are not thrown either, but set as the
+ *   <em>fatal error</em> of the report. In that case no further events will be reported to the handler
+ *   (not even the document end event).
+ * </p>
+ * <p>
+ *   Reports are reset at the beginning of each parsing operation, so a single instance can be reused for
+ *   all the documents parsed by a thread, avoiding the cost of one exception (and usually one additional
+ *   lenient parsing pass) per malformed document. Only the first <tt>maxProblems</tt> problems are
+ *   recorded, though all of them are counted.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final ParseErrorReport report = new ParseErrorReport();
+ *   for (final Reader document : documents) {
+ *       parser.parse(document, handler, null, report);
+ *       if (!report.isSuccessful()) {
+ *           ...
+ *       }
+ *   }
+ * </code></pre>
+ * <p>
+ *   This class is <strong>not</strong> thread-safe.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ParseErrorReport {
+
+    /**
+     * Default maximum number of problems recorded in a report.
+     */
+    public static final int DEFAULT_MAX_PROBLEMS = 100;
+
+    private static final int DEFAULT_PROBLEMS_LEN = 8;
+
+
+    private final int maxProblems;
+
+    private String[] messages;
+    private int[] lines;
+    private int[] cols;
+    private int problemCount;
+    private int totalProblemCount;
+    private ParseException fatalError;
+
+
+
+    /**
+     * <p>
+     *   Creates a new report, recording up to {@link #DEFAULT_MAX_PROBLEMS} problems.
+     * </p>
+     */
+    public ParseErrorReport() {
+        this(DEFAULT_MAX_PROBLEMS);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new report, recording up to the specified amount of problems.
+     * </p>
+     *
+     * @param maxProblems the maximum number of problems to be recorded.
+     */
+    public ParseErrorReport(final int maxProblems) {
+        super();
+        if (maxProblems <= 0) {
+            throw new IllegalArgumentException("Maximum number of problems must be greater than zero");
+        }
+        this.maxProblems = maxProblems;
+        final int len = Math.min(maxProblems, DEFAULT_PROBLEMS_LEN);
+        this.messages = new String[len];
+        this.lines = new int[len];
+        this.cols = new int[len];
+        this.problemCount = 0;
+        this.totalProblemCount = 0;
+        this.fatalError = null;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Resets this report so that it can be reused. This is automatically done by the parser at the
+     *   beginning of each parsing operation.
+     * </p>
+     */
+    public void reset() {
+        for (int i = 0; i < this.problemCount; i++) {
+            this.messages[i] = null;
+        }
+        this.problemCount = 0;
+        this.totalProblemCount = 0;
+        this.fatalError = null;
+    }
+
+
+    void addProblem(final String message, final int line, final int col) {
+
+        this.totalProblemCount++;
+
+        if (this.problemCount == this.maxProblems) {
+            return;
+        }
+
+        if (this.problemCount == this.messages.length) {
+            // we need to grow the arrays!
+            final int newLen = Math.min(this.maxProblems, this.messages.length * 2);
+            final String[] newMessages = new String[newLen];
+            final int[] newLines = new int[newLen];
+            final int[] newCols = new int[newLen];
+            System.arraycopy(this.messages, 0, newMessages, 0, this.problemCount);
+            System.arraycopy(this.lines, 0, newLines, 0, this.problemCount);
+            System.arraycopy(this.cols, 0, newCols, 0, this.problemCount);
+            this.messages = newMessages;
+            this.lines = newLines;
+            this.cols = newCols;
+        }
+
+        this.messages[this.problemCount] = message;
+        this.lines[this.problemCount] = line;
+        this.cols[this.problemCount] = col;
+        this.problemCount++;
+
+    }
+
+
+    void setFatalError(final ParseException fatalError) {
+        this.fatalError = fatalError;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns whether the document was parsed without any problems (recoverable or fatal).
+     * </p>
+     *
+     * @return true if no problems were found, false if not.
+     */
+    public boolean isSuccessful() {
+        return this.totalProblemCount == 0 && this.fatalError == null;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether the document was parsed completely, i.e. no fatal error happened (though recoverable
+     *   problems might have been found).
+     * </p>
+     *
+     * @return true if the document was completely parsed, false if not.
+     */
+    public boolean isComplete() {
+        return this.fatalError == null;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of recoverable problems recorded in this report (at most <tt>maxProblems</tt>).
+     * </p>
+     *
+     * @return the number of recorded problems.
+     */
+    public int getProblemCount() {
+        return this.problemCount;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total number of recoverable problems found, including those not recorded because the
+     *   maximum was reached.
+     * </p>
+     *
+     * @return the total number of problems.
+     */
+    public int getTotalProblemCount() {
+        return this.totalProblemCount;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the message of a recorded problem.
+     * </p>
+     *
+     * @param index the index of the problem (from 0 to {@link #getProblemCount()} - 1).
+     * @return the message.
+     */
+    public String getMessage(final int index) {
+        checkIndex(index);
+        return this.messages[index];
+    }
+
+
+    /**
+     * <p>
+     *   Returns the line in the document at which a recorded problem was found.
+     * </p>
+     *
+     * @param index the index of the problem (from 0 to {@link #getProblemCount()} - 1).
+     * @return the line.
+     */
+    public int getLine(final int index) {
+        checkIndex(index);
+        return this.lines[index];
+    }
+
+
+    /**
+     * <p>
+     *   Returns the column in the document at which a recorded problem was found.
+     * </p>
+     *
+     * @param index the index of the problem (from 0 to {@link #getProblemCount()} - 1).
+     * @return the column.
+     */
+    public int getCol(final int index) {
+        checkIndex(index);
+        return this.cols[index];
+    }
+
+
+    /**
+     * <p>
+     *   Returns the fatal error that stopped parsing, if any.
+     * </p>
+     *
+     * @return the fatal error, or null if the document was completely parsed.
+     */
+    public ParseException getFatalError() {
+        return this.fatalError;
+    }
+
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= this.problemCount) {
+            throw new IndexOutOfBoundsException(
+                    "Problem index " + index + " is out of bounds (problem count: " + this.problemCount + ")");
+        }
+    }
+
+
+
+
+    @Override
+    public String toString() {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("{totalProblemCount=").append(this.totalProblemCount);
+        strBuilder.append(", problems=[");
+        for (int i = 0; i < this.problemCount; i++) {
+            if (i > 0) {
+                strBuilder.append(", ");
+            }
+            strBuilder.append("(Line = ").append(this.lines[i]).append(", Column = ").append(this.cols[i]).append(") ");
+            strBuilder.append(this.messages[i]);
+        }
+        strBuilder.append(']');
+        if (this.fatalError != null) {
+            strBuilder.append(", fatalError=").append(this.fatalError.getMessage());
+        }
+        strBuilder.append('}');
+        return strBuilder.toString();
+    }
+
+
+}
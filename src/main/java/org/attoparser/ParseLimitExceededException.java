@@ -0,0 +1,118 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+
+/**
+ * <p>
+ *   Exception thrown when a document exceeds one of the resource limits established at the
+ *   {@link org.attoparser.config.ParseConfiguration} (maximum element depth, attributes per element,
+ *   structure size or document size).
+ * </p>
+ * <p>
+ *   These limits are meant to protect applications parsing untrusted input from documents designed to
+ *   exhaust memory or CPU, so parsing is stopped as soon as a limit is exceeded.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public class ParseLimitExceededException extends ParseException {
+
+    private static final long serialVersionUID = 2861937505527362406L;
+
+
+    /**
+     * <p>
+     *   Types of resource limits that can be established at the parse configuration.
+     * </p>
+     */
+    public static enum Limit {
+        MAX_ELEMENT_DEPTH("maximum element depth"),
+        MAX_ATTRIBUTES_PER_ELEMENT("maximum number of attributes per element"),
+        MAX_STRUCTURE_SIZE("maximum structure size"),
+        MAX_DOCUMENT_SIZE("maximum document size");
+
+        private final String description;
+
+        Limit(final String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return this.description;
+        }
+
+    }
+
+
+    private final Limit limit;
+    private final long limitValue;
+
+
+
+    public ParseLimitExceededException(final Limit limit, final long limitValue, final int line, final int col) {
+        super(message(limit, limitValue), line, col);
+        this.limit = limit;
+        this.limitValue = limitValue;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the limit that has been exceeded.
+     * </p>
+     *
+     * @return the exceeded limit.
+     */
+    public Limit getLimit() {
+        return this.limit;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the value established for the exceeded limit at the parse configuration.
+     * </p>
+     *
+     * @return the value of the exceeded limit.
+     */
+    public long getLimitValue() {
+        return this.limitValue;
+    }
+
+
+
+
+    private static String message(final Limit limit, final long limitValue) {
+        if (limit == null) {
+            throw new IllegalArgumentException("Limit cannot be null");
+        }
+        return "Limit exceeded: document exceeds the " + limit.getDescription() + " (" + limitValue + ") " +
+                "allowed by the parse configuration";
+    }
+
+
+}
@@ -0,0 +1,290 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+/**
+ * <p>
+ *   Metrics collected by {@link MarkupParser} during the parsing of one document, when an
+ *   {@link IParseMetricsListener} has been specified for the parser.
+ * </p>
+ * <p>
+ *   Metrics include figures on reading (chars read, calls to the reader, buffer growths and largest buffer used),
+ *   the number of events of each type reported to the handler (including the auto-open, auto-close and unmatched
+ *   close element events created when applying the parse configuration), the maximum element depth reached, and
+ *   the time spent in the handler specified for the parsing operation (<em>handler time</em>) versus the time
+ *   spent by the parser itself scanning markup and processing events (<em>parser time</em>).
+ * </p>
+ * <p>
+ *   Note measuring handler time requires calling {@link System#nanoTime()} twice per event, which adds some
+ *   overhead to parsing operations.
+ * </p>
+ * <p>
+ *   Instances of this class are created for each parsing operation and handed to the metrics listener once the
+ *   operation finishes, after which they are not modified any more.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ParseMetrics {
+
+    /**
+     * <p>
+     *   Types of events counted in parse metrics. Element events are counted once per element (not once per
+     *   start and end events).
+     * </p>
+     */
+    public static enum Event {
+        TEXT, COMMENT, CDATA_SECTION, DOCTYPE, XML_DECLARATION, PROCESSING_INSTRUCTION,
+        STANDALONE_ELEMENT, OPEN_ELEMENT, CLOSE_ELEMENT,
+        AUTO_OPEN_ELEMENT, AUTO_CLOSE_ELEMENT, UNMATCHED_CLOSE_ELEMENT,
+        ATTRIBUTE, INNER_WHITE_SPACE
+    }
+
+
+    long charsRead = 0L;
+    long readerCalls = 0L;
+    long bufferGrowths = 0L;
+    int maxBufferSize = 0;
+    final long[] eventCounts = new long[Event.values().length];
+    int maxElementDepth = 0;
+    long handlerTimeNanos = 0L;
+    long totalTimeNanos = 0L;
+    boolean successful = false;
+
+
+
+    ParseMetrics() {
+        super();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the amount of chars read from the document.
+     * </p>
+     *
+     * @return the amount of chars read.
+     */
+    public long getCharsRead() {
+        return this.charsRead;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of calls performed to the <tt>read</tt> methods of the document reader. This will be
+     *   zero for documents specified as <tt>char[]</tt> objects.
+     * </p>
+     *
+     * @return the number of reader calls.
+     */
+    public long getReaderCalls() {
+        return this.readerCalls;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of times the parsing buffer had to be grown (doubled) because a markup structure
+     *   did not fit in it.
+     * </p>
+     *
+     * @return the number of buffer growths.
+     */
+    public long getBufferGrowths() {
+        return this.bufferGrowths;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the size (in chars) of the largest buffer used for parsing. For documents specified as
+     *   <tt>char[]</tt> objects this is the length of the document itself.
+     * </p>
+     *
+     * @return the size of the largest buffer.
+     */
+    public int getMaxBufferSize() {
+        return this.maxBufferSize;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of events of the specified type reported to the handler.
+     * </p>
+     *
+     * @param event the type of event.
+     * @return the number of events.
+     */
+    public long getEventCount(final Event event) {
+        if (event == null) {
+            throw new IllegalArgumentException("Event cannot be null");
+        }
+        return this.eventCounts[event.ordinal()];
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total number of events (of any type) reported to the handler.
+     * </p>
+     *
+     * @return the total number of events.
+     */
+    public long getTotalEventCount() {
+        long total = 0L;
+        for (int i = 0; i < this.eventCounts.length; i++) {
+            total += this.eventCounts[i];
+        }
+        return total;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the maximum element depth (nesting level) reached in the document, considering auto-open and
+     *   auto-close elements.
+     * </p>
+     *
+     * @return the maximum element depth.
+     */
+    public int getMaxElementDepth() {
+        return this.maxElementDepth;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of elements automatically opened by the parser in order to apply the parse
+     *   configuration.
+     * </p>
+     *
+     * @return the number of auto-open elements.
+     */
+    public long getAutoOpenCount() {
+        return this.eventCounts[Event.AUTO_OPEN_ELEMENT.ordinal()];
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of elements automatically closed by the parser in order to apply the parse
+     *   configuration.
+     * </p>
+     *
+     * @return the number of auto-close elements.
+     */
+    public long getAutoCloseCount() {
+        return this.eventCounts[Event.AUTO_CLOSE_ELEMENT.ordinal()];
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of close elements found that did not match any open element.
+     * </p>
+     *
+     * @return the number of unmatched close elements.
+     */
+    public long getUnmatchedCloseCount() {
+        return this.eventCounts[Event.UNMATCHED_CLOSE_ELEMENT.ordinal()];
+    }
+
+
+    /**
+     * <p>
+     *   Returns the total time spent in the parsing operation, in nanoseconds.
+     * </p>
+     *
+     * @return the total time.
+     */
+    public long getTotalTimeNanos() {
+        return this.totalTimeNanos;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the time spent in the handler specified for the parsing operation (and any handlers chained
+     *   after it), in nanoseconds.
+     * </p>
+     *
+     * @return the handler time.
+     */
+    public long getHandlerTimeNanos() {
+        return this.handlerTimeNanos;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the time spent by the parser itself (reading, scanning markup and applying the parse
+     *   configuration), in nanoseconds. This is the total time minus the handler time.
+     * </p>
+     *
+     * @return the parser time.
+     */
+    public long getParserTimeNanos() {
+        return this.totalTimeNanos - this.handlerTimeNanos;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether the parsing operation finished successfully or not (i.e. raised an exception).
+     * </p>
+     *
+     * @return true if the document was parsed successfully, false if not.
+     */
+    public boolean isSuccessful() {
+        return this.successful;
+    }
+
+
+
+
+    @Override
+    public String toString() {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("{successful=").append(this.successful);
+        strBuilder.append(", totalTimeNanos=").append(this.totalTimeNanos);
+        strBuilder.append(", handlerTimeNanos=").append(this.handlerTimeNanos);
+        strBuilder.append(", charsRead=").append(this.charsRead);
+        strBuilder.append(", readerCalls=").append(this.readerCalls);
+        strBuilder.append(", bufferGrowths=").append(this.bufferGrowths);
+        strBuilder.append(", maxBufferSize=").append(this.maxBufferSize);
+        strBuilder.append(", maxElementDepth=").append(this.maxElementDepth);
+        final Event[] events = Event.values();
+        for (int i = 0; i < events.length; i++) {
+            strBuilder.append(", ").append(events[i]).append('=').append(this.eventCounts[i]);
+        }
+        strBuilder.append('}');
+        return strBuilder.toString();
+    }
+
+
+}
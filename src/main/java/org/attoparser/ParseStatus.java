@@ -43,6 +43,36 @@ public final class ParseStatus {
     int col;
     boolean inStructure;
 
+    // Source span information for the structure (or text) currently being reported. The 'buffer' is the parser's
+    // own buffer, and 'bufferDocumentOffset' is the absolute position in the document of its first char.
+    char[] buffer;
+    long bufferDocumentOffset;
+    int structureOffset;
+    int structureLen;
+
+    // Maximum size of a single structure, only when reading from a Reader (zero means no limit)
+    int maxStructureSize;
+
+    // Mask of the secondary events the handler chain is interested in (see IMarkupEventInterest)
+    int eventInterest = IMarkupEventInterest.ALL_EVENTS;
+
+    // Unparsed attributes of the element being reported, only when lazy attribute parsing is enabled
+    ElementAttributes elementAttributes;
+
+    // Metrics being collected for the document, only when a metrics listener has been set at the parser
+    ParseMetrics metrics;
+
+    // Cancellation token for the parsing operation (if any), checked every N structures and at buffer refills
+    ParseCancellationToken cancellationToken;
+    int cancellationCountdown = ParseCancellationToken.CHECK_INTERVAL_STRUCTURES;
+
+    // Report for recording recoverable problems, only when parsing in error-collecting mode
+    ParseErrorReport errorReport;
+
+    // Multi-document parsing: whether closing the root element ends the current document, and whether it just did
+    boolean rootElementEndsDocument;
+    boolean documentEndReached;
+
     boolean shouldDisableParsing; // This is meant to be modified only inside CDATA elements (disabling can depend on an attribute)
     boolean parsingDisabled;
     char[] parsingDisabledLimitSequence;
@@ -147,6 +177,106 @@ public int getCol() {
 
 
 
+    /**
+     * <p>
+     *   Determines whether the specified buffer is the one the parser is currently reading the document from.
+     * </p>
+     * <p>
+     *   Events reported with this buffer refer to the original markup, and their offsets can be converted
+     *   into absolute document positions by means of {@link #getDocumentOffset(int)}. Events reported with any
+     *   other buffer (e.g. auto-open or auto-close events, or events created by other handlers in a chain)
+     *   did not appear as such in the original markup.
+     * </p>
+     *
+     * @param buffer the buffer an event has been reported with.
+     * @return true if the buffer is the parser's source buffer.
+     * @since 2.0.8
+     */
+    public boolean isSourceBuffer(final char[] buffer) {
+        return buffer != null && this.buffer == buffer;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the offset, in the source buffer, of the structure (or text) currently being reported. This is the
+     *   offset of the whole structure including its delimiters (e.g. the initial <tt>&lt;</tt> of an element),
+     *   and it remains the same for all the events an element is reported with (start, attributes, end).
+     * </p>
+     *
+     * @return the offset of the current structure in the source buffer.
+     * @since 2.0.8
+     */
+    public int getStructureOffset() {
+        return this.structureOffset;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the length of the structure (or text) currently being reported, including its delimiters.
+     * </p>
+     *
+     * @return the length of the current structure.
+     * @since 2.0.8
+     */
+    public int getStructureLen() {
+        return this.structureLen;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the absolute position in the document (in chars, starting at 0) of the structure (or text)
+     *   currently being reported.
+     * </p>
+     *
+     * @return the absolute document offset of the current structure.
+     * @since 2.0.8
+     */
+    public long getStructureDocumentOffset() {
+        return this.bufferDocumentOffset + this.structureOffset;
+    }
+
+
+    /**
+     * <p>
+     *   Converts an offset in the source buffer (see {@link #isSourceBuffer(char[])}) into an absolute
+     *   position in the document (in chars, starting at 0).
+     * </p>
+     *
+     * @param bufferOffset the offset in the source buffer.
+     * @return the absolute document offset.
+     * @since 2.0.8
+     */
+    public long getDocumentOffset(final int bufferOffset) {
+        return this.bufferDocumentOffset + bufferOffset;
+    }
+
+
+
+    /**
+     * <p>
+     *   Returns the unparsed attributes of the open or standalone element currently being reported, if
+     *   <em>lazy attribute parsing</em> has been enabled at the parse configuration (see
+     *   {@link org.attoparser.config.ParseConfiguration#setLazyAttributeParsing(boolean)}).
+     * </p>
+     * <p>
+     *   When lazy attribute parsing is enabled, no attribute or inner white space events are reported for
+     *   open or standalone elements, and handlers needing attributes should call
+     *   {@link ElementAttributes#parse(IAttributeSequenceHandler)} on the returned object during the element's
+     *   start or end events.
+     * </p>
+     *
+     * @return the attributes of the current element, or <tt>null</tt> if lazy attribute parsing is not enabled.
+     * @since 2.0.8
+     */
+    public ElementAttributes getElementAttributes() {
+        return this.elementAttributes;
+    }
+
+
+
     /**
      * <p>
      *   Determines whether parsing is currently disabled or not. This only happens if an event handler calls the
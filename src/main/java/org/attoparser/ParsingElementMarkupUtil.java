@@ -45,6 +45,20 @@ public static void parseStandaloneElement(
             final int line, final int col,
             final IMarkupHandler markupHandler)
             throws ParseException {
+        parseStandaloneElement(buffer, offset, len, line, col, markupHandler, null);
+    }
+
+
+    /*
+     * If 'elementAttributes' is not null, attributes will not be parsed but simply made available there.
+     */
+    static void parseStandaloneElement(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col,
+            final IMarkupHandler markupHandler,
+            final ElementAttributes elementAttributes)
+            throws ParseException {
 
         if (len < 4 || !isOpenElementStart(buffer, offset, offset + len) || !isElementEnd(buffer, (offset + len) - 2, offset + len, true)) {
             throw new ParseException(
@@ -68,6 +82,10 @@ public static void parseStandaloneElement(
         if (elementNameEnd == -1) {
             // The buffer only contains the element name
             
+            if (elementAttributes != null) {
+                elementAttributes.reset(buffer, maxi, 0, locator[0], locator[1]);
+            }
+
             markupHandler.handleStandaloneElementStart(
                     buffer, contentOffset, contentLen,
                     true, line, col);
@@ -81,14 +99,20 @@ public static void parseStandaloneElement(
         }
 
 
+        if (elementAttributes != null) {
+            elementAttributes.reset(buffer, elementNameEnd, maxi - elementNameEnd, locator[0], locator[1]);
+        }
+
         markupHandler.handleStandaloneElementStart(
                 buffer, contentOffset, (elementNameEnd - contentOffset),
                 true, line, col);
 
 
-        // This parseAttributeSequence will take care of calling handleInnerWhitespace when appropriate.
-        ParsingAttributeSequenceUtil.parseAttributeSequence(
-                buffer, elementNameEnd, maxi - elementNameEnd, locator[0], locator[1], markupHandler);
+        if (elementAttributes == null) {
+            // This parseAttributeSequence will take care of calling handleInnerWhitespace when appropriate.
+            ParsingAttributeSequenceUtil.parseAttributeSequence(
+                    buffer, elementNameEnd, maxi - elementNameEnd, locator[0], locator[1], markupHandler);
+        }
 
         // We need to forward the locator to the position corresponding with the element end (note we are discarding result)
         ParsingMarkupUtil.findNextStructureEndAvoidQuotes(buffer, elementNameEnd, maxi, locator);
@@ -108,6 +132,20 @@ public static void parseOpenElement(
             final int line, final int col,
             final IMarkupHandler markupHandler)
             throws ParseException {
+        parseOpenElement(buffer, offset, len, line, col, markupHandler, null);
+    }
+
+
+    /*
+     * If 'elementAttributes' is not null, attributes will not be parsed but simply made available there.
+     */
+    static void parseOpenElement(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col,
+            final IMarkupHandler markupHandler,
+            final ElementAttributes elementAttributes)
+            throws ParseException {
 
         if (len < 3 || !isOpenElementStart(buffer, offset, offset + len) || !isElementEnd(buffer, (offset + len) - 1, offset + len, false)) {
             throw new ParseException(
@@ -131,6 +169,10 @@ public static void parseOpenElement(
         if (elementNameEnd == -1) {
             // The buffer only contains the element name
 
+            if (elementAttributes != null) {
+                elementAttributes.reset(buffer, maxi, 0, locator[0], locator[1]);
+            }
+
             markupHandler.handleOpenElementStart(
                     buffer, contentOffset, contentLen,
                     line, col);
@@ -144,14 +186,20 @@ public static void parseOpenElement(
         }
 
 
+        if (elementAttributes != null) {
+            elementAttributes.reset(buffer, elementNameEnd, maxi - elementNameEnd, locator[0], locator[1]);
+        }
+
         markupHandler.handleOpenElementStart(
                 buffer, contentOffset, (elementNameEnd - contentOffset),
                 line, col);
 
 
-        // This parseAttributeSequence will take care of calling handleInnerWhitespace when appropriate.
-        ParsingAttributeSequenceUtil.parseAttributeSequence(
-                buffer, elementNameEnd, maxi - elementNameEnd, locator[0], locator[1], markupHandler);
+        if (elementAttributes == null) {
+            // This parseAttributeSequence will take care of calling handleInnerWhitespace when appropriate.
+            ParsingAttributeSequenceUtil.parseAttributeSequence(
+                    buffer, elementNameEnd, maxi - elementNameEnd, locator[0], locator[1], markupHandler);
+        }
 
         // We need to forward the locator to the position corresponding with the element end (note we are discarding result)
         ParsingMarkupUtil.findNextStructureEndAvoidQuotes(buffer, elementNameEnd, maxi, locator);
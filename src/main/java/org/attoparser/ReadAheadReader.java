@@ -0,0 +1,377 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * <p>
+ *   Reader wrapper implementing <em>double-buffered read-ahead</em>: the wrapped reader is read on a
+ *   different thread (obtained from a caller-supplied {@link Executor}) into two alternating chunks, so that
+ *   the next chunk of a document is being read while the previous one is being parsed.
+ * </p>
+ * <p>
+ *   This allows I/O and parsing to overlap when documents are read from slow readers (e.g. readers on
+ *   network or decompressing streams), at the cost of one additional copy of the document's contents. As
+ *   the parser sees an ordinary <tt>Reader</tt>, its buffering logic (including the carrying over of
+ *   structures spanning several reads) is not affected in any way.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   parser.parse(new ReadAheadReader(remoteDocumentReader, executor), handler);
+ * </code></pre>
+ * <p>
+ *   Closing this reader (which {@link MarkupParser} does when parsing finishes or fails) stops read-ahead and
+ *   closes the wrapped reader. If a chunk is being read at that moment, the wrapped reader will be closed by the
+ *   read-ahead thread as soon as this read returns. If the executor rejects the read-ahead task (or runs it on
+ *   the calling thread, as same-thread executors or caller-runs policies do), the wrapped reader is simply read
+ *   on the calling thread.
+ * </p>
+ * <p>
+ *   The executor should not be the one running the parsing operation itself: if the read-ahead task stays
+ *   queued because all of the executor's threads are busy parsing (e.g. a single-thread executor, or a
+ *   {@link BatchMarkupParser} given the same executor), it would never run. In order to avoid deadlocks in
+ *   these cases, if the read-ahead task has not started when the first chunk is needed, this reader will wait
+ *   for it at most {@link #READ_AHEAD_START_TIMEOUT_MILLIS} milliseconds, and then read the wrapped reader on
+ *   the calling thread instead (the read-ahead task will do nothing if it ever runs).
+ * </p>
+ * <p>
+ *   Objects of this class are meant to be read from one thread only (apart from the read-ahead thread).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ReadAheadReader extends Reader {
+
+    /**
+     * Default size of each of the two read-ahead chunks. Value: 8192 chars.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * Maximum time the first read will wait for the read-ahead task to start before reading the wrapped reader
+     * on the calling thread. Value: 100 milliseconds.
+     */
+    public static final long READ_AHEAD_START_TIMEOUT_MILLIS = 100L;
+
+
+    private final Reader reader;
+
+    // All the fields below are guarded by this.lock
+    private final char[][] chunks;
+    private final int[] chunkLens; // -1 means end of document, 0 means chunk is empty (not read yet)
+    private int readAheadChunk = 0;
+    private int currentChunk = 0;
+    private int currentChunkOffset = 0;
+    private boolean readAheadRunning = false;
+    private boolean readAheadStarted = false;
+    private boolean inline = false; // Once set, read-ahead tasks that have not started yet will do nothing
+    private boolean closed = false;
+    private IOException readAheadException = null;
+
+
+
+    /**
+     * <p>
+     *   Creates a new read-ahead reader with chunks of the default size.
+     * </p>
+     *
+     * @param reader the reader to be wrapped.
+     * @param executor the executor that will be used for reading ahead.
+     */
+    public ReadAheadReader(final Reader reader, final Executor executor) {
+        this(reader, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new read-ahead reader.
+     * </p>
+     *
+     * @param reader the reader to be wrapped.
+     * @param executor the executor that will be used for reading ahead.
+     * @param chunkSize the size of each of the two chunks the wrapped reader will be read into.
+     */
+    public ReadAheadReader(final Reader reader, final Executor executor, final int chunkSize) {
+
+        super();
+
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than zero");
+        }
+
+        this.reader = reader;
+        this.chunks = new char[][] { new char[chunkSize], new char[chunkSize] };
+        this.chunkLens = new int[] { 0, 0 };
+
+        this.readAheadRunning = true;
+        try {
+            executor.execute(new ReadAheadTask(Thread.currentThread()));
+        } catch (final RuntimeException e) {
+            // Read-ahead task rejected: we will just read on the calling thread
+            this.readAheadRunning = false;
+            this.inline = true;
+        }
+
+    }
+
+
+
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+
+        if (off < 0 || len < 0 || off + len > cbuf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        synchronized (this.lock) {
+
+            if (this.closed) {
+                throw new IOException("Reader is closed");
+            }
+
+            if (this.inline) {
+                return this.reader.read(cbuf, off, len);
+            }
+
+            if (len == 0) {
+                return 0;
+            }
+
+            // Wait for the current chunk to be filled by the read-ahead thread
+            while (this.chunkLens[this.currentChunk] == 0) {
+                if (this.readAheadException != null) {
+                    throw this.readAheadException;
+                }
+                if (!this.readAheadRunning) {
+                    // Should never happen, but we should never wait for a read-ahead task that has finished
+                    throw new IOException("Read-ahead finished unexpectedly");
+                }
+                try {
+                    if (!this.readAheadStarted && !waitForReadAheadStart()) {
+                        // The task is still queued (maybe behind ourselves): read on the calling thread instead
+                        this.readAheadRunning = false;
+                        this.inline = true;
+                        return this.reader.read(cbuf, off, len);
+                    }
+                    if (this.chunkLens[this.currentChunk] == 0) {
+                        this.lock.wait();
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for read-ahead");
+                }
+            }
+
+            final int chunkLen = this.chunkLens[this.currentChunk];
+            if (chunkLen == -1) {
+                return -1;
+            }
+
+            final int count = Math.min(len, chunkLen - this.currentChunkOffset);
+            System.arraycopy(this.chunks[this.currentChunk], this.currentChunkOffset, cbuf, off, count);
+            this.currentChunkOffset += count;
+
+            if (this.currentChunkOffset == chunkLen) {
+                // Chunk consumed: hand it back to the read-ahead thread and move to the other one
+                this.chunkLens[this.currentChunk] = 0;
+                this.currentChunk = 1 - this.currentChunk;
+                this.currentChunkOffset = 0;
+                this.lock.notifyAll();
+            }
+
+            return count;
+
+        }
+
+    }
+
+
+
+
+    /*
+     * Must be called while holding the lock. Returns whether the read-ahead task has started.
+     */
+    private boolean waitForReadAheadStart() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READ_AHEAD_START_TIMEOUT_MILLIS);
+        long remaining;
+        while (!this.readAheadStarted && (remaining = deadline - System.nanoTime()) > 0L) {
+            this.lock.wait(TimeUnit.NANOSECONDS.toMillis(remaining) + 1L);
+        }
+        return this.readAheadStarted;
+    }
+
+
+
+
+    @Override
+    public void close() throws IOException {
+
+        synchronized (this.lock) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.lock.notifyAll();
+            if (this.readAheadRunning && !this.readAheadStarted) {
+                // The task never started (and might never do so), so it will not be the one closing the reader
+                this.readAheadRunning = false;
+                this.inline = true;
+            }
+            if (this.readAheadRunning) {
+                // The read-ahead thread will close the reader once its current read finishes
+                return;
+            }
+        }
+
+        this.reader.close();
+
+    }
+
+
+
+
+    private final class ReadAheadTask implements Runnable {
+
+        private final Thread constructingThread;
+
+        ReadAheadTask(final Thread constructingThread) {
+            super();
+            this.constructingThread = constructingThread;
+        }
+
+
+        public void run() {
+
+            synchronized (ReadAheadReader.this.lock) {
+                if (ReadAheadReader.this.inline) {
+                    // Started too late: the reader is already being read on the parsing thread
+                    return;
+                }
+                if (Thread.currentThread() == this.constructingThread) {
+                    // The executor is running the task on the calling thread (e.g. a same-thread executor, or a
+                    // saturated pool with a caller-runs policy). Waiting for chunks to be consumed would block the
+                    // constructor forever, so we will just read on the calling thread.
+                    ReadAheadReader.this.readAheadRunning = false;
+                    ReadAheadReader.this.inline = true;
+                    return;
+                }
+                ReadAheadReader.this.readAheadStarted = true;
+                ReadAheadReader.this.lock.notifyAll();
+            }
+
+            int chunk = -1;
+            boolean endOfDocument = false;
+            IOException exception = null;
+
+            try {
+
+                while (true) {
+
+                    synchronized (ReadAheadReader.this.lock) {
+                        // Wait for the next chunk to be empty (i.e. consumed)
+                        while (!ReadAheadReader.this.closed &&
+                                ReadAheadReader.this.chunkLens[ReadAheadReader.this.readAheadChunk] != 0) {
+                            ReadAheadReader.this.lock.wait();
+                        }
+                        if (ReadAheadReader.this.closed) {
+                            return;
+                        }
+                        chunk = ReadAheadReader.this.readAheadChunk;
+                    }
+
+                    // This is the read we want to overlap with parsing, so it is done outside the lock
+                    final char[] chunkBuffer = ReadAheadReader.this.chunks[chunk];
+                    int read = ReadAheadReader.this.reader.read(chunkBuffer, 0, chunkBuffer.length);
+                    while (read == 0) {
+                        read = ReadAheadReader.this.reader.read(chunkBuffer, 0, chunkBuffer.length);
+                    }
+
+                    if (read == -1) {
+                        endOfDocument = true;
+                        return;
+                    }
+
+                    synchronized (ReadAheadReader.this.lock) {
+                        ReadAheadReader.this.chunkLens[chunk] = read;
+                        ReadAheadReader.this.readAheadChunk = 1 - chunk;
+                        ReadAheadReader.this.lock.notifyAll();
+                    }
+
+                }
+
+            } catch (final InterruptedException e) {
+                exception = new IOException("Read-ahead interrupted");
+            } catch (final IOException e) {
+                exception = e;
+            } catch (final RuntimeException e) {
+                exception = new IOException(e.getMessage());
+                exception.initCause(e);
+            } catch (final Error e) {
+                // Not rethrown: it is handed to the parsing thread, which is the one that should deal with it
+                exception = new IOException(e.getMessage());
+                exception.initCause(e);
+            } finally {
+
+                // End of document and errors are published at the same time the task is marked as finished, so
+                // that a close() performed right after them always finds the task finished and closes the reader
+                final boolean closeReader;
+                synchronized (ReadAheadReader.this.lock) {
+                    if (endOfDocument) {
+                        ReadAheadReader.this.chunkLens[chunk] = -1;
+                    }
+                    ReadAheadReader.this.readAheadException = exception;
+                    ReadAheadReader.this.readAheadRunning = false;
+                    closeReader = ReadAheadReader.this.closed;
+                    ReadAheadReader.this.lock.notifyAll();
+                }
+                if (closeReader) {
+                    try {
+                        ReadAheadReader.this.reader.close();
+                    } catch (final Throwable ignored) {
+                        // This exception can be safely ignored
+                    }
+                }
+
+            }
+
+        }
+
+    }
+
+
+}
@@ -0,0 +1,47 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+
+/*
+ * Parse exception without stack trace, used by the parser for fatal errors in error-collecting mode. These
+ * exceptions are only used for stopping parsing and are then set into a ParseErrorReport, so filling in
+ * their stack trace (the most expensive part of creating an exception) would be useless.
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+final class StacklessParseException extends ParseException {
+
+    private static final long serialVersionUID = 2871626372516524431L;
+
+
+    StacklessParseException(final String message, final int line, final int col) {
+        super(message, line, col);
+    }
+
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+
+}
@@ -114,6 +114,8 @@ public static enum ElementBalancing {
     private boolean caseSensitive = true;
 
     private boolean textSplittable = false;
+
+    private boolean lazyAttributeParsing = false;
     
     private ElementBalancing elementBalancing = ElementBalancing.NO_BALANCING;
 
@@ -124,6 +126,12 @@ public static enum ElementBalancing {
     private PrologParseConfiguration prologParseConfiguration = new PrologParseConfiguration();
     private UniqueRootElementPresence uniqueRootElementPresence = UniqueRootElementPresence.DEPENDS_ON_PROLOG_DOCTYPE;
 
+    // Resource limits: zero (or less) means no limit
+    private int maxElementDepth = 0;
+    private int maxAttributesPerElement = 0;
+    private int maxStructureSize = 0;
+    private long maxDocumentSize = 0L;
+
 
 
 
@@ -351,6 +359,51 @@ public void setTextSplittable(final boolean textSplittable) {
 
 
 
+    /**
+     * <p>
+     *   Returns whether attributes in open and standalone elements are parsed <em>lazily</em>, i.e. only when
+     *   a handler asks for them.
+     * </p>
+     * <p>
+     *   Default is <tt>false</tt>.
+     * </p>
+     *
+     * @return whether attributes are parsed lazily or not.
+     * @since 2.0.8
+     */
+    public boolean isLazyAttributeParsing() {
+        return this.lazyAttributeParsing;
+    }
+
+
+    /**
+     * <p>
+     *   Specify whether attributes in open and standalone elements should be parsed <em>lazily</em>, i.e. only
+     *   when a handler asks for them.
+     * </p>
+     * <p>
+     *   When enabled, no <tt>handleAttribute</tt> or <tt>handleInnerWhiteSpace</tt> events will be reported
+     *   for elements. Instead, the unparsed attribute sequence of the element being reported will be available
+     *   at {@link org.attoparser.ParseStatus#getElementAttributes()}, and handlers needing attributes will
+     *   have to tokenize it on demand. This makes parsing faster for handlers that are only interested in
+     *   element names, but handlers relying on attribute events (e.g. output or selection handlers) will not
+     *   receive them. Attribute validations required by this configuration (unique attribute names,
+     *   well-formed attribute values) are still performed.
+     * </p>
+     * <p>
+     *   Default is <tt>false</tt>.
+     * </p>
+     *
+     * @param lazyAttributeParsing whether attributes should be parsed lazily or not.
+     * @since 2.0.8
+     */
+    public void setLazyAttributeParsing(final boolean lazyAttributeParsing) {
+        this.lazyAttributeParsing = lazyAttributeParsing;
+    }
+
+
+
+
     /**
      * <p>
      *   Returns the level of element balancing required at the document being parsed,
@@ -628,6 +681,161 @@ public void setUniqueRootElementPresence(final UniqueRootElementPresence uniqueR
 
 
 
+
+    /**
+     * <p>
+     *   Returns the maximum depth (nesting level) of elements allowed in documents.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @return the maximum element depth, or zero if there is no limit.
+     * @since 2.0.8
+     */
+    public int getMaxElementDepth() {
+        return this.maxElementDepth;
+    }
+
+
+    /**
+     * <p>
+     *   Specify the maximum depth (nesting level) of elements allowed in documents. Documents exceeding
+     *   this depth will make the parser fail with a {@link org.attoparser.ParseLimitExceededException}.
+     * </p>
+     * <p>
+     *   Depth includes elements opened automatically by the parser when applying element balancing. A value
+     *   of zero (or less) means no limit.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @param maxElementDepth the maximum element depth.
+     * @since 2.0.8
+     */
+    public void setMaxElementDepth(final int maxElementDepth) {
+        this.maxElementDepth = maxElementDepth;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the maximum number of attributes allowed in a single element.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @return the maximum number of attributes per element, or zero if there is no limit.
+     * @since 2.0.8
+     */
+    public int getMaxAttributesPerElement() {
+        return this.maxAttributesPerElement;
+    }
+
+
+    /**
+     * <p>
+     *   Specify the maximum number of attributes allowed in a single element. Documents containing elements
+     *   with more attributes will make the parser fail with a {@link org.attoparser.ParseLimitExceededException}.
+     * </p>
+     * <p>
+     *   Note that, when attributes are parsed lazily (see {@link #setLazyAttributeParsing(boolean)}), setting
+     *   this limit makes the parser tokenize the attributes of every element in order to count them.
+     *   A value of zero (or less) means no limit.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @param maxAttributesPerElement the maximum number of attributes per element.
+     * @since 2.0.8
+     */
+    public void setMaxAttributesPerElement(final int maxAttributesPerElement) {
+        this.maxAttributesPerElement = maxAttributesPerElement;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the maximum size (in chars) allowed for a single markup structure (element, comment, CDATA
+     *   section, etc.) when parsing documents from a {@link java.io.Reader}.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @return the maximum structure size, or zero if there is no limit.
+     * @since 2.0.8
+     */
+    public int getMaxStructureSize() {
+        return this.maxStructureSize;
+    }
+
+
+    /**
+     * <p>
+     *   Specify the maximum size (in chars) allowed for a single markup structure (element, comment, CDATA
+     *   section, etc.) when parsing documents from a {@link java.io.Reader}.
+     * </p>
+     * <p>
+     *   When reading documents, the parser grows its buffer as needed for containing each complete structure
+     *   (e.g. an unterminated comment would make the buffer grow up to the size of the entire document).
+     *   This limit makes the parser fail with a {@link org.attoparser.ParseLimitExceededException} whenever
+     *   a structure is larger than the specified size (even if it fits in the parser's current buffer), and
+     *   the buffer is never grown beyond this size. Documents specified as <tt>char[]</tt> are already
+     *   completely in memory, so this limit is not applied to them. A value of zero (or less) means no limit.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @param maxStructureSize the maximum structure size.
+     * @since 2.0.8
+     */
+    public void setMaxStructureSize(final int maxStructureSize) {
+        this.maxStructureSize = maxStructureSize;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the maximum size (in chars) allowed for documents.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @return the maximum document size, or zero if there is no limit.
+     * @since 2.0.8
+     */
+    public long getMaxDocumentSize() {
+        return this.maxDocumentSize;
+    }
+
+
+    /**
+     * <p>
+     *   Specify the maximum size (in chars) allowed for documents. Documents exceeding this size will make the
+     *   parser fail with a {@link org.attoparser.ParseLimitExceededException} (documents read from a
+     *   {@link java.io.Reader} will fail as soon as more chars than allowed have been read). A value of
+     *   zero (or less) means no limit.
+     * </p>
+     * <p>
+     *   Default is <tt>0</tt> (no limit).
+     * </p>
+     *
+     * @param maxDocumentSize the maximum document size.
+     * @since 2.0.8
+     */
+    public void setMaxDocumentSize(final long maxDocumentSize) {
+        this.maxDocumentSize = maxDocumentSize;
+    }
+
+
+
+
     
     @Override
     public ParseConfiguration clone() throws CloneNotSupportedException {
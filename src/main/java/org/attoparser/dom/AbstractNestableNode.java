@@ -20,6 +20,7 @@
 package org.attoparser.dom;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -38,6 +39,13 @@
     
     private List<INode> children = null;
     private int childrenLen = 0;
+
+    // Only set once frozen: children are then served from these without any further allocation
+    private INode[] frozenChildren = null;
+    private List<INode> frozenChildrenList = null;
+
+    // Only set for copy-on-write forks of frozen nodes whose children have not been accessed yet
+    private AbstractNestableNode forkSource = null;
     
 
 
@@ -67,6 +75,10 @@ public List<INode> getChildren() {
         if (this.childrenLen == 0) {
             return Collections.emptyList();
         }
+        if (this.frozenChildrenList != null) {
+            return this.frozenChildrenList;
+        }
+        materializeFork();
         return Collections.unmodifiableList(this.children);
     }
 
@@ -76,6 +88,7 @@ public <T extends INode> List<T> getChildrenOfType(final Class<T> type) {
         if (this.childrenLen == 0) {
             return Collections.emptyList();
         }
+        materializeFork();
         final List<T> selectedChildren = new ArrayList<T>(5);
         for (final INode child : this.children) {
             if (type.isInstance(child)) {
@@ -87,11 +100,25 @@ public <T extends INode> List<T> getChildrenOfType(final Class<T> type) {
 
 
     
+    public INode getChild(final int index) {
+        if (index < 0 || index >= this.childrenLen) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot access child at index " + index + ": node has " + this.childrenLen + " children");
+        }
+        if (this.frozenChildren != null) {
+            return this.frozenChildren[index];
+        }
+        materializeFork();
+        return this.children.get(index);
+    }
+
+
+    
     public INode getFirstChild() {
         if (this.childrenLen == 0) {
             return null;
         }
-        return this.children.get(0);
+        return getChild(0);
     }
 
 
@@ -100,6 +127,7 @@ public <T extends INode> T getFirstChildOfType(final Class<T> type) {
         if (this.childrenLen == 0) {
             return null;
         }
+        materializeFork();
         for (final INode child : this.children) {
             if (type.isInstance(child)) {
                 return (T) child;
@@ -113,8 +141,11 @@ public <T extends INode> T getFirstChildOfType(final Class<T> type) {
     
     public void addChild(final INode newChild) {
         
+        checkNotFrozen();
+        
         if (newChild != null) {
             
+            materializeFork();
             if (this.childrenLen == 0) {
                 this.children = new ArrayList<INode>(5);
             }
@@ -130,8 +161,11 @@ public void addChild(final INode newChild) {
     
     public final void insertChild(final int index, final INode newChild) {
         
+        checkNotFrozen();
+        
         if (newChild != null) {
             
+            materializeFork();
             if (this.childrenLen == 0) {
                 this.children = new ArrayList<INode>(5);
             }
@@ -152,8 +186,11 @@ public final void insertChild(final int index, final INode newChild) {
     
     public final void insertChildBefore(final INode before, final INode newChild) {
         
+        checkNotFrozen();
+        
         if (newChild != null) {
             
+            materializeFork();
             if (this.childrenLen > 0) {
                 for (int i = 0; i < this.childrenLen; i++) {
                     final INode currentChild = this.children.get(i);
@@ -171,8 +208,11 @@ public final void insertChildBefore(final INode before, final INode newChild) {
     
     public final void insertChildAfter(final INode after, final INode newChild) {
         
+        checkNotFrozen();
+        
         if (newChild != null) {
             
+            materializeFork();
             if (this.childrenLen > 0) {
                 for (int i = 0; i < this.childrenLen; i++) {
                     final INode currentChild = this.children.get(i);
@@ -190,8 +230,11 @@ public final void insertChildAfter(final INode after, final INode newChild) {
     
     public final void removeChild(final INode child) {
         
+        checkNotFrozen();
+        
         if (child != null && child.getParent() == this) {
             
+            materializeFork();
             final Iterator<INode> childrenIter = this.children.iterator();
             while (childrenIter.hasNext()) {
                 final INode nodeChild = childrenIter.next();
@@ -212,8 +255,55 @@ public final void removeChild(final INode child) {
     
 
     public final void clearChildren() {
+        checkNotFrozen();
         this.children = null;
         this.childrenLen = 0;
+        this.forkSource = null;
+    }
+
+
+
+
+    /*
+     * **********************
+     *  FREEZING AND FORKING
+     * **********************
+     */
+
+
+    @Override
+    void freezeNode() {
+        materializeFork();
+        super.freezeNode();
+        if (this.childrenLen > 0) {
+            this.frozenChildren = this.children.toArray(new INode[this.childrenLen]);
+            this.frozenChildrenList = Collections.unmodifiableList(Arrays.asList(this.frozenChildren));
+        }
+    }
+
+
+    /*
+     * Makes this (newly created) node a copy-on-write fork of the children of a frozen node. Children will
+     * only be copied (as forks themselves) once they are accessed.
+     */
+    final void initFork(final AbstractNestableNode source) {
+        this.children = null;
+        this.childrenLen = source.childrenLen;
+        this.forkSource = (source.childrenLen > 0? source : null);
+    }
+
+
+    private void materializeFork() {
+        if (this.forkSource == null) {
+            return;
+        }
+        final AbstractNestableNode source = this.forkSource;
+        this.forkSource = null;
+        this.children = new ArrayList<INode>(Math.max(5, source.childrenLen));
+        for (int i = 0; i < source.childrenLen; i++) {
+            this.children.add(((AbstractNode) source.frozenChildren[i]).forkNode(this));
+        }
+        this.childrenLen = source.childrenLen;
     }
 
 
@@ -34,6 +34,8 @@ abstract class AbstractNode implements INode {
     
     private INestableNode parent;
     
+    private boolean frozen = false;
+    
     
 
     protected AbstractNode() {
@@ -51,6 +53,7 @@ public Integer getLine() {
     }
 
     public void setLine(final Integer line) {
+        checkNotFrozen();
         this.line = line;
     }
 
@@ -65,6 +68,7 @@ public Integer getCol() {
     }
 
     public void setCol(final Integer col) {
+        checkNotFrozen();
         this.col = col;
     }
 
@@ -79,8 +83,38 @@ public INestableNode getParent() {
     }
 
     public void setParent(final INestableNode parent) {
+        checkNotFrozen();
         this.parent = parent;
     }
 
+
+
+    public final boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /*
+     * Called on every node of a document (in document order, parents before children) when the document is
+     * frozen. Subclasses can override this in order to precompute structures, but must call super.freezeNode().
+     */
+    void freezeNode() {
+        this.frozen = true;
+    }
+
+    /*
+     * Creates a mutable copy of this node for a copy-on-write fork of a frozen tree. By default nodes are
+     * just cloned, but nestable nodes will delay copying their children until they are actually accessed.
+     */
+    INode forkNode(final INestableNode parent) {
+        return cloneNode(parent);
+    }
+
+    final void checkNotFrozen() {
+        if (this.frozen) {
+            throw new UnsupportedOperationException(
+                    "Node is frozen and cannot be modified. Use Document#fork() for obtaining a modifiable copy.");
+        }
+    }
+
     
 }
@@ -59,6 +59,7 @@ public String getContent() {
     
 
     public void setContent(final String content) {
+        checkNotFrozen();
         if (content == null) {
             throw new IllegalArgumentException("Content cannot be null");
         }
@@ -67,6 +68,7 @@ public void setContent(final String content) {
 
     
     public void setContent(final char[] buffer, final int offset, final int len) {
+        checkNotFrozen();
         this.content = new String(buffer, offset, len);
     }
 
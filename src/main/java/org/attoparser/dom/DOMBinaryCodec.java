@@ -0,0 +1,1016 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <p>
+ *   Static utility class able to write DOM documents in a compact binary format, and read them back.
+ * </p>
+ * <p>
+ *   This format is meant for storing parsed documents (e.g. spilling them to disk or sharing them
+ *   through a distributed cache) and loading them again much faster than by either using Java serialization
+ *   or writing them as markup and parsing them again. Its structure is:
+ * </p>
+ * <ul>
+ *   <li>A fixed-size <strong>header</strong>, containing a format signature and the sizes of the three
+ *       sections that follow.</li>
+ *   <li>A <strong>name table</strong>, containing each different element and attribute name only once.</li>
+ *   <li>A <strong>text block</strong>, containing all the rest of textual content in the document (texts,
+ *       attribute values, comments, etc.) one after the other, so that it can be decoded in one single
+ *       pass.</li>
+ *   <li>A <strong>structure</strong> section, describing the tree as a sequence of variable-length
+ *       integers (node types, name table indexes, text lengths and line/col numbers).</li>
+ * </ul>
+ * <p>
+ *   Readers never consume more bytes than those belonging to the document being read, so several documents
+ *   can be written one after the other to the same stream or channel and read back in the same order.
+ *   Streams and channels are never closed by this class.
+ * </p>
+ * <p>
+ *   Only the node implementations in this package are supported. Both writing and reading are performed
+ *   without recursion, so documents of any depth can be processed.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class DOMBinaryCodec {
+
+    private static final byte[] SIGNATURE = new byte[] { 'A', 'T', 'D', 'M' };
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = SIGNATURE.length + 1 + (4 * 4);
+    // Sections read from streams and channels are allocated in chunks of at most this size and grown as data
+    // arrives, so that the sizes declared in the header cannot make us allocate more than what is actually read
+    private static final int READ_CHUNK_SIZE = 65536;
+
+    // Node types, encoded in the three lower bits of each node tag
+    private static final int TYPE_END = 0;
+    private static final int TYPE_ELEMENT = 1;
+    private static final int TYPE_TEXT = 2;
+    private static final int TYPE_CDATA_SECTION = 3;
+    private static final int TYPE_COMMENT = 4;
+    private static final int TYPE_DOCTYPE = 5;
+    private static final int TYPE_XML_DECLARATION = 6;
+    private static final int TYPE_PROCESSING_INSTRUCTION = 7;
+    private static final int TYPE_MASK = 0x07;
+
+    // Node tag flags
+    private static final int FLAG_HAS_POSITION = 0x08;
+    private static final int FLAG_HAS_CHILDREN = 0x10;
+
+
+
+
+    /**
+     * <p>
+     *   Encodes a document into a byte array.
+     * </p>
+     *
+     * @param document the document to be encoded.
+     * @return the encoded bytes.
+     */
+    public static byte[] toByteArray(final Document document) {
+        final Encoder encoder = encode(document);
+        final byte[] result = new byte[encoder.size()];
+        encoder.writeTo(result);
+        return result;
+    }
+
+
+    /**
+     * <p>
+     *   Writes a document to an output stream. The stream is not flushed nor closed.
+     * </p>
+     *
+     * @param document the document to be written.
+     * @param outputStream the stream to write to.
+     * @throws IOException if an error happens while writing.
+     */
+    public static void write(final Document document, final OutputStream outputStream) throws IOException {
+        validateNotNull(outputStream, "Output stream cannot be null");
+        final Encoder encoder = encode(document);
+        outputStream.write(encoder.header());
+        encoder.names.writeTo(outputStream);
+        encoder.texts.writeTo(outputStream);
+        encoder.structure.writeTo(outputStream);
+    }
+
+
+    /**
+     * <p>
+     *   Writes a document to a channel. The channel is not closed.
+     * </p>
+     *
+     * @param document the document to be written.
+     * @param channel the channel to write to.
+     * @throws IOException if an error happens while writing.
+     */
+    public static void write(final Document document, final WritableByteChannel channel) throws IOException {
+        validateNotNull(channel, "Channel cannot be null");
+        final Encoder encoder = encode(document);
+        writeFully(channel, ByteBuffer.wrap(encoder.header()));
+        encoder.names.writeTo(channel);
+        encoder.texts.writeTo(channel);
+        encoder.structure.writeTo(channel);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Decodes a document from a byte array.
+     * </p>
+     *
+     * @param bytes the bytes containing the encoded document.
+     * @return the decoded document.
+     * @throws IOException if the bytes do not contain a correctly encoded document.
+     */
+    public static Document read(final byte[] bytes) throws IOException {
+        validateNotNull(bytes, "Bytes cannot be null");
+        return read(new ByteArraySource(bytes));
+    }
+
+
+    /**
+     * <p>
+     *   Reads a document from an input stream. The stream is not closed, and no bytes after the end of
+     *   the document are consumed.
+     * </p>
+     *
+     * @param inputStream the stream to read from.
+     * @return the document read, or <tt>null</tt> if the stream was already at its end.
+     * @throws IOException if an error happens while reading, or the stream does not contain a correctly
+     *                     encoded document.
+     */
+    public static Document read(final InputStream inputStream) throws IOException {
+        validateNotNull(inputStream, "Input stream cannot be null");
+        return read(new InputStreamSource(inputStream));
+    }
+
+
+    /**
+     * <p>
+     *   Reads a document from a channel. The channel is not closed, and no bytes after the end of
+     *   the document are consumed.
+     * </p>
+     *
+     * @param channel the channel to read from.
+     * @return the document read, or <tt>null</tt> if the channel was already at its end.
+     * @throws IOException if an error happens while reading, or the channel does not contain a correctly
+     *                     encoded document.
+     */
+    public static Document read(final ReadableByteChannel channel) throws IOException {
+        validateNotNull(channel, "Channel cannot be null");
+        return read(new ChannelSource(channel));
+    }
+
+
+
+
+    /*
+     * *********
+     *  WRITING
+     * *********
+     */
+
+
+    private static Encoder encode(final Document document) {
+        validateNotNull(document, "Document cannot be null");
+        final Encoder encoder = new Encoder();
+        encoder.encodeDocument(document);
+        return encoder;
+    }
+
+
+    private static final class Encoder implements INodeVisitor {
+
+        final ByteArrayBuilder names = new ByteArrayBuilder(256);
+        final ByteArrayBuilder texts = new ByteArrayBuilder(4096);
+        final ByteArrayBuilder structure = new ByteArrayBuilder(1024);
+
+        private final Map<String,Integer> nameIndexes = new HashMap<String, Integer>(64);
+        private final List<String> nameTable = new ArrayList<String>(64);
+        private int textCharLen = 0;
+
+        private Document document;
+
+
+        Encoder() {
+            super();
+        }
+
+
+        void encodeDocument(final Document document) {
+
+            this.document = document;
+            writeNullableText(document.getDocumentName());
+            writePosition(document);
+
+            new TreeWalker(document).walk(this);
+
+            // The name table is written last, once we know all the names used
+            final ByteArrayBuilder nameChars = new ByteArrayBuilder(256);
+            this.names.writeVarInt(this.nameTable.size());
+            for (final String name : this.nameTable) {
+                this.names.writeVarInt(name.length());
+                nameChars.writeChars(name);
+            }
+            this.names.writeVarInt(nameChars.len);
+            this.names.write(nameChars.bytes, 0, nameChars.len);
+
+        }
+
+
+        public VisitResult enter(final INode node) {
+
+            if (node == this.document) {
+                return VisitResult.CONTINUE;
+            }
+
+            final boolean hasPosition = node.hasLine() || node.hasCol();
+            final int positionFlag = (hasPosition? FLAG_HAS_POSITION : 0);
+
+            if (node instanceof Element) {
+
+                final Element element = (Element) node;
+                this.structure.writeVarInt(
+                        TYPE_ELEMENT | positionFlag | (element.hasChildren()? FLAG_HAS_CHILDREN : 0));
+                writePosition(node);
+                writeName(element.getElementName());
+                this.structure.writeVarInt(element.numAttributes());
+                if (element.hasAttributes()) {
+                    for (final Map.Entry<String,String> attribute : element.getAttributeMap().entrySet()) {
+                        writeName(attribute.getKey());
+                        writeNullableText(attribute.getValue());
+                    }
+                }
+                return VisitResult.CONTINUE;
+
+            } else if (node instanceof CDATASection) {
+
+                this.structure.writeVarInt(TYPE_CDATA_SECTION | positionFlag);
+                writePosition(node);
+                writeText(((CDATASection) node).getContent());
+
+            } else if (node instanceof Text) {
+
+                this.structure.writeVarInt(TYPE_TEXT | positionFlag);
+                writePosition(node);
+                writeText(((Text) node).getContent());
+
+            } else if (node instanceof Comment) {
+
+                this.structure.writeVarInt(TYPE_COMMENT | positionFlag);
+                writePosition(node);
+                writeText(((Comment) node).getContent());
+
+            } else if (node instanceof DocType) {
+
+                final DocType docType = (DocType) node;
+                this.structure.writeVarInt(TYPE_DOCTYPE | positionFlag);
+                writePosition(node);
+                writeText(docType.getRootElementName());
+                writeNullableText(docType.getPublicId());
+                writeNullableText(docType.getSystemId());
+                writeNullableText(docType.getInternalSubset());
+
+            } else if (node instanceof XmlDeclaration) {
+
+                final XmlDeclaration xmlDeclaration = (XmlDeclaration) node;
+                this.structure.writeVarInt(TYPE_XML_DECLARATION | positionFlag);
+                writePosition(node);
+                writeText(xmlDeclaration.getVersion());
+                writeNullableText(xmlDeclaration.getEncoding());
+                writeNullableText(xmlDeclaration.getStandalone());
+
+            } else if (node instanceof ProcessingInstruction) {
+
+                final ProcessingInstruction processingInstruction = (ProcessingInstruction) node;
+                this.structure.writeVarInt(TYPE_PROCESSING_INSTRUCTION | positionFlag);
+                writePosition(node);
+                writeText(processingInstruction.getTarget());
+                writeNullableText(processingInstruction.getContent());
+
+            } else {
+
+                throw new IllegalArgumentException(
+                        "Cannot encode node of class " + node.getClass().getName() + ": not supported by binary codec");
+
+            }
+
+            return VisitResult.SKIP_CHILDREN;
+
+        }
+
+
+        public void leave(final INode node) {
+            if (node == this.document || (node instanceof Element && ((Element) node).hasChildren())) {
+                this.structure.writeVarInt(TYPE_END);
+            }
+        }
+
+
+        private void writeName(final String name) {
+            Integer index = this.nameIndexes.get(name);
+            if (index == null) {
+                index = Integer.valueOf(this.nameTable.size());
+                this.nameIndexes.put(name, index);
+                this.nameTable.add(name);
+            }
+            this.structure.writeVarInt(index.intValue());
+        }
+
+
+        private void writeText(final String text) {
+            this.structure.writeVarInt(text.length());
+            this.texts.writeChars(text);
+            this.textCharLen += text.length();
+        }
+
+
+        private void writeNullableText(final String text) {
+            if (text == null) {
+                this.structure.writeVarInt(0);
+                return;
+            }
+            this.structure.writeVarInt(text.length() + 1);
+            this.texts.writeChars(text);
+            this.textCharLen += text.length();
+        }
+
+
+        private void writePosition(final INode node) {
+            if (node == this.document) {
+                // Documents always include their position (normally null)
+                writeNullableInt(node.getLine());
+                writeNullableInt(node.getCol());
+                return;
+            }
+            if (node.hasLine() || node.hasCol()) {
+                writeNullableInt(node.getLine());
+                writeNullableInt(node.getCol());
+            }
+        }
+
+
+        private void writeNullableInt(final Integer value) {
+            if (value == null) {
+                this.structure.writeVarInt(0);
+                return;
+            }
+            final int intValue = value.intValue();
+            // zig-zag encoding, so that (rare) negative values do not need the full five bytes
+            this.structure.writeVarInt(((intValue << 1) ^ (intValue >> 31)) + 1);
+        }
+
+
+        byte[] header() {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(SIGNATURE);
+            header.put(FORMAT_VERSION);
+            header.putInt(this.names.len);
+            header.putInt(this.textCharLen);
+            header.putInt(this.texts.len);
+            header.putInt(this.structure.len);
+            return header.array();
+        }
+
+
+        int size() {
+            return HEADER_SIZE + this.names.len + this.texts.len + this.structure.len;
+        }
+
+
+        void writeTo(final byte[] result) {
+            int offset = 0;
+            final byte[] header = header();
+            System.arraycopy(header, 0, result, offset, header.length);
+            offset += header.length;
+            System.arraycopy(this.names.bytes, 0, result, offset, this.names.len);
+            offset += this.names.len;
+            System.arraycopy(this.texts.bytes, 0, result, offset, this.texts.len);
+            offset += this.texts.len;
+            System.arraycopy(this.structure.bytes, 0, result, offset, this.structure.len);
+        }
+
+    }
+
+
+
+
+    /*
+     * *********
+     *  READING
+     * *********
+     */
+
+
+    private static Document read(final ByteSource source) throws IOException {
+
+        final byte[] header = new byte[HEADER_SIZE];
+        if (!readFully(source, header, true)) {
+            return null;
+        }
+
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (header[i] != SIGNATURE[i]) {
+                throw new IOException("Invalid binary DOM data: bad signature");
+            }
+        }
+        if (header[SIGNATURE.length] != FORMAT_VERSION) {
+            throw new IOException(
+                    "Invalid binary DOM data: unsupported format version " + header[SIGNATURE.length]);
+        }
+
+        final ByteBuffer headerBuffer = ByteBuffer.wrap(header, SIGNATURE.length + 1, 4 * 4);
+        final int namesLen = headerBuffer.getInt();
+        final int textCharLen = headerBuffer.getInt();
+        final int textsLen = headerBuffer.getInt();
+        final int structureLen = headerBuffer.getInt();
+        if (namesLen < 0 || textCharLen < 0 || textsLen < 0 || structureLen < 0) {
+            throw new IOException("Invalid binary DOM data: bad section sizes");
+        }
+        if (textCharLen > textsLen) {
+            // Each char needs at least one byte, so this can only be corrupted (or hostile) data
+            throw new IOException("Invalid binary DOM data: bad text size");
+        }
+
+        final long available = source.available();
+        if (available >= 0L && (long) namesLen + (long) textsLen + (long) structureLen > available) {
+            throw new EOFException("Invalid binary DOM data: unexpected end of input");
+        }
+
+        final byte[] names = readSection(source, namesLen);
+        final byte[] texts = readSection(source, textsLen);
+        final byte[] structure = readSection(source, structureLen);
+
+        try {
+            return new Decoder(names, texts, textCharLen, structure).decodeDocument();
+        } catch (final IndexOutOfBoundsException e) {
+            throw corrupted(e);
+        } catch (final NegativeArraySizeException e) {
+            throw corrupted(e);
+        }
+
+    }
+
+
+    private static IOException corrupted(final Exception cause) {
+        final IOException ioException = new IOException("Invalid binary DOM data: corrupted content");
+        ioException.initCause(cause);
+        return ioException;
+    }
+
+
+    private static final class Decoder {
+
+        private final String[] nameTable;
+        private final char[] text;
+        private int textPos = 0;
+        private final byte[] structure;
+        private int structurePos = 0;
+
+
+        Decoder(final byte[] names, final byte[] texts, final int textCharLen, final byte[] structure)
+                throws IOException {
+
+            super();
+
+            // Name table: count, lengths and chars
+            final ByteArrayReader namesReader = new ByteArrayReader(names);
+            // Sizes are checked against the bytes actually present (each name length and each char needs at
+            // least one byte) before allocating anything, so that corrupted data cannot exhaust memory
+            final int nameCount = namesReader.readVarInt();
+            if (nameCount < 0 || nameCount > names.length - namesReader.pos) {
+                throw new IOException("Invalid binary DOM data: bad name table size");
+            }
+            final int[] nameLens = new int[nameCount];
+            int nameCharLen = 0;
+            for (int i = 0; i < nameCount; i++) {
+                nameLens[i] = namesReader.readVarInt();
+                if (nameLens[i] < 0 || nameLens[i] > names.length - nameCharLen) {
+                    throw new IOException("Invalid binary DOM data: bad name table size");
+                }
+                nameCharLen += nameLens[i];
+            }
+            final int nameBytesLen = namesReader.readVarInt();
+            if (nameBytesLen < nameCharLen || nameBytesLen > names.length - namesReader.pos) {
+                throw new IOException("Invalid binary DOM data: bad name table size");
+            }
+            final char[] nameChars = decodeChars(names, namesReader.pos, nameBytesLen, nameCharLen);
+            this.nameTable = new String[nameCount];
+            int nameOffset = 0;
+            for (int i = 0; i < nameCount; i++) {
+                this.nameTable[i] = new String(nameChars, nameOffset, nameLens[i]);
+                nameOffset += nameLens[i];
+            }
+
+            this.text = decodeChars(texts, 0, texts.length, textCharLen);
+            this.structure = structure;
+
+        }
+
+
+        Document decodeDocument() throws IOException {
+
+            final Document document = new Document(readNullableText());
+            readPosition(document, true);
+
+            INestableNode current = document;
+
+            while (true) {
+
+                final int tag = readVarInt();
+                final int type = tag & TYPE_MASK;
+                final boolean hasPosition = (tag & FLAG_HAS_POSITION) != 0;
+
+                final AbstractNode node;
+
+                switch (type) {
+
+                    case TYPE_END:
+                        if (current == document) {
+                            if (this.structurePos != this.structure.length) {
+                                throw new IOException("Invalid binary DOM data: unexpected content after end");
+                            }
+                            return document;
+                        }
+                        current = current.getParent();
+                        continue;
+
+                    case TYPE_ELEMENT:
+                        final int elementLine = (hasPosition? readNullableInt() : -1);
+                        final int elementCol = (hasPosition? readNullableInt() : -1);
+                        final Element element = new Element(readName());
+                        setPosition(element, hasPosition, elementLine, elementCol);
+                        final int attributeCount = readVarInt();
+                        for (int i = 0; i < attributeCount; i++) {
+                            element.addAttribute(readName(), readNullableText());
+                        }
+                        current.addChild(element);
+                        if ((tag & FLAG_HAS_CHILDREN) != 0) {
+                            current = element;
+                        }
+                        continue;
+
+                    case TYPE_TEXT:
+                        node = new Text("");
+                        readPosition(node, hasPosition);
+                        ((Text) node).setContent(this.text, this.textPos, advanceText(readVarInt()));
+                        break;
+
+                    case TYPE_CDATA_SECTION:
+                        node = new CDATASection("");
+                        readPosition(node, hasPosition);
+                        ((CDATASection) node).setContent(this.text, this.textPos, advanceText(readVarInt()));
+                        break;
+
+                    case TYPE_COMMENT:
+                        node = new Comment("");
+                        readPosition(node, hasPosition);
+                        ((Comment) node).setContent(this.text, this.textPos, advanceText(readVarInt()));
+                        break;
+
+                    case TYPE_DOCTYPE:
+                        final int docTypeLine = (hasPosition? readNullableInt() : -1);
+                        final int docTypeCol = (hasPosition? readNullableInt() : -1);
+                        node = new DocType(readText(), readNullableText(), readNullableText(), readNullableText());
+                        setPosition(node, hasPosition, docTypeLine, docTypeCol);
+                        break;
+
+                    case TYPE_XML_DECLARATION:
+                        final int xmlDeclarationLine = (hasPosition? readNullableInt() : -1);
+                        final int xmlDeclarationCol = (hasPosition? readNullableInt() : -1);
+                        node = new XmlDeclaration(readText(), readNullableText(), readNullableText());
+                        setPosition(node, hasPosition, xmlDeclarationLine, xmlDeclarationCol);
+                        break;
+
+                    case TYPE_PROCESSING_INSTRUCTION:
+                        final int processingInstructionLine = (hasPosition? readNullableInt() : -1);
+                        final int processingInstructionCol = (hasPosition? readNullableInt() : -1);
+                        node = new ProcessingInstruction(readText(), readNullableText());
+                        setPosition(node, hasPosition, processingInstructionLine, processingInstructionCol);
+                        break;
+
+                    default:
+                        throw new IOException("Invalid binary DOM data: unknown node type " + type);
+
+                }
+
+                current.addChild(node);
+
+            }
+
+        }
+
+
+        private String readName() {
+            return this.nameTable[readVarInt()];
+        }
+
+
+        private int advanceText(final int len) {
+            if (len < 0 || this.textPos + len > this.text.length) {
+                throw new IndexOutOfBoundsException("Text block overflow");
+            }
+            this.textPos += len;
+            return len;
+        }
+
+
+        private String readText() {
+            final int offset = this.textPos;
+            return new String(this.text, offset, advanceText(readVarInt()));
+        }
+
+
+        private String readNullableText() {
+            final int len = readVarInt();
+            if (len == 0) {
+                return null;
+            }
+            final int offset = this.textPos;
+            return new String(this.text, offset, advanceText(len - 1));
+        }
+
+
+        private void readPosition(final AbstractNode node, final boolean hasPosition) {
+            if (hasPosition) {
+                final int line = readNullableInt();
+                final int col = readNullableInt();
+                setPosition(node, true, line, col);
+            }
+        }
+
+
+        /*
+         * Null values are returned as Integer.MIN_VALUE, which cannot be encoded by the writer
+         */
+        private int readNullableInt() {
+            final int value = readVarInt();
+            if (value == 0) {
+                return Integer.MIN_VALUE;
+            }
+            final int zigZag = value - 1;
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+
+
+        private static void setPosition(
+                final AbstractNode node, final boolean hasPosition, final int line, final int col) {
+            if (hasPosition) {
+                node.setLine(line == Integer.MIN_VALUE? null : Integer.valueOf(line));
+                node.setCol(col == Integer.MIN_VALUE? null : Integer.valueOf(col));
+            }
+        }
+
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = this.structure[this.structurePos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+    }
+
+
+
+
+    /*
+     * *************************
+     *  CHARS AND VARINT UTILS
+     * *************************
+     */
+
+
+    /*
+     * Chars are encoded one by one (as 'modified UTF-8' does, and without any special treatment for surrogate
+     * pairs) so that any Java String can be encoded without loss, and char lengths can be used for locating
+     * content in the decoded text block.
+     */
+    private static char[] decodeChars(final byte[] bytes, final int offset, final int len, final int charLen)
+            throws IOException {
+
+        final char[] chars = new char[charLen];
+        final int maxi = offset + len;
+        int i = offset;
+        int c = 0;
+        while (i < maxi && c < charLen) {
+            final int b = bytes[i++] & 0xFF;
+            if (b < 0x80) {
+                chars[c++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[c++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+            } else {
+                chars[c++] = (char) (((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+            }
+        }
+        if (i != maxi || c != charLen) {
+            throw new IOException("Invalid binary DOM data: text sizes do not match");
+        }
+        return chars;
+
+    }
+
+
+    private static final class ByteArrayBuilder {
+
+        byte[] bytes;
+        int len;
+
+        ByteArrayBuilder(final int initialSize) {
+            super();
+            this.bytes = new byte[initialSize];
+            this.len = 0;
+        }
+
+        void writeVarInt(final int value) {
+            ensureCapacity(5);
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                this.bytes[this.len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            this.bytes[this.len++] = (byte) v;
+        }
+
+        void writeChars(final String str) {
+            final int strLen = str.length();
+            ensureCapacity(strLen * 3);
+            final byte[] b = this.bytes;
+            int l = this.len;
+            for (int i = 0; i < strLen; i++) {
+                final char c = str.charAt(i);
+                if (c < 0x80) {
+                    b[l++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[l++] = (byte) (0xC0 | (c >> 6));
+                    b[l++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    b[l++] = (byte) (0xE0 | (c >> 12));
+                    b[l++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[l++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            this.len = l;
+        }
+
+        void write(final byte[] source, final int offset, final int sourceLen) {
+            ensureCapacity(sourceLen);
+            System.arraycopy(source, offset, this.bytes, this.len, sourceLen);
+            this.len += sourceLen;
+        }
+
+        void writeTo(final OutputStream outputStream) throws IOException {
+            outputStream.write(this.bytes, 0, this.len);
+        }
+
+        void writeTo(final WritableByteChannel channel) throws IOException {
+            writeFully(channel, ByteBuffer.wrap(this.bytes, 0, this.len));
+        }
+
+        private void ensureCapacity(final int additional) {
+            if (this.len + additional > this.bytes.length) {
+                final byte[] newBytes = new byte[Math.max(this.len + additional, this.bytes.length * 2)];
+                System.arraycopy(this.bytes, 0, newBytes, 0, this.len);
+                this.bytes = newBytes;
+            }
+        }
+
+    }
+
+
+    private static final class ByteArrayReader {
+
+        private final byte[] bytes;
+        int pos;
+
+        ByteArrayReader(final byte[] bytes) {
+            super();
+            this.bytes = bytes;
+            this.pos = 0;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (this.pos >= this.bytes.length) {
+                    throw new IOException("Invalid binary DOM data: truncated name table");
+                }
+                b = this.bytes[this.pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+    }
+
+
+
+
+    /*
+     * ****************
+     *  BYTE SOURCES
+     * ****************
+     */
+
+
+    private static interface ByteSource {
+
+        /*
+         * Same contract as InputStream.read(byte[],int,int): returns -1 if the source is at its end.
+         */
+        int read(final byte[] bytes, final int off, final int len) throws IOException;
+
+        /*
+         * Returns the amount of bytes remaining in the source, or -1 if unknown.
+         */
+        long available();
+
+    }
+
+
+    /*
+     * Returns false if no bytes at all could be read because the source was already at its end and
+     * allowEmpty is true. Fails if the end is reached after some bytes have been read.
+     */
+    private static boolean readFully(final ByteSource source, final byte[] bytes, final boolean allowEmpty)
+            throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            final int count = source.read(bytes, read, bytes.length - read);
+            if (count < 0) {
+                if (read == 0 && allowEmpty) {
+                    return false;
+                }
+                throw new EOFException("Invalid binary DOM data: unexpected end of input");
+            }
+            read += count;
+        }
+        return true;
+    }
+
+
+    /*
+     * Reads a section of the specified length, growing the resulting array as data arrives instead of
+     * trusting the declared length for allocating it (unless the source knows it has enough bytes).
+     */
+    private static byte[] readSection(final ByteSource source, final int len) throws IOException {
+        if (source.available() >= len) {
+            final byte[] bytes = new byte[len];
+            readFully(source, bytes, false);
+            return bytes;
+        }
+        byte[] bytes = new byte[Math.min(len, READ_CHUNK_SIZE)];
+        int read = 0;
+        while (read < len) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min((long) len, bytes.length * 2L));
+            }
+            final int count = source.read(bytes, read, bytes.length - read);
+            if (count < 0) {
+                throw new EOFException("Invalid binary DOM data: unexpected end of input");
+            }
+            read += count;
+        }
+        return bytes;
+    }
+
+
+    private static final class ByteArraySource implements ByteSource {
+
+        private final byte[] source;
+        private int pos = 0;
+
+        ByteArraySource(final byte[] source) {
+            super();
+            this.source = source;
+        }
+
+        public int read(final byte[] bytes, final int off, final int len) {
+            if (this.pos == this.source.length) {
+                return -1;
+            }
+            final int count = Math.min(len, this.source.length - this.pos);
+            System.arraycopy(this.source, this.pos, bytes, off, count);
+            this.pos += count;
+            return count;
+        }
+
+        public long available() {
+            return this.source.length - this.pos;
+        }
+
+    }
+
+
+    private static final class InputStreamSource implements ByteSource {
+
+        private final InputStream inputStream;
+
+        InputStreamSource(final InputStream inputStream) {
+            super();
+            this.inputStream = inputStream;
+        }
+
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            return this.inputStream.read(bytes, off, len);
+        }
+
+        public long available() {
+            return -1L;
+        }
+
+    }
+
+
+    private static final class ChannelSource implements ByteSource {
+
+        private final ReadableByteChannel channel;
+
+        ChannelSource(final ReadableByteChannel channel) {
+            super();
+            this.channel = channel;
+        }
+
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            int count;
+            do {
+                count = this.channel.read(ByteBuffer.wrap(bytes, off, len));
+            } while (count == 0 && len > 0);
+            return count;
+        }
+
+        public long available() {
+            return -1L;
+        }
+
+    }
+
+
+
+
+    private static void writeFully(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+
+    private static void validateNotNull(final Object obj, final String message) {
+        if (obj == null) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+
+
+    private DOMBinaryCodec() {
+        super();
+    }
+
+
+}
@@ -0,0 +1,580 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+import java.util.Map;
+
+import org.attoparser.IMarkupHandler;
+import org.attoparser.ParseException;
+import org.attoparser.ParseStatus;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.select.ParseSelection;
+
+
+/**
+ * <p>
+ *   Walks a DOM tree (or a fragment of it) and produces the same sequence of events on a
+ *   {@link org.attoparser.IMarkupHandler} that a {@link org.attoparser.MarkupParser} would produce when parsing
+ *   the markup written for that tree by {@link DOMWriter}.
+ * </p>
+ * <p>
+ *   This allows applying any markup handler (e.g. {@link org.attoparser.output.OutputMarkupHandler},
+ *   {@link org.attoparser.minimize.MinimizeHtmlMarkupHandler} or the selection handlers at the
+ *   <tt>org.attoparser.select</tt> package) on an in-memory, possibly modified DOM tree without the need to
+ *   write it as markup and then parse it again.
+ * </p>
+ * <p>
+ *   Events are produced on <tt>char[]</tt> buffers containing the complete markup structure being reported
+ *   (e.g. the whole <tt>&lt;div class="x"&gt;</tt> open tag), so that the offsets received by handlers are
+ *   consistent with each other in the same way as during parsing. As the DOM does not retain the original
+ *   white space between attributes, a single space is reported before each attribute. Elements without
+ *   children are reported as minimized standalone elements, and no auto-open, auto-close or unmatched-close
+ *   events are ever produced (the DOM tree is always balanced).
+ * </p>
+ * <p>
+ *   Line and column numbers are those stored at the DOM nodes, or <tt>-1</tt> when not available.
+ * </p>
+ * <p>
+ *   Instances of this class are <strong>thread-safe</strong>, and can be reused for any number of
+ *   operations.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final DOMEventSource source = new DOMEventSource(ParseConfiguration.htmlConfiguration());
+ *   source.emit(document, new MinimizeHtmlMarkupHandler(MinimizeMode.COMPLETE, new OutputMarkupHandler(writer)));
+ * </code></pre>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class DOMEventSource {
+
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private static final char[] COMMENT_PREFIX = "<!--".toCharArray();
+    private static final char[] COMMENT_SUFFIX = "-->".toCharArray();
+    private static final char[] CDATA_PREFIX = "<![CDATA[".toCharArray();
+    private static final char[] CDATA_SUFFIX = "]]>".toCharArray();
+    private static final char[] DOCTYPE_KEYWORD = "DOCTYPE".toCharArray();
+    private static final char[] DOCTYPE_PUBLIC = "PUBLIC".toCharArray();
+    private static final char[] DOCTYPE_SYSTEM = "SYSTEM".toCharArray();
+    private static final char[] XML_DECLARATION_KEYWORD = "xml".toCharArray();
+    private static final char[] XML_DECLARATION_VERSION = " version=".toCharArray();
+    private static final char[] XML_DECLARATION_ENCODING = " encoding=".toCharArray();
+    private static final char[] XML_DECLARATION_STANDALONE = " standalone=".toCharArray();
+
+
+    private final ParseConfiguration configuration;
+
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this event source.
+     * </p>
+     * <p>
+     *   The configuration specified will be the one passed to handlers by means of
+     *   {@link org.attoparser.IMarkupHandler#setParseConfiguration(org.attoparser.config.ParseConfiguration)},
+     *   which is needed by handlers whose behaviour depends on the parsing mode (e.g. selection handlers).
+     * </p>
+     *
+     * @param configuration the configuration to be reported to handlers.
+     */
+    public DOMEventSource(final ParseConfiguration configuration) {
+        super();
+        if (configuration == null) {
+            throw new IllegalArgumentException("Configuration cannot be null");
+        }
+        this.configuration = configuration;
+    }
+
+
+
+    /**
+     * <p>
+     *   Returns the configuration reported to handlers.
+     * </p>
+     *
+     * @return the configuration.
+     */
+    public ParseConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+
+
+    /**
+     * <p>
+     *   Produce the events corresponding to the specified node (and its subtree), surrounded by the
+     *   <em>document start</em> and <em>document end</em> events.
+     * </p>
+     * <p>
+     *   If the node is a {@link Document}, its children will be reported. Otherwise, the node itself
+     *   will be reported as the only top-level node.
+     * </p>
+     *
+     * @param node the node to be reported.
+     * @param handler the handler that will receive the events.
+     * @throws ParseException if any of the handlers raises an exception.
+     */
+    public void emit(final INode node, final IMarkupHandler handler) throws ParseException {
+
+        if (node == null) {
+            throw new IllegalArgumentException("Node cannot be null");
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+
+        handler.setParseConfiguration(this.configuration);
+        handler.setParseStatus(new ParseStatus());
+        handler.setParseSelection(new ParseSelection());
+
+        final EmitContext context = new EmitContext(handler);
+
+        final long startTimeNanos = System.nanoTime();
+        handler.handleDocumentStart(startTimeNanos, lineOf(node, 1), colOf(node, 1));
+
+        if (node instanceof Document) {
+            context.emitChildren((Document) node);
+        } else {
+            context.emitNode(node);
+        }
+
+        final long endTimeNanos = System.nanoTime();
+        handler.handleDocumentEnd(endTimeNanos, (endTimeNanos - startTimeNanos), -1, -1);
+
+    }
+
+
+
+
+    private static int lineOf(final INode node, final int defaultValue) {
+        return (node.hasLine()? node.getLine().intValue() : defaultValue);
+    }
+
+    private static int colOf(final INode node, final int defaultValue) {
+        return (node.hasCol()? node.getCol().intValue() : defaultValue);
+    }
+
+
+
+
+    /*
+     * Holds the (growable) buffer on which structures are composed before reporting them. Handlers are
+     * not allowed to keep references to event buffers once each event has been handled (same as during
+     * parsing), so a single buffer is reused for the whole operation.
+     */
+    private static final class EmitContext {
+
+        private final IMarkupHandler handler;
+        private char[] buffer;
+        private int len;
+
+
+        EmitContext(final IMarkupHandler handler) {
+            super();
+            this.handler = handler;
+            this.buffer = new char[DEFAULT_BUFFER_SIZE];
+            this.len = 0;
+        }
+
+
+        void emitChildren(final INestableNode node) throws ParseException {
+            if (!node.hasChildren()) {
+                return;
+            }
+            final int childrenLen = node.numChildren();
+            for (int i = 0; i < childrenLen; i++) {
+                emitNode(node.getChild(i));
+            }
+        }
+
+
+        void emitNode(final INode node) throws ParseException {
+
+            if (node instanceof Element) {
+                emitElement((Element) node);
+                return;
+            }
+            if (node instanceof CDATASection) {
+                emitCDATASection((CDATASection) node);
+                return;
+            }
+            if (node instanceof Text) {
+                emitText((Text) node);
+                return;
+            }
+            if (node instanceof Comment) {
+                emitComment((Comment) node);
+                return;
+            }
+            if (node instanceof DocType) {
+                emitDocType((DocType) node);
+                return;
+            }
+            if (node instanceof XmlDeclaration) {
+                emitXmlDeclaration((XmlDeclaration) node);
+                return;
+            }
+            if (node instanceof ProcessingInstruction) {
+                emitProcessingInstruction((ProcessingInstruction) node);
+                return;
+            }
+            if (node instanceof Document) {
+                emitChildren((Document) node);
+            }
+
+        }
+
+
+        private void emitElement(final Element element) throws ParseException {
+
+            final int line = lineOf(element, -1);
+            final int col = colOf(element, -1);
+
+            final String elementName = element.getElementName();
+            final boolean standalone = !element.hasChildren();
+
+            this.len = 0;
+            append('<');
+            final int nameOffset = this.len;
+            append(elementName);
+            final int nameLen = this.len - nameOffset;
+
+            if (standalone) {
+                this.handler.handleStandaloneElementStart(this.buffer, nameOffset, nameLen, true, line, col);
+            } else {
+                this.handler.handleOpenElementStart(this.buffer, nameOffset, nameLen, line, col);
+            }
+
+            if (element.hasAttributes()) {
+                for (final Map.Entry<String,String> attribute : element.getAttributeMap().entrySet()) {
+                    emitAttribute(attribute.getKey(), attribute.getValue(), line, col);
+                }
+            }
+
+            if (standalone) {
+                // Element name is always kept at the same position in the buffer, even if it might have grown
+                append('/');
+                append('>');
+                this.handler.handleStandaloneElementEnd(this.buffer, nameOffset, nameLen, true, line, col);
+                return;
+            }
+
+            append('>');
+            this.handler.handleOpenElementEnd(this.buffer, nameOffset, nameLen, line, col);
+
+            emitChildren(element);
+
+            this.len = 0;
+            append('<');
+            append('/');
+            final int closeNameOffset = this.len;
+            append(elementName);
+            append('>');
+            this.handler.handleCloseElementStart(this.buffer, closeNameOffset, nameLen, -1, -1);
+            this.handler.handleCloseElementEnd(this.buffer, closeNameOffset, nameLen, -1, -1);
+
+        }
+
+
+        private void emitAttribute(
+                final String name, final String value, final int line, final int col) throws ParseException {
+
+            final String attributeValue = (value == null? "" : value);
+            final char quote = (attributeValue.indexOf('"') >= 0? '\'' : '"');
+
+            final int whiteSpaceOffset = this.len;
+            append(' ');
+            this.handler.handleInnerWhiteSpace(this.buffer, whiteSpaceOffset, 1, line, col);
+
+            final int nameOffset = this.len;
+            append(name);
+            final int nameLen = this.len - nameOffset;
+
+            final int operatorOffset = this.len;
+            append('=');
+
+            final int valueOuterOffset = this.len;
+            append(quote);
+            final int valueContentOffset = this.len;
+            append(attributeValue);
+            final int valueContentLen = this.len - valueContentOffset;
+            append(quote);
+            final int valueOuterLen = this.len - valueOuterOffset;
+
+            this.handler.handleAttribute(
+                    this.buffer,
+                    nameOffset, nameLen, line, col,
+                    operatorOffset, 1, line, col,
+                    valueContentOffset, valueContentLen,
+                    valueOuterOffset, valueOuterLen, line, col);
+
+        }
+
+
+        private void emitText(final Text text) throws ParseException {
+
+            this.len = 0;
+            append(text.getContent());
+            if (this.len == 0) {
+                // The parser never produces empty texts
+                return;
+            }
+
+            this.handler.handleText(this.buffer, 0, this.len, lineOf(text, -1), colOf(text, -1));
+
+        }
+
+
+        private void emitCDATASection(final CDATASection cdataSection) throws ParseException {
+
+            this.len = 0;
+            append(CDATA_PREFIX);
+            final int contentOffset = this.len;
+            append(cdataSection.getContent());
+            final int contentLen = this.len - contentOffset;
+            append(CDATA_SUFFIX);
+
+            this.handler.handleCDATASection(
+                    this.buffer, contentOffset, contentLen, 0, this.len,
+                    lineOf(cdataSection, -1), colOf(cdataSection, -1));
+
+        }
+
+
+        private void emitComment(final Comment comment) throws ParseException {
+
+            this.len = 0;
+            append(COMMENT_PREFIX);
+            final int contentOffset = this.len;
+            append(comment.getContent());
+            final int contentLen = this.len - contentOffset;
+            append(COMMENT_SUFFIX);
+
+            this.handler.handleComment(
+                    this.buffer, contentOffset, contentLen, 0, this.len,
+                    lineOf(comment, -1), colOf(comment, -1));
+
+        }
+
+
+        private void emitDocType(final DocType docType) throws ParseException {
+
+            final int line = lineOf(docType, -1);
+            final int col = colOf(docType, -1);
+
+            final String publicId = docType.getPublicId();
+            final String systemId = docType.getSystemId();
+            final String internalSubset = docType.getInternalSubset();
+
+            this.len = 0;
+            append('<');
+            append('!');
+            final int keywordOffset = this.len;
+            append(DOCTYPE_KEYWORD);
+            final int keywordLen = this.len - keywordOffset;
+
+            append(' ');
+            final int elementNameOffset = this.len;
+            append(docType.getRootElementName());
+            final int elementNameLen = this.len - elementNameOffset;
+
+            int typeOffset = 0, typeLen = 0;
+            int publicIdOffset = 0, publicIdLen = 0;
+            int systemIdOffset = 0, systemIdLen = 0;
+            int internalSubsetOffset = 0, internalSubsetLen = 0;
+
+            if (publicId != null || systemId != null) {
+                append(' ');
+                typeOffset = this.len;
+                append(publicId == null? DOCTYPE_SYSTEM : DOCTYPE_PUBLIC);
+                typeLen = this.len - typeOffset;
+                if (publicId != null) {
+                    append(' ');
+                    append('"');
+                    publicIdOffset = this.len;
+                    append(publicId);
+                    publicIdLen = this.len - publicIdOffset;
+                    append('"');
+                }
+                if (systemId != null) {
+                    append(' ');
+                    append('"');
+                    systemIdOffset = this.len;
+                    append(systemId);
+                    systemIdLen = this.len - systemIdOffset;
+                    append('"');
+                }
+            }
+
+            if (internalSubset != null) {
+                append(' ');
+                append('[');
+                internalSubsetOffset = this.len;
+                append(internalSubset);
+                internalSubsetLen = this.len - internalSubsetOffset;
+                append(']');
+            }
+
+            append('>');
+
+            this.handler.handleDocType(
+                    this.buffer,
+                    keywordOffset, keywordLen, line, col,
+                    elementNameOffset, elementNameLen, line, col,
+                    typeOffset, typeLen, line, col,
+                    publicIdOffset, publicIdLen, line, col,
+                    systemIdOffset, systemIdLen, line, col,
+                    internalSubsetOffset, internalSubsetLen, line, col,
+                    0, this.len, line, col);
+
+        }
+
+
+        private void emitXmlDeclaration(final XmlDeclaration xmlDeclaration) throws ParseException {
+
+            final int line = lineOf(xmlDeclaration, -1);
+            final int col = colOf(xmlDeclaration, -1);
+
+            final String encoding = xmlDeclaration.getEncoding();
+            final String standalone = xmlDeclaration.getStandalone();
+
+            this.len = 0;
+            append('<');
+            append('?');
+            final int keywordOffset = this.len;
+            append(XML_DECLARATION_KEYWORD);
+            final int keywordLen = this.len - keywordOffset;
+
+            append(XML_DECLARATION_VERSION);
+            append('"');
+            final int versionOffset = this.len;
+            append(xmlDeclaration.getVersion());
+            final int versionLen = this.len - versionOffset;
+            append('"');
+
+            int encodingOffset = 0, encodingLen = 0;
+            int standaloneOffset = 0, standaloneLen = 0;
+
+            if (encoding != null) {
+                append(XML_DECLARATION_ENCODING);
+                append('"');
+                encodingOffset = this.len;
+                append(encoding);
+                encodingLen = this.len - encodingOffset;
+                append('"');
+            }
+
+            if (standalone != null) {
+                append(XML_DECLARATION_STANDALONE);
+                append('"');
+                standaloneOffset = this.len;
+                append(standalone);
+                standaloneLen = this.len - standaloneOffset;
+                append('"');
+            }
+
+            append('?');
+            append('>');
+
+            this.handler.handleXmlDeclaration(
+                    this.buffer,
+                    keywordOffset, keywordLen, line, col,
+                    versionOffset, versionLen, line, col,
+                    encodingOffset, encodingLen, line, col,
+                    standaloneOffset, standaloneLen, line, col,
+                    0, this.len, line, col);
+
+        }
+
+
+        private void emitProcessingInstruction(final ProcessingInstruction processingInstruction)
+                throws ParseException {
+
+            final int line = lineOf(processingInstruction, -1);
+            final int col = colOf(processingInstruction, -1);
+
+            final String content = processingInstruction.getContent();
+
+            this.len = 0;
+            append('<');
+            append('?');
+            final int targetOffset = this.len;
+            append(processingInstruction.getTarget());
+            final int targetLen = this.len - targetOffset;
+
+            int contentOffset = 0, contentLen = 0;
+            if (content != null) {
+                append(' ');
+                contentOffset = this.len;
+                append(content);
+                contentLen = this.len - contentOffset;
+            }
+
+            append('?');
+            append('>');
+
+            this.handler.handleProcessingInstruction(
+                    this.buffer,
+                    targetOffset, targetLen, line, col,
+                    contentOffset, contentLen, line, col,
+                    0, this.len, line, col);
+
+        }
+
+
+
+
+        private void append(final char c) {
+            ensureCapacity(1);
+            this.buffer[this.len++] = c;
+        }
+
+        private void append(final char[] chars) {
+            ensureCapacity(chars.length);
+            System.arraycopy(chars, 0, this.buffer, this.len, chars.length);
+            this.len += chars.length;
+        }
+
+        private void append(final String str) {
+            final int strLen = str.length();
+            ensureCapacity(strLen);
+            str.getChars(0, strLen, this.buffer, this.len);
+            this.len += strLen;
+        }
+
+        private void ensureCapacity(final int additional) {
+            if (this.len + additional > this.buffer.length) {
+                final char[] newBuffer = new char[Math.max(this.len + additional, this.buffer.length * 2)];
+                System.arraycopy(this.buffer, 0, newBuffer, 0, this.len);
+                this.buffer = newBuffer;
+            }
+        }
+
+    }
+
+
+}
@@ -155,8 +155,9 @@ public static void writeDocument(final Document document, final Writer writer) t
             return;
         }
         
-        for (final INode child : document.getChildren()) {
-            write(child, writer);
+        final int childrenLen = document.numChildren();
+        for (int i = 0; i < childrenLen; i++) {
+            write(document.getChild(i), writer);
         }
         
     }
@@ -188,8 +189,9 @@ public static void writeElement(final Element element, final Writer writer) thro
         
         writer.write('>');
 
-        for (final INode child : element.getChildren()) {
-            write(child, writer);
+        final int childrenLen = element.numChildren();
+        for (int i = 0; i < childrenLen; i++) {
+            write(element.getChild(i), writer);
         }
 
         
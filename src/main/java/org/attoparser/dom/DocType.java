@@ -67,6 +67,7 @@ public String getRootElementName() {
     }
     
     public void setRootElementName(final String rootElementName) {
+        checkNotFrozen();
         if (rootElementName == null) {
             throw new IllegalArgumentException("Root element name cannot be null");
         }
@@ -79,6 +80,7 @@ public String getPublicId() {
     }
     
     public void setPublicId(final String publicId) {
+        checkNotFrozen();
         this.publicId = publicId;
     }
     
@@ -88,6 +90,7 @@ public String getSystemId() {
     }
     
     public void setSystemId(final String systemId) {
+        checkNotFrozen();
         this.systemId = systemId;
     }
     
@@ -97,6 +100,7 @@ public String getInternalSubset() {
     }
     
     public void setInternalSubset(final String internalSubset) {
+        checkNotFrozen();
         this.internalSubset = internalSubset;
     }
 
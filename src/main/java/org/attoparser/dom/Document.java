@@ -20,6 +20,13 @@
 package org.attoparser.dom;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.attoparser.select.DOMMarkupSelector;
 
 
 /**
@@ -41,6 +48,10 @@
     
     
     private String documentName = null;
+
+    // Element indexes, only computed once the document is frozen
+    private Map<String,List<Element>> elementsByName = null;
+    private Map<String,List<Element>> elementsByCaseInsensitiveName = null;
     
     
     public Document(final String documentName) {
@@ -55,12 +66,216 @@ public String getDocumentName() {
 
 
     public void setDocumentName(final String documentName) {
+        checkNotFrozen();
         this.documentName = documentName;
     }
 
 
     
     
+    /*
+     * **********************
+     *  FREEZING AND FORKING
+     * **********************
+     */
+
+
+    /**
+     * <p>
+     *   Freezes this document, turning it (and all of its descendant nodes) read-only.
+     * </p>
+     * <p>
+     *   Once frozen, any attempt to modify the document or its nodes will raise an
+     *   {@link UnsupportedOperationException}, and the structures needed for reading the tree (children arrays,
+     *   unmodifiable views on children and attributes, element indexes) are precomputed so that reading
+     *   does not allocate or modify any state. This makes frozen documents safe to be shared and read
+     *   concurrently by any number of threads, as long as they are safely published after freezing (e.g. by
+     *   storing them in a concurrent cache).
+     * </p>
+     * <p>
+     *   Modifiable versions of frozen documents can be obtained by means of {@link #fork()}.
+     * </p>
+     * <p>
+     *   Freezing can only be performed on trees composed of the node implementations in this package.
+     * </p>
+     *
+     * @return this same document, already frozen.
+     */
+    public Document freeze() {
+
+        if (isFrozen()) {
+            return this;
+        }
+
+        final TreeWalker walker = new TreeWalker(this);
+
+        // Check first, so that we never leave a partially frozen tree behind
+        INode node;
+        while ((node = walker.next()) != null) {
+            if (!(node instanceof AbstractNode)) {
+                throw new IllegalStateException(
+                        "Cannot freeze document: node implementation " + node.getClass().getName() + " " +
+                        "does not support freezing");
+            }
+        }
+
+        final Map<String,List<Element>> byName = new HashMap<String, List<Element>>();
+        final Map<String,List<Element>> byCaseInsensitiveName = new HashMap<String, List<Element>>();
+
+        walker.reset(this);
+        while ((node = walker.next()) != null) {
+            ((AbstractNode) node).freezeNode();
+            if (node instanceof Element) {
+                final Element element = (Element) node;
+                addToIndex(byName, element.getElementName(), element);
+                addToIndex(byCaseInsensitiveName, foldCase(element.getElementName()), element);
+            }
+        }
+
+        this.elementsByName = unmodifiableIndex(byName);
+        this.elementsByCaseInsensitiveName = unmodifiableIndex(byCaseInsensitiveName);
+
+        return this;
+
+    }
+
+
+    /**
+     * <p>
+     *   Creates a modifiable copy of this document.
+     * </p>
+     * <p>
+     *   If this document is frozen, the copy will be a lazy, copy-on-write <em>fork</em>: the children of each
+     *   node will only be copied when they are first accessed, so the cost of forking is proportional to
+     *   the part of the tree actually navigated or modified, not to the size of the whole document. If this
+     *   document is not frozen, a complete copy of the tree is performed.
+     * </p>
+     * <p>
+     *   Forks are not frozen (they can be frozen themselves if needed), and they never modify the document
+     *   they were forked from.
+     * </p>
+     *
+     * @return the new, modifiable document.
+     */
+    public Document fork() {
+
+        final Document document = new Document(this.documentName);
+        document.setLine(getLine());
+        document.setCol(getCol());
+
+        if (isFrozen()) {
+            document.initFork(this);
+            return document;
+        }
+
+        final int childrenLen = numChildren();
+        for (int i = 0; i < childrenLen; i++) {
+            document.addChild(getChild(i).cloneNode(document));
+        }
+        return document;
+
+    }
+
+
+
+
+    /*
+     * *********
+     *  INDEXES
+     * *********
+     */
+
+
+    public List<Element> getElementsByName(final boolean html, final String elementName) {
+
+        if (elementName == null) {
+            throw new IllegalArgumentException("Element name cannot be null");
+        }
+
+        if (isFrozen()) {
+            final List<Element> elements =
+                    (html?
+                            this.elementsByCaseInsensitiveName.get(foldCase(elementName)) :
+                            this.elementsByName.get(elementName));
+            if (elements == null) {
+                return Collections.emptyList();
+            }
+            return elements;
+        }
+
+        final List<Element> elements = new ArrayList<Element>(5);
+        final TreeWalker walker = new TreeWalker(this);
+        INode node;
+        while ((node = walker.next()) != null) {
+            if (node instanceof Element) {
+                final Element element = (Element) node;
+                final boolean matches =
+                        (html?
+                                element.getElementName().equalsIgnoreCase(elementName) :
+                                element.elementNameMatches(elementName));
+                if (matches) {
+                    elements.add(element);
+                }
+            }
+        }
+        return Collections.unmodifiableList(elements);
+
+    }
+
+
+    private static void addToIndex(final Map<String,List<Element>> index, final String key, final Element element) {
+        List<Element> elements = index.get(key);
+        if (elements == null) {
+            elements = new ArrayList<Element>(2);
+            index.put(key, elements);
+        }
+        elements.add(element);
+    }
+
+
+    private static Map<String,List<Element>> unmodifiableIndex(final Map<String,List<Element>> index) {
+        for (final Map.Entry<String,List<Element>> entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return index;
+    }
+
+
+    /*
+     * Same per-char case folding as String#equalsIgnoreCase, so that all names considered equal in a
+     * case-insensitive comparison share the same key.
+     */
+    private static String foldCase(final String name) {
+        final int nameLen = name.length();
+        final char[] folded = new char[nameLen];
+        for (int i = 0; i < nameLen; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return new String(folded);
+    }
+
+
+
+
+    /*
+     * ***********
+     *  SELECTION
+     * ***********
+     */
+
+
+    public Iterable<INode> select(final boolean html, final String selector) {
+        return new DOMMarkupSelector(html, selector).select(this);
+    }
+
+
+    public INode selectFirst(final boolean html, final String selector) {
+        return new DOMMarkupSelector(html, selector).selectFirst(this);
+    }
+
+
+
+
     public Document cloneNode(INestableNode parent) {
         final Document document = new Document(this.documentName);
         document.setLine(getLine());
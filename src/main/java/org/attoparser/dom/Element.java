@@ -24,6 +24,8 @@
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.attoparser.select.DOMMarkupSelector;
+
 
 /**
  * <p>
@@ -45,6 +47,8 @@ public class Element
     
     private Map<String,String> attributes = null;
     private int attributesLen = 0;
+
+    private Map<String,String> frozenAttributeMap = null;
     
 
 
@@ -65,6 +69,7 @@ public String getElementName() {
     }
     
     public void setElementName(final String name) {
+        checkNotFrozen();
         if (name == null) {
             throw new IllegalArgumentException("Element name cannot be null");
         }
@@ -117,6 +122,9 @@ public String getAttributeValue(final String attributeName) {
     
     
     public Map<String,String> getAttributeMap() {
+        if (this.frozenAttributeMap != null) {
+            return this.frozenAttributeMap;
+        }
         if (this.attributesLen > 0) {
             return Collections.unmodifiableMap(this.attributes);
         }
@@ -127,6 +135,7 @@ public Map<String,String> getAttributeMap() {
     
 
     public void addAttribute(final String attributeName, final String attributeValue) {
+        checkNotFrozen();
         
         if (this.attributesLen == 0) {
             this.attributes = new LinkedHashMap<String, String>();
@@ -138,6 +147,7 @@ public void addAttribute(final String attributeName, final String attributeValue
 
 
     public void addAttributes(final Map<String,String> newAttributes) {
+        checkNotFrozen();
         
         if (newAttributes != null) {
             if (this.attributesLen == 0) {
@@ -153,6 +163,7 @@ public void addAttributes(final Map<String,String> newAttributes) {
     
     
     public void removeAttribute(final String attributeName) {
+        checkNotFrozen();
         
         if (this.attributesLen > 0) {
             
@@ -172,6 +183,7 @@ public void removeAttribute(final String attributeName) {
     
     
     public void clearAttributes() {
+        checkNotFrozen();
         this.attributes = null;
         this.attributesLen = 0;
     }
@@ -180,6 +192,53 @@ public void clearAttributes() {
     
 
     
+    /*
+     * ***********
+     *  SELECTION
+     * ***********
+     */
+
+
+    public Iterable<INode> select(final boolean html, final String selector) {
+        return new DOMMarkupSelector(html, selector).select(this);
+    }
+
+
+    public INode selectFirst(final boolean html, final String selector) {
+        return new DOMMarkupSelector(html, selector).selectFirst(this);
+    }
+
+
+
+    /*
+     * **********************
+     *  FREEZING AND FORKING
+     * **********************
+     */
+
+
+    @Override
+    void freezeNode() {
+        super.freezeNode();
+        if (this.attributesLen > 0) {
+            this.frozenAttributeMap = Collections.unmodifiableMap(this.attributes);
+        }
+    }
+
+
+    @Override
+    Element forkNode(final INestableNode parent) {
+        final Element element = new Element(this.elementName);
+        element.addAttributes(this.attributes);
+        element.initFork(this);
+        element.setLine(getLine());
+        element.setCol(getCol());
+        element.setParent(parent);
+        return element;
+    }
+
+
+
     /*
      * *********
      *  CLONING
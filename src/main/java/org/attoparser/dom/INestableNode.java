@@ -39,6 +39,8 @@ public interface INestableNode extends INode {
     public boolean hasChildren();
     public int numChildren();
     
+    public INode getChild(final int index);
+    
     public List<INode> getChildren();
     public <T extends INode> List<T> getChildrenOfType(final Class<T> type);
     
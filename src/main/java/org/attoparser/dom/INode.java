@@ -45,6 +45,8 @@ public interface INode {
     public boolean hasParent();
     public INestableNode getParent();
     public void setParent(final INestableNode parent);
+
+    public boolean isFrozen();
    
     public INode cloneNode(final INestableNode parent);
 
@@ -0,0 +1,78 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+
+
+
+/**
+ * <p>
+ *   Interface for visitors of DOM trees, applied by means of {@link TreeWalker#walk(INodeVisitor)}.
+ * </p>
+ * <p>
+ *   Nodes are visited depth-first, in document order. For each node,
+ *   {@link #enter(INode)} is called first, then its children are visited (unless
+ *   {@link VisitResult#SKIP_CHILDREN} is returned), and then {@link #leave(INode)} is called. Leaf nodes
+ *   (texts, comments, etc.) also receive both calls.
+ * </p>
+ * <p>
+ *   Visitors should not modify the children of the node being entered or any of its ancestors
+ *   during the visit.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public interface INodeVisitor {
+
+    /**
+     * <p>
+     *   Results of entering a node, which determine how the traversal continues.
+     * </p>
+     */
+    public static enum VisitResult {
+
+        /**
+         * Continue the traversal, visiting the children of the node (if any).
+         */
+        CONTINUE,
+
+        /**
+         * Continue the traversal, but do not visit the children of the node.
+         * {@link INodeVisitor#leave(INode)} will still be called for it.
+         */
+        SKIP_CHILDREN,
+
+        /**
+         * Stop the traversal immediately. No more calls (not even {@link INodeVisitor#leave(INode)}
+         * for the current node) will be performed.
+         */
+        TERMINATE
+
+    }
+
+
+    public VisitResult enter(final INode node);
+
+    public void leave(final INode node);
+
+}
@@ -58,6 +58,7 @@ public String getTarget() {
     }
     
     public void setTarget(final String target) {
+        checkNotFrozen();
         if (target == null) {
             throw new IllegalArgumentException("Target cannot be null");
         }
@@ -70,6 +71,7 @@ public String getContent() {
     }
     
     public void setContent(final String content) {
+        checkNotFrozen();
         this.content = content;
     }
 
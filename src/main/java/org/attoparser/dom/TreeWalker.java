@@ -0,0 +1,313 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+
+
+
+/**
+ * <p>
+ *   Cursor for depth-first (document order) traversal of a DOM tree or subtree.
+ * </p>
+ * <p>
+ *   The walker keeps its path from the root node in an explicit stack of ancestors and child indexes,
+ *   so it neither recurses nor allocates anything per step (only when the maximum depth reached so
+ *   far grows). A walker can be reused for traversing other trees by means of {@link #reset(INode)}.
+ * </p>
+ * <p>
+ *   The walker starts positioned <em>before</em> the root node, so the first call to {@link #next()}
+ *   returns the root node itself:
+ * </p>
+ * <pre><code>
+ *   final TreeWalker walker = new TreeWalker(document);
+ *   INode node;
+ *   while ((node = walker.next()) != null) {
+ *       if (node instanceof Element &amp;&amp; "script".equals(((Element)node).getElementName())) {
+ *           walker.skipChildren();
+ *       }
+ *       ...
+ *   }
+ * </code></pre>
+ * <p>
+ *   Walkers can also apply {@link INodeVisitor} implementations by means of {@link #walk(INodeVisitor)}.
+ * </p>
+ * <p>
+ *   Modifying the children of the current node or any of its ancestors during traversal is not supported.
+ * </p>
+ * <p>
+ *   This class is <strong>not thread-safe</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class TreeWalker {
+
+    private static final int DEFAULT_STACK_SIZE = 10;
+
+    private INode root;
+    private INode current;
+
+    private INestableNode[] ancestors;
+    private int[] indexes;
+    private int depth;
+
+    private boolean started;
+    private boolean skipChildren;
+
+
+
+
+    public TreeWalker(final INode root) {
+        super();
+        this.ancestors = new INestableNode[DEFAULT_STACK_SIZE];
+        this.indexes = new int[DEFAULT_STACK_SIZE];
+        reset(root);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Resets this walker so that it starts traversing the specified node, reusing its internal structures.
+     * </p>
+     *
+     * @param root the new root node.
+     */
+    public void reset(final INode root) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root node cannot be null");
+        }
+        for (int i = 0; i < this.depth; i++) {
+            this.ancestors[i] = null;
+        }
+        this.root = root;
+        this.current = null;
+        this.depth = 0;
+        this.started = false;
+        this.skipChildren = false;
+    }
+
+
+    public INode getRoot() {
+        return this.root;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the node the walker is currently positioned at, or <tt>null</tt> if traversal has not
+     *   started yet or has already finished.
+     * </p>
+     *
+     * @return the current node.
+     */
+    public INode getCurrentNode() {
+        return this.current;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the depth of the current node relative to the root node (which has depth <tt>0</tt>).
+     * </p>
+     *
+     * @return the current depth.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Moves to the next node in document order, descending into the children of the current node
+     *   unless {@link #skipChildren()} has been called for it.
+     * </p>
+     *
+     * @return the new current node, or <tt>null</tt> if there are no more nodes under the root.
+     */
+    public INode next() {
+
+        if (!this.started) {
+            this.started = true;
+            this.current = this.root;
+            return this.current;
+        }
+
+        if (this.current == null) {
+            return null;
+        }
+
+        final boolean skip = this.skipChildren;
+        this.skipChildren = false;
+
+        if (!skip && this.current instanceof INestableNode) {
+            final INestableNode nestableNode = (INestableNode) this.current;
+            if (nestableNode.hasChildren()) {
+                push(nestableNode);
+                this.current = nestableNode.getChild(0);
+                return this.current;
+            }
+        }
+
+        this.current = nextSibling();
+        return this.current;
+
+    }
+
+
+    /**
+     * <p>
+     *   Signals that the next call to {@link #next()} should not descend into the children of the
+     *   current node.
+     * </p>
+     */
+    public void skipChildren() {
+        this.skipChildren = true;
+    }
+
+
+    /**
+     * <p>
+     *   Moves to the parent of the current node, as long as the current node is not the root.
+     * </p>
+     * <p>
+     *   As the children of the parent node have already been (at least partially) traversed, the next call
+     *   to {@link #next()} after this will not descend into them again, but continue with the node following
+     *   the parent in document order (as if {@link #skipChildren()} had been called for it).
+     * </p>
+     *
+     * @return the new current node, or <tt>null</tt> (without moving) if the current node is the root or
+     *         traversal has not started yet or has already finished.
+     */
+    public INode parent() {
+        if (this.current == null || this.depth == 0) {
+            return null;
+        }
+        this.depth--;
+        this.current = this.ancestors[this.depth];
+        this.ancestors[this.depth] = null;
+        this.skipChildren = true;
+        return this.current;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Applies a visitor to all the nodes under the root node (root included), in document order.
+     * </p>
+     * <p>
+     *   This resets the walker both before and after traversal.
+     * </p>
+     *
+     * @param visitor the visitor to be applied.
+     * @return <tt>true</tt> if traversal completed, <tt>false</tt> if it was terminated by the visitor.
+     */
+    public boolean walk(final INodeVisitor visitor) {
+
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor cannot be null");
+        }
+
+        reset(this.root);
+
+        INode node = this.root;
+        while (node != null) {
+
+            final INodeVisitor.VisitResult result = visitor.enter(node);
+
+            if (result == INodeVisitor.VisitResult.TERMINATE) {
+                reset(this.root);
+                return false;
+            }
+
+            if (result != INodeVisitor.VisitResult.SKIP_CHILDREN && node instanceof INestableNode) {
+                final INestableNode nestableNode = (INestableNode) node;
+                if (nestableNode.hasChildren()) {
+                    push(nestableNode);
+                    node = nestableNode.getChild(0);
+                    continue;
+                }
+            }
+
+            visitor.leave(node);
+
+            // Move to the next sibling, leaving all the ancestors that have no more children to visit
+            node = null;
+            while (this.depth > 0) {
+                final INestableNode parent = this.ancestors[this.depth - 1];
+                final int index = ++this.indexes[this.depth - 1];
+                if (index < parent.numChildren()) {
+                    node = parent.getChild(index);
+                    break;
+                }
+                this.depth--;
+                this.ancestors[this.depth] = null;
+                visitor.leave(parent);
+            }
+
+        }
+
+        reset(this.root);
+        return true;
+
+    }
+
+
+
+
+    private INode nextSibling() {
+        while (this.depth > 0) {
+            final INestableNode parent = this.ancestors[this.depth - 1];
+            final int index = ++this.indexes[this.depth - 1];
+            if (index < parent.numChildren()) {
+                return parent.getChild(index);
+            }
+            this.depth--;
+            this.ancestors[this.depth] = null;
+        }
+        return null;
+    }
+
+
+    private void push(final INestableNode node) {
+        if (this.depth == this.ancestors.length) {
+            final INestableNode[] newAncestors = new INestableNode[this.ancestors.length + DEFAULT_STACK_SIZE];
+            final int[] newIndexes = new int[this.indexes.length + DEFAULT_STACK_SIZE];
+            System.arraycopy(this.ancestors, 0, newAncestors, 0, this.ancestors.length);
+            System.arraycopy(this.indexes, 0, newIndexes, 0, this.indexes.length);
+            this.ancestors = newAncestors;
+            this.indexes = newIndexes;
+        }
+        this.ancestors[this.depth] = node;
+        this.indexes[this.depth] = 0;
+        this.depth++;
+    }
+
+
+}
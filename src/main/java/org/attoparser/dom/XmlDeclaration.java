@@ -64,6 +64,7 @@ public String getVersion() {
     }
     
     public void setVersion(final String version) {
+        checkNotFrozen();
         if (version == null) {
             throw new IllegalArgumentException("Version cannot be null");
         }
@@ -76,6 +77,7 @@ public String getEncoding() {
     }
     
     public void setEncoding(final String encoding) {
+        checkNotFrozen();
         this.encoding = encoding;
     }
     
@@ -85,6 +87,7 @@ public String getStandalone() {
     }
     
     public void setStandalone(final String standalone) {
+        checkNotFrozen();
         this.standalone = standalone;
     }
 
@@ -0,0 +1,455 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.minimize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.attoparser.AbstractChainedMarkupHandler;
+import org.attoparser.ParseException;
+import org.attoparser.output.ByteOutputMarkupHandler;
+
+
+/**
+ * <p>
+ *   Implementation of {@link org.attoparser.IMarkupHandler} used for writing received parsing events as
+ *   <strong>compressed</strong> markup output (GZIP, ZLIB or raw DEFLATE formats), normally at the end of a
+ *   handler chain starting with a {@link MinimizeHtmlMarkupHandler}.
+ * </p>
+ * <p>
+ *   Markup is encoded as UTF-8 by a {@link ByteOutputMarkupHandler} and directly fed into a
+ *   {@link java.util.zip.Deflater}, so that minimized and compressed output can be produced in one single pass,
+ *   without the need to keep the whole minimized document in memory. Memory use is therefore limited to the
+ *   encoding buffer plus the compressor's own window.
+ * </p>
+ * <p>
+ *   Output is flushed at HTML <em>block element</em> boundaries (after the tags of elements like
+ *   <tt>&lt;div&gt;</tt>, <tt>&lt;p&gt;</tt> or <tt>&lt;li&gt;</tt>), once at least a certain amount of
+ *   bytes (the <em>flush threshold</em>) has been produced since the last flush. At these flush points all
+ *   encoded output is passed to the compressed stream, and the compressed stream is flushed.
+ * </p>
+ * <p>
+ *   When running on Java 7 or newer, streams created by this class perform a <em>sync flush</em> of the
+ *   compressor at flush points, so that all output produced so far can be fully decompressed (and rendered)
+ *   by clients as soon as it arrives. On Java 6 the compressor cannot be sync-flushed, and flush points only
+ *   flush the compressed data the compressor has already made available. When an existing
+ *   {@link java.util.zip.DeflaterOutputStream} is passed to this handler, its own flushing behaviour applies.
+ * </p>
+ * <p>
+ *   At the end of the document the compressed stream is finished and the underlying output stream is
+ *   flushed, but none of them are closed.
+ * </p>
+ * <p>
+ *   Compressed streams created by this class use a {@link java.util.zip.Deflater} holding native memory,
+ *   which is released at the end of the document. As handlers are not notified when parsing fails, callers
+ *   should always call {@link #close()} once parsing finishes (normally in a <tt>finally</tt> block) so that
+ *   this memory is also released when it fails. Closing never closes the underlying output stream.
+ * </p>
+ * <p>
+ *   Note that, as with most handlers, this class is <strong>not thread-safe</strong>. Also, instances of this class
+ *   should not be reused across parsing operations.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final DeflaterOutputMarkupHandler outputHandler = new DeflaterOutputMarkupHandler(outputStream);
+ *   try {
+ *       parser.parse(document, new MinimizeHtmlMarkupHandler(MinimizeMode.COMPLETE, outputHandler));
+ *   } finally {
+ *       outputHandler.close();
+ *   }
+ * </code></pre>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class DeflaterOutputMarkupHandler extends AbstractChainedMarkupHandler implements Closeable {
+
+    /**
+     * <p>
+     *   Enumeration for the compressed formats that can be produced.
+     * </p>
+     * <ul>
+     *     <li>{@link #GZIP} for GZIP format (RFC 1952), as used in <tt>Content-Encoding: gzip</tt>.</li>
+     *     <li>{@link #ZLIB} for ZLIB format (RFC 1950), as used in <tt>Content-Encoding: deflate</tt>.</li>
+     *     <li>{@link #DEFLATE} for raw DEFLATE data (RFC 1951), without any header or checksum.</li>
+     * </ul>
+     */
+    public enum CompressionFormat { GZIP, ZLIB, DEFLATE }
+
+
+    /**
+     * Default amount of bytes to be produced between flush points.
+     */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 16384;
+
+
+    /*
+     * Deflater.deflate(byte[],int,int,int) and Deflater.SYNC_FLUSH only exist since Java 7, so they are
+     * accessed through reflection in order to keep Java 6 compatibility.
+     */
+    private static final Method DEFLATE_WITH_FLUSH_MODE_METHOD;
+    private static final Integer SYNC_FLUSH = Integer.valueOf(2);
+
+    static {
+        Method deflateWithFlushModeMethod = null;
+        try {
+            deflateWithFlushModeMethod =
+                    Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+        } catch (final NoSuchMethodException ignored) {
+            // Java 6: flush points will only flush the compressed data already available
+        }
+        DEFLATE_WITH_FLUSH_MODE_METHOD = deflateWithFlushModeMethod;
+    }
+
+
+    private final ByteOutputMarkupHandler byteHandler;
+    private final DeflaterOutputStream compressedStream;
+    private final Deflater deflater; // Only if created by this class (and therefore must be ended here)
+    private final int flushThreshold;
+
+    private long lastFlushByteCount = 0L;
+
+
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, producing GZIP output with default compression level.
+     * </p>
+     *
+     * @param outputStream the output stream to which compressed output will be written.
+     * @throws IOException if the GZIP header cannot be written.
+     */
+    public DeflaterOutputMarkupHandler(final OutputStream outputStream) throws IOException {
+        this(outputStream, CompressionFormat.GZIP, Deflater.DEFAULT_COMPRESSION, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, specifying the compression format and level.
+     * </p>
+     *
+     * @param outputStream the output stream to which compressed output will be written.
+     * @param format the compressed format to be produced.
+     * @param level the compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION}).
+     * @throws IOException if the GZIP header cannot be written.
+     */
+    public DeflaterOutputMarkupHandler(
+            final OutputStream outputStream, final CompressionFormat format, final int level) throws IOException {
+        this(outputStream, format, level, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, specifying the compression format and level, and the amount of
+     *   bytes to be produced between flush points.
+     * </p>
+     *
+     * @param outputStream the output stream to which compressed output will be written.
+     * @param format the compressed format to be produced.
+     * @param level the compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION}).
+     * @param flushThreshold the minimum amount of (uncompressed) bytes between flush points, or
+     *                       <tt>-1</tt> for never flushing before the end of the document.
+     * @throws IOException if the GZIP header cannot be written.
+     */
+    public DeflaterOutputMarkupHandler(
+            final OutputStream outputStream, final CompressionFormat format, final int level,
+            final int flushThreshold) throws IOException {
+        this(createCompressedStream(outputStream, format, level), flushThreshold, true);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, writing to an already existing compressed stream.
+     * </p>
+     * <p>
+     *   This allows using any kind of {@link java.util.zip.DeflaterOutputStream} (e.g. one created with
+     *   <em>sync flush</em> mode enabled). The stream will be finished at the end of the document, but
+     *   neither closed nor its deflater ended.
+     * </p>
+     *
+     * @param compressedStream the compressed stream to which output will be written.
+     * @param flushThreshold the minimum amount of (uncompressed) bytes between flush points, or
+     *                       <tt>-1</tt> for never flushing before the end of the document.
+     */
+    public DeflaterOutputMarkupHandler(final DeflaterOutputStream compressedStream, final int flushThreshold) {
+        this(compressedStream, flushThreshold, false);
+    }
+
+
+    private DeflaterOutputMarkupHandler(
+            final DeflaterOutputStream compressedStream, final int flushThreshold, final boolean ownDeflater) {
+        super(new ByteOutputMarkupHandler(checkNotNull(compressedStream)));
+        if (flushThreshold < -1) {
+            throw new IllegalArgumentException("Flush threshold cannot be less than -1");
+        }
+        this.byteHandler = (ByteOutputMarkupHandler) getNext();
+        this.compressedStream = compressedStream;
+        this.deflater =
+                (ownDeflater? ((ICompressedStream) compressedStream).getDeflater() : null);
+        this.flushThreshold = flushThreshold;
+    }
+
+
+
+
+    private static DeflaterOutputStream checkNotNull(final DeflaterOutputStream compressedStream) {
+        if (compressedStream == null) {
+            throw new IllegalArgumentException("Compressed stream cannot be null");
+        }
+        return compressedStream;
+    }
+
+
+    private static DeflaterOutputStream createCompressedStream(
+            final OutputStream outputStream, final CompressionFormat format, final int level) throws IOException {
+
+        if (outputStream == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("Compression format cannot be null");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+
+        if (CompressionFormat.GZIP.equals(format)) {
+            return new GZIPCompressedStream(outputStream, level);
+        }
+        return new DeflaterCompressedStream(outputStream, new Deflater(level, CompressionFormat.DEFLATE.equals(format)));
+
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the amount of uncompressed bytes of output produced by this handler so far.
+     * </p>
+     *
+     * @return the amount of uncompressed bytes produced.
+     */
+    public long getUncompressedByteCount() {
+        return this.byteHandler.getByteCount();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Releases the resources held by the compressor, if it was created by this handler. This is done
+     *   automatically at the end of the document, but should be also done when parsing fails. Calling this
+     *   method more than once (or after the end of the document) has no effect. Neither the compressed stream
+     *   nor the underlying output stream are closed.
+     * </p>
+     */
+    public void close() {
+        if (this.deflater != null) {
+            this.deflater.end();
+        }
+    }
+
+
+
+
+    private void checkFlushPoint(final char[] buffer, final int nameOffset, final int nameLen) throws ParseException {
+
+        if (this.flushThreshold < 0 ||
+                this.byteHandler.getByteCount() - this.lastFlushByteCount < this.flushThreshold ||
+                !MinimizeHtmlMarkupHandler.isBlockElement(buffer, nameOffset, nameLen)) {
+            return;
+        }
+
+        try {
+            this.byteHandler.flush();
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+        this.lastFlushByteCount = this.byteHandler.getByteCount();
+
+    }
+
+
+
+
+    @Override
+    public void handleDocumentEnd(
+            final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
+            throws ParseException {
+
+        // This will write all remaining output to the compressed stream
+        super.handleDocumentEnd(endTimeNanos, totalTimeNanos, line, col);
+
+        try {
+            this.compressedStream.finish();
+            close();
+            this.compressedStream.flush();
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleStandaloneElementEnd(
+            final char[] buffer, final int nameOffset, final int nameLen,
+            final boolean minimized, final int line, final int col)
+            throws ParseException {
+        super.handleStandaloneElementEnd(buffer, nameOffset, nameLen, minimized, line, col);
+        checkFlushPoint(buffer, nameOffset, nameLen);
+    }
+
+
+
+
+    @Override
+    public void handleOpenElementEnd(
+            final char[] buffer, final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        super.handleOpenElementEnd(buffer, nameOffset, nameLen, line, col);
+        checkFlushPoint(buffer, nameOffset, nameLen);
+    }
+
+
+
+
+    @Override
+    public void handleCloseElementEnd(
+            final char[] buffer, final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        super.handleCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        checkFlushPoint(buffer, nameOffset, nameLen);
+    }
+
+
+
+
+    @Override
+    public void handleAutoCloseElementEnd(
+            final char[] buffer, final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        super.handleAutoCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        checkFlushPoint(buffer, nameOffset, nameLen);
+    }
+
+
+
+
+    /*
+     * Performs a sync flush of the deflater (if available) before flushing the underlying output stream, the same
+     * way Java 7+ DeflaterOutputStream does when created in sync flush mode.
+     */
+    private static void syncFlush(final Deflater deflater, final byte[] buf, final OutputStream out)
+            throws IOException {
+
+        if (DEFLATE_WITH_FLUSH_MODE_METHOD != null && !deflater.finished()) {
+            try {
+                int len;
+                while ((len = ((Integer) DEFLATE_WITH_FLUSH_MODE_METHOD.invoke(
+                                    deflater, buf, Integer.valueOf(0), Integer.valueOf(buf.length), SYNC_FLUSH))
+                                .intValue()) > 0) {
+                    out.write(buf, 0, len);
+                    if (len < buf.length) {
+                        break;
+                    }
+                }
+            } catch (final IllegalAccessException e) {
+                throw new IOException(e);
+            } catch (final InvocationTargetException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+        out.flush();
+
+    }
+
+
+
+
+    /*
+     * Compressed streams created by this class give access to their deflaters so that they can be ended
+     * once finished (without closing the output stream, which is not ours), and sync flush their deflaters
+     * when flushed.
+     */
+    private interface ICompressedStream {
+        Deflater getDeflater();
+    }
+
+
+    private static final class GZIPCompressedStream extends GZIPOutputStream implements ICompressedStream {
+
+        GZIPCompressedStream(final OutputStream outputStream, final int level) throws IOException {
+            super(outputStream);
+            this.def.setLevel(level);
+        }
+
+        public Deflater getDeflater() {
+            return this.def;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            syncFlush(this.def, this.buf, this.out);
+        }
+
+    }
+
+
+    private static final class DeflaterCompressedStream extends DeflaterOutputStream implements ICompressedStream {
+
+        DeflaterCompressedStream(final OutputStream outputStream, final Deflater deflater) {
+            super(outputStream, deflater);
+        }
+
+        public Deflater getDeflater() {
+            return this.def;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            syncFlush(this.def, this.buf, this.out);
+        }
+
+    }
+
+
+}
@@ -0,0 +1,472 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.minimize;
+
+
+/*
+ * Streaming, conservative minimizer for the contents of <script> (JavaScript) and <style> (CSS) elements,
+ * used by MinimizeHtmlMarkupHandler.
+ *
+ * Contents can be fed in any number of fragments (all state is kept between calls), and only comments and
+ * white space are removed, never modifying the contents of strings, template literals or regular expressions:
+ *
+ *   - Comments are removed, and considered as white space.
+ *   - White space sequences are collapsed into one single space (or, in JavaScript, one single line feed if
+ *     they contained any line breaks, so that automatic semicolon insertion is not affected).
+ *   - White space is completely removed only next to punctuation chars that make it irrelevant.
+ *
+ * Output for each fragment is never longer than the input fragment plus two chars.
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+final class InlineCodeMinimizer {
+
+    private static final int CODE = 0;
+    private static final int SINGLE_QUOTED_STRING = 1;
+    private static final int DOUBLE_QUOTED_STRING = 2;
+    private static final int TEMPLATE_LITERAL = 3;
+    private static final int REGULAR_EXPRESSION = 4;
+    private static final int REGULAR_EXPRESSION_CLASS = 5;
+    private static final int LINE_COMMENT = 6;
+    private static final int BLOCK_COMMENT = 7;
+
+    private static final int NO_WHITE_SPACE = 0;
+    private static final int SPACE = 1;
+    private static final int LINE_BREAK = 2;
+
+    // Keywords after which a '/' char starts a regular expression instead of being a division operator
+    private static final String[] REGEX_PRECEDING_KEYWORDS =
+            new String[] {
+                    "await", "case", "delete", "do", "else", "in", "instanceof", "new", "of",
+                    "return", "throw", "typeof", "void", "yield"
+            };
+    private static final int MAX_KEYWORD_LEN = 10;
+
+
+    private boolean javascript;
+
+    private int state;
+    private boolean escaped;
+    private int pendingWhiteSpace;
+    private boolean pendingSlash;
+    private boolean pendingSlashIsRegex;
+    private boolean pendingStar; // for block comments
+    private boolean pendingDollar; // for template literal placeholders
+    private boolean commentHadLineBreak;
+    private char lastChar;
+
+    private final char[] word = new char[MAX_KEYWORD_LEN + 1];
+    private int wordLen;
+
+    private int braceDepth;
+    private int[] templateBraceDepths = new int[4];
+    private int templateLevel;
+
+
+
+    InlineCodeMinimizer() {
+        super();
+    }
+
+
+    void reset(final boolean javascript) {
+        this.javascript = javascript;
+        this.state = CODE;
+        this.escaped = false;
+        this.pendingWhiteSpace = NO_WHITE_SPACE;
+        this.pendingSlash = false;
+        this.pendingSlashIsRegex = false;
+        this.pendingStar = false;
+        this.pendingDollar = false;
+        this.commentHadLineBreak = false;
+        this.lastChar = 0;
+        this.wordLen = 0;
+        this.braceDepth = 0;
+        this.templateLevel = 0;
+    }
+
+
+
+
+    /*
+     * Minimizes a fragment of code, writing the result to the output buffer (which must be able to contain
+     * at least len + 2 chars). Returns the amount of chars written.
+     */
+    int minimize(final char[] buffer, final int offset, final int len, final char[] output) {
+
+        int outputLen = 0;
+
+        final int maxi = offset + len;
+        int i = offset;
+        while (i < maxi) {
+
+            final char c = buffer[i];
+
+            switch (this.state) {
+
+                case CODE:
+
+                    if (this.pendingSlash) {
+                        this.pendingSlash = false;
+                        if (c == '*') {
+                            this.state = BLOCK_COMMENT;
+                            this.pendingStar = false;
+                            this.commentHadLineBreak = false;
+                            i++;
+                            continue;
+                        }
+                        if (this.javascript && c == '/') {
+                            this.state = LINE_COMMENT;
+                            i++;
+                            continue;
+                        }
+                        outputLen = flushWhiteSpace('/', output, outputLen);
+                        output[outputLen++] = '/';
+                        this.lastChar = '/';
+                        if (this.pendingSlashIsRegex) {
+                            this.state = REGULAR_EXPRESSION;
+                            this.escaped = false;
+                        }
+                        // Process the current char again in the new state
+                        continue;
+                    }
+
+                    if (this.escaped) {
+                        // Escaped chars (e.g. in CSS identifiers) are always output as they are
+                        this.escaped = false;
+                        output[outputLen++] = c;
+                        this.lastChar = c;
+                        i++;
+                        continue;
+                    }
+
+                    if (isWhiteSpace(c)) {
+                        if (this.javascript && isLineBreak(c)) {
+                            this.pendingWhiteSpace = LINE_BREAK;
+                        } else if (this.pendingWhiteSpace == NO_WHITE_SPACE) {
+                            this.pendingWhiteSpace = SPACE;
+                        }
+                        i++;
+                        continue;
+                    }
+
+                    if (c == '/') {
+                        this.pendingSlash = true;
+                        this.pendingSlashIsRegex = this.javascript && isRegexAllowed();
+                        i++;
+                        continue;
+                    }
+
+                    outputLen = flushWhiteSpace(c, output, outputLen);
+                    output[outputLen++] = c;
+
+                    if (this.javascript) {
+                        if (isIdentifierChar(c)) {
+                            if (!isIdentifierChar(this.lastChar)) {
+                                this.wordLen = 0;
+                            }
+                            if (this.wordLen <= MAX_KEYWORD_LEN) {
+                                this.word[this.wordLen++] = c;
+                            }
+                        } else if (c == '`') {
+                            this.state = TEMPLATE_LITERAL;
+                            this.escaped = false;
+                            this.pendingDollar = false;
+                        } else if (c == '{') {
+                            this.braceDepth++;
+                        } else if (c == '}') {
+                            if (this.braceDepth == 0 && this.templateLevel > 0) {
+                                // End of a template literal placeholder
+                                this.braceDepth = this.templateBraceDepths[--this.templateLevel];
+                                this.state = TEMPLATE_LITERAL;
+                                this.escaped = false;
+                                this.pendingDollar = false;
+                            } else if (this.braceDepth > 0) {
+                                this.braceDepth--;
+                            }
+                        }
+                    }
+                    if (c == '\\') {
+                        this.escaped = true;
+                    } else if (c == '\'') {
+                        this.state = SINGLE_QUOTED_STRING;
+                        this.escaped = false;
+                    } else if (c == '"') {
+                        this.state = DOUBLE_QUOTED_STRING;
+                        this.escaped = false;
+                    }
+
+                    this.lastChar = c;
+                    i++;
+                    continue;
+
+                case SINGLE_QUOTED_STRING:
+                case DOUBLE_QUOTED_STRING:
+
+                    output[outputLen++] = c;
+                    if (this.escaped) {
+                        this.escaped = false;
+                    } else if (c == '\\') {
+                        this.escaped = true;
+                    } else if (c == (this.state == SINGLE_QUOTED_STRING? '\'' : '"')) {
+                        this.state = CODE;
+                        this.lastChar = c;
+                    }
+                    i++;
+                    continue;
+
+                case TEMPLATE_LITERAL:
+
+                    output[outputLen++] = c;
+                    // An escaped '$' cannot start a placeholder, so we need to know later if this char was escaped
+                    final boolean charEscaped = this.escaped;
+                    if (this.escaped) {
+                        this.escaped = false;
+                    } else if (c == '\\') {
+                        this.escaped = true;
+                    } else if (c == '`') {
+                        this.state = CODE;
+                        this.lastChar = c;
+                    } else if (c == '{' && this.pendingDollar) {
+                        // Start of a template literal placeholder, which contains code
+                        if (this.templateLevel == this.templateBraceDepths.length) {
+                            final int[] newTemplateBraceDepths = new int[this.templateBraceDepths.length * 2];
+                            System.arraycopy(this.templateBraceDepths, 0, newTemplateBraceDepths, 0, this.templateLevel);
+                            this.templateBraceDepths = newTemplateBraceDepths;
+                        }
+                        this.templateBraceDepths[this.templateLevel++] = this.braceDepth;
+                        this.braceDepth = 0;
+                        this.state = CODE;
+                        this.lastChar = c;
+                    }
+                    this.pendingDollar = (!charEscaped && c == '$');
+                    i++;
+                    continue;
+
+                case REGULAR_EXPRESSION:
+                case REGULAR_EXPRESSION_CLASS:
+
+                    if (isLineBreak(c)) {
+                        // Regular expressions cannot contain line breaks, so this was not one after all
+                        this.state = CODE;
+                        continue;
+                    }
+                    output[outputLen++] = c;
+                    if (this.escaped) {
+                        this.escaped = false;
+                    } else if (c == '\\') {
+                        this.escaped = true;
+                    } else if (this.state == REGULAR_EXPRESSION_CLASS) {
+                        if (c == ']') {
+                            this.state = REGULAR_EXPRESSION;
+                        }
+                    } else if (c == '[') {
+                        this.state = REGULAR_EXPRESSION_CLASS;
+                    } else if (c == '/') {
+                        this.state = CODE;
+                        this.lastChar = c;
+                    }
+                    i++;
+                    continue;
+
+                case LINE_COMMENT:
+
+                    if (isLineBreak(c)) {
+                        // The line break will be processed as white space
+                        this.state = CODE;
+                        continue;
+                    }
+                    i++;
+                    continue;
+
+                case BLOCK_COMMENT:
+
+                    if (c == '/' && this.pendingStar) {
+                        this.state = CODE;
+                        if (this.javascript && this.commentHadLineBreak) {
+                            this.pendingWhiteSpace = LINE_BREAK;
+                        } else if (this.pendingWhiteSpace == NO_WHITE_SPACE) {
+                            this.pendingWhiteSpace = SPACE;
+                        }
+                    } else if (isLineBreak(c)) {
+                        this.commentHadLineBreak = true;
+                    }
+                    this.pendingStar = (c == '*');
+                    i++;
+                    continue;
+
+                default:
+                    throw new IllegalStateException("Unknown code minimization state: " + this.state);
+
+            }
+
+        }
+
+        return outputLen;
+
+    }
+
+
+
+
+    /*
+     * Signals the end of the code. Returns the amount of chars written to output (at most 2).
+     */
+    int finish(final char[] output) {
+        int outputLen = 0;
+        if (this.state == CODE && this.pendingSlash) {
+            outputLen = flushWhiteSpace('/', output, outputLen);
+            output[outputLen++] = '/';
+        }
+        this.pendingSlash = false;
+        this.pendingWhiteSpace = NO_WHITE_SPACE;
+        return outputLen;
+    }
+
+
+
+
+    private int flushWhiteSpace(final char next, final char[] output, final int outputLen) {
+
+        final int whiteSpace = this.pendingWhiteSpace;
+        if (whiteSpace == NO_WHITE_SPACE) {
+            return outputLen;
+        }
+        this.pendingWhiteSpace = NO_WHITE_SPACE;
+        this.wordLen = 0;
+
+        if (this.lastChar == 0) {
+            // Leading white space
+            return outputLen;
+        }
+
+        if (!this.javascript) {
+            if (isCssSeparatorBefore(this.lastChar) || isCssSeparatorAfter(next)) {
+                return outputLen;
+            }
+            output[outputLen] = ' ';
+            return outputLen + 1;
+        }
+
+        if (this.lastChar == '/' && (next == '/' || next == '*')) {
+            // Avoid creating comments ('//' or '/*')
+            output[outputLen] = (whiteSpace == LINE_BREAK? '\n' : ' ');
+            return outputLen + 1;
+        }
+
+        if (whiteSpace == LINE_BREAK) {
+            if (isJsLineBreakIrrelevantAfter(this.lastChar) || isJsLineBreakIrrelevantBefore(next)) {
+                return outputLen;
+            }
+            output[outputLen] = '\n';
+            return outputLen + 1;
+        }
+
+        if (isJsPunctuation(this.lastChar) || isJsPunctuation(next)) {
+            return outputLen;
+        }
+        output[outputLen] = ' ';
+        return outputLen + 1;
+
+    }
+
+
+
+
+    private boolean isRegexAllowed() {
+        final char c = this.lastChar;
+        if (c == 0) {
+            return true;
+        }
+        if (isIdentifierChar(c)) {
+            return (this.wordLen <= MAX_KEYWORD_LEN && isRegexPrecedingKeyword(this.word, this.wordLen));
+        }
+        // After closing brackets, strings, template literals and regular expressions, '/' is a division.
+        // After '}' it is normally the start of a regular expression (after a block)
+        return !(c == ')' || c == ']' || c == '\'' || c == '"' || c == '`' || c == '/');
+    }
+
+
+    private static boolean isRegexPrecedingKeyword(final char[] word, final int wordLen) {
+        for (int i = 0; i < REGEX_PRECEDING_KEYWORDS.length; i++) {
+            final String keyword = REGEX_PRECEDING_KEYWORDS[i];
+            if (keyword.length() == wordLen) {
+                int j = 0;
+                while (j < wordLen && keyword.charAt(j) == word[j]) {
+                    j++;
+                }
+                if (j == wordLen) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    private static boolean isIdentifierChar(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '$' || c == '\\' || c > '\u007F';
+    }
+
+
+    private static boolean isWhiteSpace(final char c) {
+        return (c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B'
+                || c == '\u2028' || c == '\u2029');
+    }
+
+
+    private static boolean isLineBreak(final char c) {
+        return (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029');
+    }
+
+
+    private static boolean isCssSeparatorBefore(final char c) {
+        return (c == '{' || c == '}' || c == ';' || c == ',' || c == ':' || c == '>');
+    }
+
+
+    private static boolean isCssSeparatorAfter(final char c) {
+        return (c == '{' || c == '}' || c == ';' || c == ',' || c == '>');
+    }
+
+
+    private static boolean isJsPunctuation(final char c) {
+        // '+', '-', '.', '!' and '<' are not included on purpose ('a + +b', 'a - -b', '1 .x', 'a < !--b')
+        return (c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ']' || c == ';' || c == ','
+                || c == ':' || c == '=' || c == '?' || c == '&' || c == '|' || c == '*' || c == '%' || c == '^'
+                || c == '~' || c == '>');
+    }
+
+
+    private static boolean isJsLineBreakIrrelevantAfter(final char c) {
+        // Automatic semicolon insertion never happens after these
+        return (c == '{' || c == '(' || c == '[' || c == ';' || c == ',' || c == ':' || c == '='
+                || c == '?' || c == '&' || c == '|');
+    }
+
+
+    private static boolean isJsLineBreakIrrelevantBefore(final char c) {
+        return (c == '}' || c == ')' || c == ']' || c == ';' || c == ',');
+    }
+
+
+}
@@ -42,6 +42,11 @@
  *       and collapsed to their no-value form (e.g. <tt>selected="selected" -&gt; selected</tt>).</li>
  *   <li>Standalone minimized elements are de-minimized to save the slash char
  *       (e.g. <tt>&lt;meta /&gt; -&gt; &lt;meta&gt;</tt>).</li>
+ *   <li>Minimization of inline code: comments and excess white space are removed from the contents of
+ *       <tt>&lt;script&gt;</tt> (JavaScript) and <tt>&lt;style&gt;</tt> (CSS) elements. This is done in a
+ *       conservative, streaming manner (strings, template literals and regular expressions are never modified,
+ *       and line breaks are kept where they might be significant in JavaScript), and only for elements without
+ *       a <tt>type</tt> attribute or with a JavaScript or CSS type.</li>
  * </ul>
  * <p>
  *   Note that, though theoretically possible per the HTML rules, no tags are created or removed during minimization
@@ -49,10 +54,12 @@
  *   markup.
  * </p>
  * <p>
- *   Two minimization modes are available:
- *   {@link MinimizeHtmlMarkupHandler.MinimizeMode#ONLY_WHITE_SPACE} and
- *   {@link MinimizeHtmlMarkupHandler.MinimizeMode#COMPLETE}. The former only minimizes
- *   white space whereas the latter performs all the available minimizations.
+ *   Three minimization modes are available:
+ *   {@link MinimizeHtmlMarkupHandler.MinimizeMode#ONLY_WHITE_SPACE},
+ *   {@link MinimizeHtmlMarkupHandler.MinimizeMode#COMPLETE} and
+ *   {@link MinimizeHtmlMarkupHandler.MinimizeMode#COMPLETE_WITH_INLINE_CODE}. The first one only minimizes
+ *   white space, the second one performs all the available minimizations on markup, and the third one also
+ *   minimizes inline code.
  * </p>
  * <p>
  *   Note that, as with most handlers, this class is <strong>not thread-safe</strong>. Also, instances of this class
@@ -90,24 +97,32 @@ public final class MinimizeHtmlMarkupHandler extends AbstractChainedMarkupHandle
      * </p>
      * <ul>
      *     <li>{@link #ONLY_WHITE_SPACE} for compacting only <em>excess</em> white space.</li>
-     *     <li>{@link #COMPLETE} for performing all available compacting operations.</li>
+     *     <li>{@link #COMPLETE} for performing all available compacting operations on markup.</li>
+     *     <li>{@link #COMPLETE_WITH_INLINE_CODE} for performing all available compacting operations on markup,
+     *         and also on the contents of <tt>&lt;script&gt;</tt> and <tt>&lt;style&gt;</tt> elements
+     *         (since 2.0.8).</li>
      * </ul>
      */
     public enum MinimizeMode {
 
-        ONLY_WHITE_SPACE(false, false, false, false), COMPLETE(true, true, true, true);
+        ONLY_WHITE_SPACE(false, false, false, false, false),
+        COMPLETE(true, true, true, true, false),
+        COMPLETE_WITH_INLINE_CODE(true, true, true, true, true);
 
         private boolean removeComments;
         private boolean unquoteAttributes;
         private boolean unminimizeStandalones;
         private boolean minimizeBooleanAttributes;
+        private boolean minimizeInlineCode;
 
         MinimizeMode(final boolean removeComments, final boolean unquoteAttributes,
-                     final boolean unminimizeStandalones, final boolean minimizeBooleanAttributes) {
+                     final boolean unminimizeStandalones, final boolean minimizeBooleanAttributes,
+                     final boolean minimizeInlineCode) {
             this.removeComments = removeComments;
             this.unquoteAttributes = unquoteAttributes;
             this.unminimizeStandalones = unminimizeStandalones;
             this.minimizeBooleanAttributes = minimizeBooleanAttributes;
+            this.minimizeInlineCode = minimizeInlineCode;
         }
 
     }
@@ -146,6 +161,20 @@ public enum MinimizeMode {
                     "spellcheck", "translate", "truespeed", "typemustmatch", "visible"
             };
 
+    // Values of the 'type' attribute for which <script> contents will be minimized as JavaScript.
+    // This array MUST BE IN ALPHABETIC ORDER (needed for binary search).
+    private static final String[] JAVASCRIPT_TYPES =
+            new String[]{
+                    "", "application/ecmascript", "application/javascript", "application/x-ecmascript",
+                    "application/x-javascript", "module", "text/ecmascript", "text/javascript",
+                    "text/jscript", "text/x-ecmascript", "text/x-javascript"
+            };
+
+    private static final char[] SCRIPT_ELEMENT_NAME = "script".toCharArray();
+    private static final char[] STYLE_ELEMENT_NAME = "style".toCharArray();
+    private static final char[] TYPE_ATTRIBUTE_NAME = "type".toCharArray();
+    private static final char[] CSS_TYPE = "text/css".toCharArray();
+
     private static final char[] SIZE_ONE_WHITE_SPACE = new char[] { ' ' };
     private static final char[] ATTRIBUTE_OPERATOR = new char[] { '=' };
 
@@ -158,6 +187,10 @@ public enum MinimizeMode {
     private boolean lastVisibleEventWasElement = false; // last event or event group was an element
     private boolean pendingInterBlockElementWhiteSpace = false; // delayed white space between block element tags waiting to determine whether it has to be output or not
     private boolean inPreformattedElement = false; // avoid pre and textarea to have their white space minimized
+    private boolean inInlineCodeElement = false; // inside a script or style element which contents should be minimized
+    private boolean inlineCodeElementIsScript = false;
+
+    private InlineCodeMinimizer inlineCodeMinimizer = null;
 
     private int pendingEventLine = 1;
     private int pendingEventCol = 1;
@@ -188,6 +221,13 @@ public MinimizeHtmlMarkupHandler(final MinimizeMode minimizeMode, final IMarkupH
     }
 
 
+    @Override
+    public int getMarkupEventInterest() {
+        // Comments are simply discarded when they have to be removed
+        return (this.minimizeMode.removeComments? ALL_EVENTS & ~EVENT_COMMENT : ALL_EVENTS);
+    }
+
+
     @Override
     public void setParseConfiguration(final ParseConfiguration parseConfiguration) {
 
@@ -238,6 +278,20 @@ public void handleText(final char[] buffer, final int offset, final int len, fin
         // If there is a delayed whitespace text event, just output it
         flushPendingInterBlockElementWhiteSpace(false);
 
+        // If we are inside a script or style element, its contents might be minimized as code
+        if (this.inInlineCodeElement) {
+            this.lastTextEndedInWhiteSpace = false;
+            this.lastVisibleEventWasElement = false;
+            if (this.internalBuffer.length < len + 2) {
+                this.internalBuffer = new char[len + 2];
+            }
+            final int minimizedLen = this.inlineCodeMinimizer.minimize(buffer, offset, len, this.internalBuffer);
+            if (minimizedLen > 0) {
+                getNext().handleText(this.internalBuffer, 0, minimizedLen, line, col);
+            }
+            return;
+        }
+
         // If we are inside a preformatted element, there's nothing to minimize
         if (this.inPreformattedElement) {
             this.lastTextEndedInWhiteSpace = false;
@@ -353,6 +407,40 @@ public void handleText(final char[] buffer, final int offset, final int len, fin
     }
 
 
+    private void startInlineCodeElement(final char[] buffer, final int nameOffset, final int nameLen) {
+
+        if (!this.minimizeMode.minimizeInlineCode) {
+            return;
+        }
+
+        final boolean script = TextUtil.equals(false, SCRIPT_ELEMENT_NAME, 0, SCRIPT_ELEMENT_NAME.length, buffer, nameOffset, nameLen);
+        if (script || TextUtil.equals(false, STYLE_ELEMENT_NAME, 0, STYLE_ELEMENT_NAME.length, buffer, nameOffset, nameLen)) {
+            if (this.inlineCodeMinimizer == null) {
+                this.inlineCodeMinimizer = new InlineCodeMinimizer();
+            }
+            this.inlineCodeMinimizer.reset(script);
+            this.inInlineCodeElement = true;
+            this.inlineCodeElementIsScript = script;
+        }
+
+    }
+
+
+    private void finishInlineCodeElement(final int line, final int col) throws ParseException {
+
+        if (!this.inInlineCodeElement) {
+            return;
+        }
+
+        this.inInlineCodeElement = false;
+        final int minimizedLen = this.inlineCodeMinimizer.finish(this.internalBuffer);
+        if (minimizedLen > 0) {
+            getNext().handleText(this.internalBuffer, 0, minimizedLen, line, col);
+        }
+
+    }
+
+
     private void flushPendingInterBlockElementWhiteSpace(final boolean ignore) throws ParseException {
         if (this.pendingInterBlockElementWhiteSpace) {
             this.pendingInterBlockElementWhiteSpace = false;
@@ -470,6 +558,7 @@ public void handleOpenElementStart(
 
         if (isPreformattedElement(buffer, nameOffset, nameLen)) {
             this.inPreformattedElement = true;
+            startInlineCodeElement(buffer, nameOffset, nameLen);
         }
 
         getNext().handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
@@ -510,6 +599,7 @@ public void handleAutoOpenElementStart(
 
         if (isPreformattedElement(buffer, nameOffset, nameLen)) {
             this.inPreformattedElement = true;
+            startInlineCodeElement(buffer, nameOffset, nameLen);
         }
 
         getNext().handleAutoOpenElementStart(buffer, nameOffset, nameLen, line, col);
@@ -549,6 +639,7 @@ public void handleCloseElementStart(final char[] buffer, final int nameOffset, f
 
         if (isPreformattedElement(buffer, nameOffset, nameLen)) {
             this.inPreformattedElement = false;
+            finishInlineCodeElement(line, col);
         }
 
         getNext().handleCloseElementStart(buffer, nameOffset, nameLen, line, col);
@@ -588,6 +679,10 @@ public void handleAutoCloseElementStart(
                 (this.lastClosedElementWasBlock && isBlockElement(buffer, nameOffset, nameLen));
         flushPendingInterBlockElementWhiteSpace(ignorePendingWhiteSpace);
 
+        if (isPreformattedElement(buffer, nameOffset, nameLen)) {
+            finishInlineCodeElement(line, col);
+        }
+
         getNext().handleAutoCloseElementStart(buffer, nameOffset, nameLen, line, col);
 
     }
@@ -659,6 +754,18 @@ public void handleAttribute(final char[] buffer, final int nameOffset, final int
             final int valueContentLen, final int valueOuterOffset, final int valueOuterLen,
             final int valueLine, final int valueCol) throws ParseException {
 
+        if (this.inInlineCodeElement &&
+                TextUtil.equals(false, TYPE_ATTRIBUTE_NAME, 0, TYPE_ATTRIBUTE_NAME.length, buffer, nameOffset, nameLen)) {
+            // Contents of elements with unknown types (e.g. templates) are never minimized
+            final boolean minimizableType =
+                    (this.inlineCodeElementIsScript?
+                            isJavaScriptType(buffer, valueContentOffset, valueContentLen) :
+                            TextUtil.equals(false, CSS_TYPE, 0, CSS_TYPE.length, buffer, valueContentOffset, valueContentLen));
+            if (!minimizableType) {
+                this.inInlineCodeElement = false;
+            }
+        }
+
         getNext().handleInnerWhiteSpace(
                 SIZE_ONE_WHITE_SPACE, 0, SIZE_ONE_WHITE_SPACE.length,
                 this.pendingEventLine, this.pendingEventCol);
@@ -887,7 +994,7 @@ private static boolean isWhitespace(final char c) {
     }
 
 
-    private static boolean isBlockElement(final char[] buffer, final int nameOffset, final int nameLen) {
+    static boolean isBlockElement(final char[] buffer, final int nameOffset, final int nameLen) {
         return TextUtil.binarySearch(false, BLOCK_ELEMENTS, buffer, nameOffset, nameLen) >= 0;
     }
 
@@ -905,6 +1012,11 @@ private static boolean isPreformattedElement(final char[] buffer, final int name
     }
 
 
+    private static boolean isJavaScriptType(final char[] buffer, final int valueOffset, final int valueLen) {
+        return TextUtil.binarySearch(false, JAVASCRIPT_TYPES, buffer, valueOffset, valueLen) >= 0;
+    }
+
+
     private static boolean isBooleanAttribute(final char[] buffer, final int nameOffset, final int nameLen) {
         return TextUtil.binarySearch(false, BOOLEAN_ATTRIBUTE_NAMES, buffer, nameOffset, nameLen) >= 0;
     }
@@ -0,0 +1,741 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.attoparser.AbstractMarkupHandler;
+import org.attoparser.ParseException;
+
+
+/**
+ * <p>
+ *   Implementation of {@link org.attoparser.IMarkupHandler} used for writing received parsing events as markup output
+ *   <strong>encoded as UTF-8 bytes</strong>, directly into an {@link java.io.OutputStream}, a
+ *   {@link java.nio.channels.WritableByteChannel} or a {@link java.nio.ByteBuffer}.
+ * </p>
+ * <p>
+ *   Output is exactly the same as the one produced by {@link OutputMarkupHandler}, but instead of writing each
+ *   piece of each structure to a {@link java.io.Writer} (which will normally have to encode it again), this handler
+ *   encodes markup itself into an internal byte buffer, and only writes to its output when this buffer is full
+ *   and at the end of the document. Encoded forms of element and attribute names are cached, so that most of them
+ *   are only encoded once per document.
+ * </p>
+ * <p>
+ *   Unpaired surrogate chars are encoded as <tt>'?'</tt>, same as {@link java.io.OutputStreamWriter} would do.
+ * </p>
+ * <p>
+ *   As buffered output is only written at the end of the document, if parsing fails some of the output produced
+ *   until that moment might never be written. Also, output streams and channels are neither flushed nor closed.
+ *   When using a {@link java.nio.ByteBuffer} as output, an exception will be raised if it does not have enough
+ *   space remaining.
+ * </p>
+ * <p>
+ *   Note that, as with most handlers, this class is <strong>not thread-safe</strong>. Also, instances of this class
+ *   should not be reused across parsing operations.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final IMarkupHandler handler = new ByteOutputMarkupHandler(response.getOutputStream());
+ *   parser.parse(document, handler);
+ * </code></pre>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ByteOutputMarkupHandler extends AbstractMarkupHandler {
+
+    /**
+     * Default size of the internal byte buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // Minimum amount of free space in the buffer before encoding any new chunk of chars. Enough for any single char
+    // (including surrogate pairs) and the small constant structures ('</', '/>'...)
+    private static final int MIN_FREE_SPACE = 8;
+
+    private static final int NAME_CACHE_SIZE = 64; // Must be a power of 2
+    private static final int MAX_CACHED_NAME_LEN = 32;
+
+    private static final byte[] CLOSE_ELEMENT_START = new byte[] { '<', '/' };
+
+
+    private final OutputStream outputStream;
+    private final WritableByteChannel channel;
+    private final ByteBuffer byteBuffer;
+
+    private byte[] buffer;
+    private int pos;
+    private long flushedByteCount;
+
+    private final char[][] nameCacheKeys = new char[NAME_CACHE_SIZE][];
+    private final byte[][] nameCacheValues = new byte[NAME_CACHE_SIZE][];
+
+
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, writing to an output stream.
+     * </p>
+     *
+     * @param outputStream the output stream to which output will be written.
+     */
+    public ByteOutputMarkupHandler(final OutputStream outputStream) {
+        this(outputStream, null, null, DEFAULT_BUFFER_SIZE);
+        if (outputStream == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, writing to an output stream and specifying the size of the
+     *   internal buffer.
+     * </p>
+     *
+     * @param outputStream the output stream to which output will be written.
+     * @param bufferSize the size of the internal buffer.
+     */
+    public ByteOutputMarkupHandler(final OutputStream outputStream, final int bufferSize) {
+        this(outputStream, null, null, bufferSize);
+        if (outputStream == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, writing to a channel.
+     * </p>
+     *
+     * @param channel the channel to which output will be written.
+     */
+    public ByteOutputMarkupHandler(final WritableByteChannel channel) {
+        this(null, channel, null, DEFAULT_BUFFER_SIZE);
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null");
+        }
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, writing to a byte buffer (starting at its current position).
+     * </p>
+     *
+     * @param byteBuffer the byte buffer to which output will be written.
+     */
+    public ByteOutputMarkupHandler(final ByteBuffer byteBuffer) {
+        this(null, null, byteBuffer, DEFAULT_BUFFER_SIZE);
+        if (byteBuffer == null) {
+            throw new IllegalArgumentException("Byte buffer cannot be null");
+        }
+    }
+
+
+    private ByteOutputMarkupHandler(
+            final OutputStream outputStream, final WritableByteChannel channel, final ByteBuffer byteBuffer,
+            final int bufferSize) {
+        super();
+        if (bufferSize < 256) {
+            throw new IllegalArgumentException("Buffer size cannot be less than 256");
+        }
+        this.outputStream = outputStream;
+        this.channel = channel;
+        this.byteBuffer = byteBuffer;
+        this.buffer = new byte[bufferSize];
+        this.pos = 0;
+        this.flushedByteCount = 0L;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the amount of bytes of output produced by this handler so far, including those still in
+     *   its internal buffer.
+     * </p>
+     *
+     * @return the amount of bytes produced.
+     */
+    public long getByteCount() {
+        return this.flushedByteCount + this.pos;
+    }
+
+
+    /**
+     * <p>
+     *   Writes all output currently in the internal buffer and, if output is being written to an
+     *   {@link java.io.OutputStream}, flushes it.
+     * </p>
+     * <p>
+     *   There is normally no need to call this method, as the internal buffer is written when full and at the
+     *   end of the document. It can be used by other handlers in order to establish flush points in output.
+     * </p>
+     *
+     * @throws IOException if output cannot be written.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        if (this.outputStream != null) {
+            this.outputStream.flush();
+        }
+    }
+
+
+
+
+
+
+    @Override
+    public void handleDocumentEnd(
+            final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
+            throws ParseException {
+
+        try {
+            flushBuffer();
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleText(final char[] buffer, final int offset, final int len, final int line, final int col)
+            throws ParseException {
+
+        try {
+            writeChars(buffer, offset, len);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+    @Override
+    public void handleComment(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+            writeChars(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+    @Override
+    public void handleCDATASection(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+            writeChars(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleStandaloneElementStart(
+            final char[] buffer, final int offset, final int len,
+            final boolean minimized, final int line, final int col) throws ParseException {
+
+        try {
+            writeByte((byte)'<');
+            writeName(buffer, offset, len);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleStandaloneElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final boolean minimized, final int line, final int col) throws ParseException {
+
+        try {
+            if (minimized) {
+                writeByte((byte)'/');
+            }
+            writeByte((byte)'>');
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleOpenElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+
+        try {
+            writeByte((byte)'<');
+            writeName(buffer, offset, len);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleOpenElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+
+        try {
+            writeByte((byte)'>');
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleAutoOpenElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+    @Override
+    public void handleAutoOpenElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+    @Override
+    public void handleCloseElementStart(final char[] buffer, final int offset, final int len, final int line,
+            final int col) throws ParseException {
+
+        try {
+            writeBytes(CLOSE_ELEMENT_START);
+            writeName(buffer, offset, len);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleCloseElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+
+        try {
+            writeByte((byte)'>');
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleAutoCloseElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+
+    @Override
+    public void handleAutoCloseElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // They were present at the original template, so simply output them.
+        handleCloseElementStart(buffer, offset, len, line, col);
+    }
+
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // They were present at the original template, so simply output them.
+        handleCloseElementEnd(buffer, offset, len, line, col);
+    }
+
+
+
+
+    @Override
+    public void handleAttribute(final char[] buffer, final int nameOffset, final int nameLen,
+            final int nameLine, final int nameCol, final int operatorOffset, final int operatorLen,
+            final int operatorLine, final int operatorCol, final int valueContentOffset,
+            final int valueContentLen, final int valueOuterOffset, final int valueOuterLen,
+            final int valueLine, final int valueCol) throws ParseException {
+
+        try {
+            writeName(buffer, nameOffset, nameLen);
+            writeChars(buffer, operatorOffset, operatorLen);
+            writeChars(buffer, valueOuterOffset, valueOuterLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleInnerWhiteSpace(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+            writeChars(buffer, offset, len);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleDocType(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int elementNameOffset, final int elementNameLen,
+            final int elementNameLine, final int elementNameCol,
+            final int typeOffset, final int typeLen,
+            final int typeLine, final int typeCol,
+            final int publicIdOffset, final int publicIdLen,
+            final int publicIdLine, final int publicIdCol,
+            final int systemIdOffset, final int systemIdLen,
+            final int systemIdLine, final int systemIdCol,
+            final int internalSubsetOffset, final int internalSubsetLen,
+            final int internalSubsetLine, final int internalSubsetCol,
+            final int outerOffset, final int outerLen,
+            final int outerLine, final int outerCol) throws ParseException {
+
+        try {
+            writeChars(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleXmlDeclaration(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int versionOffset, final int versionLen,
+            final int versionLine, final int versionCol,
+            final int encodingOffset, final int encodingLen,
+            final int encodingLine, final int encodingCol,
+            final int standaloneOffset, final int standaloneLen,
+            final int standaloneLine, final int standaloneCol,
+            final int outerOffset, final int outerLen,
+            final int line,final int col)
+            throws ParseException {
+
+        try {
+            writeChars(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+
+
+    @Override
+    public void handleProcessingInstruction(
+            final char[] buffer,
+            final int targetOffset, final int targetLen,
+            final int targetLine, final int targetCol,
+            final int contentOffset, final int contentLen,
+            final int contentLine, final int contentCol,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+            writeChars(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    /*
+     * *******************
+     *  ENCODING AND SINKS
+     * *******************
+     */
+
+
+    private void writeByte(final byte b) throws IOException {
+        if (this.pos == this.buffer.length) {
+            flushBuffer();
+        }
+        this.buffer[this.pos++] = b;
+    }
+
+
+    private void writeBytes(final byte[] bytes) throws IOException {
+        if (this.pos + bytes.length > this.buffer.length) {
+            flushBuffer();
+            if (bytes.length > this.buffer.length) {
+                this.buffer = new byte[bytes.length];
+            }
+        }
+        System.arraycopy(bytes, 0, this.buffer, this.pos, bytes.length);
+        this.pos += bytes.length;
+    }
+
+
+    /*
+     * Element and attribute names are looked up in a small, direct-mapped cache of their encoded forms. Computing
+     * the hash costs about the same as encoding an ASCII name, but a hit replaces per-char encoding with a single
+     * arraycopy, and names repeat constantly in markup.
+     */
+    private void writeName(final char[] text, final int offset, final int len) throws IOException {
+
+        if (len > MAX_CACHED_NAME_LEN) {
+            writeChars(text, offset, len);
+            return;
+        }
+
+        int h = 0;
+        final int maxi = offset + len;
+        for (int i = offset; i < maxi; i++) {
+            h = 31 * h + text[i];
+        }
+        final int index = (h ^ (h >>> 16)) & (NAME_CACHE_SIZE - 1);
+
+        final char[] key = this.nameCacheKeys[index];
+        if (key != null && key.length == len) {
+            int i = 0;
+            while (i < len && key[i] == text[offset + i]) {
+                i++;
+            }
+            if (i == len) {
+                writeBytes(this.nameCacheValues[index]);
+                return;
+            }
+        }
+
+        // Cache miss: encode the name at the end of the buffer and keep a copy of the result
+        if (this.pos + (len * 3) + MIN_FREE_SPACE > this.buffer.length) {
+            flushBuffer();
+        }
+        final int start = this.pos;
+        this.pos = encode(text, offset, len, this.buffer, this.pos);
+
+        final char[] newKey = new char[len];
+        System.arraycopy(text, offset, newKey, 0, len);
+        final byte[] newValue = new byte[this.pos - start];
+        System.arraycopy(this.buffer, start, newValue, 0, newValue.length);
+        this.nameCacheKeys[index] = newKey;
+        this.nameCacheValues[index] = newValue;
+
+    }
+
+
+    private void writeChars(final char[] text, final int offset, final int len) throws IOException {
+
+        int i = offset;
+        final int maxi = offset + len;
+
+        while (i < maxi) {
+
+            int free = this.buffer.length - this.pos;
+            if (free < MIN_FREE_SPACE) {
+                flushBuffer();
+                free = this.buffer.length;
+            }
+
+            // Each char needs at most three bytes (surrogate pairs need four, but for two chars)
+            int chunk = Math.min(maxi - i, free / 3);
+            if (i + chunk < maxi && Character.isHighSurrogate(text[i + chunk - 1])) {
+                // Do not split surrogate pairs between chunks
+                chunk--;
+            }
+
+            this.pos = encode(text, i, chunk, this.buffer, this.pos);
+            i += chunk;
+
+        }
+
+    }
+
+
+    /*
+     * Inline UTF-8 encoder. The caller must make sure there is enough room in the byte array (3 bytes per char).
+     */
+    private static int encode(final char[] text, final int offset, final int len, final byte[] bytes, final int pos) {
+
+        int p = pos;
+        int i = offset;
+        final int maxi = offset + len;
+
+        // Fast path for ASCII
+        while (i < maxi && text[i] < 0x80) {
+            bytes[p++] = (byte) text[i++];
+        }
+
+        while (i < maxi) {
+
+            final char c = text[i++];
+
+            if (c < 0x80) {
+                bytes[p++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[p++] = (byte) (0xC0 | (c >> 6));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if (Character.isHighSurrogate(c) && i < maxi && Character.isLowSurrogate(text[i])) {
+                    final int codePoint = Character.toCodePoint(c, text[i++]);
+                    bytes[p++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[p++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    bytes[p++] = (byte) '?';
+                }
+            } else {
+                bytes[p++] = (byte) (0xE0 | (c >> 12));
+                bytes[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+
+        }
+
+        return p;
+
+    }
+
+
+    private void flushBuffer() throws IOException {
+
+        if (this.pos == 0) {
+            return;
+        }
+
+        if (this.outputStream != null) {
+            this.outputStream.write(this.buffer, 0, this.pos);
+        } else if (this.channel != null) {
+            final ByteBuffer wrapped = ByteBuffer.wrap(this.buffer, 0, this.pos);
+            while (wrapped.hasRemaining()) {
+                this.channel.write(wrapped);
+            }
+        } else {
+            this.byteBuffer.put(this.buffer, 0, this.pos);
+        }
+
+        this.flushedByteCount += this.pos;
+        this.pos = 0;
+
+    }
+
+
+}
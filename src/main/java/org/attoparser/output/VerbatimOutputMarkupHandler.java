@@ -0,0 +1,582 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.output;
+
+import java.io.Writer;
+
+import org.attoparser.AbstractMarkupHandler;
+import org.attoparser.ParseException;
+import org.attoparser.ParseStatus;
+
+
+/**
+ * <p>
+ *   Implementation of {@link org.attoparser.IMarkupHandler} used for writing received parsing events as markup
+ *   output, copying untouched structures directly from the source markup.
+ * </p>
+ * <p>
+ *   The output produced by this handler is exactly the same as the one produced by {@link OutputMarkupHandler}.
+ *   The difference is that, for every element (open, standalone or close tag) reaching this handler with the
+ *   same name, attributes and white space it had at the original markup, the whole tag is written in a single
+ *   operation by copying its source span (as reported by {@link ParseStatus#getStructureOffset()} and
+ *   {@link ParseStatus#getStructureLen()}) instead of rebuilding it piece by piece. Only the elements that
+ *   have actually been modified by previous handlers in the chain (e.g. renamed, or with attributes changed,
+ *   added or removed) are rebuilt, and even in that case their unmodified leading part is copied in bulk.
+ * </p>
+ * <p>
+ *   This makes this handler especially suitable for the end of rewriting chains that only modify a small part
+ *   of the elements in a document (e.g. URL rewriting or attribute injection).
+ * </p>
+ * <p>
+ *   Events are considered to be untouched only if they were reported with the parser's own source buffer (see
+ *   {@link ParseStatus#isSourceBuffer(char[])}) and at the same positions they were found, so events created or
+ *   modified by other handlers are always rebuilt. This handler will ignore all auto* events, as they are
+ *   synthetically generated events that did not appear at the original markup input.
+ * </p>
+ * <p>
+ *   Note that, as with most handlers, this class is <strong>not thread-safe</strong>. Also, instances of this class
+ *   should not be reused across parsing operations.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final Writer writer = new StringWriter();
+ *   // RewritingHandler would be e.g. an AbstractChainedMarkupHandler modifying some attributes
+ *   final IMarkupHandler handler = new RewritingHandler(new VerbatimOutputMarkupHandler(writer));
+ *   parser.parse(document, handler);
+ *   return writer.toString();
+ * </code></pre>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class VerbatimOutputMarkupHandler extends AbstractMarkupHandler {
+
+
+    private static final char[] OPEN_END = new char[] { '>' };
+    private static final char[] MINIMIZED_END = new char[] { '/', '>' };
+
+
+    private final Writer writer;
+
+    private ParseStatus status = null;
+
+    // Source span of the element being currently reported, while it remains unmodified. Everything between
+    // pendingOffset and pendingPos has already been matched by received events, but has not been written yet.
+    private char[] pendingBuffer = null;
+    private int pendingOffset = 0;
+    private int pendingPos = 0;
+    private int pendingEnd = 0;
+
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler.
+     * </p>
+     *
+     * @param writer the writer to which output will be written.
+     */
+    public VerbatimOutputMarkupHandler(final Writer writer) {
+        super();
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        this.writer = writer;
+    }
+
+
+
+
+    @Override
+    public void setParseStatus(final ParseStatus status) {
+        this.status = status;
+    }
+
+
+
+
+    /*
+     * Starts tracking an element's source span if its name has been reported from the source buffer, at
+     * the expected position (just after the '<' or '</' delimiter).
+     */
+    private boolean startPending(final char[] buffer, final int offset, final int len, final int delimiterLen) {
+
+        if (this.status == null || !this.status.isSourceBuffer(buffer)) {
+            return false;
+        }
+
+        final int structureOffset = this.status.getStructureOffset();
+        if (offset != structureOffset + delimiterLen) {
+            return false;
+        }
+
+        this.pendingBuffer = buffer;
+        this.pendingOffset = structureOffset;
+        this.pendingPos = offset + len;
+        this.pendingEnd = structureOffset + this.status.getStructureLen();
+        return true;
+
+    }
+
+
+    /*
+     * Writes the part of the current element that has been matched against the source so far, and stops
+     * tracking it (the rest of the element will be rebuilt from events).
+     */
+    private void flushPending() throws Exception {
+        if (this.pendingBuffer != null) {
+            this.writer.write(this.pendingBuffer, this.pendingOffset, this.pendingPos - this.pendingOffset);
+            this.pendingBuffer = null;
+        }
+    }
+
+
+    /*
+     * Checks whether an element's end would be written the same way it appears at the source, in which
+     * case the whole element is written in one single operation.
+     */
+    private boolean endPending(final char[] end) throws Exception {
+
+        if (this.pendingBuffer == null) {
+            return false;
+        }
+
+        boolean matches = (this.pendingEnd - this.pendingPos == end.length);
+        for (int i = 0; matches && i < end.length; i++) {
+            matches = (this.pendingBuffer[this.pendingPos + i] == end[i]);
+        }
+
+        if (!matches) {
+            flushPending();
+            return false;
+        }
+
+        this.writer.write(this.pendingBuffer, this.pendingOffset, this.pendingEnd - this.pendingOffset);
+        this.pendingBuffer = null;
+        return true;
+
+    }
+
+
+
+
+    @Override
+    public void handleDocumentEnd(
+            final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
+            throws ParseException {
+
+        try {
+            flushPending();
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleText(final char[] buffer, final int offset, final int len, final int line, final int col)
+            throws ParseException {
+
+        try {
+            flushPending();
+            this.writer.write(buffer, offset, len);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+    @Override
+    public void handleComment(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+            flushPending();
+            this.writer.write(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+    @Override
+    public void handleCDATASection(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+            flushPending();
+            this.writer.write(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleStandaloneElementStart(
+            final char[] buffer, final int offset, final int len,
+            final boolean minimized, final int line, final int col) throws ParseException {
+
+        try {
+            flushPending();
+            if (!startPending(buffer, offset, len, 1)) {
+                this.writer.write('<');
+                this.writer.write(buffer, offset, len);
+            }
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleStandaloneElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final boolean minimized, final int line, final int col) throws ParseException {
+
+        try {
+            if (!endPending(minimized? MINIMIZED_END : OPEN_END)) {
+                if (minimized) {
+                    this.writer.write('/');
+                }
+                this.writer.write('>');
+            }
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleOpenElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+
+        try {
+            flushPending();
+            if (!startPending(buffer, offset, len, 1)) {
+                this.writer.write('<');
+                this.writer.write(buffer, offset, len);
+            }
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleOpenElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+
+        try {
+            if (!endPending(OPEN_END)) {
+                this.writer.write('>');
+            }
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleAutoOpenElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+    @Override
+    public void handleAutoOpenElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+    @Override
+    public void handleCloseElementStart(final char[] buffer, final int offset, final int len, final int line,
+            final int col) throws ParseException {
+
+        try {
+            flushPending();
+            if (!startPending(buffer, offset, len, 2)) {
+                this.writer.write("</");
+                this.writer.write(buffer, offset, len);
+            }
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleCloseElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col) throws ParseException {
+
+        try {
+            if (!endPending(OPEN_END)) {
+                this.writer.write('>');
+            }
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleAutoCloseElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+
+    @Override
+    public void handleAutoCloseElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // Nothing to be done... balanced elements were not present at the original template!
+    }
+
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementStart(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // They were present at the original template, so simply output them.
+        handleCloseElementStart(buffer, offset, len, line, col);
+    }
+
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementEnd(
+            final char[] buffer, final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        // They were present at the original template, so simply output them.
+        handleCloseElementEnd(buffer, offset, len, line, col);
+    }
+
+
+
+
+    @Override
+    public void handleAttribute(final char[] buffer, final int nameOffset, final int nameLen,
+            final int nameLine, final int nameCol, final int operatorOffset, final int operatorLen,
+            final int operatorLine, final int operatorCol, final int valueContentOffset,
+            final int valueContentLen, final int valueOuterOffset, final int valueOuterLen,
+            final int valueLine, final int valueCol) throws ParseException {
+
+        try {
+
+            if (this.pendingBuffer == buffer && nameOffset == this.pendingPos) {
+                // The attribute is untouched if its name, operator and value are contiguous at the source
+                int pos = nameOffset + nameLen;
+                if (operatorLen > 0 && operatorOffset == pos) {
+                    pos += operatorLen;
+                }
+                if (valueOuterLen > 0 && valueOuterOffset == pos) {
+                    pos += valueOuterLen;
+                }
+                if ((pos - nameOffset) == (nameLen + operatorLen + valueOuterLen) && pos <= this.pendingEnd) {
+                    this.pendingPos = pos;
+                    return;
+                }
+            }
+
+            flushPending();
+            this.writer.write(buffer, nameOffset, nameLen);
+            this.writer.write(buffer, operatorOffset, operatorLen);
+            this.writer.write(buffer, valueOuterOffset, valueOuterLen);
+
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleInnerWhiteSpace(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+
+            if (this.pendingBuffer == buffer && offset == this.pendingPos && offset + len <= this.pendingEnd) {
+                this.pendingPos = offset + len;
+                return;
+            }
+
+            flushPending();
+            this.writer.write(buffer, offset, len);
+
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleDocType(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int elementNameOffset, final int elementNameLen,
+            final int elementNameLine, final int elementNameCol,
+            final int typeOffset, final int typeLen,
+            final int typeLine, final int typeCol,
+            final int publicIdOffset, final int publicIdLen,
+            final int publicIdLine, final int publicIdCol,
+            final int systemIdOffset, final int systemIdLen,
+            final int systemIdLine, final int systemIdCol,
+            final int internalSubsetOffset, final int internalSubsetLen,
+            final int internalSubsetLine, final int internalSubsetCol,
+            final int outerOffset, final int outerLen,
+            final int outerLine, final int outerCol) throws ParseException {
+
+        try {
+            flushPending();
+            this.writer.write(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+    @Override
+    public void handleXmlDeclaration(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int versionOffset, final int versionLen,
+            final int versionLine, final int versionCol,
+            final int encodingOffset, final int encodingLen,
+            final int encodingLine, final int encodingCol,
+            final int standaloneOffset, final int standaloneLen,
+            final int standaloneLine, final int standaloneCol,
+            final int outerOffset, final int outerLen,
+            final int line,final int col)
+            throws ParseException {
+
+        try {
+            flushPending();
+            this.writer.write(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+
+
+    @Override
+    public void handleProcessingInstruction(
+            final char[] buffer,
+            final int targetOffset, final int targetLen,
+            final int targetLine, final int targetCol,
+            final int contentOffset, final int contentLen,
+            final int contentLine, final int contentCol,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+
+        try {
+            flushPending();
+            this.writer.write(buffer, outerOffset, outerLen);
+        } catch (final Exception e) {
+            throw new ParseException(e);
+        }
+
+    }
+
+
+
+
+}
@@ -21,9 +21,6 @@
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
 
 import org.attoparser.AbstractMarkupHandler;
 import org.attoparser.ParseException;
@@ -44,6 +41,19 @@
  *   close elements that might be found in input.
  * </p>
  * <p>
+ *   Output is written directly to the {@link java.io.Writer} from pre-built char sequences and from the
+ *   parser's own buffers (escaping is performed inline), so that no intermediate <tt>String</tt> objects are
+ *   created for each structure. Consecutive text events are output inside the same <tt>&lt;span&gt;</tt>.
+ * </p>
+ * <p>
+ *   This handler can also work in <em>streaming</em> mode (see
+ *   {@link #PrettyHtmlMarkupHandler(String, java.io.Writer, int)}), in which output is accumulated in a fixed-size
+ *   buffer and written to the {@link java.io.Writer} in large blocks. Combined with parsing from a
+ *   {@link java.io.Reader} using a configuration with <em>splittable text</em>
+ *   ({@link org.attoparser.config.ParseConfiguration#setTextSplittable(boolean)}), this allows rendering
+ *   sources of any size using a constant amount of memory.
+ * </p>
+ * <p>
  *   Note that, as with most handlers, this class is <strong>not thread-safe</strong>. Also, instances of this class
  *   should not be reused across parsing operations.
  * </p>
@@ -64,11 +74,17 @@
  */
 public class PrettyHtmlMarkupHandler extends AbstractMarkupHandler {
 
-    private static final String OPEN_TAG_START = "&lt;";
-    private static final String OPEN_TAG_END = "&gt;";
-    private static final String CLOSE_TAG_START = "&lt;/";
-    private static final String CLOSE_TAG_END = "&gt;";
-    private static final String MINIMIZED_TAG_END = "/&gt;";
+    private static final char[] OPEN_TAG_START = "&lt;".toCharArray();
+    private static final char[] OPEN_TAG_END = "&gt;".toCharArray();
+    private static final char[] CLOSE_TAG_START = "&lt;/".toCharArray();
+    private static final char[] CLOSE_TAG_END = "&gt;".toCharArray();
+    private static final char[] MINIMIZED_TAG_END = "/&gt;".toCharArray();
+    private static final char[] COMMENT_START = "&lt;!--".toCharArray();
+    private static final char[] COMMENT_END = "--&gt;".toCharArray();
+    private static final char[] CDATA_START = "&lt;![CDATA[".toCharArray();
+    private static final char[] CDATA_END = "]]&gt;".toCharArray();
+    private static final char[] PROCESSING_INSTRUCTION_START = "&lt;?".toCharArray();
+    private static final char[] PROCESSING_INSTRUCTION_END = "?&gt;".toCharArray();
     
     
     private static final String DOCUMENT_STYLES = "\n" +
@@ -124,27 +140,56 @@ public class PrettyHtmlMarkupHandler extends AbstractMarkupHandler {
             "\n";
     
     
-    private static final String STYLE_DOCTYPE = "doctype";
-    private static final String STYLE_COMMENT = "comment";
-    private static final String STYLE_CDATA = "cdata";
-    private static final String STYLE_XML_DECLARATION = "xml-declaration";
-    private static final String STYLE_PROCESSING_INSTRUCTION = "processing-instruction";
-    private static final String STYLE_ELEMENT = "element";
-    private static final String STYLE_ELEMENT_AUTO = "element-auto";
-    private static final String STYLE_ELEMENT_UNMATCHED = "element-unmatched";
-    private static final String STYLE_ATTR_NAME = "attr-name";
-    private static final String STYLE_ATTR_VALUE = "attr-value";
-    private static final String STYLE_TEXT = "text";
-    
-    private static final String TAG_FORMAT_START = "<span class=\"%1$s\">";
-    private static final String TAG_FORMAT_END = "</span>";
+    private static final char[] STYLE_DOCTYPE = styleStart("doctype");
+    private static final char[] STYLE_COMMENT = styleStart("comment");
+    private static final char[] STYLE_CDATA = styleStart("cdata");
+    private static final char[] STYLE_XML_DECLARATION = styleStart("xml-declaration");
+    private static final char[] STYLE_PROCESSING_INSTRUCTION = styleStart("processing-instruction");
+    private static final char[] STYLE_ELEMENT = styleStart("element");
+    private static final char[] STYLE_ELEMENT_AUTO = styleStart("element-auto");
+    private static final char[] STYLE_ELEMENT_UNMATCHED = styleStart("element-unmatched");
+    private static final char[] STYLE_ATTR_NAME = styleStart("attr-name");
+    private static final char[] STYLE_ATTR_VALUE = styleStart("attr-value");
+    private static final char[] STYLE_TEXT = styleStart("text");
+
+    private static final char[] STYLE_END = "</span>".toCharArray();
+
+
+    /*
+     * Escaped forms of the chars that need escaping, indexed by char code
+     */
+    private static final char[][] ESCAPES = new char['>' + 1][];
+
+    static {
+        ESCAPES['\n'] = "<br />".toCharArray();
+        ESCAPES[' '] = "&nbsp;".toCharArray();
+        ESCAPES['\t'] = "&nbsp;&nbsp;&nbsp;&nbsp;".toCharArray();
+        ESCAPES['<'] = "&lt;".toCharArray();
+        ESCAPES['>'] = "&gt;".toCharArray();
+        ESCAPES['&'] = "&amp;".toCharArray();
+        ESCAPES['\"'] = "&quot;".toCharArray();
+        ESCAPES['\''] = "&#39;".toCharArray();
+    }
+
+
+    /**
+     * Default size of the output buffer used in streaming mode.
+     */
+    public static final int DEFAULT_STREAMING_BUFFER_SIZE = 8192;
+
+
 
-    
-    
     private final String documentName;
     private final String documentId;
     private final Writer writer;
 
+    // Only in streaming mode
+    private final char[] outputBuffer;
+    private int outputBufferPos = 0;
+
+    // Consecutive text events are output inside the same span
+    private boolean inTextStyle = false;
+
 
 
 
@@ -171,68 +216,154 @@ public PrettyHtmlMarkupHandler(final Writer writer) {
      * @param writer the writer to which output will be written.
      */
     public PrettyHtmlMarkupHandler(final String documentName, final Writer writer) {
+        this(documentName, writer, 0);
+    }
+
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, optionally working in <em>streaming</em> mode.
+     * </p>
+     * <p>
+     *   In streaming mode output is accumulated in a buffer of the specified size, which is written to the
+     *   writer every time it gets full, and the writer is flushed at the end of the document. Memory usage
+     *   by this handler is therefore constant, no matter the size of the document being rendered.
+     * </p>
+     *
+     * @param documentName the name of the parsed document (will appear in the title).
+     * @param writer the writer to which output will be written.
+     * @param outputBufferSize the size of the output buffer (for streaming mode), or <tt>0</tt> for writing
+     *                         all output directly to the writer.
+     * @since 2.0.8
+     */
+    public PrettyHtmlMarkupHandler(final String documentName, final Writer writer, final int outputBufferSize) {
         super();
         if (writer == null) {
             throw new IllegalArgumentException("Writer cannot be null");
         }
+        if (outputBufferSize < 0) {
+            throw new IllegalArgumentException("Output buffer size cannot be negative");
+        }
         this.documentName =
                 (documentName == null?
                         String.valueOf(System.identityHashCode(this)) : documentName);
         this.documentId = tokenify(this.documentName);
         this.writer = writer;
+        this.outputBuffer = (outputBufferSize > 0? new char[outputBufferSize] : null);
     }
 
-    
-    
-    
+
+
+
+    private static char[] styleStart(final String style) {
+        return ("<span class=\"" + style + "\">").toCharArray();
+    }
+
+
+
+
+    private void write(final char c) throws IOException {
+        if (this.outputBuffer == null) {
+            this.writer.write(c);
+            return;
+        }
+        if (this.outputBufferPos == this.outputBuffer.length) {
+            flushOutputBuffer();
+        }
+        this.outputBuffer[this.outputBufferPos++] = c;
+    }
+
+
+    private void write(final char[] chars) throws IOException {
+        write(chars, 0, chars.length);
+    }
+
+
+    private void write(final char[] buffer, final int offset, final int len) throws IOException {
+        if (this.outputBuffer == null) {
+            this.writer.write(buffer, offset, len);
+            return;
+        }
+        if (len > this.outputBuffer.length - this.outputBufferPos) {
+            flushOutputBuffer();
+            if (len > this.outputBuffer.length) {
+                this.writer.write(buffer, offset, len);
+                return;
+            }
+        }
+        System.arraycopy(buffer, offset, this.outputBuffer, this.outputBufferPos, len);
+        this.outputBufferPos += len;
+    }
+
+
+    private void write(final String str) throws IOException {
+        if (this.outputBuffer == null) {
+            this.writer.write(str);
+            return;
+        }
+        final int len = str.length();
+        if (len > this.outputBuffer.length - this.outputBufferPos) {
+            flushOutputBuffer();
+            if (len > this.outputBuffer.length) {
+                this.writer.write(str);
+                return;
+            }
+        }
+        str.getChars(0, len, this.outputBuffer, this.outputBufferPos);
+        this.outputBufferPos += len;
+    }
+
+
+    private void flushOutputBuffer() throws IOException {
+        if (this.outputBufferPos > 0) {
+            this.writer.write(this.outputBuffer, 0, this.outputBufferPos);
+            this.outputBufferPos = 0;
+        }
+    }
+
+
+
+
     private void writeEscaped(final char[] buffer, final int offset, final int len) throws IOException {
-        
+
+        // Unescaped chars are written in blocks, as large as possible
+        int lastWritten = offset;
 
         final int maxi = offset + len;
         for (int i = offset; i < maxi; i++) {
             final char c = buffer[i];
-            if (c == '\n') {
-                this.writer.write("<br />");
-            } else if (c == ' ') {
-                this.writer.write("&nbsp;");
-            } else if (c == '\t') {
-                this.writer.write("&nbsp;&nbsp;&nbsp;&nbsp;");
-            } else if (c == '<') {
-                this.writer.write("&lt;");
-            } else if (c == '>') {
-                this.writer.write("&gt;");
-            } else if (c == '&') {
-                this.writer.write("&amp;");
-            } else if (c == '\"') {
-                this.writer.write("&quot;");
-            } else if (c == '\'') {
-                this.writer.write("&#39;");
-            } else {
-                this.writer.write(c);
+            if (c < ESCAPES.length && ESCAPES[c] != null) {
+                if (i > lastWritten) {
+                    write(buffer, lastWritten, i - lastWritten);
+                }
+                write(ESCAPES[c]);
+                lastWritten = i + 1;
             }
         }
 
-    }
-    
-    
-    
-    private void openStyle(final String style) throws IOException {
-        openStyles(Collections.singletonList(style));
-    }
-    
-    private void openStyles(final List<String> styles) throws IOException {
-        final StringBuilder strBuilder = new StringBuilder();
-        final Iterator<String> stylesIter = styles.iterator();
-        strBuilder.append(stylesIter.next());
-        while (stylesIter.hasNext()) {
-            strBuilder.append(' ');
-            strBuilder.append(stylesIter.next());
+        if (maxi > lastWritten) {
+            write(buffer, lastWritten, maxi - lastWritten);
         }
-        this.writer.write(String.format(TAG_FORMAT_START, strBuilder.toString()));
+
     }
-    
+
+
+
+    private void openStyle(final char[] style) throws IOException {
+        closeTextStyle();
+        write(style);
+    }
+
     private void closeStyle() throws IOException {
-        this.writer.write(TAG_FORMAT_END);
+        write(STYLE_END);
+    }
+
+    private void closeTextStyle() throws IOException {
+        if (this.inTextStyle) {
+            this.inTextStyle = false;
+            closeStyle();
+        }
     }
     
     
@@ -259,17 +390,17 @@ public void handleDocumentStart(final long startTimeNanos,
         
         try {
             
-            this.writer.write("<!DOCTYPE html>\n");
-            this.writer.write("<html>\n");
-            this.writer.write("<head>\n");
-            this.writer.write("<title>Parser output: " + this.documentName + "</title>\n");
-            this.writer.write("<style>" + DOCUMENT_STYLES + "</style>\n");
-            this.writer.write("</head>\n");
-            this.writer.write("<body>\n");
+            write("<!DOCTYPE html>\n");
+            write("<html>\n");
+            write("<head>\n");
+            write("<title>Parser output: " + this.documentName + "</title>\n");
+            write("<style>" + DOCUMENT_STYLES + "</style>\n");
+            write("</head>\n");
+            write("<body>\n");
 
-            this.writer.write("<div class=\"atto_source\" id=\"atto_source_" + this.documentId + "\">\n");
-            this.writer.write("<style>\n" + FRAGMENT_STYLES.replaceAll("@@", "#atto_source_content_" + this.documentId ) + "</style>\n");
-            this.writer.write("<div class=\"atto_source_content\" id=\"atto_source_content_" + this.documentId + "\">");
+            write("<div class=\"atto_source\" id=\"atto_source_" + this.documentId + "\">\n");
+            write("<style>\n" + FRAGMENT_STYLES.replaceAll("@@", "#atto_source_content_" + this.documentId ) + "</style>\n");
+            write("<div class=\"atto_source_content\" id=\"atto_source_content_" + this.documentId + "\">");
             
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -286,10 +417,17 @@ public void handleDocumentEnd(final long endTimeNanos, final long totalTimeNanos
         
         try {
             
-            this.writer.write("</div>");
+            closeTextStyle();
+
+            write("</div>");
             
-            this.writer.write("</body>\n");
-            this.writer.write("</html>\n");
+            write("</body>\n");
+            write("</html>\n");
+
+            if (this.outputBuffer != null) {
+                flushOutputBuffer();
+                this.writer.flush();
+            }
 
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -311,8 +449,8 @@ public void handleStandaloneElementStart(
         try {
             
             openStyle(STYLE_ELEMENT);
-            this.writer.write(OPEN_TAG_START);
-            this.writer.write(buffer, nameOffset, nameLen);
+            write(OPEN_TAG_START);
+            write(buffer, nameOffset, nameLen);
             
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -331,7 +469,7 @@ public void handleStandaloneElementEnd(
         
         try {
             
-            this.writer.write((minimized? MINIMIZED_TAG_END : OPEN_TAG_END));
+            write((minimized? MINIMIZED_TAG_END : OPEN_TAG_END));
             closeStyle();
             
         } catch (final Exception e) {
@@ -353,8 +491,8 @@ public void handleOpenElementStart(
         try {
             
             openStyle(STYLE_ELEMENT);
-            this.writer.write(OPEN_TAG_START);
-            this.writer.write(buffer, nameOffset, nameLen);
+            write(OPEN_TAG_START);
+            write(buffer, nameOffset, nameLen);
             
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -372,7 +510,7 @@ public void handleOpenElementEnd(
         
         try {
             
-            this.writer.write(OPEN_TAG_END);
+            write(OPEN_TAG_END);
             closeStyle();
             
         } catch (final Exception e) {
@@ -394,8 +532,8 @@ public void handleAutoOpenElementStart(
         try {
 
             openStyle(STYLE_ELEMENT_AUTO);
-            this.writer.write(OPEN_TAG_START);
-            this.writer.write(buffer, nameOffset, nameLen);
+            write(OPEN_TAG_START);
+            write(buffer, nameOffset, nameLen);
 
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -413,7 +551,7 @@ public void handleAutoOpenElementEnd(
 
         try {
 
-            this.writer.write(OPEN_TAG_END);
+            write(OPEN_TAG_END);
             closeStyle();
 
         } catch (final Exception e) {
@@ -435,8 +573,8 @@ public void handleCloseElementStart(
         try {
             
             openStyle(STYLE_ELEMENT);
-            this.writer.write(CLOSE_TAG_START);
-            this.writer.write(buffer, nameOffset, nameLen);
+            write(CLOSE_TAG_START);
+            write(buffer, nameOffset, nameLen);
             
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -454,7 +592,7 @@ public void handleCloseElementEnd(
         
         try {
             
-            this.writer.write(CLOSE_TAG_END);
+            write(CLOSE_TAG_END);
             closeStyle();
             
         } catch (final Exception e) {
@@ -476,8 +614,8 @@ public void handleAutoCloseElementStart(
         try {
 
             openStyle(STYLE_ELEMENT_AUTO);
-            this.writer.write(CLOSE_TAG_START);
-            this.writer.write(buffer, nameOffset, nameLen);
+            write(CLOSE_TAG_START);
+            write(buffer, nameOffset, nameLen);
 
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -495,7 +633,7 @@ public void handleAutoCloseElementEnd(
 
         try {
 
-            this.writer.write(CLOSE_TAG_END);
+            write(CLOSE_TAG_END);
             closeStyle();
 
         } catch (final Exception e) {
@@ -517,8 +655,8 @@ public void handleUnmatchedCloseElementStart(
         try {
 
             openStyle(STYLE_ELEMENT_UNMATCHED);
-            this.writer.write(CLOSE_TAG_START);
-            this.writer.write(buffer, nameOffset, nameLen);
+            write(CLOSE_TAG_START);
+            write(buffer, nameOffset, nameLen);
 
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -536,7 +674,7 @@ public void handleUnmatchedCloseElementEnd(
 
         try {
 
-            this.writer.write(CLOSE_TAG_END);
+            write(CLOSE_TAG_END);
             closeStyle();
 
         } catch (final Exception e) {
@@ -563,10 +701,10 @@ public void handleAttribute(
         try {
             
             openStyle(STYLE_ATTR_NAME);
-            this.writer.write(buffer, nameOffset, nameLen);
+            write(buffer, nameOffset, nameLen);
             closeStyle();
             
-            this.writer.write(buffer, operatorOffset, operatorLen);
+            write(buffer, operatorOffset, operatorLen);
             
             openStyle(STYLE_ATTR_VALUE);
             writeEscaped(buffer, valueOuterOffset, valueOuterLen);
@@ -588,7 +726,7 @@ public void handleInnerWhiteSpace(
         
         try {
             
-            this.writer.write(buffer, offset, len);
+            write(buffer, offset, len);
             
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -608,9 +746,11 @@ public void handleText(final char[] buffer, final int offset, final int len,
         
         try {
             
-            openStyle(STYLE_TEXT);
+            if (!this.inTextStyle) {
+                openStyle(STYLE_TEXT);
+                this.inTextStyle = true;
+            }
             writeEscaped(buffer, offset, len);
-            closeStyle();
             
         } catch (final Exception e) {
             throw new ParseException(e);
@@ -631,9 +771,9 @@ public void handleComment(
         try {
 
             openStyle(STYLE_COMMENT);
-            this.writer.write("&lt;!--");
+            write(COMMENT_START);
             writeEscaped(buffer, contentOffset, contentLen);
-            this.writer.write("--&gt;");
+            write(COMMENT_END);
             closeStyle();
             
         } catch (final Exception e) {
@@ -654,9 +794,9 @@ public void handleCDATASection(
         try {
             
             openStyle(STYLE_CDATA);
-            this.writer.write("&lt;![CDATA[");
+            write(CDATA_START);
             writeEscaped(buffer, contentOffset, contentLen);
-            this.writer.write("]]&gt;");
+            write(CDATA_END);
             closeStyle();
             
         } catch (final Exception e) {
@@ -688,9 +828,8 @@ public void handleXmlDeclaration(
             final int outerContentEnd = (outerOffset  + outerLen) - 2;
             
             openStyle(STYLE_XML_DECLARATION);
-            this.writer.write("&lt;");
-            this.writer.write('?');
-            this.writer.write(buffer, keywordOffset, keywordLen);
+            write(PROCESSING_INSTRUCTION_START);
+            write(buffer, keywordOffset, keywordLen);
 
             /*
              * VERSION (required) 
@@ -700,8 +839,8 @@ public void handleXmlDeclaration(
             int thisStructureLen = versionLen;
             int thisStructureEnd = thisStructureOffset + thisStructureLen;
             
-            this.writer.write(buffer, lastStructureEnd, thisStructureOffset - lastStructureEnd);
-            this.writer.write(buffer, thisStructureOffset, thisStructureLen);
+            write(buffer, lastStructureEnd, thisStructureOffset - lastStructureEnd);
+            write(buffer, thisStructureOffset, thisStructureLen);
 
             /*
              * ENCODING (optional)
@@ -713,8 +852,8 @@ public void handleXmlDeclaration(
                 thisStructureLen = encodingLen;
                 thisStructureEnd = thisStructureOffset + thisStructureLen;
             
-                this.writer.write(buffer, lastStructureEnd, thisStructureOffset - lastStructureEnd);
-                this.writer.write(buffer, thisStructureOffset, thisStructureLen);
+                write(buffer, lastStructureEnd, thisStructureOffset - lastStructureEnd);
+                write(buffer, thisStructureOffset, thisStructureLen);
 
             }
 
@@ -729,15 +868,14 @@ public void handleXmlDeclaration(
                 thisStructureLen = standaloneLen;
                 thisStructureEnd = thisStructureOffset + thisStructureLen;
             
-                this.writer.write(buffer, lastStructureEnd, thisStructureOffset - lastStructureEnd);
-                this.writer.write(buffer, thisStructureOffset, thisStructureLen);
+                write(buffer, lastStructureEnd, thisStructureOffset - lastStructureEnd);
+                write(buffer, thisStructureOffset, thisStructureLen);
                 
             }
             
-            this.writer.write(buffer, thisStructureEnd, (outerContentEnd - thisStructureEnd));
+            write(buffer, thisStructureEnd, (outerContentEnd - thisStructureEnd));
             
-            this.writer.write('?');
-            this.writer.write("&gt;");
+            write(PROCESSING_INSTRUCTION_END);
             closeStyle();
             
         } catch (final Exception e) {
@@ -772,9 +910,9 @@ public void handleDocType(
         try {
             
             openStyle(STYLE_DOCTYPE);
-            this.writer.write("&lt;");
-            this.writer.write(buffer, outerOffset + 1, outerLen - 2);
-            this.writer.write("&gt;");
+            write(OPEN_TAG_START);
+            write(buffer, outerOffset + 1, outerLen - 2);
+            write(OPEN_TAG_END);
             closeStyle();
             
         } catch (final Exception e) {
@@ -801,17 +939,15 @@ public void handleProcessingInstruction(
         try {
 
             openStyle(STYLE_PROCESSING_INSTRUCTION);
-            this.writer.write("&lt;");
-            this.writer.write('?');
-            this.writer.write(buffer, targetOffset, targetLen);
+            write(PROCESSING_INSTRUCTION_START);
+            write(buffer, targetOffset, targetLen);
             if (contentLen > 0)  {
-                this.writer.write(buffer, (targetOffset + targetLen), contentOffset - (targetOffset + targetLen));
-                this.writer.write(buffer, contentOffset, contentLen);
+                write(buffer, (targetOffset + targetLen), contentOffset - (targetOffset + targetLen));
+                write(buffer, contentOffset, contentLen);
             } else {
-                this.writer.write(buffer, (targetOffset + targetLen), ((outerOffset  + outerLen) - 2) - (targetOffset + targetLen));
+                write(buffer, (targetOffset + targetLen), ((outerOffset  + outerLen) - 2) - (targetOffset + targetLen));
             }
-            this.writer.write('?');
-            this.writer.write("&gt;");
+            write(PROCESSING_INSTRUCTION_END);
             closeStyle();
             
         } catch (final Exception e) {
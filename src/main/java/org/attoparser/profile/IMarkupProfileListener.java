@@ -0,0 +1,50 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.profile;
+
+/**
+ * <p>
+ *   Interface to be implemented by objects wanting to receive a {@link MarkupProfile} at the end of each
+ *   profiled document (for example, in order to log its report).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public interface IMarkupProfileListener {
+
+
+    /**
+     * <p>
+     *   Called when the end of a document has been handled by all the stages of the profiled chain.
+     * </p>
+     * <p>
+     *   The profile will be reset at the start of the next document, so any figures to be kept should
+     *   be copied from it.
+     * </p>
+     *
+     * @param profile the profile of the document.
+     */
+    public void handleProfile(final MarkupProfile profile);
+
+
+}
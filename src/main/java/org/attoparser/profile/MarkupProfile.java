@@ -0,0 +1,510 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * <p>
+ *   Profile of a chain of handlers, collected by the {@link ProfilingMarkupHandler} instances inserted
+ *   in the chain (one per <em>stage</em> to be profiled), all of which share the same instance of this class.
+ * </p>
+ * <p>
+ *   For each stage and type of event, the profile collects the number of calls, and the <em>inclusive</em>
+ *   (time spent in the stage and all the stages after it) and <em>exclusive</em> (time spent in the stage
+ *   itself, excluding the time spent in any profiled stages after it) times in nanoseconds.
+ * </p>
+ * <p>
+ *   In order to keep overhead low, times can be measured for only one out of every <em>N</em> events
+ *   reported to the first stage of the chain (the <em>sampling interval</em>). The actual distance between
+ *   sampled events is randomized around this value, so that sampling does not align with the (often very
+ *   periodic) structure of markup documents and skip some types of events entirely. All stages measure the same
+ *   events (including any events produced by a stage while handling a sampled event), so that exclusive
+ *   times are consistent. Calls are always counted, and estimated times are extrapolated from the sampled
+ *   ones.
+ * </p>
+ * <p>
+ *   Profiles are reset at the start of each document, and reported to the {@link IMarkupProfileListener}
+ *   specified at construction (if any) at the end of the document. A textual report can be obtained at any
+ *   moment by calling {@link #getReport()}.
+ * </p>
+ * <p>
+ *   As with handlers, this class is <strong>not thread-safe</strong>: a profile should only be used for one
+ *   parsing operation at a time.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final MarkupProfile profile = new MarkupProfile(10, listener);
+ *
+ *   IMarkupHandler handler = new OutputMarkupHandler(writer);
+ *   handler = new ProfilingMarkupHandler("output", profile, handler);
+ *   handler = new MinimizeHtmlMarkupHandler(MinimizeMode.ONLY_WHITE_SPACE, handler);
+ *   handler = new ProfilingMarkupHandler("minimize", profile, handler);
+ *   handler = new BlockSelectorMarkupHandler(handler, "div.content");
+ *   handler = new ProfilingMarkupHandler("select", profile, handler);
+ *
+ *   parser.parse(document, handler);
+ * </code></pre>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class MarkupProfile {
+
+    /**
+     * <p>
+     *   Types of events profiled, one per event handling method in {@link org.attoparser.IMarkupHandler}.
+     * </p>
+     */
+    public static enum Event {
+        DOCUMENT_START, DOCUMENT_END, XML_DECLARATION, DOCTYPE, CDATA_SECTION, COMMENT, TEXT,
+        STANDALONE_ELEMENT_START, STANDALONE_ELEMENT_END, OPEN_ELEMENT_START, OPEN_ELEMENT_END,
+        AUTO_OPEN_ELEMENT_START, AUTO_OPEN_ELEMENT_END, CLOSE_ELEMENT_START, CLOSE_ELEMENT_END,
+        AUTO_CLOSE_ELEMENT_START, AUTO_CLOSE_ELEMENT_END, UNMATCHED_CLOSE_ELEMENT_START, UNMATCHED_CLOSE_ELEMENT_END,
+        ATTRIBUTE, INNER_WHITE_SPACE, PROCESSING_INSTRUCTION
+    }
+
+    private static final Event[] EVENTS = Event.values();
+
+
+    private final int samplingInterval;
+    private final IMarkupProfileListener listener;
+    private final List<Stage> stages = new ArrayList<Stage>(6);
+
+    private int samplingCountdown;
+    private int randomSeed = 0x2545F491;
+    private boolean sampling = false;
+    private int depth = 0;
+    private long[] childNanos = new long[10];
+
+    private long documentStartNanos = 0L;
+    private long documentTimeNanos = 0L;
+
+
+
+    /**
+     * <p>
+     *   Creates a new profile measuring times for all events, and with no listener.
+     * </p>
+     */
+    public MarkupProfile() {
+        this(1, null);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new profile.
+     * </p>
+     *
+     * @param samplingInterval times will be measured for one out of every <tt>samplingInterval</tt> events
+     *                         (1 for measuring all events).
+     * @param listener the listener that will receive the profile at the end of each document (can be null).
+     */
+    public MarkupProfile(final int samplingInterval, final IMarkupProfileListener listener) {
+        super();
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("Sampling interval must be 1 or greater");
+        }
+        this.samplingInterval = samplingInterval;
+        this.listener = listener;
+        this.samplingCountdown = 1; // The first event is always sampled
+    }
+
+
+
+
+    Stage createStage(final String name) {
+        final Stage stage = new Stage(name);
+        // Chains are built from the last handler backwards, so stages are inserted at the beginning
+        this.stages.add(0, stage);
+        return stage;
+    }
+
+
+    boolean isOutermost() {
+        return this.depth == 0;
+    }
+
+
+    void startDocument() {
+        for (final Stage stage : this.stages) {
+            stage.reset();
+        }
+        this.samplingCountdown = 1;
+        this.sampling = false;
+        this.documentTimeNanos = 0L;
+        this.documentStartNanos = System.nanoTime();
+    }
+
+
+    void endDocument() {
+        this.documentTimeNanos = System.nanoTime() - this.documentStartNanos;
+        if (this.listener != null) {
+            this.listener.handleProfile(this);
+        }
+    }
+
+
+    long enter() {
+
+        if (this.depth == 0) {
+            this.sampling = (--this.samplingCountdown == 0);
+            if (this.sampling) {
+                this.samplingCountdown = nextSamplingDistance();
+            }
+        }
+
+        if (this.depth == this.childNanos.length) {
+            final long[] newChildNanos = new long[this.childNanos.length * 2];
+            System.arraycopy(this.childNanos, 0, newChildNanos, 0, this.childNanos.length);
+            this.childNanos = newChildNanos;
+        }
+        this.childNanos[this.depth++] = 0L;
+
+        return (this.sampling ? System.nanoTime() : 0L);
+
+    }
+
+
+    private int nextSamplingDistance() {
+        if (this.samplingInterval == 1) {
+            return 1;
+        }
+        // Xorshift pseudo-random numbers are more than enough here. Distances average the sampling interval.
+        int x = this.randomSeed;
+        x ^= (x << 13);
+        x ^= (x >>> 17);
+        x ^= (x << 5);
+        this.randomSeed = x;
+        return 1 + ((x & Integer.MAX_VALUE) % ((2 * this.samplingInterval) - 1));
+    }
+
+
+    void exit(final Stage stage, final int event, final long startNanos) {
+
+        this.depth--;
+        stage.calls[event]++;
+
+        if (!this.sampling) {
+            return;
+        }
+
+        final long inclusiveNanos = System.nanoTime() - startNanos;
+        stage.sampledCalls[event]++;
+        stage.inclusiveNanos[event] += inclusiveNanos;
+        stage.exclusiveNanos[event] += (inclusiveNanos - this.childNanos[this.depth]);
+        if (this.depth > 0) {
+            this.childNanos[this.depth - 1] += inclusiveNanos;
+        }
+
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the sampling interval of this profile.
+     * </p>
+     *
+     * @return the sampling interval.
+     */
+    public int getSamplingInterval() {
+        return this.samplingInterval;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the profiled stages, in chain order.
+     * </p>
+     *
+     * @return the list of stages.
+     */
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(this.stages);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the wall time elapsed between the start and end of the last document, as seen by the first
+     *   stage of the chain, in nanoseconds. The difference between this time and the inclusive time of the
+     *   first stage is an estimation of the time spent by the parser itself.
+     * </p>
+     *
+     * @return the document time.
+     */
+    public long getDocumentTimeNanos() {
+        return this.documentTimeNanos;
+    }
+
+
+    /**
+     * <p>
+     *   Returns a textual report of this profile, with a line for each stage and a line for each
+     *   type of event handled by the stage. Times are estimated (extrapolated from the sampled events)
+     *   and expressed in milliseconds.
+     * </p>
+     *
+     * @return the report.
+     */
+    public String getReport() {
+
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("Markup handler profile (document time: ");
+        appendMillis(strBuilder, this.documentTimeNanos);
+        strBuilder.append(" ms, sampling interval: ").append(this.samplingInterval).append(")\n");
+
+        for (final Stage stage : this.stages) {
+
+            strBuilder.append("  ").append(stage.name).append(": calls=").append(stage.getTotalCalls());
+            strBuilder.append(", inclusive=");
+            appendMillis(strBuilder, stage.getEstimatedTotalInclusiveNanos());
+            strBuilder.append(" ms, exclusive=");
+            appendMillis(strBuilder, stage.getEstimatedTotalExclusiveNanos());
+            strBuilder.append(" ms\n");
+
+            for (int i = 0; i < EVENTS.length; i++) {
+                if (stage.calls[i] == 0L) {
+                    continue;
+                }
+                strBuilder.append("    ").append(EVENTS[i]).append(": calls=").append(stage.calls[i]);
+                strBuilder.append(", sampled=").append(stage.sampledCalls[i]);
+                strBuilder.append(", inclusive=");
+                appendMillis(strBuilder, stage.getEstimatedInclusiveNanos(EVENTS[i]));
+                strBuilder.append(" ms, exclusive=");
+                appendMillis(strBuilder, stage.getEstimatedExclusiveNanos(EVENTS[i]));
+                strBuilder.append(" ms\n");
+            }
+
+        }
+
+        return strBuilder.toString();
+
+    }
+
+
+    private static void appendMillis(final StringBuilder strBuilder, final long nanos) {
+        // Milliseconds with three decimal positions (i.e. rounded to microseconds)
+        strBuilder.append(Math.round(nanos / 1000.0d) / 1000.0d);
+    }
+
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Profile of one of the stages of a chain of handlers, i.e. of the handler (and the rest of the chain
+     *   after it) being profiled by a {@link ProfilingMarkupHandler}.
+     * </p>
+     *
+     * @since 2.0.8
+     */
+    public static final class Stage {
+
+        private final String name;
+        final long[] calls = new long[EVENTS.length];
+        final long[] sampledCalls = new long[EVENTS.length];
+        final long[] inclusiveNanos = new long[EVENTS.length];
+        final long[] exclusiveNanos = new long[EVENTS.length];
+
+
+        Stage(final String name) {
+            super();
+            this.name = name;
+        }
+
+
+        void reset() {
+            for (int i = 0; i < EVENTS.length; i++) {
+                this.calls[i] = 0L;
+                this.sampledCalls[i] = 0L;
+                this.inclusiveNanos[i] = 0L;
+                this.exclusiveNanos[i] = 0L;
+            }
+        }
+
+
+        /**
+         * <p>
+         *   Returns the name of the stage.
+         * </p>
+         *
+         * @return the stage name.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+
+        /**
+         * <p>
+         *   Returns the number of calls to the stage for an event type.
+         * </p>
+         *
+         * @param event the event type.
+         * @return the number of calls.
+         */
+        public long getCalls(final Event event) {
+            return this.calls[event.ordinal()];
+        }
+
+
+        /**
+         * <p>
+         *   Returns the number of calls to the stage for an event type whose times have been measured.
+         * </p>
+         *
+         * @param event the event type.
+         * @return the number of sampled calls.
+         */
+        public long getSampledCalls(final Event event) {
+            return this.sampledCalls[event.ordinal()];
+        }
+
+
+        /**
+         * <p>
+         *   Returns the measured (sampled) inclusive time for an event type, in nanoseconds.
+         * </p>
+         *
+         * @param event the event type.
+         * @return the sampled inclusive time.
+         */
+        public long getInclusiveNanos(final Event event) {
+            return this.inclusiveNanos[event.ordinal()];
+        }
+
+
+        /**
+         * <p>
+         *   Returns the measured (sampled) exclusive time for an event type, in nanoseconds.
+         * </p>
+         *
+         * @param event the event type.
+         * @return the sampled exclusive time.
+         */
+        public long getExclusiveNanos(final Event event) {
+            return this.exclusiveNanos[event.ordinal()];
+        }
+
+
+        /**
+         * <p>
+         *   Returns the estimated inclusive time for an event type (extrapolated from the sampled calls to
+         *   all calls), in nanoseconds.
+         * </p>
+         *
+         * @param event the event type.
+         * @return the estimated inclusive time.
+         */
+        public long getEstimatedInclusiveNanos(final Event event) {
+            return estimate(this.inclusiveNanos, event.ordinal());
+        }
+
+
+        /**
+         * <p>
+         *   Returns the estimated exclusive time for an event type (extrapolated from the sampled calls to
+         *   all calls), in nanoseconds.
+         * </p>
+         *
+         * @param event the event type.
+         * @return the estimated exclusive time.
+         */
+        public long getEstimatedExclusiveNanos(final Event event) {
+            return estimate(this.exclusiveNanos, event.ordinal());
+        }
+
+
+        /**
+         * <p>
+         *   Returns the total number of calls to the stage.
+         * </p>
+         *
+         * @return the total number of calls.
+         */
+        public long getTotalCalls() {
+            long total = 0L;
+            for (int i = 0; i < EVENTS.length; i++) {
+                total += this.calls[i];
+            }
+            return total;
+        }
+
+
+        /**
+         * <p>
+         *   Returns the estimated inclusive time for all event types, in nanoseconds.
+         * </p>
+         *
+         * @return the estimated total inclusive time.
+         */
+        public long getEstimatedTotalInclusiveNanos() {
+            long total = 0L;
+            for (int i = 0; i < EVENTS.length; i++) {
+                total += estimate(this.inclusiveNanos, i);
+            }
+            return total;
+        }
+
+
+        /**
+         * <p>
+         *   Returns the estimated exclusive time for all event types, in nanoseconds.
+         * </p>
+         *
+         * @return the estimated total exclusive time.
+         */
+        public long getEstimatedTotalExclusiveNanos() {
+            long total = 0L;
+            for (int i = 0; i < EVENTS.length; i++) {
+                total += estimate(this.exclusiveNanos, i);
+            }
+            return total;
+        }
+
+
+        private long estimate(final long[] nanos, final int event) {
+            if (this.sampledCalls[event] == 0L || this.sampledCalls[event] == this.calls[event]) {
+                return nanos[event];
+            }
+            return (long) (((double) nanos[event] / this.sampledCalls[event]) * this.calls[event]);
+        }
+
+    }
+
+
+}
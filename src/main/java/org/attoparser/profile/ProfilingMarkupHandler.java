@@ -0,0 +1,519 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.profile;
+
+import org.attoparser.AbstractChainedMarkupHandler;
+import org.attoparser.IMarkupHandler;
+import org.attoparser.ParseException;
+
+
+/**
+ * <p>
+ *   Implementation of {@link org.attoparser.IMarkupHandler} used for profiling a <em>stage</em> of a chain
+ *   of handlers, i.e. the handler specified as the next step in the chain (and, inclusively, all the handlers
+ *   after it).
+ * </p>
+ * <p>
+ *   Profiling handlers can be inserted between any two handlers in a chain, and all the profiling handlers
+ *   in a chain should share the same {@link MarkupProfile} instance, which will compute inclusive and exclusive
+ *   times for each stage, apply sampling and report the results at the end of the document. See
+ *   {@link MarkupProfile} for a sample usage.
+ * </p>
+ * <p>
+ *   Note that, as with most handlers, this class is <strong>not thread-safe</strong>. Also, instances of this class
+ *   should not be reused across parsing operations.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class ProfilingMarkupHandler extends AbstractChainedMarkupHandler {
+
+    private static final int DOCUMENT_START = MarkupProfile.Event.DOCUMENT_START.ordinal();
+    private static final int DOCUMENT_END = MarkupProfile.Event.DOCUMENT_END.ordinal();
+    private static final int XML_DECLARATION = MarkupProfile.Event.XML_DECLARATION.ordinal();
+    private static final int DOCTYPE = MarkupProfile.Event.DOCTYPE.ordinal();
+    private static final int CDATA_SECTION = MarkupProfile.Event.CDATA_SECTION.ordinal();
+    private static final int COMMENT = MarkupProfile.Event.COMMENT.ordinal();
+    private static final int TEXT = MarkupProfile.Event.TEXT.ordinal();
+    private static final int STANDALONE_ELEMENT_START = MarkupProfile.Event.STANDALONE_ELEMENT_START.ordinal();
+    private static final int STANDALONE_ELEMENT_END = MarkupProfile.Event.STANDALONE_ELEMENT_END.ordinal();
+    private static final int OPEN_ELEMENT_START = MarkupProfile.Event.OPEN_ELEMENT_START.ordinal();
+    private static final int OPEN_ELEMENT_END = MarkupProfile.Event.OPEN_ELEMENT_END.ordinal();
+    private static final int AUTO_OPEN_ELEMENT_START = MarkupProfile.Event.AUTO_OPEN_ELEMENT_START.ordinal();
+    private static final int AUTO_OPEN_ELEMENT_END = MarkupProfile.Event.AUTO_OPEN_ELEMENT_END.ordinal();
+    private static final int CLOSE_ELEMENT_START = MarkupProfile.Event.CLOSE_ELEMENT_START.ordinal();
+    private static final int CLOSE_ELEMENT_END = MarkupProfile.Event.CLOSE_ELEMENT_END.ordinal();
+    private static final int AUTO_CLOSE_ELEMENT_START = MarkupProfile.Event.AUTO_CLOSE_ELEMENT_START.ordinal();
+    private static final int AUTO_CLOSE_ELEMENT_END = MarkupProfile.Event.AUTO_CLOSE_ELEMENT_END.ordinal();
+    private static final int UNMATCHED_CLOSE_ELEMENT_START = MarkupProfile.Event.UNMATCHED_CLOSE_ELEMENT_START.ordinal();
+    private static final int UNMATCHED_CLOSE_ELEMENT_END = MarkupProfile.Event.UNMATCHED_CLOSE_ELEMENT_END.ordinal();
+    private static final int ATTRIBUTE = MarkupProfile.Event.ATTRIBUTE.ordinal();
+    private static final int INNER_WHITE_SPACE = MarkupProfile.Event.INNER_WHITE_SPACE.ordinal();
+    private static final int PROCESSING_INSTRUCTION = MarkupProfile.Event.PROCESSING_INSTRUCTION.ordinal();
+
+    private final MarkupProfile profile;
+    private final MarkupProfile.Stage stage;
+
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this handler, profiling the handler specified as next step in the chain.
+     * </p>
+     *
+     * @param stageName the name of the profiled stage, to be used in reports.
+     * @param profile the profile, shared among all the profiling handlers in the chain.
+     * @param next the next step in the chain, i.e. the profiled stage.
+     */
+    public ProfilingMarkupHandler(final String stageName, final MarkupProfile profile, final IMarkupHandler next) {
+        super(next);
+        if (stageName == null) {
+            throw new IllegalArgumentException("Stage name cannot be null");
+        }
+        if (profile == null) {
+            throw new IllegalArgumentException("Profile cannot be null");
+        }
+        this.profile = profile;
+        this.stage = profile.createStage(stageName);
+    }
+
+
+
+
+    @Override
+    public int getMarkupEventInterest() {
+        // This handler only observes events, so it should not make the parser report any more of them
+        return getNextMarkupEventInterest();
+    }
+
+
+
+
+    @Override
+    public void handleDocumentStart(
+            final long startTimeNanos, final int line, final int col)
+            throws ParseException {
+        if (this.profile.isOutermost()) {
+            this.profile.startDocument();
+        }
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleDocumentStart(startTimeNanos, line, col);
+        } finally {
+            this.profile.exit(this.stage, DOCUMENT_START, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleDocumentEnd(
+            final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleDocumentEnd(endTimeNanos, totalTimeNanos, line, col);
+        } finally {
+            this.profile.exit(this.stage, DOCUMENT_END, startNanos);
+        }
+        if (this.profile.isOutermost()) {
+            this.profile.endDocument();
+        }
+    }
+
+
+
+    @Override
+    public void handleXmlDeclaration(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int versionOffset, final int versionLen,
+            final int versionLine, final int versionCol,
+            final int encodingOffset, final int encodingLen,
+            final int encodingLine, final int encodingCol,
+            final int standaloneOffset, final int standaloneLen,
+            final int standaloneLine, final int standaloneCol,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleXmlDeclaration(
+                    buffer,
+                    keywordOffset, keywordLen, keywordLine, keywordCol,
+                    versionOffset, versionLen, versionLine, versionCol,
+                    encodingOffset, encodingLen, encodingLine, encodingCol,
+                    standaloneOffset, standaloneLen, standaloneLine, standaloneCol,
+                    outerOffset, outerLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, XML_DECLARATION, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleDocType(
+            final char[] buffer,
+            final int keywordOffset, final int keywordLen,
+            final int keywordLine, final int keywordCol,
+            final int elementNameOffset, final int elementNameLen,
+            final int elementNameLine, final int elementNameCol,
+            final int typeOffset, final int typeLen,
+            final int typeLine, final int typeCol,
+            final int publicIdOffset, final int publicIdLen,
+            final int publicIdLine, final int publicIdCol,
+            final int systemIdOffset, final int systemIdLen,
+            final int systemIdLine, final int systemIdCol,
+            final int internalSubsetOffset, final int internalSubsetLen,
+            final int internalSubsetLine, final int internalSubsetCol,
+            final int outerOffset, final int outerLen,
+            final int outerLine, final int outerCol)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleDocType(
+                    buffer,
+                    keywordOffset, keywordLen, keywordLine, keywordCol,
+                    elementNameOffset, elementNameLen, elementNameLine, elementNameCol,
+                    typeOffset, typeLen, typeLine, typeCol,
+                    publicIdOffset, publicIdLen, publicIdLine, publicIdCol,
+                    systemIdOffset, systemIdLen, systemIdLine, systemIdCol,
+                    internalSubsetOffset, internalSubsetLen, internalSubsetLine, internalSubsetCol,
+                    outerOffset, outerLen, outerLine, outerCol);
+        } finally {
+            this.profile.exit(this.stage, DOCTYPE, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleCDATASection(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleCDATASection(buffer, contentOffset, contentLen, outerOffset, outerLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, CDATA_SECTION, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleComment(
+            final char[] buffer,
+            final int contentOffset, final int contentLen,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleComment(buffer, contentOffset, contentLen, outerOffset, outerLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, COMMENT, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleText(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleText(buffer, offset, len, line, col);
+        } finally {
+            this.profile.exit(this.stage, TEXT, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleStandaloneElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final boolean minimized, final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleStandaloneElementStart(buffer, nameOffset, nameLen, minimized, line, col);
+        } finally {
+            this.profile.exit(this.stage, STANDALONE_ELEMENT_START, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleStandaloneElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final boolean minimized, final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleStandaloneElementEnd(buffer, nameOffset, nameLen, minimized, line, col);
+        } finally {
+            this.profile.exit(this.stage, STANDALONE_ELEMENT_END, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleOpenElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, OPEN_ELEMENT_START, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleOpenElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleOpenElementEnd(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, OPEN_ELEMENT_END, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleAutoOpenElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleAutoOpenElementStart(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, AUTO_OPEN_ELEMENT_START, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleAutoOpenElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleAutoOpenElementEnd(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, AUTO_OPEN_ELEMENT_END, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleCloseElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, CLOSE_ELEMENT_START, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleCloseElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, CLOSE_ELEMENT_END, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleAutoCloseElementStart(
+            final char[] buffer,
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleAutoCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, AUTO_CLOSE_ELEMENT_START, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleAutoCloseElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleAutoCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, AUTO_CLOSE_ELEMENT_END, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementStart(
+            final char[] buffer, 
+            final int nameOffset, final int nameLen, 
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleUnmatchedCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, UNMATCHED_CLOSE_ELEMENT_START, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleUnmatchedCloseElementEnd(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleUnmatchedCloseElementEnd(buffer, nameOffset, nameLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, UNMATCHED_CLOSE_ELEMENT_END, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleAttribute(
+            final char[] buffer,
+            final int nameOffset, final int nameLen,
+            final int nameLine, final int nameCol,
+            final int operatorOffset, final int operatorLen,
+            final int operatorLine, final int operatorCol,
+            final int valueContentOffset, final int valueContentLen,
+            final int valueOuterOffset, final int valueOuterLen,
+            final int valueLine, final int valueCol)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleAttribute(
+                    buffer,
+                    nameOffset, nameLen, nameLine, nameCol,
+                    operatorOffset, operatorLen, operatorLine, operatorCol,
+                    valueContentOffset, valueContentLen,
+                    valueOuterOffset, valueOuterLen, valueLine, valueCol);
+        } finally {
+            this.profile.exit(this.stage, ATTRIBUTE, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleInnerWhiteSpace(
+            final char[] buffer,
+            final int offset, final int len,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleInnerWhiteSpace(buffer, offset, len, line, col);
+        } finally {
+            this.profile.exit(this.stage, INNER_WHITE_SPACE, startNanos);
+        }
+    }
+
+
+
+    @Override
+    public void handleProcessingInstruction(
+            final char[] buffer,
+            final int targetOffset, final int targetLen,
+            final int targetLine, final int targetCol,
+            final int contentOffset, final int contentLen,
+            final int contentLine, final int contentCol,
+            final int outerOffset, final int outerLen,
+            final int line, final int col)
+            throws ParseException {
+        final long startNanos = this.profile.enter();
+        try {
+            getNext().handleProcessingInstruction(
+                    buffer,
+                    targetOffset, targetLen, targetLine, targetCol,
+                    contentOffset, contentLen, contentLine, contentCol,
+                    outerOffset, outerLen, line, col);
+        } finally {
+            this.profile.exit(this.stage, PROCESSING_INSTRUCTION, startNanos);
+        }
+    }
+
+
+}
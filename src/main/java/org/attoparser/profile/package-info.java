@@ -0,0 +1,6 @@
+/**
+ * <p>
+ *   Handlers for profiling the stages of chains of handlers.
+ * </p>
+ */
+package org.attoparser.profile;
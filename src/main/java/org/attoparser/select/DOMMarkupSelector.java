@@ -0,0 +1,644 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.select;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.attoparser.dom.CDATASection;
+import org.attoparser.dom.Comment;
+import org.attoparser.dom.DocType;
+import org.attoparser.dom.Document;
+import org.attoparser.dom.Element;
+import org.attoparser.dom.INestableNode;
+import org.attoparser.dom.INode;
+import org.attoparser.dom.ProcessingInstruction;
+import org.attoparser.dom.Text;
+import org.attoparser.dom.XmlDeclaration;
+
+
+/**
+ * <p>
+ *   Evaluates <em>markup selectors</em> directly on DOM trees built with the classes at the
+ *   <tt>org.attoparser.dom</tt> package, without the need to write the DOM as markup and parse it again
+ *   through a {@link org.attoparser.select.BlockSelectorMarkupHandler} or
+ *   {@link org.attoparser.select.NodeSelectorMarkupHandler}.
+ * </p>
+ * <p>
+ *   Selector syntax is exactly the same one used by the selecting markup handlers (see
+ *   {@link org.attoparser.select}), and selectors are evaluated against the descendants of the node specified
+ *   as root of the selection, so that <tt>/x</tt> means <em>direct children of the root node with name
+ *   <tt>x</tt></em>. The root node itself is never selected.
+ * </p>
+ * <p>
+ *   Selection results are <strong>lazy</strong>: the tree is walked in document order as the returned
+ *   iterators are consumed, and each candidate node is evaluated right-to-left (first against the last level
+ *   of the selector, then against its ancestors), so that most non-matching nodes are discarded after a
+ *   single check. When the root is a frozen {@link org.attoparser.dom.Document} (see
+ *   {@link org.attoparser.dom.Document#freeze()}) and the last level of the selector requires a specific element
+ *   name, candidates are taken from the element name indexes of the document instead of walking the tree.
+ * </p>
+ * <p>
+ *   Instances of this class are <strong>thread-safe</strong> and can be reused for any number of selection
+ *   operations. The iterators they return, however, are not.
+ * </p>
+ * <p>
+ *   Sample usage:
+ * </p>
+ * <pre><code>
+ *   final DOMMarkupSelector selector = new DOMMarkupSelector(true, "div.content//p[title]");
+ *   for (final INode node : selector.select(document)) {
+ *       ...
+ *   }
+ * </code></pre>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class DOMMarkupSelector {
+
+    private final boolean html;
+    private final String selector;
+    private final IMarkupSelectorItem[] selectorItems;
+    private final int maxSelectionDepth;
+    private final String requiredElementName;
+
+
+
+    /**
+     * <p>
+     *   Create a new instance of this selector.
+     * </p>
+     *
+     * @param html whether the selector should be evaluated in HTML mode (case-insensitive, with class and id
+     *             modifiers) or in XML mode.
+     * @param selector the selector to be used. Cannot be null.
+     */
+    public DOMMarkupSelector(final boolean html, final String selector) {
+        this(html, selector, null);
+    }
+
+
+    /**
+     * <p>
+     *   Create a new instance of this selector, specifying a <em>markup selector reference resolver</em>.
+     * </p>
+     *
+     * @param html whether the selector should be evaluated in HTML mode (case-insensitive, with class and id
+     *             modifiers) or in XML mode.
+     * @param selector the selector to be used. Cannot be null.
+     * @param referenceResolver the reference resolver to be used. Can be null if none is required.
+     */
+    public DOMMarkupSelector(
+            final boolean html, final String selector, final IMarkupSelectorReferenceResolver referenceResolver) {
+
+        super();
+
+        if (selector == null || selector.trim().length() == 0) {
+            throw new IllegalArgumentException("Selector cannot be null or empty");
+        }
+
+        this.html = html;
+        this.selector = selector;
+
+        final List<IMarkupSelectorItem> items = MarkupSelectorItems.forSelector(html, selector, referenceResolver);
+        this.selectorItems = items.toArray(new IMarkupSelectorItem[items.size()]);
+
+        // If no level in the selector can match at any depth, there is no point in walking the tree any
+        // deeper than the number of levels in the selector.
+        int maxDepth = this.selectorItems.length;
+        for (final IMarkupSelectorItem item : this.selectorItems) {
+            if (item.anyLevel()) {
+                maxDepth = Integer.MAX_VALUE;
+                break;
+            }
+        }
+        this.maxSelectionDepth = maxDepth;
+
+        // If the last level can only match elements with a specific name, frozen documents will allow us
+        // to use their element name indexes instead of walking the whole tree.
+        final IMarkupSelectorItem lastItem = this.selectorItems[this.selectorItems.length - 1];
+        this.requiredElementName =
+                (lastItem instanceof MarkupSelectorItem?
+                        ((MarkupSelectorItem) lastItem).getRequiredElementName() : null);
+
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns whether this selector is evaluated in HTML mode.
+     * </p>
+     *
+     * @return <tt>true</tt> if HTML mode is being used, <tt>false</tt> if XML.
+     */
+    public boolean isHtml() {
+        return this.html;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the selector this object was created for.
+     * </p>
+     *
+     * @return the selector.
+     */
+    public String getSelector() {
+        return this.selector;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Select the nodes matching this selector among the descendants of the specified root node.
+     * </p>
+     * <p>
+     *   The returned object is lazy: no evaluation is performed until its iterators are consumed, and each
+     *   call to {@link Iterable#iterator()} performs a new selection on the tree as it is at that moment.
+     * </p>
+     *
+     * @param root the node acting as root of the selection (normally a {@link org.attoparser.dom.Document}).
+     * @return the matching nodes, in document order.
+     */
+    public Iterable<INode> select(final INestableNode root) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root node cannot be null");
+        }
+        return new Iterable<INode>() {
+            public Iterator<INode> iterator() {
+                return new SelectionIterator(DOMMarkupSelector.this, root);
+            }
+        };
+    }
+
+
+    /**
+     * <p>
+     *   Select the first node (in document order) matching this selector among the descendants of the
+     *   specified root node.
+     * </p>
+     *
+     * @param root the node acting as root of the selection (normally a {@link org.attoparser.dom.Document}).
+     * @return the first matching node, or <tt>null</tt> if no node matches.
+     */
+    public INode selectFirst(final INestableNode root) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root node cannot be null");
+        }
+        final SelectionIterator iterator = new SelectionIterator(this, root);
+        return (iterator.hasNext()? iterator.next() : null);
+    }
+
+
+    /**
+     * <p>
+     *   Checks whether the specified node would be selected by this selector when applied on the specified
+     *   root node.
+     * </p>
+     *
+     * @param root the node acting as root of the selection.
+     * @param node the node to be checked.
+     * @return <tt>true</tt> if the node matches, <tt>false</tt> if not (or if it is not a descendant of root).
+     */
+    public boolean matches(final INestableNode root, final INode node) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root node cannot be null");
+        }
+        if (node == null || node == root) {
+            return false;
+        }
+        return new MatchingContext(this.selectorItems, root).matches(node);
+    }
+
+
+
+
+    /*
+     * Holds the (mutable) structures needed for evaluating the selector items against DOM nodes. Element
+     * nodes are converted into a SelectorElementBuffer so that the very same matching code used for event-based
+     * selection is applied.
+     */
+    static final class MatchingContext {
+
+        private final IMarkupSelectorItem[] selectorItems;
+        private final INestableNode root;
+
+        private final SelectorElementBuffer elementBuffer = new SelectorElementBuffer();
+        private final MarkupSelectorFilter.MarkupBlockMatchingCounter counter =
+                new MarkupSelectorFilter.MarkupBlockMatchingCounter();
+        private char[] scratch = new char[40];
+        private Element bufferedElement = null;
+
+        // For each item with an index condition, one per depth of the parents evaluated, created lazily
+        // (see matchesItem)
+        private final SiblingMatchingState[][] siblingStates;
+
+
+        MatchingContext(final IMarkupSelectorItem[] selectorItems, final INestableNode root) {
+            super();
+            this.selectorItems = selectorItems;
+            this.root = root;
+            this.siblingStates = new SiblingMatchingState[selectorItems.length][];
+        }
+
+
+        boolean matches(final INode node) {
+            // Buffered elements are only reused inside a single evaluation, as the tree might change in between
+            this.bufferedElement = null;
+            return matchesFrom(this.selectorItems.length - 1, node);
+        }
+
+
+        /*
+         * Right-to-left evaluation: check the node against the item at the specified level, and then look
+         * for an ancestor (the parent, if the item is not 'anyLevel') matching the previous level.
+         */
+        private boolean matchesFrom(final int itemIndex, final INode node) {
+
+            final IMarkupSelectorItem item = this.selectorItems[itemIndex];
+
+            if (!matchesItem(itemIndex, node)) {
+                return false;
+            }
+
+            final INestableNode parent = node.getParent();
+
+            if (itemIndex == 0) {
+                if (item.anyLevel()) {
+                    return true;
+                }
+                return (parent == this.root);
+            }
+
+            if (!item.anyLevel()) {
+                return (parent != this.root && parent != null && matchesFrom(itemIndex - 1, parent));
+            }
+
+            INestableNode ancestor = parent;
+            while (ancestor != this.root && ancestor != null) {
+                if (matchesFrom(itemIndex - 1, ancestor)) {
+                    return true;
+                }
+                ancestor = ancestor.getParent();
+            }
+            return false;
+
+        }
+
+
+        private boolean matchesItem(final int itemIndex, final INode node) {
+
+            final IMarkupSelectorItem item = this.selectorItems[itemIndex];
+
+            if (!item.hasIndexCondition()) {
+                return matchesNode(item, node, this.counter);
+            }
+
+            // Index conditions are evaluated on the position of the node among its MATCHING siblings, so we
+            // need to replay matching on all the siblings that precede it, just as would have happened when
+            // receiving these nodes as parsing events. As nodes are normally evaluated in document order, the
+            // state of this replay is kept for each item and depth (there is only one parent being walked at each
+            // depth), so that it can continue from the last sibling evaluated instead of starting again for each
+            // node, which would make selection quadratic on the amount of siblings.
+            final INestableNode parent = node.getParent();
+            final SiblingMatchingState state = siblingState(itemIndex, parent);
+            if (parent == null) {
+                state.reset(null);
+                return matchesNode(item, node, state.counter);
+            }
+
+            if (state.parent == parent && state.sibling == node) {
+                return state.matched;
+            }
+
+            final int siblingsLen = parent.numChildren();
+            int start = 0;
+            if (state.parent == parent && state.position >= 0 && state.position < siblingsLen &&
+                    parent.getChild(state.position) == state.sibling) {
+                // Checking the last sibling evaluated is still there protects against most modifications to the tree
+                start = state.position + 1;
+            } else {
+                state.reset(parent);
+            }
+
+            while (true) {
+                for (int i = start; i < siblingsLen; i++) {
+                    final INode sibling = parent.getChild(i);
+                    state.matched = matchesNode(item, sibling, state.counter);
+                    state.position = i;
+                    state.sibling = sibling;
+                    if (sibling == node) {
+                        return state.matched;
+                    }
+                }
+                if (start == 0) {
+                    return false;
+                }
+                // The node precedes the last sibling evaluated: replay from the first one
+                state.reset(parent);
+                start = 0;
+            }
+
+        }
+
+
+        private SiblingMatchingState siblingState(final int itemIndex, final INestableNode parent) {
+
+            int depth = 0;
+            for (INestableNode ancestor = parent; ancestor != null; ancestor = ancestor.getParent()) {
+                depth++;
+            }
+
+            SiblingMatchingState[] states = this.siblingStates[itemIndex];
+            if (states == null || states.length <= depth) {
+                final SiblingMatchingState[] newStates = new SiblingMatchingState[depth + 10];
+                if (states != null) {
+                    System.arraycopy(states, 0, newStates, 0, states.length);
+                }
+                states = newStates;
+                this.siblingStates[itemIndex] = states;
+            }
+            if (states[depth] == null) {
+                states[depth] = new SiblingMatchingState();
+            }
+            return states[depth];
+
+        }
+
+
+        private boolean matchesNode(
+                final IMarkupSelectorItem item, final INode node,
+                final MarkupSelectorFilter.MarkupBlockMatchingCounter counter) {
+
+            if (node instanceof Element) {
+                return item.matchesElement(0, bufferElement((Element) node), counter);
+            }
+            if (node instanceof CDATASection) {
+                return item.matchesCDATASection(0, counter);
+            }
+            if (node instanceof Text) {
+                return item.matchesText(0, counter);
+            }
+            if (node instanceof Comment) {
+                return item.matchesComment(0, counter);
+            }
+            if (node instanceof DocType) {
+                return item.matchesDocTypeClause(0, counter);
+            }
+            if (node instanceof XmlDeclaration) {
+                return item.matchesXmlDeclaration(0, counter);
+            }
+            if (node instanceof ProcessingInstruction) {
+                return item.matchesProcessingInstruction(0, counter);
+            }
+            return false;
+
+        }
+
+
+        private SelectorElementBuffer bufferElement(final Element element) {
+
+            if (element == this.bufferedElement) {
+                return this.elementBuffer;
+            }
+
+            final String elementName = element.getElementName();
+            final int elementNameLen = elementName.length();
+            ensureScratch(elementNameLen);
+            elementName.getChars(0, elementNameLen, this.scratch, 0);
+
+            this.elementBuffer.bufferElementStart(
+                    this.scratch, 0, elementNameLen, 0, 0, !element.hasChildren(), false);
+
+            if (element.hasAttributes()) {
+                for (final Map.Entry<String,String> attribute : element.getAttributeMap().entrySet()) {
+
+                    final String attributeName = attribute.getKey();
+                    final String attributeValue = (attribute.getValue() == null? "" : attribute.getValue());
+                    final int attributeNameLen = attributeName.length();
+                    final int attributeValueLen = attributeValue.length();
+
+                    ensureScratch(attributeNameLen + 1 + attributeValueLen);
+                    attributeName.getChars(0, attributeNameLen, this.scratch, 0);
+                    this.scratch[attributeNameLen] = '=';
+                    attributeValue.getChars(0, attributeValueLen, this.scratch, attributeNameLen + 1);
+
+                    this.elementBuffer.bufferAttribute(
+                            this.scratch,
+                            0, attributeNameLen, 0, 0,
+                            attributeNameLen, 1, 0, 0,
+                            attributeNameLen + 1, attributeValueLen,
+                            attributeNameLen + 1, attributeValueLen, 0, 0);
+
+                }
+            }
+
+            this.bufferedElement = element;
+            return this.elementBuffer;
+
+        }
+
+
+        private void ensureScratch(final int len) {
+            if (this.scratch.length < len) {
+                this.scratch = new char[Math.max(len, this.scratch.length * 2)];
+            }
+        }
+
+
+    }
+
+
+
+
+    /*
+     * State of the replay of index-condition matching on the children of a parent: the matching counter after
+     * evaluating the sibling at 'position', and the result of that evaluation.
+     */
+    private static final class SiblingMatchingState {
+
+        private final MarkupSelectorFilter.MarkupBlockMatchingCounter counter =
+                new MarkupSelectorFilter.MarkupBlockMatchingCounter();
+        private INestableNode parent = null;
+        private int position = -1;
+        private INode sibling = null;
+        private boolean matched = false;
+
+        SiblingMatchingState() {
+            super();
+        }
+
+        void reset(final INestableNode newParent) {
+            if (this.counter.counters != null) {
+                Arrays.fill(this.counter.indexes, -1);
+                Arrays.fill(this.counter.counters, -1);
+            }
+            this.parent = newParent;
+            this.position = -1;
+            this.sibling = null;
+            this.matched = false;
+        }
+
+    }
+
+
+
+
+    /*
+     * Lazy, depth-first (document order) iterator on the descendants of the root node, returning only those
+     * that match the selector.
+     */
+    private static final class SelectionIterator implements Iterator<INode> {
+
+        private static final int DEFAULT_STACK_SIZE = 10;
+
+        private final MatchingContext context;
+        private final int maxSelectionDepth;
+
+        // Only used when selecting on the element name indexes of frozen documents
+        private final List<Element> candidates;
+        private int candidatesPosition;
+
+        private INestableNode[] parentStack;
+        private int[] positionStack;
+        private int depth;
+
+        private INode next;
+
+
+        SelectionIterator(final DOMMarkupSelector selector, final INestableNode root) {
+
+            super();
+
+            this.context = new MatchingContext(selector.selectorItems, root);
+            this.maxSelectionDepth = selector.maxSelectionDepth;
+
+            if (selector.requiredElementName != null && root instanceof Document && root.isFrozen()) {
+                this.candidates = ((Document) root).getElementsByName(selector.html, selector.requiredElementName);
+                this.candidatesPosition = 0;
+                this.next = computeNext();
+                return;
+            }
+            this.candidates = null;
+
+            this.parentStack = new INestableNode[DEFAULT_STACK_SIZE];
+            this.positionStack = new int[DEFAULT_STACK_SIZE];
+            this.depth = 0;
+            this.parentStack[0] = root;
+            this.positionStack[0] = 0;
+
+            this.next = computeNext();
+
+        }
+
+
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+
+        public INode next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            final INode result = this.next;
+            this.next = computeNext();
+            return result;
+        }
+
+
+        public void remove() {
+            throw new UnsupportedOperationException("Removal is not supported by DOM selection iterators");
+        }
+
+
+        private INode computeNext() {
+
+            if (this.candidates != null) {
+                final int candidatesLen = this.candidates.size();
+                while (this.candidatesPosition < candidatesLen) {
+                    final Element candidate = this.candidates.get(this.candidatesPosition++);
+                    if (this.context.matches(candidate)) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+
+            while (this.depth >= 0) {
+
+                final INestableNode parent = this.parentStack[this.depth];
+                final int position = this.positionStack[this.depth];
+
+                if (position >= parent.numChildren()) {
+                    this.parentStack[this.depth] = null;
+                    this.depth--;
+                    continue;
+                }
+
+                this.positionStack[this.depth] = position + 1;
+                final INode node = parent.getChild(position);
+
+                if (node instanceof INestableNode && this.depth + 1 < this.maxSelectionDepth) {
+                    final INestableNode nestableNode = (INestableNode) node;
+                    if (nestableNode.hasChildren()) {
+                        push(nestableNode);
+                    }
+                }
+
+                if (this.context.matches(node)) {
+                    return node;
+                }
+
+            }
+
+            return null;
+
+        }
+
+
+        private void push(final INestableNode parent) {
+            this.depth++;
+            if (this.depth == this.parentStack.length) {
+                final INestableNode[] newParentStack = new INestableNode[this.parentStack.length + DEFAULT_STACK_SIZE];
+                final int[] newPositionStack = new int[this.positionStack.length + DEFAULT_STACK_SIZE];
+                System.arraycopy(this.parentStack, 0, newParentStack, 0, this.parentStack.length);
+                System.arraycopy(this.positionStack, 0, newPositionStack, 0, this.positionStack.length);
+                this.parentStack = newParentStack;
+                this.positionStack = newPositionStack;
+            }
+            this.parentStack[this.depth] = parent;
+            this.positionStack[this.depth] = 0;
+        }
+
+    }
+
+
+}
@@ -28,6 +28,8 @@ interface IMarkupSelectorItem {
 
     boolean anyLevel();
 
+    boolean hasIndexCondition();
+
     boolean matchesText(
             final int markupBlockIndex, final MarkupSelectorFilter.MarkupBlockMatchingCounter markupBlockMatchingCounter);
 
@@ -44,6 +44,10 @@ public boolean anyLevel() {
         return this.left.anyLevel();
     }
 
+    public boolean hasIndexCondition() {
+        return this.left.hasIndexCondition() || this.right.hasIndexCondition();
+    }
+
 
     public boolean matchesText(
             final int markupBlockIndex, final MarkupSelectorFilter.MarkupBlockMatchingCounter markupBlockMatchingCounter) {
@@ -291,6 +291,25 @@ public boolean anyLevel() {
     }
 
 
+    /*
+     * Returns the name elements must have in order to match this item (normalized to lower case in HTML mode),
+     * or null if this item can match nodes other than elements or elements with any name. Used for
+     * evaluating selectors on element name indexes.
+     */
+    String getRequiredElementName() {
+        if (this.contentSelector || this.textSelector || this.commentSelector || this.cdataSectionSelector ||
+                this.docTypeClauseSelector || this.xmlDeclarationSelector || this.processingInstructionSelector) {
+            return null;
+        }
+        return this.selectorPath;
+    }
+
+
+    public boolean hasIndexCondition() {
+        return this.index != null;
+    }
+
+
     public boolean matchesText(
             final int markupBlockIndex, final MarkupSelectorFilter.MarkupBlockMatchingCounter markupBlockMatchingCounter) {
 
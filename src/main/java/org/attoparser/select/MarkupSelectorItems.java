@@ -26,6 +26,8 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.attoparser.util.FlightRecorderUtil;
+
 /*
  *
  * @author Daniel Fernandez
@@ -73,8 +75,13 @@ static List<IMarkupSelectorItem> forSelector(
             return items;
         }
 
+        final Object compilationEvent = FlightRecorderUtil.begin(FlightRecorderUtil.SELECTOR_COMPILATION);
+
         items = Collections.unmodifiableList(parseSelector(html, selector, referenceResolver));
 
+        FlightRecorderUtil.commit(
+                compilationEvent, selector, Boolean.valueOf(html), Integer.valueOf(items.size()));
+
         if (map.size() < SelectorRepository.SELECTOR_ITEMS_MAX_SIZE) {
             map.putIfAbsent(selector, items);
         }
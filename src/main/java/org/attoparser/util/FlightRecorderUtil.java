@@ -0,0 +1,358 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * <p>
+ *   Utility class for emitting custom <em>JDK Flight Recorder</em> (JFR) events from the parser, so that
+ *   parser behaviour can be correlated with GC and CPU activity in JFR recordings.
+ * </p>
+ * <p>
+ *   The following events are defined (all of them in the <tt>attoparser</tt> category):
+ * </p>
+ * <ul>
+ *   <li>{@link #PARSE_EVENT_NAME}: One per document parsed, with duration, the class of the handler used,
+ *       the amount of chars read, the number of events reported to the handler and whether parsing was
+ *       successful.</li>
+ *   <li>{@link #BUFFER_GROWTH_EVENT_NAME}: Each time a parsing buffer has to be doubled because a markup
+ *       structure did not fit in it, with the previous and new buffer sizes.</li>
+ *   <li>{@link #SELECTOR_COMPILATION_EVENT_NAME}: Each time a markup selector is compiled (i.e. not found in
+ *       the selector cache), with duration, the selector, whether it was compiled for HTML and the number
+ *       of selector items produced.</li>
+ *   <li>{@link #HTML_ELEMENT_REPOSITORY_GROWTH_EVENT_NAME}: Each time a non-standard HTML element name is added
+ *       to the repository of HTML elements, with the element name and the new size of the repository.</li>
+ * </ul>
+ * <p>
+ *   As attoparser can run on Java 6, no JFR classes are directly referenced. Events are defined dynamically
+ *   by means of <tt>jdk.jfr.EventFactory</tt> (Java 9+) accessed through reflection, so they will only be
+ *   emitted when this API is present in the running JVM. Otherwise (and also when these events are not
+ *   enabled in any active recording) {@link #begin(int)} will simply return <tt>null</tt>.
+ * </p>
+ * <p>
+ *   These events are <strong>disabled by default</strong>, so they need to be explicitly enabled in the
+ *   recordings (e.g. in a JFR settings file) in order to be emitted. Checking whether an event type is enabled
+ *   does not create any event objects, so the cost of these events when they are not being recorded is
+ *   negligible.
+ * </p>
+ * <p>
+ *   This class is thread-safe.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.0.8
+ *
+ */
+public final class FlightRecorderUtil {
+
+    /**
+     * Event type: parsing of a document. Values: handler class (String), chars (long), events (long),
+     * successful (boolean).
+     */
+    public static final int PARSE = 0;
+
+    /**
+     * Event type: growth of a parsing buffer. Values: previous size (int), new size (int).
+     */
+    public static final int BUFFER_GROWTH = 1;
+
+    /**
+     * Event type: compilation of a markup selector. Values: selector (String), html (boolean), items (int).
+     */
+    public static final int SELECTOR_COMPILATION = 2;
+
+    /**
+     * Event type: growth of the HTML element repository. Values: element name (String), repository size (int).
+     */
+    public static final int HTML_ELEMENT_REPOSITORY_GROWTH = 3;
+
+
+    public static final String PARSE_EVENT_NAME = "org.attoparser.Parse";
+    public static final String BUFFER_GROWTH_EVENT_NAME = "org.attoparser.BufferGrowth";
+    public static final String SELECTOR_COMPILATION_EVENT_NAME = "org.attoparser.SelectorCompilation";
+    public static final String HTML_ELEMENT_REPOSITORY_GROWTH_EVENT_NAME = "org.attoparser.HtmlElementRepositoryGrowth";
+
+
+    private static final String CATEGORY = "attoparser";
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    // Will be null if JFR is not available, or if event definition failed for any reason
+    private static volatile Object[] eventFactories;
+    private static Object[] eventTypes; // Same indexes as eventFactories
+    private static Method isEventTypeEnabledMethod;
+    private static Method newEventMethod;
+    private static Method isEnabledMethod;
+    private static Method beginMethod;
+    private static Method endMethod;
+    private static Method shouldCommitMethod;
+    private static Method commitMethod;
+    private static Method setMethod;
+
+
+    static {
+
+        Object[] factories = null;
+        Object[] types = null;
+
+        try {
+
+            final Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            final Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            final Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+
+            final Constructor<?> annotationElementConstructor =
+                    annotationElementClass.getConstructor(Class.class, Object.class);
+            final Constructor<?> valueDescriptorConstructor =
+                    valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+            final Method createMethod = eventFactoryClass.getMethod("create", List.class, List.class);
+
+            final Definition definition =
+                    new Definition(annotationElementConstructor, valueDescriptorConstructor, createMethod);
+
+            factories = new Object[4];
+
+            factories[PARSE] =
+                    definition.create(
+                            PARSE_EVENT_NAME, "Markup Parse", "Parsing of a markup document",
+                            new Class<?>[] { String.class, long.class, long.class, boolean.class },
+                            new String[] { "handler", "chars", "events", "successful" },
+                            new String[] { "Handler", "Chars", "Events", "Successful" });
+
+            factories[BUFFER_GROWTH] =
+                    definition.create(
+                            BUFFER_GROWTH_EVENT_NAME, "Markup Parse Buffer Growth",
+                            "Doubling of a parsing buffer because a markup structure did not fit in it",
+                            new Class<?>[] { int.class, int.class },
+                            new String[] { "previousSize", "newSize" },
+                            new String[] { "Previous Size", "New Size" });
+
+            factories[SELECTOR_COMPILATION] =
+                    definition.create(
+                            SELECTOR_COMPILATION_EVENT_NAME, "Markup Selector Compilation",
+                            "Compilation of a markup selector not found in the selector cache",
+                            new Class<?>[] { String.class, boolean.class, int.class },
+                            new String[] { "selector", "html", "items" },
+                            new String[] { "Selector", "HTML", "Items" });
+
+            factories[HTML_ELEMENT_REPOSITORY_GROWTH] =
+                    definition.create(
+                            HTML_ELEMENT_REPOSITORY_GROWTH_EVENT_NAME, "HTML Element Repository Growth",
+                            "Addition of a non-standard element name to the HTML element repository",
+                            new Class<?>[] { String.class, int.class },
+                            new String[] { "elementName", "repositorySize" },
+                            new String[] { "Element Name", "Repository Size" });
+
+            // Event types are kept so that we can check whether events are enabled without creating them
+            final Method getEventTypeMethod = eventFactoryClass.getMethod("getEventType");
+            types = new Object[factories.length];
+            for (int i = 0; i < factories.length; i++) {
+                types[i] = getEventTypeMethod.invoke(factories[i], NO_ARGS);
+            }
+            isEventTypeEnabledMethod = eventTypeClass.getMethod("isEnabled");
+
+            newEventMethod = eventFactoryClass.getMethod("newEvent");
+            isEnabledMethod = eventClass.getMethod("isEnabled");
+            beginMethod = eventClass.getMethod("begin");
+            endMethod = eventClass.getMethod("end");
+            shouldCommitMethod = eventClass.getMethod("shouldCommit");
+            commitMethod = eventClass.getMethod("commit");
+            setMethod = eventClass.getMethod("set", int.class, Object.class);
+
+        } catch (final Throwable ignored) {
+            // JFR is not available (Java < 9, or jdk.jfr module not present), so no events will be emitted
+            factories = null;
+            types = null;
+        }
+
+        eventTypes = types;
+        eventFactories = factories;
+
+    }
+
+
+
+
+    private FlightRecorderUtil() {
+        super();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns whether JFR events can be emitted in the running JVM (even if they might not be enabled
+     *   in any recording at the moment).
+     * </p>
+     *
+     * @return true if JFR events are available, false if not.
+     */
+    public static boolean isAvailable() {
+        return eventFactories != null;
+    }
+
+
+    /**
+     * <p>
+     *   Creates and begins an event of the specified type, if JFR is available and this type of event is
+     *   enabled in a recording. Otherwise, <tt>null</tt> is returned and the caller should simply avoid
+     *   computing the values for the event.
+     * </p>
+     *
+     * @param eventType the event type (one of the event type constants in this class).
+     * @return the begun event, or null if the event will not be recorded.
+     */
+    public static Object begin(final int eventType) {
+
+        final Object[] factories = eventFactories;
+        if (factories == null) {
+            return null;
+        }
+
+        if (eventType < 0 || eventType >= factories.length) {
+            throw new IllegalArgumentException("Unknown event type: " + eventType);
+        }
+
+        try {
+            // Most of the time events will not be enabled, so we check this before creating the event object
+            if (!((Boolean) isEventTypeEnabledMethod.invoke(eventTypes[eventType], NO_ARGS)).booleanValue()) {
+                return null;
+            }
+            final Object event = newEventMethod.invoke(factories[eventType], NO_ARGS);
+            if (!((Boolean) isEnabledMethod.invoke(event, NO_ARGS)).booleanValue()) {
+                return null;
+            }
+            beginMethod.invoke(event, NO_ARGS);
+            return event;
+        } catch (final Exception e) {
+            disable();
+            return null;
+        }
+
+    }
+
+
+    /**
+     * <p>
+     *   Ends and commits an event previously created by {@link #begin(int)}, setting its values in the
+     *   order specified for its event type. If <tt>event</tt> is null, nothing will be done.
+     * </p>
+     *
+     * @param event the event (can be null).
+     * @param values the values of the event fields.
+     */
+    public static void commit(final Object event, final Object... values) {
+
+        if (event == null || eventFactories == null) {
+            return;
+        }
+
+        try {
+            endMethod.invoke(event, NO_ARGS);
+            if (!((Boolean) shouldCommitMethod.invoke(event, NO_ARGS)).booleanValue()) {
+                return;
+            }
+            for (int i = 0; i < values.length; i++) {
+                setMethod.invoke(event, Integer.valueOf(i), values[i]);
+            }
+            commitMethod.invoke(event, NO_ARGS);
+        } catch (final Exception e) {
+            disable();
+        }
+
+    }
+
+
+    private static void disable() {
+        // Emitting events should never make parsing fail, so if anything goes wrong we just stop emitting them
+        eventFactories = null;
+    }
+
+
+
+
+    private static final class Definition {
+
+        private final Constructor<?> annotationElementConstructor;
+        private final Constructor<?> valueDescriptorConstructor;
+        private final Method createMethod;
+        private final Class<?> nameClass;
+        private final Class<?> labelClass;
+        private final Class<?> descriptionClass;
+        private final Class<?> categoryClass;
+        private final Class<?> enabledClass;
+
+
+        Definition(
+                final Constructor<?> annotationElementConstructor, final Constructor<?> valueDescriptorConstructor,
+                final Method createMethod)
+                throws ClassNotFoundException {
+            super();
+            this.annotationElementConstructor = annotationElementConstructor;
+            this.valueDescriptorConstructor = valueDescriptorConstructor;
+            this.createMethod = createMethod;
+            this.nameClass = Class.forName("jdk.jfr.Name");
+            this.labelClass = Class.forName("jdk.jfr.Label");
+            this.descriptionClass = Class.forName("jdk.jfr.Description");
+            this.categoryClass = Class.forName("jdk.jfr.Category");
+            this.enabledClass = Class.forName("jdk.jfr.Enabled");
+        }
+
+
+        Object create(
+                final String name, final String label, final String description,
+                final Class<?>[] fieldTypes, final String[] fieldNames, final String[] fieldLabels)
+                throws Exception {
+
+            final List<Object> annotations = new ArrayList<Object>(5);
+            annotations.add(this.annotationElementConstructor.newInstance(this.nameClass, name));
+            annotations.add(this.annotationElementConstructor.newInstance(this.labelClass, label));
+            annotations.add(this.annotationElementConstructor.newInstance(this.descriptionClass, description));
+            annotations.add(this.annotationElementConstructor.newInstance(this.categoryClass, new String[] { CATEGORY }));
+            // Disabled by default, so that recordings not interested in parsing do not pay for these events
+            annotations.add(this.annotationElementConstructor.newInstance(this.enabledClass, Boolean.FALSE));
+
+            final List<Object> fields = new ArrayList<Object>(fieldTypes.length);
+            for (int i = 0; i < fieldTypes.length; i++) {
+                final List<Object> fieldAnnotations =
+                        Collections.singletonList(
+                                this.annotationElementConstructor.newInstance(this.labelClass, fieldLabels[i]));
+                fields.add(
+                        this.valueDescriptorConstructor.newInstance(fieldTypes[i], fieldNames[i], fieldAnnotations));
+            }
+
+            return this.createMethod.invoke(null, annotations, fields);
+
+        }
+
+    }
+
+
+}
@@ -0,0 +1,133 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class AdaptiveBufferSizeTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final String largeDocument = createDocument(45000);
+        final String hugeDocument = createDocument(300000);
+        final String smallDocument = createDocument(1000);
+
+        final LastMetricsListener metrics = new LastMetricsListener();
+        final MarkupParser parser =
+                new MarkupParser(ParseConfiguration.htmlConfiguration(), 2, 4096, 65536, metrics);
+
+        // First documents start with the initial buffer size
+        assertEquals(largeDocument, parse(parser, largeDocument));
+        assertEquals(4096, metrics.last.getMaxBufferSize());
+        assertTrue(metrics.last.getReaderCalls() > 10L);
+
+        // Buffer size adapts to the size of the documents being parsed...
+        for (int i = 0; i < 20; i++) {
+            assertEquals(largeDocument, parse(parser, largeDocument));
+        }
+        assertEquals(65536, metrics.last.getMaxBufferSize());
+        assertEquals(2L, metrics.last.getReaderCalls()); // Just one read, plus the one returning -1
+
+        // ...never going beyond the maximum...
+        for (int i = 0; i < 20; i++) {
+            assertEquals(hugeDocument, parse(parser, hugeDocument));
+        }
+        assertEquals(65536, metrics.last.getMaxBufferSize());
+
+        // ...and going down again if documents become smaller
+        for (int i = 0; i < 100; i++) {
+            assertEquals(smallDocument, parse(parser, smallDocument));
+        }
+        assertEquals(4096, metrics.last.getMaxBufferSize());
+
+        // Large structures still make buffers grow beyond the maximum during parsing
+        final StringBuilder largeText = new StringBuilder("<p>");
+        for (int i = 0; i < 100000; i++) {
+            largeText.append('a');
+        }
+        largeText.append("</p>");
+        assertEquals(largeText.toString(), parse(parser, largeText.toString()));
+        assertEquals(131072, metrics.last.getMaxBufferSize());
+
+        // Parsers without an adaptive size keep their buffer size
+        final MarkupParser fixedParser = new MarkupParser(ParseConfiguration.htmlConfiguration(), 2, 4096, metrics);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(largeDocument, parse(fixedParser, largeDocument));
+        }
+        assertEquals(4096, metrics.last.getMaxBufferSize());
+
+        try {
+            new MarkupParser(ParseConfiguration.htmlConfiguration(), 2, 4096, 2048);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // Expected
+        }
+
+    }
+
+
+
+
+    private static String createDocument(final int minSize) {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<html><body>\n");
+        int i = 0;
+        while (strBuilder.length() < minSize) {
+            strBuilder.append("<div class=\"row\"><span id=\"s").append(i).append("\">text ").append(i).append("</span></div>\n");
+            i++;
+        }
+        strBuilder.append("</body></html>");
+        return strBuilder.toString();
+    }
+
+
+    private static String parse(final MarkupParser parser, final String document) throws ParseException {
+        final StringWriter writer = new StringWriter();
+        parser.parse(new StringReader(document), new OutputMarkupHandler(writer));
+        return writer.toString();
+    }
+
+
+
+
+    private static class LastMetricsListener implements IParseMetricsListener {
+
+        volatile ParseMetrics last = null;
+
+        public void handleParseMetrics(final ParseMetrics metrics) {
+            this.last = metrics;
+        }
+
+    }
+
+
+}
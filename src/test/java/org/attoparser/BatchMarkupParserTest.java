@@ -0,0 +1,199 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class BatchMarkupParserTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final int documentCount = 600;
+        final List<String> texts = new ArrayList<String>();
+        final List<Object> documents = new ArrayList<Object>();
+        for (int i = 0; i < documentCount; i++) {
+            // Every 7th document is malformed for an XML configuration
+            final String text =
+                    (i % 7 == 0 ?
+                            "<div id=\"d" + i + "\"><p>unclosed</div>" :
+                            "<div id=\"d" + i + "\"><p class=\"x\">paragraph " + i + "</p><br/></div>");
+            texts.add(text);
+            switch (i % 3) {
+                case 0: documents.add(text); break;
+                case 1: documents.add(text.toCharArray()); break;
+                default: documents.add(new StringReader(text)); break;
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            final int maxInFlight = 3;
+            final BatchMarkupParser parser =
+                    new BatchMarkupParser(ParseConfiguration.xmlConfiguration(), executor, maxInFlight, 16);
+
+            final RecordingBatchParseHandler handler = new RecordingBatchParseHandler(documentCount);
+            parser.parse(new CountingIterator(documents.iterator(), handler), handler);
+
+            for (int i = 0; i < documentCount; i++) {
+                if (i % 7 == 0) {
+                    assertNull(handler.outputs.get(i));
+                    assertTrue(handler.failures.get(i) instanceof ParseException);
+                } else {
+                    assertEquals(texts.get(i), handler.outputs.get(i));
+                    assertNull(handler.failures.get(i));
+                }
+            }
+
+            // Back-pressure: never more documents taken from the iterator than allowed in flight
+            assertTrue(handler.maxOutstanding.get() <= maxInFlight);
+            assertEquals(0, handler.outstanding.get());
+
+            // Each batch only waits for its own documents, and the parser can be reused
+            final List<Object> moreDocuments = new ArrayList<Object>();
+            moreDocuments.add(texts.get(1));
+            moreDocuments.add(Integer.valueOf(3)); // Not a valid document type
+            moreDocuments.add(texts.get(2).toCharArray());
+            final RecordingBatchParseHandler moreHandler = new RecordingBatchParseHandler(3);
+            parser.parse(moreDocuments, moreHandler);
+            assertEquals(texts.get(1), moreHandler.outputs.get(0));
+            assertTrue(moreHandler.failures.get(1) instanceof IllegalArgumentException);
+            assertEquals(texts.get(2), moreHandler.outputs.get(2));
+
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+
+        // Tasks rejected by the executor only make their own documents fail
+        final AtomicInteger executed = new AtomicInteger(0);
+        final Executor rejectingExecutor = new Executor() {
+            public void execute(final Runnable command) {
+                if (executed.incrementAndGet() % 2 == 0) {
+                    throw new RejectedExecutionException("rejected");
+                }
+                command.run();
+            }
+        };
+        final BatchMarkupParser rejectingParser =
+                new BatchMarkupParser(ParseConfiguration.htmlConfiguration(), rejectingExecutor, 1);
+        final RecordingBatchParseHandler rejectingHandler = new RecordingBatchParseHandler(4);
+        rejectingParser.parse(texts.subList(1, 5), rejectingHandler);
+        assertEquals(texts.get(1), rejectingHandler.outputs.get(0));
+        assertTrue(rejectingHandler.failures.get(1) instanceof RejectedExecutionException);
+        assertEquals(texts.get(3), rejectingHandler.outputs.get(2));
+        assertTrue(rejectingHandler.failures.get(3) instanceof RejectedExecutionException);
+
+    }
+
+
+
+
+    private static class RecordingBatchParseHandler implements IBatchParseHandler {
+
+        final AtomicReferenceArray<StringWriter> writers;
+        final AtomicReferenceArray<String> outputs;
+        final AtomicReferenceArray<Exception> failures;
+        final AtomicInteger outstanding = new AtomicInteger(0);
+        final AtomicInteger maxOutstanding = new AtomicInteger(0);
+
+        RecordingBatchParseHandler(final int documentCount) {
+            super();
+            this.writers = new AtomicReferenceArray<StringWriter>(documentCount);
+            this.outputs = new AtomicReferenceArray<String>(documentCount);
+            this.failures = new AtomicReferenceArray<Exception>(documentCount);
+        }
+
+        public IMarkupHandler createHandler(final int documentIndex) {
+            final StringWriter writer = new StringWriter();
+            this.writers.set(documentIndex, writer);
+            return new OutputMarkupHandler(writer);
+        }
+
+        public void handleDocumentParsed(final int documentIndex, final IMarkupHandler handler) {
+            this.outputs.set(documentIndex, this.writers.get(documentIndex).toString());
+            this.outstanding.decrementAndGet();
+        }
+
+        public void handleDocumentFailed(final int documentIndex, final Exception exception) {
+            this.failures.set(documentIndex, exception);
+            this.outstanding.decrementAndGet();
+        }
+
+    }
+
+
+    private static class CountingIterator implements Iterator<Object> {
+
+        private final Iterator<Object> iterator;
+        private final RecordingBatchParseHandler handler;
+
+        CountingIterator(final Iterator<Object> iterator, final RecordingBatchParseHandler handler) {
+            super();
+            this.iterator = iterator;
+            this.handler = handler;
+        }
+
+        public boolean hasNext() {
+            return this.iterator.hasNext();
+        }
+
+        public Object next() {
+            final int outstanding = this.handler.outstanding.incrementAndGet();
+            int max;
+            while (outstanding > (max = this.handler.maxOutstanding.get())) {
+                if (this.handler.maxOutstanding.compareAndSet(max, outstanding)) {
+                    break;
+                }
+            }
+            return this.iterator.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+
+}
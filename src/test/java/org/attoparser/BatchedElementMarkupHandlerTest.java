@@ -0,0 +1,266 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+import org.attoparser.trace.MarkupTraceEvent;
+import org.attoparser.trace.TraceBuilderMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class BatchedElementMarkupHandlerTest extends TestCase {
+
+
+    private static final String[] INPUTS = new String[] {
+            "<div>hello</div>",
+            "<p   class = 'a'  id=\"b\"\n data-x=\"c\" >text</p ><br/><a href=\"x\">link</a>",
+            "<html><body><div class=\"a\"\n   id='one'/><img src=\"x.png\"  alt=\"\" /><input disabled=\"disabled\" /></body></html>",
+            "<script type=\"text/javascript\">if (a &lt; b) { x = 1; }</script><a href='one' id=\"two\"/>"
+    };
+
+    private static final String[] HTML_INPUTS = new String[] {
+            "<ul><li class=a>hello<li  id=\"b\">goodbye</ul>",
+            "<p class=\"a\">text<br class=b ><input disabled><a href=x title=\"t\">link</a><br>",
+            "<script type=\"text/x-template\"><div class=\"t\">{{ a }}</div></script>",
+            "<table><tr  class=\"r\"><td>one<td id=two>two</table>"
+    };
+
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration xmlConfig = ParseConfiguration.xmlConfiguration();
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+
+        for (final String input : INPUTS) {
+            check(xmlConfig, input);
+            check(htmlConfig, input);
+        }
+        for (final String input : HTML_INPUTS) {
+            check(htmlConfig, input);
+        }
+
+        final StringBuilder strBuilder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            strBuilder.append("<div class=\"c").append(i % 7).append("\" id='d").append(i).append("'>");
+            strBuilder.append("<a  href=\"/page/").append(i).append("\"\n title='t'>link ").append(i).append("</a >");
+            strBuilder.append("<img src=\"/img/").append(i).append(".png\"/></div>\n");
+        }
+        final String document = strBuilder.toString();
+        check(xmlConfig, document);
+        check(htmlConfig, document);
+
+
+        // Batched events go through the chain as one single call per element and handler
+        for (final ParseConfiguration configuration : new ParseConfiguration[] { htmlConfig, lazy(htmlConfig) }) {
+            final CountingHandler third = new CountingHandler(new OutputMarkupHandler(new StringWriter()));
+            final CountingHandler second = new CountingHandler(third);
+            final CountingHandler first = new CountingHandler(second);
+            new MarkupParser(configuration).parse(document, first);
+            for (final CountingHandler handler : new CountingHandler[] { first, second, third }) {
+                assertEquals(6000, handler.batchedElements);
+                assertEquals(0, handler.classicEvents);
+            }
+        }
+
+
+        // Attributes can be accessed through the flyweight attribute table
+        for (final ParseConfiguration configuration : new ParseConfiguration[] { xmlConfig, lazy(xmlConfig) }) {
+            final AttributeCollectingHandler collector = new AttributeCollectingHandler();
+            new MarkupParser(configuration).parse(
+                    "<div class=\"a\"  id='b'\n data-x=\"1\"><br/><input value=\"\" name=\"n\"/></div>", collector);
+            assertEquals("div[class=a(1,6),id=b(1,17),data-x=1(2,2)]br[]input[value=(2,25),name=n(2,34)]",
+                    collector.output.toString());
+        }
+
+        final ElementAttributes attributes = new ElementAttributes();
+        final char[] buffer = " one=\"1\" two three='3'".toCharArray();
+        attributes.reset(buffer, 0, buffer.length, 1, 1);
+        try {
+            attributes.getNameOffset(0);
+            fail();
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        assertEquals(3, attributes.getAttributeCount());
+        assertEquals(1, attributes.indexOf(true, "two"));
+        assertEquals(2, attributes.indexOf(false, "THREE"));
+        assertEquals(-1, attributes.indexOf(true, "THREE"));
+        assertEquals(0, attributes.getOperatorLen(1));
+        assertEquals("3", new String(buffer, attributes.getValueContentOffset(2), attributes.getValueContentLen(2)));
+        try {
+            attributes.getNameOffset(3);
+            fail();
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+
+    }
+
+
+
+
+    private static ParseConfiguration lazy(final ParseConfiguration configuration) throws Exception {
+        final ParseConfiguration lazyConfig = configuration.clone();
+        lazyConfig.setLazyAttributeParsing(true);
+        return lazyConfig;
+    }
+
+
+    private static void check(final ParseConfiguration configuration, final String input) throws Exception {
+
+        final StringWriter expected = new StringWriter();
+        new MarkupParser(configuration).parse(input, new OutputMarkupHandler(expected));
+
+        final TraceBuilderMarkupHandler expectedTrace = new TraceBuilderMarkupHandler();
+        new MarkupParser(configuration).parse(input, expectedTrace);
+
+        for (final ParseConfiguration config : new ParseConfiguration[] { configuration, lazy(configuration) }) {
+
+            final StringWriter output = new StringWriter();
+            new MarkupParser(config).parse(
+                    input, new CountingHandler(new CountingHandler(new OutputMarkupHandler(output))));
+            assertEquals(expected.toString(), output.toString());
+
+            final StringWriter smallBufferOutput = new StringWriter();
+            new MarkupParser(config, 2, 64).parse(
+                    new StringReader(input), new CountingHandler(new OutputMarkupHandler(smallBufferOutput)));
+            assertEquals(expected.toString(), smallBufferOutput.toString());
+
+            // Lines and cols must also be the same
+            final TraceBuilderMarkupHandler trace = new TraceBuilderMarkupHandler();
+            new MarkupParser(config).parse(input, new CountingHandler(trace));
+            assertEquals(withoutDocumentEvents(expectedTrace.getTrace()), withoutDocumentEvents(trace.getTrace()));
+
+        }
+
+    }
+
+
+    private static List<MarkupTraceEvent> withoutDocumentEvents(final List<MarkupTraceEvent> trace) {
+        return trace.subList(1, trace.size() - 1);
+    }
+
+
+
+
+    private static final class CountingHandler extends AbstractChainedBatchedElementMarkupHandler {
+
+        private int batchedElements = 0;
+        private int classicEvents = 0;
+
+        CountingHandler(final IMarkupHandler next) {
+            super(next);
+        }
+
+        @Override
+        public void handleStandaloneElement(
+                final char[] buffer, final int nameOffset, final int nameLen, final ElementAttributes attributes,
+                final boolean minimized, final int line, final int col, final int endLine, final int endCol)
+                throws ParseException {
+            this.batchedElements++;
+            super.handleStandaloneElement(buffer, nameOffset, nameLen, attributes, minimized, line, col, endLine, endCol);
+        }
+
+        @Override
+        public void handleOpenElement(
+                final char[] buffer, final int nameOffset, final int nameLen, final ElementAttributes attributes,
+                final int line, final int col, final int endLine, final int endCol)
+                throws ParseException {
+            this.batchedElements++;
+            super.handleOpenElement(buffer, nameOffset, nameLen, attributes, line, col, endLine, endCol);
+        }
+
+        @Override
+        public void handleOpenElementStart(
+                final char[] buffer, final int nameOffset, final int nameLen,
+                final int line, final int col) throws ParseException {
+            this.classicEvents++;
+            super.handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
+        }
+
+        @Override
+        public void handleAttribute(
+                final char[] buffer,
+                final int nameOffset, final int nameLen, final int nameLine, final int nameCol,
+                final int operatorOffset, final int operatorLen, final int operatorLine, final int operatorCol,
+                final int valueContentOffset, final int valueContentLen,
+                final int valueOuterOffset, final int valueOuterLen, final int valueLine, final int valueCol)
+                throws ParseException {
+            this.classicEvents++;
+            super.handleAttribute(
+                    buffer, nameOffset, nameLen, nameLine, nameCol, operatorOffset, operatorLen, operatorLine, operatorCol,
+                    valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
+        }
+
+    }
+
+
+
+
+    private static final class AttributeCollectingHandler
+            extends AbstractMarkupHandler implements IBatchedElementMarkupHandler {
+
+        private final StringBuilder output = new StringBuilder();
+
+        public void handleStandaloneElement(
+                final char[] buffer, final int nameOffset, final int nameLen, final ElementAttributes attributes,
+                final boolean minimized, final int line, final int col, final int endLine, final int endCol)
+                throws ParseException {
+            collect(buffer, nameOffset, nameLen, attributes);
+        }
+
+        public void handleOpenElement(
+                final char[] buffer, final int nameOffset, final int nameLen, final ElementAttributes attributes,
+                final int line, final int col, final int endLine, final int endCol)
+                throws ParseException {
+            collect(buffer, nameOffset, nameLen, attributes);
+        }
+
+        private void collect(
+                final char[] buffer, final int nameOffset, final int nameLen, final ElementAttributes attributes)
+                throws ParseException {
+            this.output.append(buffer, nameOffset, nameLen).append('[');
+            final int count = attributes.getAttributeCount();
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    this.output.append(',');
+                }
+                this.output.append(buffer, attributes.getNameOffset(i), attributes.getNameLen(i));
+                this.output.append('=');
+                this.output.append(buffer, attributes.getValueContentOffset(i), attributes.getValueContentLen(i));
+                this.output.append('(').append(attributes.getNameLine(i)).append(',').append(attributes.getNameCol(i)).append(')');
+            }
+            this.output.append(']');
+        }
+
+    }
+
+
+}
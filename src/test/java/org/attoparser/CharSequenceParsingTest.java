@@ -0,0 +1,188 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class CharSequenceParsingTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<!DOCTYPE html>\n<html><body>");
+        for (int i = 0; i < 300; i++) {
+            strBuilder.append("<div class=\"item\" id=\"i").append(i).append("\">item ").append(i).append("<br/></div>\n");
+        }
+        strBuilder.append("<!-- end --></body></html>");
+        final String document = strBuilder.toString();
+        assertTrue(document.length() > MarkupParser.DEFAULT_BUFFER_SIZE);
+
+        final MarkupParser parser = new MarkupParser(ParseConfiguration.htmlConfiguration());
+
+        final StringWriter readerWriter = new StringWriter();
+        parser.parse(new StringReader(document), new OutputMarkupHandler(readerWriter));
+        assertEquals(document, readerWriter.toString());
+
+        // String, StringBuilder and any other CharSequence implementations
+        assertEquals(document, parse(parser, document));
+        assertEquals(document, parse(parser, new StringBuilder(document)));
+        assertEquals(document, parse(parser, new StringBuffer(document)));
+        assertEquals(document, parse(parser, new SimpleCharSequence(document)));
+        assertEquals("<p>small</p>", parse(parser, new SimpleCharSequence("<p>small</p>")));
+        assertEquals("", parse(parser, ""));
+
+        // CharBuffer backed by an array, with offset and position: parsed in place
+        final char[] chars = ("xxxx" + document + "yyyy").toCharArray();
+        final CharBuffer wrapped = CharBuffer.wrap(chars, 2, chars.length - 4).slice();
+        wrapped.position(2);
+        wrapped.limit(wrapped.limit() - 2);
+        final BufferCapturingMarkupHandler capturing = new BufferCapturingMarkupHandler();
+        parser.parse(wrapped, capturing);
+        assertSame(chars, capturing.buffer);
+        assertEquals(2, wrapped.position());
+        assertEquals(document, parse(parser, wrapped));
+
+        // Splittable text at the end of documents parsed in place at a non-zero offset
+        final ParseConfiguration splittableConfiguration = ParseConfiguration.htmlConfiguration();
+        splittableConfiguration.setTextSplittable(true);
+        final MarkupParser splittableParser = new MarkupParser(splittableConfiguration);
+        final String[] splittableDocuments =
+                new String[] { "<p>hello</p> trailing text here", "<p>hello</p><script>var a = 1;" };
+        for (int i = 0; i < splittableDocuments.length; i++) {
+            final char[] padded = new char[56 + splittableDocuments[i].length() + 10];
+            Arrays.fill(padded, 'z');
+            splittableDocuments[i].getChars(0, splittableDocuments[i].length(), padded, 56);
+            final CharBuffer offsetBuffer = CharBuffer.wrap(padded, 56, splittableDocuments[i].length());
+            assertEquals(splittableDocuments[i], parse(splittableParser, offsetBuffer));
+            assertEquals(splittableDocuments[i], parse(splittableParser, offsetBuffer.slice()));
+        }
+
+        // CharBuffers without an accessible array: copied
+        final CharBuffer readOnly = CharBuffer.wrap(document.toCharArray()).asReadOnlyBuffer();
+        assertFalse(readOnly.hasArray());
+        assertEquals(document, parse(parser, readOnly));
+        assertEquals(0, readOnly.position());
+        final CharBuffer byteBacked = ByteBuffer.allocateDirect(document.length() * 2).asCharBuffer();
+        byteBacked.put(document);
+        byteBacked.flip();
+        assertFalse(byteBacked.hasArray());
+        assertEquals(document, parse(parser, byteBacked));
+
+        // No Reader is used for in-memory documents
+        final AggregateParseMetricsListener metrics = new AggregateParseMetricsListener();
+        final MarkupParser metricsParser = new MarkupParser(ParseConfiguration.htmlConfiguration(), metrics);
+        metricsParser.parse(document, new OutputMarkupHandler(new StringWriter()));
+        metricsParser.parse(new StringBuilder(document), new OutputMarkupHandler(new StringWriter()));
+        assertEquals(0L, metrics.getReaderCalls());
+        assertEquals(0L, metrics.getBufferGrowths());
+        assertEquals(2L * document.length(), metrics.getCharsRead());
+
+        // Error positions are the same as when reading
+        final String malformed = "<p>\n  <a href=\"x\">link\n<!-- unfinished";
+        assertEquals(failureMessage(parser, new StringReader(malformed)), failureMessage(parser, malformed));
+
+    }
+
+
+
+
+    private static String parse(final MarkupParser parser, final CharSequence document) throws ParseException {
+        final StringWriter writer = new StringWriter();
+        parser.parse(document, new OutputMarkupHandler(writer));
+        return writer.toString();
+    }
+
+
+    private static String failureMessage(final MarkupParser parser, final Object document) {
+        try {
+            if (document instanceof StringReader) {
+                parser.parse((StringReader) document, new OutputMarkupHandler(new StringWriter()));
+            } else {
+                parser.parse((String) document, new OutputMarkupHandler(new StringWriter()));
+            }
+            fail();
+            return null;
+        } catch (final ParseException e) {
+            return e.getMessage();
+        }
+    }
+
+
+
+
+    private static class SimpleCharSequence implements CharSequence {
+
+        private final String str;
+
+        SimpleCharSequence(final String str) {
+            super();
+            this.str = str;
+        }
+
+        public int length() {
+            return this.str.length();
+        }
+
+        public char charAt(final int index) {
+            return this.str.charAt(index);
+        }
+
+        public CharSequence subSequence(final int start, final int end) {
+            return new SimpleCharSequence(this.str.substring(start, end));
+        }
+
+        @Override
+        public String toString() {
+            return this.str;
+        }
+
+    }
+
+
+    private static class BufferCapturingMarkupHandler extends AbstractMarkupHandler {
+
+        char[] buffer = null;
+
+        @Override
+        public void handleText(
+                final char[] buffer, final int offset, final int len, final int line, final int col)
+                throws ParseException {
+            this.buffer = buffer;
+        }
+
+    }
+
+
+}
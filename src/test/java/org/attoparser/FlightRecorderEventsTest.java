@@ -0,0 +1,150 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+import org.attoparser.select.BlockSelectorMarkupHandler;
+import org.attoparser.util.FlightRecorderUtil;
+
+/*
+ * JFR classes are only accessed through reflection here too, so that this test compiles on Java 6.
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class FlightRecorderEventsTest extends TestCase {
+
+
+    private static final String[] EVENT_NAMES =
+            new String[] {
+                    FlightRecorderUtil.PARSE_EVENT_NAME, FlightRecorderUtil.BUFFER_GROWTH_EVENT_NAME,
+                    FlightRecorderUtil.SELECTOR_COMPILATION_EVENT_NAME,
+                    FlightRecorderUtil.HTML_ELEMENT_REPOSITORY_GROWTH_EVENT_NAME };
+
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+
+        // Out of any recording, no events are created
+        assertNull(FlightRecorderUtil.begin(FlightRecorderUtil.PARSE));
+        FlightRecorderUtil.commit(null);
+
+        // Parsing must work the same whether JFR is available or not
+        final StringWriter writer = new StringWriter();
+        new MarkupParser(htmlConfig).parse("<div>hello</div>", new OutputMarkupHandler(writer));
+        assertEquals("<div>hello</div>", writer.toString());
+
+        if (!FlightRecorderUtil.isAvailable()) {
+            return;
+        }
+
+        final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+
+        // Events are disabled by default, so they are not created in recordings that do not enable them
+        final Object defaultRecording = recordingClass.newInstance();
+        recordingClass.getMethod("start").invoke(defaultRecording);
+        try {
+            assertNull(FlightRecorderUtil.begin(FlightRecorderUtil.PARSE));
+        } finally {
+            recordingClass.getMethod("close").invoke(defaultRecording);
+        }
+
+        final Object recording = recordingClass.newInstance();
+        for (final String eventName : EVENT_NAMES) {
+            recordingClass.getMethod("enable", String.class).invoke(recording, eventName);
+        }
+        recordingClass.getMethod("start").invoke(recording);
+
+        // Names must be unique in order to avoid the HTML element repository and the selector cache
+        final String unique = Long.toHexString(System.nanoTime());
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<x-jfr").append(unique).append(" title=\"");
+        for (int i = 0; i < 100; i++) {
+            strBuilder.append("a long title ");
+        }
+        strBuilder.append("\">text</x-jfr").append(unique).append('>');
+        final String document = strBuilder.toString();
+
+        final StringWriter output = new StringWriter();
+        new MarkupParser(htmlConfig, 2, 64).parse(
+                new StringReader(document),
+                new BlockSelectorMarkupHandler(new OutputMarkupHandler(output), "x-jfr" + unique));
+        assertEquals(document, output.toString());
+
+        recordingClass.getMethod("stop").invoke(recording);
+
+        final File file = File.createTempFile("attoparser", ".jfr");
+        try {
+
+            final Object path = File.class.getMethod("toPath").invoke(file);
+            recordingClass.getMethod("dump", Class.forName("java.nio.file.Path")).invoke(recording, path);
+            recordingClass.getMethod("close").invoke(recording);
+
+            final List<?> events =
+                    (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                            .getMethod("readAllEvents", Class.forName("java.nio.file.Path")).invoke(null, path);
+
+            final List<String> eventNames = new ArrayList<String>();
+            Object parseEvent = null;
+            for (final Object event : events) {
+                final Object eventType = event.getClass().getMethod("getEventType").invoke(event);
+                final String eventName = (String) eventType.getClass().getMethod("getName").invoke(eventType);
+                eventNames.add(eventName);
+                if (FlightRecorderUtil.PARSE_EVENT_NAME.equals(eventName)) {
+                    parseEvent = event;
+                }
+            }
+
+            for (final String eventName : EVENT_NAMES) {
+                assertTrue(eventName, eventNames.contains(eventName));
+            }
+
+            assertNotNull(parseEvent);
+            assertEquals(
+                    Long.valueOf(document.length()),
+                    parseEvent.getClass().getMethod("getValue", String.class).invoke(parseEvent, "chars"));
+            assertEquals(
+                    BlockSelectorMarkupHandler.class.getName(),
+                    parseEvent.getClass().getMethod("getValue", String.class).invoke(parseEvent, "handler"));
+            assertEquals(
+                    Boolean.TRUE,
+                    parseEvent.getClass().getMethod("getValue", String.class).invoke(parseEvent, "successful"));
+            assertTrue(
+                    ((Long) parseEvent.getClass().getMethod("getValue", String.class).invoke(parseEvent, "events"))
+                            .longValue() > 0L);
+
+        } finally {
+            file.delete();
+        }
+
+    }
+
+
+}
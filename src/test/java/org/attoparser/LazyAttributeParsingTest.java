@@ -0,0 +1,249 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+import org.attoparser.trace.MarkupTraceEvent;
+import org.attoparser.trace.TraceBuilderMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class LazyAttributeParsingTest extends TestCase {
+
+
+    private static final String[] INPUTS = new String[] {
+            "<div>hello</div>",
+            "<p   class = 'a'  id=\"b\"\n data-x=\"c\" >text</p ><br/><a href=\"x\">link</a>",
+            "<html><body><div class=\"a\"\n   id='one'/><img src=\"x.png\"  alt=\"\" /><input disabled=\"disabled\" /></body></html>",
+            "<script type=\"text/javascript\">if (a &lt; b) { x = 1; }</script><a href='one' id=\"two\"/>"
+    };
+
+    private static final String[] HTML_INPUTS = new String[] {
+            "<ul><li class=a>hello<li  id=\"b\">goodbye</ul>",
+            "<p class=\"a\">text<br class=b ><input disabled><a href=x title=\"t\">link</a>",
+            "<script type=\"text/javascript\">if (a < b) { x = '<a href=\"s\">'; }</script><a href='one' id=two/>",
+            "<script>if (a < b) { x = '<a href=\"s\">'; }</script>",
+            "<script type=\"text/x-template\"><div class=\"t\">{{ a }}</div></script>",
+            "<SCRIPT  TYPE=\"module\"  >if (a < b) { x = '<a href=\"s\">'; }</SCRIPT><p>after</p>"
+    };
+
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration xmlConfig = ParseConfiguration.xmlConfiguration();
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+
+        for (final String input : INPUTS) {
+            check(xmlConfig, input);
+            check(htmlConfig, input);
+        }
+        for (final String input : HTML_INPUTS) {
+            check(htmlConfig, input);
+        }
+
+        final StringBuilder strBuilder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            strBuilder.append("<div class=\"c").append(i % 7).append("\" id='d").append(i).append("'>");
+            strBuilder.append("<a  href=\"/page/").append(i).append("\"\n title='t'>link ").append(i).append("</a >");
+            strBuilder.append("<img src=\"/img/").append(i).append(".png\"/></div>\n");
+        }
+        check(xmlConfig, strBuilder.toString());
+        check(htmlConfig, strBuilder.toString());
+
+
+        // No attribute events are reported in lazy mode, and no element attributes are available in eager mode
+        final ParseConfiguration lazyConfig = lazy(htmlConfig);
+        final AttributeCountingHandler lazyCounter = new AttributeCountingHandler();
+        new MarkupParser(lazyConfig).parse(strBuilder.toString(), lazyCounter);
+        assertEquals(0, lazyCounter.attributes);
+        assertEquals(6000, lazyCounter.elementsWithAttributes);
+        final AttributeCountingHandler eagerCounter = new AttributeCountingHandler();
+        new MarkupParser(htmlConfig).parse(strBuilder.toString(), eagerCounter);
+        assertEquals(10000, eagerCounter.attributes);
+        assertEquals(0, eagerCounter.elementsWithAttributes);
+
+
+        // Validations required by the configuration are still performed
+        final ParseConfiguration lazyXmlConfig = lazy(xmlConfig);
+        checkError(lazyXmlConfig, "<div class=\"a\" class=\"b\">text</div>", "appears more than once");
+        checkError(lazyXmlConfig, "<div><img src=\"a\" src='b'/></div>", "appears more than once");
+        checkError(lazyXmlConfig, "<div class=a>text</div>", "must be surrounded by quotes");
+        checkError(lazyXmlConfig, "<div><input disabled/></div>", "must include an equals");
+        new MarkupParser(lazyConfig).parse("<div class=a class=b><input disabled/></div>", new AttributeCountingHandler());
+
+    }
+
+
+
+
+    private static ParseConfiguration lazy(final ParseConfiguration configuration) throws Exception {
+        final ParseConfiguration lazyConfig = configuration.clone();
+        lazyConfig.setLazyAttributeParsing(true);
+        return lazyConfig;
+    }
+
+
+    private static void check(final ParseConfiguration configuration, final String input) throws Exception {
+
+        final ParseConfiguration lazyConfig = lazy(configuration);
+
+        final StringWriter expected = new StringWriter();
+        new MarkupParser(configuration).parse(input, new OutputMarkupHandler(expected));
+
+        final StringWriter output = new StringWriter();
+        new MarkupParser(lazyConfig).parse(input, new AttributeExpandingHandler(new OutputMarkupHandler(output)));
+        assertEquals(expected.toString(), output.toString());
+
+        final StringWriter smallBufferOutput = new StringWriter();
+        new MarkupParser(lazyConfig, 2, 64).parse(
+                new StringReader(input), new AttributeExpandingHandler(new OutputMarkupHandler(smallBufferOutput)));
+        assertEquals(expected.toString(), smallBufferOutput.toString());
+
+        // Lines and cols must also be the same
+        final TraceBuilderMarkupHandler expectedTrace = new TraceBuilderMarkupHandler();
+        new MarkupParser(configuration).parse(input, expectedTrace);
+        final TraceBuilderMarkupHandler trace = new TraceBuilderMarkupHandler();
+        new MarkupParser(lazyConfig).parse(input, new AttributeExpandingHandler(trace));
+        assertEquals(withoutDocumentEvents(expectedTrace.getTrace()), withoutDocumentEvents(trace.getTrace()));
+
+    }
+
+
+    private static List<MarkupTraceEvent> withoutDocumentEvents(final List<MarkupTraceEvent> trace) {
+        return trace.subList(1, trace.size() - 1);
+    }
+
+
+    private static void checkError(
+            final ParseConfiguration configuration, final String input, final String message) throws Exception {
+        try {
+            new MarkupParser(configuration).parse(input, new AttributeCountingHandler());
+            fail();
+        } catch (final ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+
+
+
+    /*
+     * Reports the lazily parsed attributes of each element right after its start event
+     */
+    private static final class AttributeExpandingHandler extends AbstractChainedMarkupHandler {
+
+        private ParseStatus status;
+
+        AttributeExpandingHandler(final IMarkupHandler next) {
+            super(next);
+        }
+
+        @Override
+        public void setParseStatus(final ParseStatus status) {
+            this.status = status;
+            super.setParseStatus(status);
+        }
+
+        @Override
+        public void handleOpenElementStart(
+                final char[] buffer, final int nameOffset, final int nameLen,
+                final int line, final int col) throws ParseException {
+            getNext().handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
+            this.status.getElementAttributes().parse(getNext());
+        }
+
+        @Override
+        public void handleStandaloneElementStart(
+                final char[] buffer, final int nameOffset, final int nameLen, final boolean minimized,
+                final int line, final int col) throws ParseException {
+            getNext().handleStandaloneElementStart(buffer, nameOffset, nameLen, minimized, line, col);
+            this.status.getElementAttributes().parse(getNext());
+        }
+
+        @Override
+        public void handleAttribute(
+                final char[] buffer,
+                final int nameOffset, final int nameLen, final int nameLine, final int nameCol,
+                final int operatorOffset, final int operatorLen, final int operatorLine, final int operatorCol,
+                final int valueContentOffset, final int valueContentLen,
+                final int valueOuterOffset, final int valueOuterLen, final int valueLine, final int valueCol) {
+            fail("No attribute events should be reported in lazy mode");
+        }
+
+    }
+
+
+
+
+    private static final class AttributeCountingHandler extends AbstractMarkupHandler {
+
+        private ParseStatus status;
+        private int attributes = 0;
+        private int elementsWithAttributes = 0;
+
+        @Override
+        public void setParseStatus(final ParseStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public void handleOpenElementEnd(
+                final char[] buffer, final int nameOffset, final int nameLen,
+                final int line, final int col) {
+            countElement();
+        }
+
+        @Override
+        public void handleStandaloneElementEnd(
+                final char[] buffer, final int nameOffset, final int nameLen, final boolean minimized,
+                final int line, final int col) {
+            countElement();
+        }
+
+        @Override
+        public void handleAttribute(
+                final char[] buffer,
+                final int nameOffset, final int nameLen, final int nameLine, final int nameCol,
+                final int operatorOffset, final int operatorLen, final int operatorLine, final int operatorCol,
+                final int valueContentOffset, final int valueContentLen,
+                final int valueOuterOffset, final int valueOuterLen, final int valueLine, final int valueCol) {
+            this.attributes++;
+        }
+
+        private void countElement() {
+            if (this.status.getElementAttributes() != null && !this.status.getElementAttributes().isEmpty()) {
+                this.elementsWithAttributes++;
+            }
+        }
+
+    }
+
+
+}
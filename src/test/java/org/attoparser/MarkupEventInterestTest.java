@@ -0,0 +1,282 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.minimize.MinimizeHtmlMarkupHandler;
+import org.attoparser.minimize.MinimizeHtmlMarkupHandler.MinimizeMode;
+import org.attoparser.output.OutputMarkupHandler;
+import org.attoparser.output.TextOutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class MarkupEventInterestTest extends TestCase {
+
+
+    private static final String INPUT =
+            "<?xml version=\"1.0\"?>\n<!DOCTYPE html>\n<html>\n<!-- a comment --><![CDATA[ data ]]>\n" +
+            "<body   class=\"a\"  id=\"b\" ><?pi content?><p>Some text</p></body>\n</html>";
+
+
+
+    public void test() throws Exception {
+
+        final IMarkupParser htmlParser = new MarkupParser(ParseConfiguration.htmlConfiguration());
+        final IMarkupParser xmlParser = new MarkupParser(ParseConfiguration.xmlConfiguration());
+
+        // Masks computed from overridden methods
+        assertEquals(IMarkupEventInterest.NO_EVENTS, new TextOutputMarkupHandler(new StringWriter()).getMarkupEventInterest());
+        assertEquals(IMarkupEventInterest.ALL_EVENTS, new OutputMarkupHandler(new StringWriter()).getMarkupEventInterest());
+        assertEquals(IMarkupEventInterest.EVENT_COMMENT, new CommentCountingHandler().getMarkupEventInterest());
+        assertEquals(
+                IMarkupEventInterest.EVENT_COMMENT | IMarkupEventInterest.EVENT_PROCESSING_INSTRUCTION,
+                new PassThroughHandler(new ProcessingInstructionCountingHandler(new CommentCountingHandler())).getMarkupEventInterest());
+        assertEquals(
+                IMarkupEventInterest.ALL_EVENTS & ~IMarkupEventInterest.EVENT_COMMENT,
+                new MinimizeHtmlMarkupHandler(MinimizeMode.COMPLETE, new OutputMarkupHandler(new StringWriter())).getMarkupEventInterest());
+
+        // Events nobody is interested in are skipped
+        final CommentCountingHandler commentCounter = new CommentCountingHandler();
+        final ProcessingInstructionCountingHandler piCounter = new ProcessingInstructionCountingHandler(commentCounter);
+        htmlParser.parse(INPUT, new PassThroughHandler(piCounter));
+        assertEquals(1, commentCounter.comments);
+        assertEquals(0, commentCounter.otherEvents);
+        assertEquals(1, piCounter.processingInstructions);
+
+        // When validating the prolog, DOCTYPE and XML declaration still need to be parsed
+        final CommentCountingHandler xmlCommentCounter = new CommentCountingHandler();
+        xmlParser.parse(INPUT, xmlCommentCounter);
+        assertEquals(1, xmlCommentCounter.comments);
+        assertEquals(2, xmlCommentCounter.otherEvents);
+
+        // Text is always reported
+        final StringWriter textWriter = new StringWriter();
+        htmlParser.parse(INPUT, new TextOutputMarkupHandler(textWriter));
+        assertEquals("\n\n\n\nSome text\n", textWriter.toString());
+
+        // Skipped structures are not validated (unless the prolog is being validated)
+        final String wrongDocTypes = "<!DOCTYPE html><!DOCTYPE html><html><?pi x?></html>";
+        htmlParser.parse(wrongDocTypes, new CommentCountingHandler());
+        try {
+            xmlParser.parse(wrongDocTypes, new CommentCountingHandler());
+            fail();
+        } catch (final ParseException e) {
+            // expected
+        }
+
+        // Output does not change for handlers receiving all events
+        final StringWriter expected = new StringWriter();
+        htmlParser.parse(INPUT, new OutputMarkupHandler(expected));
+        assertEquals(INPUT, expected.toString());
+
+        final StringWriter minimized = new StringWriter();
+        htmlParser.parse(INPUT, new MinimizeHtmlMarkupHandler(MinimizeMode.COMPLETE, new OutputMarkupHandler(minimized)));
+        assertFalse(minimized.toString().contains("comment"));
+        assertTrue(minimized.toString().contains("<?pi content?>"));
+
+        // Computed masks do not prevent handler classes from being unloaded
+        final WeakReference<ClassLoader> classLoaderRef = computeInterestInSeparateClassLoader();
+        for (int i = 0; i < 20 && classLoaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        assertNull(classLoaderRef.get());
+
+    }
+
+
+
+
+    private static WeakReference<ClassLoader> computeInterestInSeparateClassLoader() throws Exception {
+        final SingleClassLoader classLoader =
+                new SingleClassLoader(UnloadableHandler.class.getName(), MarkupEventInterestTest.class.getClassLoader());
+        final Class<?> handlerClass = classLoader.loadClass(UnloadableHandler.class.getName());
+        assertNotSame(UnloadableHandler.class, handlerClass);
+        final AbstractMarkupHandler handler = (AbstractMarkupHandler) handlerClass.newInstance();
+        assertEquals(IMarkupEventInterest.EVENT_COMMENT, handler.getMarkupEventInterest());
+        return new WeakReference<ClassLoader>(classLoader);
+    }
+
+
+
+
+    /*
+     * Declares interest only in comments, even if other event handling methods are overridden
+     */
+    private static final class CommentCountingHandler extends AbstractMarkupHandler {
+
+        private int comments = 0;
+        private int otherEvents = 0;
+
+        @Override
+        public int getMarkupEventInterest() {
+            return IMarkupEventInterest.EVENT_COMMENT;
+        }
+
+        @Override
+        public void handleComment(
+                final char[] buffer, final int contentOffset, final int contentLen,
+                final int outerOffset, final int outerLen, final int line, final int col) {
+            this.comments++;
+        }
+
+        @Override
+        public void handleCDATASection(
+                final char[] buffer, final int contentOffset, final int contentLen,
+                final int outerOffset, final int outerLen, final int line, final int col) {
+            this.otherEvents++;
+        }
+
+        @Override
+        public void handleDocType(
+                final char[] buffer,
+                final int keywordOffset, final int keywordLen, final int keywordLine, final int keywordCol,
+                final int elementNameOffset, final int elementNameLen, final int elementNameLine, final int elementNameCol,
+                final int typeOffset, final int typeLen, final int typeLine, final int typeCol,
+                final int publicIdOffset, final int publicIdLen, final int publicIdLine, final int publicIdCol,
+                final int systemIdOffset, final int systemIdLen, final int systemIdLine, final int systemIdCol,
+                final int internalSubsetOffset, final int internalSubsetLen, final int internalSubsetLine, final int internalSubsetCol,
+                final int outerOffset, final int outerLen, final int outerLine, final int outerCol) {
+            this.otherEvents++;
+        }
+
+        @Override
+        public void handleXmlDeclaration(
+                final char[] buffer,
+                final int keywordOffset, final int keywordLen, final int keywordLine, final int keywordCol,
+                final int versionOffset, final int versionLen, final int versionLine, final int versionCol,
+                final int encodingOffset, final int encodingLen, final int encodingLine, final int encodingCol,
+                final int standaloneOffset, final int standaloneLen, final int standaloneLine, final int standaloneCol,
+                final int outerOffset, final int outerLen, final int line, final int col) {
+            this.otherEvents++;
+        }
+
+        @Override
+        public void handleInnerWhiteSpace(
+                final char[] buffer, final int offset, final int len, final int line, final int col) {
+            this.otherEvents++;
+        }
+
+    }
+
+
+    /*
+     * Interest is computed from overridden methods plus the next handler's interest
+     */
+    private static final class ProcessingInstructionCountingHandler extends AbstractChainedMarkupHandler {
+
+        private int processingInstructions = 0;
+
+        ProcessingInstructionCountingHandler(final IMarkupHandler next) {
+            super(next);
+        }
+
+        @Override
+        public void handleProcessingInstruction(
+                final char[] buffer, final int targetOffset, final int targetLen,
+                final int targetLine, final int targetCol, final int contentOffset, final int contentLen,
+                final int contentLine, final int contentCol, final int outerOffset, final int outerLen,
+                final int line, final int col) {
+            this.processingInstructions++;
+        }
+
+    }
+
+
+    private static final class PassThroughHandler extends AbstractChainedMarkupHandler {
+
+        PassThroughHandler(final IMarkupHandler next) {
+            super(next);
+        }
+
+    }
+
+
+    public static final class UnloadableHandler extends AbstractMarkupHandler {
+
+        public UnloadableHandler() {
+            super();
+        }
+
+        @Override
+        public void handleComment(
+                final char[] buffer,
+                final int contentOffset, final int contentLen,
+                final int outerOffset, final int outerLen,
+                final int line, final int col) {
+            // Nothing to be done
+        }
+
+    }
+
+
+    /*
+     * Defines its own copy of one class, delegating all others to its parent
+     */
+    private static final class SingleClassLoader extends ClassLoader {
+
+        private final String className;
+
+        SingleClassLoader(final String className, final ClassLoader parent) {
+            super(parent);
+            this.className = className;
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (!this.className.equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (this) {
+                final Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass != null) {
+                    return loadedClass;
+                }
+                try {
+                    final InputStream inputStream = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+                    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        outputStream.write(buffer, 0, read);
+                    }
+                    inputStream.close();
+                    final byte[] bytes = outputStream.toByteArray();
+                    return defineClass(name, bytes, 0, bytes.length);
+                } catch (final IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+
+    }
+
+
+}
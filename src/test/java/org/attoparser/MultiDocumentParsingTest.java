@@ -0,0 +1,244 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class MultiDocumentParsingTest extends TestCase {
+
+    private static final int[] BUFFER_SIZES = new int[] { 1, 2, 3, 5, 7, 16, 64, MarkupParser.DEFAULT_BUFFER_SIZE };
+
+
+
+    public void test() throws Exception {
+
+        final MarkupParser xmlParser = new MarkupParser(ParseConfiguration.xmlConfiguration());
+
+        // Documents ending when their root element is closed
+        final List<String> rootDocuments =
+                Arrays.asList(
+                        "<?xml version=\"1.0\"?>\n<a><b/>text<!-- c --></a>",
+                        "<!-- comment before root --><c attr=\"1\"><c>x</c></c>",
+                        "<d/>",
+                        "<?xml version=\"1.0\"?><e>last</e>");
+        final String rootStream =
+                "\n" + rootDocuments.get(0) + "\n\n" + rootDocuments.get(1) + rootDocuments.get(2) +
+                " \t\r\n" + rootDocuments.get(3) + "\n";
+
+        for (int i = 0; i < BUFFER_SIZES.length; i++) {
+            final TrackingReader reader = new TrackingReader(rootStream);
+            final DocumentsHandler handler = new DocumentsHandler();
+            assertEquals(4, xmlParser.parseDocuments(reader, null, BUFFER_SIZES[i], handler, null));
+            assertEquals(rootDocuments, handler.documents);
+            assertEquals(4, handler.documentEnds);
+            assertFalse(reader.closed);
+        }
+
+        final TrackingReader rootReader = new TrackingReader(rootStream);
+        final DocumentsHandler rootHandler = new DocumentsHandler();
+        assertEquals(4, xmlParser.parseDocuments(rootReader, rootHandler));
+        assertEquals(rootDocuments, rootHandler.documents);
+        assertFalse(rootReader.closed);
+
+        // Documents separated by a delimiter (which can also be split among reads)
+        final List<String> delimitedDocuments =
+                Arrays.asList(
+                        "<a>1</a><!-- c -->",
+                        "<?xml version=\"1.0\"?>\n<b x=\"y\">2</b>",
+                        "<c/>");
+        final String delimitedStream =
+                delimitedDocuments.get(0) + "\n--\n" + delimitedDocuments.get(1) + "\n--\n\n--\n" +
+                delimitedDocuments.get(2) + "\n--\n";
+
+        for (int i = 0; i < BUFFER_SIZES.length; i++) {
+            final TrackingReader reader = new TrackingReader(delimitedStream);
+            final DocumentsHandler handler = new DocumentsHandler();
+            assertEquals(3, xmlParser.parseDocuments(reader, "\n--\n".toCharArray(), BUFFER_SIZES[i], handler, null));
+            assertEquals(delimitedDocuments, handler.documents);
+            assertFalse(reader.closed);
+        }
+
+        // Text at the end of a document (not followed by any structures) is also reported
+        final MarkupParser htmlParser = new MarkupParser(ParseConfiguration.htmlConfiguration());
+        for (int i = 0; i < BUFFER_SIZES.length; i++) {
+            final DocumentsHandler handler = new DocumentsHandler();
+            assertEquals(
+                    2,
+                    htmlParser.parseDocuments(
+                            new StringReader("<p>one</p> text\u0000<div>two</div>"), "\u0000".toCharArray(),
+                            BUFFER_SIZES[i], handler, null));
+            assertEquals(Arrays.asList("<p>one</p> text", "<div>two</div>"), handler.documents);
+        }
+
+        // Empty streams contain no documents
+        assertEquals(0, xmlParser.parseDocuments(new StringReader(""), new DocumentsHandler()));
+        assertEquals(0, xmlParser.parseDocuments(new StringReader(" \n "), new DocumentsHandler()));
+        assertEquals(0, xmlParser.parseDocuments(new StringReader("\n--\n"), new DocumentsHandler(), "\n--\n"));
+
+        // Errors are reported for the document in which they happen, after previous documents have been parsed
+        final DocumentsHandler errorHandler = new DocumentsHandler();
+        final TrackingReader errorReader = new TrackingReader("<a>1</a>\n<b>2</b>\n<c><d></c>\n<e/>");
+        try {
+            xmlParser.parseDocuments(errorReader, errorHandler);
+            fail();
+        } catch (final ParseException e) {
+            assertEquals(Integer.valueOf(1), e.getLine());
+        }
+        assertEquals(2, errorHandler.documentEnds);
+        assertFalse(errorReader.closed);
+
+        try {
+            xmlParser.parseDocuments(new StringReader("<a>1</a>\n--\n<b>2"), new DocumentsHandler(), "\n--\n");
+            fail();
+        } catch (final ParseException e) {
+            // Expected
+        }
+
+        // Cancellation is checked for every document
+        final ParseCancellationToken token = new ParseCancellationToken();
+        final DocumentsHandler cancellingHandler = new DocumentsHandler() {
+            @Override
+            public void handleDocumentEnd(
+                    final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
+                    throws ParseException {
+                super.handleDocumentEnd(endTimeNanos, totalTimeNanos, line, col);
+                token.cancel();
+            }
+        };
+        try {
+            xmlParser.parseDocuments(new StringReader("<a>1</a><b>2</b>"), cancellingHandler, token);
+            fail();
+        } catch (final ParseCancelledException e) {
+            // Expected
+        }
+        assertEquals(Arrays.asList("<a>1</a>"), cancellingHandler.documents);
+
+        try {
+            xmlParser.parseDocuments(new StringReader("<a/>"), new DocumentsHandler(), "");
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // Expected
+        }
+
+    }
+
+
+
+
+    private static class DocumentsHandler extends AbstractChainedMarkupHandler {
+
+        private final DocumentWriter writer;
+        final List<String> documents = new ArrayList<String>();
+        int documentEnds = 0;
+
+        DocumentsHandler() {
+            this(new DocumentWriter());
+        }
+
+        DocumentsHandler(final DocumentWriter writer) {
+            super(new OutputMarkupHandler(writer));
+            this.writer = writer;
+        }
+
+        @Override
+        public void handleDocumentStart(final long startTimeNanos, final int line, final int col)
+                throws ParseException {
+            this.writer.current = new StringWriter();
+            super.handleDocumentStart(startTimeNanos, line, col);
+        }
+
+        @Override
+        public void handleDocumentEnd(final long endTimeNanos, final long totalTimeNanos, final int line, final int col)
+                throws ParseException {
+            super.handleDocumentEnd(endTimeNanos, totalTimeNanos, line, col);
+            this.documents.add(this.writer.current.toString());
+            this.documentEnds++;
+        }
+
+    }
+
+
+    private static final class DocumentWriter extends Writer {
+
+        StringWriter current = new StringWriter();
+
+        DocumentWriter() {
+            super();
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            this.current.write(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to flush
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+
+    }
+
+
+    private static final class TrackingReader extends Reader {
+
+        private final Reader reader;
+        boolean closed = false;
+
+        TrackingReader(final String contents) {
+            super();
+            this.reader = new StringReader(contents);
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            return this.reader.read(cbuf, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.closed = true;
+            this.reader.close();
+        }
+
+    }
+
+
+}
@@ -0,0 +1,178 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class ParseCancellationTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final MarkupParser parser = new MarkupParser(ParseConfiguration.htmlConfiguration());
+
+        final StringBuilder strBuilder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            strBuilder.append("<p class=\"c\">paragraph ").append(i).append("</p>\n");
+        }
+        final String document = strBuilder.toString();
+
+
+        // No token, and a token never cancelled: complete output
+        assertEquals(document, parse(parser, document, null));
+        final ParseCancellationToken token = new ParseCancellationToken();
+        assertEquals(document, parse(parser, document, token));
+        assertEquals(document, parseChars(parser, document, token));
+        assertEquals(document, parse(parser, document, ParseCancellationToken.withTimeout(1L, TimeUnit.HOURS)));
+        assertFalse(token.isCancelled());
+        assertFalse(token.isDeadlineExceeded());
+
+
+        // Cancelled before starting
+        final ParseCancellationToken cancelled = new ParseCancellationToken();
+        cancelled.cancel();
+        assertTrue(cancelled.isCancelled());
+        ParseCancelledException e = parseAndFail(parser, document, cancelled, false);
+        assertFalse(e.isDeadlineExceeded());
+        assertEquals(Integer.valueOf(1), e.getLine());
+        e = parseAndFail(parser, document, cancelled, true);
+        assertFalse(e.isDeadlineExceeded());
+
+
+        // Deadline already exceeded
+        final ParseCancellationToken expired = ParseCancellationToken.withDeadline(System.nanoTime() - 1L);
+        assertTrue(expired.isDeadlineExceeded());
+        assertTrue(expired.isCancelled());
+        e = parseAndFail(parser, document, expired, false);
+        assertTrue(e.isDeadlineExceeded());
+        e = parseAndFail(parser, document, expired, true);
+        assertTrue(e.isDeadlineExceeded());
+
+
+        // Cancelled from the handler in the middle of parsing: stops at the next check
+        for (final boolean chars : new boolean[] { false, true }) {
+
+            final ParseCancellationToken midToken = new ParseCancellationToken();
+            final CancellingMarkupHandler handler = new CancellingMarkupHandler(midToken, 100);
+            try {
+                if (chars) {
+                    parser.parse(document.toCharArray(), handler, midToken);
+                } else {
+                    parser.parse(document, handler, midToken);
+                }
+                fail();
+            } catch (final ParseCancelledException ce) {
+                assertFalse(ce.isDeadlineExceeded());
+                assertTrue(ce.getLine().intValue() > 100);
+                assertTrue(ce.getLine().intValue() < 5000);
+                assertTrue(handler.openElements > 100);
+                assertTrue(handler.openElements < 5000);
+            }
+
+        }
+
+
+        // The parser is still usable after cancellations (buffers have been released)
+        for (int i = 0; i < 10; i++) {
+            parseAndFail(parser, document, cancelled, false);
+        }
+        assertEquals(document, parse(parser, document, null));
+
+    }
+
+
+
+
+    private static String parse(
+            final MarkupParser parser, final String document, final ParseCancellationToken token)
+            throws ParseException {
+        final StringWriter writer = new StringWriter();
+        parser.parse(new StringReader(document), new OutputMarkupHandler(writer), token);
+        return writer.toString();
+    }
+
+
+    private static String parseChars(
+            final MarkupParser parser, final String document, final ParseCancellationToken token)
+            throws ParseException {
+        final StringWriter writer = new StringWriter();
+        parser.parse(document.toCharArray(), new OutputMarkupHandler(writer), token);
+        return writer.toString();
+    }
+
+
+    private static ParseCancelledException parseAndFail(
+            final MarkupParser parser, final String document, final ParseCancellationToken token,
+            final boolean chars)
+            throws ParseException {
+        try {
+            if (chars) {
+                parseChars(parser, document, token);
+            } else {
+                parse(parser, document, token);
+            }
+            fail();
+            return null;
+        } catch (final ParseCancelledException e) {
+            return e;
+        }
+    }
+
+
+
+
+    private static class CancellingMarkupHandler extends AbstractMarkupHandler {
+
+        private final ParseCancellationToken token;
+        private final int cancelAt;
+        int openElements = 0;
+
+        CancellingMarkupHandler(final ParseCancellationToken token, final int cancelAt) {
+            super();
+            this.token = token;
+            this.cancelAt = cancelAt;
+        }
+
+        @Override
+        public void handleOpenElementStart(
+                final char[] buffer, final int nameOffset, final int nameLen, final int line, final int col)
+                throws ParseException {
+            this.openElements++;
+            if (this.openElements == this.cancelAt) {
+                this.token.cancel();
+            }
+        }
+
+    }
+
+
+}
@@ -0,0 +1,160 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class ParseErrorReportTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final MarkupParser parser = new MarkupParser(ParseConfiguration.xmlConfiguration());
+        final ParseErrorReport report = new ParseErrorReport();
+
+        // Well-formed document
+        assertEquals("<a><b x=\"1\"/></a>", parse(parser, "<a><b x=\"1\"/></a>", report, false));
+        assertTrue(report.isSuccessful());
+        assertTrue(report.isComplete());
+        assertEquals(0, report.getProblemCount());
+
+        // Unclosed element: reported and auto-closed, parsing continues
+        assertEquals("<a><b></a><c/>", parse(parser, "<a><b></a><c/>", report, false));
+        assertFalse(report.isSuccessful());
+        assertTrue(report.isComplete());
+        assertProblems(report, "(1,7) Malformed markup: element \"b\" is never closed");
+
+        // Attributes: reported anyway
+        assertEquals("<a x=\"1\" x=\"2\" y=3 z></a>", parse(parser, "<a x=\"1\" x=\"2\" y=3 z></a>", report, true));
+        assertProblems(report,
+                "(1,10) Malformed markup: Attribute \"x\" appears more than once in element",
+                "(1,18) Malformed markup: Value for attribute \"y\" must be surrounded by quotes",
+                "(1,21) Malformed markup: Attribute \"z\" must include an equals (=) sign and a value surrounded by quotes");
+
+        // Unmatched close element
+        assertEquals("<a></a></b><c></c>", parse(parser, "<a></a></b><c></c>", report, false));
+        assertProblems(report, "(1,8) Malformed markup: closing element \"b\" is never open");
+
+        // Prolog and root element
+        assertEquals(
+                "<!DOCTYPE a><?xml version=\"1.0\"?><b></b>",
+                parse(parser, "<!DOCTYPE a><?xml version=\"1.0\"?><b></b>", report, false));
+        assertProblems(report,
+                "(1,13) Malformed markup: XML Declaration must appear before DOCTYPE",
+                "(1,34) Malformed markup: Root element should be \"a\", but \"b\" has been found");
+
+        // Unclosed elements at the end of the document
+        assertEquals("<a><b><c>", parse(parser, "<a><b><c>", report, true));
+        assertProblems(report,
+                "(1,10) Malformed markup: element \"c\" is never closed",
+                "(1,10) Malformed markup: element \"b\" is never closed",
+                "(1,10) Malformed markup: element \"a\" is never closed");
+
+        // The same documents raise exceptions when not collecting errors
+        try {
+            parser.parse("<a><b></a><c/>", new OutputMarkupHandler(new StringWriter()));
+            fail();
+        } catch (final ParseException e) {
+            assertTrue(e.getMessage().endsWith("Malformed markup: element \"b\" is never closed"));
+        }
+
+        // Fatal errors are not thrown either, and are created without stack trace
+        for (final boolean chars : new boolean[] { false, true }) {
+            assertEquals("<a>", parse(parser, "<a><!-- x", report, chars));
+            assertFalse(report.isComplete());
+            assertFalse(report.isSuccessful());
+            assertEquals(0, report.getProblemCount());
+            assertEquals(Integer.valueOf(4), report.getFatalError().getCol());
+            assertTrue(report.getFatalError().getMessage().endsWith("Incomplete structure: \"<!-- x\""));
+            assertEquals(0, report.getFatalError().getStackTrace().length);
+        }
+
+        // Recoverable problems can precede a fatal error
+        final MarkupParser limitedParser = limitedParser(ParseConfiguration.xmlConfiguration(), 2);
+        limitedParser.parse("<a x=1><b><c><d></d></c></b></a>", new OutputMarkupHandler(new StringWriter()), null, report);
+        assertEquals(1, report.getProblemCount());
+        assertTrue(report.getFatalError() instanceof ParseLimitExceededException);
+
+        // Reports are reset for each parsing operation
+        assertEquals("<a></a>", parse(parser, "<a></a>", report, false));
+        assertTrue(report.isSuccessful());
+        assertNull(report.getFatalError());
+
+        // Only a maximum number of problems are recorded
+        final ParseErrorReport smallReport = new ParseErrorReport(2);
+        parse(parser, "<a x=1 y=2 z=3 w=4></a>", smallReport, false);
+        assertEquals(2, smallReport.getProblemCount());
+        assertEquals(4, smallReport.getTotalProblemCount());
+        assertEquals(10, smallReport.getCol(1));
+        try {
+            smallReport.getMessage(2);
+            fail();
+        } catch (final IndexOutOfBoundsException e) {
+            // Expected
+        }
+
+    }
+
+
+
+
+    private static String parse(
+            final MarkupParser parser, final String document, final ParseErrorReport report, final boolean chars) {
+        final StringWriter writer = new StringWriter();
+        if (chars) {
+            parser.parse(document.toCharArray(), new OutputMarkupHandler(writer), null, report);
+        } else {
+            parser.parse(document, new OutputMarkupHandler(writer), null, report);
+        }
+        return writer.toString();
+    }
+
+
+    private static MarkupParser limitedParser(final ParseConfiguration configuration, final int maxElementDepth)
+            throws Exception {
+        final ParseConfiguration config = configuration.clone();
+        config.setMaxElementDepth(maxElementDepth);
+        return new MarkupParser(config);
+    }
+
+
+    private static void assertProblems(final ParseErrorReport report, final String... problems) {
+        assertTrue(report.isComplete());
+        assertEquals(problems.length, report.getProblemCount());
+        assertEquals(problems.length, report.getTotalProblemCount());
+        for (int i = 0; i < problems.length; i++) {
+            assertEquals(
+                    problems[i],
+                    "(" + report.getLine(i) + "," + report.getCol(i) + ") " + report.getMessage(i));
+        }
+    }
+
+
+}
@@ -0,0 +1,244 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class ParseLimitsTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration xmlConfig = ParseConfiguration.xmlConfiguration();
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+        final ParseConfiguration noBalancingConfig = xmlConfig.clone();
+        noBalancingConfig.setElementBalancing(ParseConfiguration.ElementBalancing.NO_BALANCING);
+        noBalancingConfig.setUniqueAttributesInElementRequired(false);
+        noBalancingConfig.setNoUnmatchedCloseElementsRequired(false);
+        noBalancingConfig.setUniqueRootElementPresence(ParseConfiguration.UniqueRootElementPresence.NOT_VALIDATED);
+
+        final StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            deep.append("<div>");
+        }
+        for (int i = 0; i < 30; i++) {
+            deep.append("</div>");
+        }
+        final String deepDocument = deep.toString();
+
+
+        // Element depth
+        for (final ParseConfiguration configuration : new ParseConfiguration[] { xmlConfig, htmlConfig, noBalancingConfig }) {
+
+            final ParseConfiguration config = configuration.clone();
+            config.setMaxElementDepth(30);
+            assertEquals(deepDocument, parse(config, deepDocument));
+
+            config.setMaxElementDepth(29);
+            final ParseLimitExceededException depthException = parseAndFail(config, deepDocument);
+            assertEquals(ParseLimitExceededException.Limit.MAX_ELEMENT_DEPTH, depthException.getLimit());
+            assertEquals(29L, depthException.getLimitValue());
+            assertEquals(Integer.valueOf(1), depthException.getLine());
+            assertEquals(Integer.valueOf(146), depthException.getCol());
+
+            // Closing elements frees depth
+            config.setMaxElementDepth(2);
+            assertEquals("<a><b/><c></c><d><e/></d></a>", parse(config, "<a><b/><c></c><d><e/></d></a>"));
+
+        }
+
+        // Auto-opened elements count too
+        final ParseConfiguration autoOpenConfig = htmlConfig.clone();
+        autoOpenConfig.setElementBalancing(ParseConfiguration.ElementBalancing.AUTO_OPEN_CLOSE);
+        autoOpenConfig.setMaxElementDepth(3);
+        ParseLimitExceededException e = parseAndFail(autoOpenConfig, "<p><span>a</span></p>"); // html, body, p, span
+        assertEquals(ParseLimitExceededException.Limit.MAX_ELEMENT_DEPTH, e.getLimit());
+        assertEquals(Integer.valueOf(4), e.getCol());
+
+
+        // Attributes per element (also when parsing attributes lazily)
+        final String attrsDocument = "<a one=\"1\" two=\"2\"><b three=\"3\" four=\"4\" five=\"5\"/></a>";
+        for (final ParseConfiguration configuration : new ParseConfiguration[] { xmlConfig, htmlConfig, noBalancingConfig }) {
+            for (final boolean lazy : new boolean[] { false, true }) {
+
+                final ParseConfiguration config = configuration.clone();
+                config.setLazyAttributeParsing(lazy);
+                config.setMaxAttributesPerElement(3);
+                if (!lazy) {
+                    assertEquals(attrsDocument, parse(config, attrsDocument));
+                } else {
+                    parse(config, attrsDocument);
+                }
+
+                config.setMaxAttributesPerElement(2);
+                e = parseAndFail(config, attrsDocument);
+                assertEquals(ParseLimitExceededException.Limit.MAX_ATTRIBUTES_PER_ELEMENT, e.getLimit());
+                assertEquals(Integer.valueOf(1), e.getLine());
+                assertEquals(Integer.valueOf(42), e.getCol());
+
+            }
+        }
+
+
+        // Structure size (only when reading)
+        final StringBuilder comment = new StringBuilder();
+        comment.append("<div>text</div>\n<!-- long comment ");
+        for (int i = 0; i < 1000; i++) {
+            comment.append("lorem ipsum ");
+        }
+        comment.append("--><p>end</p>");
+        final String commentDocument = comment.toString();
+
+        final ParseConfiguration structureConfig = xmlConfig.clone();
+        structureConfig.setMaxStructureSize(50000);
+        final StringWriter writer = new StringWriter();
+        new MarkupParser(structureConfig, 2, 64).parse(new StringReader(commentDocument), new OutputMarkupHandler(writer));
+        assertEquals(commentDocument, writer.toString());
+
+        structureConfig.setMaxStructureSize(1000);
+        try {
+            new MarkupParser(structureConfig, 2, 64).parse(
+                    new StringReader(commentDocument), new OutputMarkupHandler(new StringWriter()));
+            fail();
+        } catch (final ParseLimitExceededException e2) {
+            assertEquals(ParseLimitExceededException.Limit.MAX_STRUCTURE_SIZE, e2.getLimit());
+            assertEquals(1000L, e2.getLimitValue());
+            assertEquals(Integer.valueOf(2), e2.getLine());
+            assertEquals(Integer.valueOf(1), e2.getCol());
+        }
+        // Already in memory
+        final StringWriter writer2 = new StringWriter();
+        new MarkupParser(structureConfig).parse(commentDocument.toCharArray(), new OutputMarkupHandler(writer2));
+        assertEquals(commentDocument, writer2.toString());
+
+        // Non-power-of-two limits, with structures both larger and smaller than the parser buffer
+        final ParseConfiguration elementConfig = xmlConfig.clone();
+        for (final int maxSize : new int[] { 1000, 5000 }) {
+            elementConfig.setMaxStructureSize(maxSize);
+            for (final int bufferSize : new int[] { 64, MarkupParser.DEFAULT_BUFFER_SIZE }) {
+                final String fitting = createElementDocument(maxSize);
+                final StringWriter fittingWriter = new StringWriter();
+                new MarkupParser(elementConfig, 2, bufferSize).parse(
+                        new StringReader(fitting), new OutputMarkupHandler(fittingWriter));
+                assertEquals(fitting, fittingWriter.toString());
+                for (final int tooBigSize : new int[] { maxSize + 1, maxSize * 2, maxSize + 3000 }) {
+                    try {
+                        new MarkupParser(elementConfig, 2, bufferSize).parse(
+                                new StringReader(createElementDocument(tooBigSize)),
+                                new OutputMarkupHandler(new StringWriter()));
+                        fail();
+                    } catch (final ParseLimitExceededException e2) {
+                        assertEquals(ParseLimitExceededException.Limit.MAX_STRUCTURE_SIZE, e2.getLimit());
+                        assertEquals((long) maxSize, e2.getLimitValue());
+                        assertEquals(Integer.valueOf(1), e2.getLine());
+                        assertEquals(Integer.valueOf(6), e2.getCol());
+                    }
+                }
+            }
+        }
+
+
+        // Document size
+        final ParseConfiguration sizeConfig = xmlConfig.clone();
+        sizeConfig.setMaxDocumentSize(deepDocument.length());
+        assertEquals(deepDocument, parse(sizeConfig, deepDocument));
+        sizeConfig.setMaxDocumentSize(deepDocument.length() - 1);
+        try {
+            new MarkupParser(sizeConfig).parse(deepDocument.toCharArray(), new OutputMarkupHandler(new StringWriter()));
+            fail();
+        } catch (final ParseLimitExceededException e2) {
+            assertEquals(ParseLimitExceededException.Limit.MAX_DOCUMENT_SIZE, e2.getLimit());
+        }
+        try {
+            new MarkupParser(sizeConfig, 2, 64).parse(
+                    new StringReader(deepDocument), new OutputMarkupHandler(new StringWriter()));
+            fail();
+        } catch (final ParseLimitExceededException e2) {
+            assertEquals(ParseLimitExceededException.Limit.MAX_DOCUMENT_SIZE, e2.getLimit());
+        }
+
+
+        // Limits are kept when cloning configurations
+        assertEquals(deepDocument.length() - 1, sizeConfig.clone().getMaxDocumentSize());
+        assertEquals(0, xmlConfig.getMaxElementDepth());
+
+    }
+
+
+
+    /*
+     * Creates a document containing an open element tag of exactly the specified size
+     */
+    private static String createElementDocument(final int elementSize) {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<div><p a=\"");
+        while (strBuilder.length() < elementSize + 5 - 2) {
+            strBuilder.append('x');
+        }
+        strBuilder.append("\">text</p></div>");
+        return strBuilder.toString();
+    }
+
+
+    private static String parse(final ParseConfiguration configuration, final String document) throws Exception {
+        final StringWriter writer = new StringWriter();
+        new MarkupParser(configuration).parse(document, new OutputMarkupHandler(writer));
+        final StringWriter writer2 = new StringWriter();
+        new MarkupParser(configuration).parse(document.toCharArray(), new OutputMarkupHandler(writer2));
+        assertEquals(writer.toString(), writer2.toString());
+        return writer.toString();
+    }
+
+
+    private static ParseLimitExceededException parseAndFail(
+            final ParseConfiguration configuration, final String document) throws Exception {
+        ParseLimitExceededException exception = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                final OutputMarkupHandler handler = new OutputMarkupHandler(new StringWriter());
+                if (i == 0) {
+                    new MarkupParser(configuration, 2, 64).parse(new StringReader(document), handler);
+                } else {
+                    new MarkupParser(configuration).parse(document.toCharArray(), handler);
+                }
+                fail();
+            } catch (final ParseLimitExceededException e) {
+                if (exception != null) {
+                    assertEquals(exception.getMessage(), e.getMessage());
+                }
+                exception = e;
+            }
+        }
+        return exception;
+    }
+
+
+}
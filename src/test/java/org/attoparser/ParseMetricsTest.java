@@ -0,0 +1,167 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class ParseMetricsTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration xmlConfig = ParseConfiguration.xmlConfiguration();
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+
+        final String xml =
+                "<?xml version=\"1.0\"?><!DOCTYPE a><a x=\"1\" y='2'><b><c/>text<!--c--><![CDATA[d]]></b ><?pi x?></a>";
+
+        final LastMetricsListener listener = new LastMetricsListener();
+        final StringWriter writer = new StringWriter();
+        new MarkupParser(xmlConfig, listener).parse(xml.toCharArray(), new OutputMarkupHandler(writer));
+        assertEquals(xml, writer.toString());
+
+        ParseMetrics metrics = listener.metrics;
+        assertTrue(metrics.isSuccessful());
+        assertEquals(xml.length(), metrics.getCharsRead());
+        assertEquals(0L, metrics.getReaderCalls());
+        assertEquals(0L, metrics.getBufferGrowths());
+        assertEquals(xml.length(), metrics.getMaxBufferSize());
+        assertEquals(1L, metrics.getEventCount(ParseMetrics.Event.XML_DECLARATION));
+        assertEquals(1L, metrics.getEventCount(ParseMetrics.Event.DOCTYPE));
+        assertEquals(2L, metrics.getEventCount(ParseMetrics.Event.OPEN_ELEMENT));
+        assertEquals(1L, metrics.getEventCount(ParseMetrics.Event.STANDALONE_ELEMENT));
+        assertEquals(2L, metrics.getEventCount(ParseMetrics.Event.CLOSE_ELEMENT));
+        assertEquals(2L, metrics.getEventCount(ParseMetrics.Event.ATTRIBUTE));
+        assertEquals(1L, metrics.getEventCount(ParseMetrics.Event.TEXT));
+        assertEquals(1L, metrics.getEventCount(ParseMetrics.Event.COMMENT));
+        assertEquals(1L, metrics.getEventCount(ParseMetrics.Event.CDATA_SECTION));
+        assertEquals(1L, metrics.getEventCount(ParseMetrics.Event.PROCESSING_INSTRUCTION));
+        assertEquals(3, metrics.getMaxElementDepth());
+        assertEquals(0L, metrics.getAutoOpenCount());
+        assertEquals(0L, metrics.getAutoCloseCount());
+        assertTrue(metrics.getTotalTimeNanos() >= metrics.getHandlerTimeNanos());
+        assertTrue(metrics.getParserTimeNanos() >= 0L);
+
+
+        // Auto-open and auto-close elements in HTML
+        new MarkupParser(htmlConfig, listener).parse(
+                "<ul><li>one<li>two</ul><p>a<div>b</div></span>", new OutputMarkupHandler(new StringWriter()));
+        metrics = listener.metrics;
+        assertTrue(metrics.isSuccessful());
+        assertEquals(5L, metrics.getEventCount(ParseMetrics.Event.OPEN_ELEMENT));
+        assertEquals(2L, metrics.getEventCount(ParseMetrics.Event.CLOSE_ELEMENT));
+        assertEquals(1L, metrics.getUnmatchedCloseCount());
+        assertEquals(0L, metrics.getAutoOpenCount());
+        assertEquals(3L, metrics.getAutoCloseCount());
+        assertEquals(2, metrics.getMaxElementDepth());
+
+        final ParseConfiguration autoOpenConfig = htmlConfig.clone();
+        autoOpenConfig.setElementBalancing(ParseConfiguration.ElementBalancing.AUTO_OPEN_CLOSE);
+        new MarkupParser(autoOpenConfig, listener).parse(
+                "<title>t</title><p>text", new OutputMarkupHandler(new StringWriter()));
+        metrics = listener.metrics;
+        assertEquals(3L, metrics.getAutoOpenCount()); // html, head, body
+        assertEquals(4L, metrics.getAutoCloseCount()); // head, p, body, html
+        assertEquals(3, metrics.getMaxElementDepth());
+
+
+        // Reading from a Reader with small buffers that need to grow
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<div title=\"");
+        for (int i = 0; i < 500; i++) {
+            strBuilder.append("long title ");
+        }
+        strBuilder.append("\">");
+        for (int i = 0; i < 100; i++) {
+            strBuilder.append("<p>paragraph ").append(i).append("</p>");
+        }
+        strBuilder.append("</div>");
+        final String document = strBuilder.toString();
+
+        new MarkupParser(xmlConfig, 2, 64, listener).parse(
+                new StringReader(document), new OutputMarkupHandler(new StringWriter()));
+        metrics = listener.metrics;
+        assertTrue(metrics.isSuccessful());
+        assertEquals(document.length(), metrics.getCharsRead());
+        assertTrue(metrics.getReaderCalls() > 1L);
+        assertTrue(metrics.getBufferGrowths() > 0L);
+        assertTrue(metrics.getMaxBufferSize() > 5000);
+        assertEquals(101L, metrics.getEventCount(ParseMetrics.Event.OPEN_ELEMENT));
+        assertEquals(2, metrics.getMaxElementDepth());
+
+
+        // Failed documents are also reported
+        try {
+            new MarkupParser(xmlConfig, listener).parse("<a><b></a>", new OutputMarkupHandler(new StringWriter()));
+            fail();
+        } catch (final ParseException e) {
+            // expected
+        }
+        assertFalse(listener.metrics.isSuccessful());
+
+
+        // Aggregate metrics
+        final AggregateParseMetricsListener aggregate = new AggregateParseMetricsListener();
+        final MarkupParser parser = new MarkupParser(xmlConfig, aggregate);
+        for (int i = 0; i < 10; i++) {
+            parser.parse(xml.toCharArray(), new OutputMarkupHandler(new StringWriter()));
+        }
+        try {
+            parser.parse("<a><b></a>".toCharArray(), new OutputMarkupHandler(new StringWriter()));
+            fail();
+        } catch (final ParseException e) {
+            // expected
+        }
+        assertEquals(11L, aggregate.getDocuments());
+        assertEquals(1L, aggregate.getFailedDocuments());
+        assertEquals(20L, aggregate.getEventCount(ParseMetrics.Event.ATTRIBUTE));
+        assertEquals(10L, aggregate.getEventCount(ParseMetrics.Event.COMMENT));
+        assertEquals(3L, aggregate.getMaxElementDepth());
+        assertEquals(xml.length(), aggregate.getMaxBufferSize());
+        assertTrue(aggregate.getTotalTimeNanos() >= aggregate.getMaxTotalTimeNanos());
+
+    }
+
+
+
+
+    private static final class LastMetricsListener implements IParseMetricsListener {
+
+        private ParseMetrics metrics;
+
+        public void handleParseMetrics(final ParseMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+    }
+
+
+}
@@ -0,0 +1,212 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class ReadAheadReaderTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<!DOCTYPE html>\n<html><body>");
+        for (int i = 0; i < 500; i++) {
+            strBuilder.append("<div class=\"item\" id=\"i").append(i).append("\">item ").append(i);
+            strBuilder.append("<!-- comment ").append(i).append(" --><br/></div>\n");
+        }
+        strBuilder.append("</body></html>");
+        final String document = strBuilder.toString();
+
+        final MarkupParser parser = new MarkupParser(ParseConfiguration.htmlConfiguration(), 2, 64);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+
+            // Several chunk sizes, smaller and larger than the parser buffer, so that structures are split
+            final int[] chunkSizes = new int[] { 1, 7, 64, 100, 4096, ReadAheadReader.DEFAULT_CHUNK_SIZE };
+            for (int i = 0; i < chunkSizes.length; i++) {
+                final TrackingReader reader = new TrackingReader(new StringReader(document), 13);
+                final StringWriter writer = new StringWriter();
+                parser.parse(new ReadAheadReader(reader, executor, chunkSizes[i]), new OutputMarkupHandler(writer));
+                assertEquals(document, writer.toString());
+                assertTrue(reader.closed);
+                assertNotSame(Thread.currentThread(), reader.readingThread);
+            }
+
+            // Errors in the wrapped reader are reported on the parsing thread
+            final TrackingReader failingReader = new TrackingReader(new StringReader(document), 13);
+            failingReader.failAfter = 1000;
+            try {
+                parser.parse(new ReadAheadReader(failingReader, executor, 100), new OutputMarkupHandler(new StringWriter()));
+                fail();
+            } catch (final ParseException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertTrue(failingReader.closed);
+
+            // Errors (not only exceptions) are also reported, instead of leaving the parser waiting forever
+            final TrackingReader errorReader = new TrackingReader(new StringReader(document), 13);
+            errorReader.failAfter = 1000;
+            errorReader.failWithError = true;
+            try {
+                parser.parse(new ReadAheadReader(errorReader, executor, 100), new OutputMarkupHandler(new StringWriter()));
+                fail();
+            } catch (final ParseException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertTrue(e.getCause().getCause() instanceof StackOverflowError);
+            }
+            assertTrue(errorReader.closed);
+
+            // Closing before the end of the document stops read-ahead and closes the wrapped reader
+            final TrackingReader closedReader = new TrackingReader(new StringReader(document), 13);
+            final ReadAheadReader readAheadReader = new ReadAheadReader(closedReader, executor, 10);
+            final char[] buffer = new char[5];
+            assertEquals(5, readAheadReader.read(buffer, 0, 5));
+            assertEquals("<!DOC", new String(buffer));
+            readAheadReader.close();
+            executor.submit(new Runnable() { public void run() { } }).get();
+            assertTrue(closedReader.closed);
+            try {
+                readAheadReader.read(buffer, 0, 5);
+                fail();
+            } catch (final IOException e) {
+                // Expected
+            }
+
+            // Parsing on the same (busy) executor: read-ahead cannot start, so the reader is read inline
+            final TrackingReader busyExecutorReader = new TrackingReader(new StringReader(document), 13);
+            final StringWriter busyExecutorWriter = new StringWriter();
+            executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    parser.parse(
+                            new ReadAheadReader(busyExecutorReader, executor, 100),
+                            new OutputMarkupHandler(busyExecutorWriter));
+                    return null;
+                }
+            }).get(30, TimeUnit.SECONDS);
+            assertEquals(document, busyExecutorWriter.toString());
+            assertTrue(busyExecutorReader.closed);
+            executor.submit(new Runnable() { public void run() { } }).get();
+
+        } finally {
+            executor.shutdown();
+        }
+
+        // Rejected read-ahead tasks: the wrapped reader is read on the calling thread
+        final Executor rejectingExecutor = new Executor() {
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        final TrackingReader inlineReader = new TrackingReader(new StringReader(document), 13);
+        final StringWriter writer = new StringWriter();
+        parser.parse(new ReadAheadReader(inlineReader, rejectingExecutor, 100), new OutputMarkupHandler(writer));
+        assertEquals(document, writer.toString());
+        assertTrue(inlineReader.closed);
+        assertSame(Thread.currentThread(), inlineReader.readingThread);
+
+        // Read-ahead tasks run on the calling thread: the wrapped reader is also read on the calling thread
+        final Executor sameThreadExecutor = new Executor() {
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        };
+        final TrackingReader sameThreadReader = new TrackingReader(new StringReader(document), 13);
+        final StringWriter sameThreadWriter = new StringWriter();
+        parser.parse(
+                new ReadAheadReader(sameThreadReader, sameThreadExecutor, 100), new OutputMarkupHandler(sameThreadWriter));
+        assertEquals(document, sameThreadWriter.toString());
+        assertTrue(sameThreadReader.closed);
+        assertSame(Thread.currentThread(), sameThreadReader.readingThread);
+
+        try {
+            new ReadAheadReader(new StringReader(document), rejectingExecutor, 0);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // Expected
+        }
+
+    }
+
+
+
+
+    private static final class TrackingReader extends Reader {
+
+        private final Reader reader;
+        private final int maxRead;
+        int failAfter = -1;
+        boolean failWithError = false;
+        int charsRead = 0;
+        volatile Thread readingThread = null;
+        volatile boolean closed = false;
+
+        TrackingReader(final Reader reader, final int maxRead) {
+            super();
+            this.reader = reader;
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            this.readingThread = Thread.currentThread();
+            if (this.failAfter >= 0 && this.charsRead >= this.failAfter) {
+                if (this.failWithError) {
+                    throw new StackOverflowError();
+                }
+                throw new IOException("Read failed");
+            }
+            final int read = this.reader.read(cbuf, off, Math.min(len, this.maxRead));
+            if (read > 0) {
+                this.charsRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.closed = true;
+            this.reader.close();
+        }
+
+    }
+
+
+}
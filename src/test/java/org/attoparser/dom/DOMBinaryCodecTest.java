@@ -0,0 +1,207 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class DOMBinaryCodecTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final Document xml =
+                new DOMMarkupParser(ParseConfiguration.xmlConfiguration()).parse("test.xml",
+                        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<!DOCTYPE a PUBLIC \"-//x\" \"x.dtd\" [<!ELEMENT a ANY>]>\n" +
+                        "<a one=\"1\" two=\"\" three=\"caf\u00e9 \u20ac \ud83d\ude00\">" +
+                        "<?proc something?><b/><!-- c --><![CDATA[<d>]]>text \u00f1" +
+                        "<b one=\"1\"><c><b/></c></b></a>");
+        check(xml);
+
+        final Document html =
+                new DOMMarkupParser(ParseConfiguration.htmlConfiguration()).parse(
+                        "<!DOCTYPE html><html><head><title>T</title></head>" +
+                        "<body><div class=\"x\" id=\"y\"><p>Hello</p><br><input disabled></div></body></html>");
+        check(html);
+
+        // Nodes created programmatically: no lines/cols, null and empty contents
+        final Document created = new Document(null);
+        final Element root = new Element("root");
+        root.addAttribute("nullvalue", null);
+        root.addChild(new Text(""));
+        root.addChild(new ProcessingInstruction("target", null));
+        root.addChild(new DocType("root", null, null, null));
+        root.addChild(new XmlDeclaration("1.0", null, "yes"));
+        final Element positioned = new Element("positioned");
+        positioned.setLine(Integer.valueOf(-3));
+        root.addChild(positioned);
+        created.addChild(root);
+        check(created);
+        final Document createdDecoded = DOMBinaryCodec.read(DOMBinaryCodec.toByteArray(created));
+        final Element decodedRoot = (Element) createdDecoded.getFirstChild();
+        assertTrue(decodedRoot.hasAttribute("nullvalue"));
+        assertNull(decodedRoot.getAttributeValue("nullvalue"));
+        assertNull(decodedRoot.getLine());
+        assertEquals(Integer.valueOf(-3), decodedRoot.getChildrenOfType(Element.class).get(0).getLine());
+        assertNull(decodedRoot.getChildrenOfType(Element.class).get(0).getCol());
+
+        // Several documents on the same stream / channel
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DOMBinaryCodec.write(xml, outputStream);
+        final WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+        DOMBinaryCodec.write(html, outputChannel);
+        DOMBinaryCodec.write(created, outputStream);
+
+        final ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+        assertEquals(write(xml), write(DOMBinaryCodec.read(inputStream)));
+        final ReadableByteChannel inputChannel = Channels.newChannel(inputStream);
+        assertEquals(write(html), write(DOMBinaryCodec.read(inputChannel)));
+        assertEquals(write(created), write(DOMBinaryCodec.read(inputStream)));
+        assertNull(DOMBinaryCodec.read(inputStream));
+        assertNull(DOMBinaryCodec.read(inputChannel));
+
+        // Deep documents do not need recursion
+        final Document deep = new Document("deep");
+        Element deepest = new Element("e");
+        deep.addChild(deepest);
+        for (int i = 0; i < 100000; i++) {
+            final Element child = new Element("e");
+            deepest.addChild(child);
+            deepest = child;
+        }
+        deepest.addChild(new Text("bottom"));
+        final Document deepDecoded = DOMBinaryCodec.read(DOMBinaryCodec.toByteArray(deep));
+        assertEquals("bottom", ((Text) deepDecoded.selectFirst(false, "text()")).getContent());
+
+        // Invalid data
+        final byte[] bytes = DOMBinaryCodec.toByteArray(xml);
+        checkInvalid(new byte[] { 'X', 'Y', 'Z' });
+        final byte[] badSignature = bytes.clone();
+        badSignature[0] = 'X';
+        checkInvalid(badSignature);
+        final byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        checkInvalid(truncated);
+
+        // Sizes not matching the data actually present must not cause huge allocations
+        final byte[] hugeText = bytes.clone();
+        hugeText[9] = (byte) 0x7F;
+        hugeText[10] = (byte) 0xFF;
+        hugeText[11] = (byte) 0xFF;
+        hugeText[12] = (byte) 0xF0;
+        checkInvalid(hugeText);
+        final byte[] hugeNameCount = new byte[21 + 5];
+        System.arraycopy(bytes, 0, hugeNameCount, 0, 5);
+        hugeNameCount[8] = 5; // names section length
+        hugeNameCount[21] = (byte) 0xFF;
+        hugeNameCount[22] = (byte) 0xFF;
+        hugeNameCount[23] = (byte) 0xFF;
+        hugeNameCount[24] = (byte) 0xFF;
+        hugeNameCount[25] = (byte) 0x07;
+        checkInvalid(hugeNameCount);
+        final byte[] hugeSections = new byte[21];
+        System.arraycopy(bytes, 0, hugeSections, 0, 5);
+        for (final int offset : new int[] { 5, 13, 17 }) { // names, texts and structure section lengths
+            hugeSections[offset] = (byte) 0x7F;
+            hugeSections[offset + 1] = (byte) 0xFF;
+            hugeSections[offset + 2] = (byte) 0xFF;
+            hugeSections[offset + 3] = (byte) 0xF0;
+        }
+        checkInvalid(hugeSections);
+
+    }
+
+
+
+    private static void check(final Document document) throws Exception {
+
+        final byte[] bytes = DOMBinaryCodec.toByteArray(document);
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DOMBinaryCodec.write(document, outputStream);
+        assertTrue(java.util.Arrays.equals(bytes, outputStream.toByteArray()));
+
+        final Document decoded = DOMBinaryCodec.read(bytes);
+        assertEquals(document.getDocumentName(), decoded.getDocumentName());
+        assertEquals(write(document), write(decoded));
+
+        // Structure, types and positions
+        final TreeWalker originalWalker = new TreeWalker(document);
+        final TreeWalker decodedWalker = new TreeWalker(decoded);
+        INode original;
+        while ((original = originalWalker.next()) != null) {
+            final INode copy = decodedWalker.next();
+            assertNotNull(copy);
+            assertSame(original.getClass(), copy.getClass());
+            assertEquals(original.getLine(), copy.getLine());
+            assertEquals(original.getCol(), copy.getCol());
+            if (original instanceof Text) {
+                assertEquals(((Text) original).getContent(), ((Text) copy).getContent());
+            }
+        }
+        assertNull(decodedWalker.next());
+
+    }
+
+
+    private static void checkInvalid(final byte[] bytes) {
+        try {
+            DOMBinaryCodec.read(bytes);
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+        try {
+            DOMBinaryCodec.read(new ByteArrayInputStream(bytes));
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+        try {
+            DOMBinaryCodec.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+
+    private static String write(final INode node) throws Exception {
+        final StringWriter writer = new StringWriter();
+        DOMWriter.write(node, writer);
+        return writer.toString();
+    }
+
+
+}
@@ -0,0 +1,102 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.output.OutputMarkupHandler;
+import org.attoparser.select.BlockSelectorMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class DOMEventSourceTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration xmlConfig = ParseConfiguration.xmlConfiguration();
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+
+        checkRoundTrip(xmlConfig,
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<!DOCTYPE a PUBLIC \"-//x\" \"x.dtd\">" +
+                "<a one=\"1\"><?proc something?><b/><!-- c -->text</a>");
+
+        // CDATA sections are kept as such, and quotes are chosen so that attribute values remain valid
+        final String cdataAndQuotes = "<a two='say \"hi\"'><![CDATA[<d>]]></a>";
+        assertEquals(cdataAndQuotes, emit(xmlConfig, new DOMMarkupParser(xmlConfig).parse(cdataAndQuotes)));
+
+        checkRoundTrip(xmlConfig, "<!DOCTYPE a SYSTEM \"x.dtd\" [<!ELEMENT a ANY>]><a><b x=\"\"/></a>");
+        checkRoundTrip(htmlConfig,
+                "<!DOCTYPE html><html><head><title>T</title></head>" +
+                "<body><div class=\"x\" id=\"y\"><p>Hello</p></div></body></html>");
+
+        // Fragments are emitted as the only top-level node
+        final Document document =
+                new DOMMarkupParser(htmlConfig).parse("<html><body><ul><li>one</li><li>two</li></ul></body></html>");
+        final INode ul = document.selectFirst(true, "ul");
+        assertEquals("<ul><li>one</li><li>two</li></ul>", emit(htmlConfig, ul));
+
+        // Modifications on the tree are reflected without re-parsing
+        ((Element) ul).addChild(new Element("li"));
+        assertEquals("<ul><li>one</li><li>two</li><li/></ul>", emit(htmlConfig, ul));
+
+        // Events can be consumed by selection handlers
+        final StringWriter writer = new StringWriter();
+        new DOMEventSource(htmlConfig).emit(
+                document, new BlockSelectorMarkupHandler(new OutputMarkupHandler(writer), "li[1]"));
+        assertEquals("<li>two</li>", writer.toString());
+
+        try {
+            new DOMEventSource(null);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+
+    }
+
+
+
+    private static void checkRoundTrip(final ParseConfiguration config, final String markup) throws Exception {
+
+        final Document document = new DOMMarkupParser(config).parse(markup);
+
+        final StringWriter expected = new StringWriter();
+        DOMWriter.write(document, expected);
+
+        assertEquals(expected.toString(), emit(config, document));
+
+    }
+
+
+    private static String emit(final ParseConfiguration config, final INode node) throws Exception {
+        final StringWriter writer = new StringWriter();
+        new DOMEventSource(config).emit(node, new OutputMarkupHandler(writer));
+        return writer.toString();
+    }
+
+
+}
@@ -0,0 +1,158 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.select.DOMMarkupSelector;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class DocumentFreezeTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final String markup =
+                "<!DOCTYPE html><html><body><div id=\"a\"><p>one</p><P class=\"x\">two</P></div>" +
+                "<div><span><p>three</p></span></div></body></html>";
+
+        final Document document = new DOMMarkupParser(ParseConfiguration.htmlConfiguration()).parse(markup);
+        final String written = write(document);
+
+        assertFalse(document.isFrozen());
+        assertSame(document, document.freeze());
+        assertTrue(document.isFrozen());
+        assertSame(document, document.freeze());
+
+        // All nodes are frozen and cannot be modified
+        final Element html = (Element) document.getChild(1);
+        final Element div = (Element) document.selectFirst(true, "div");
+        final Text text = (Text) document.selectFirst(true, "p/text()");
+        assertTrue(html.isFrozen());
+        assertTrue(div.isFrozen());
+        assertTrue(text.isFrozen());
+        assertTrue(document.getChild(0).isFrozen());
+
+        checkUnsupported(new Runnable() { public void run() { document.addChild(new Text("x")); } });
+        checkUnsupported(new Runnable() { public void run() { document.setDocumentName("x"); } });
+        checkUnsupported(new Runnable() { public void run() { html.clearChildren(); } });
+        checkUnsupported(new Runnable() { public void run() { html.removeChild(html.getFirstChild()); } });
+        checkUnsupported(new Runnable() { public void run() { div.addAttribute("x", "y"); } });
+        checkUnsupported(new Runnable() { public void run() { div.setElementName("section"); } });
+        checkUnsupported(new Runnable() { public void run() { text.setContent("changed"); } });
+        checkUnsupported(new Runnable() { public void run() { text.setLine(Integer.valueOf(3)); } });
+        checkUnsupported(new Runnable() { public void run() { new Element("x").addChild(div); } });
+        checkUnsupported(new Runnable() { public void run() { div.getChildren().clear(); } });
+        checkUnsupported(new Runnable() { public void run() { div.getAttributeMap().clear(); } });
+
+        assertEquals(written, write(document));
+
+        // Read structures are precomputed
+        assertSame(div.getChildren(), div.getChildren());
+        assertSame(div.getAttributeMap(), div.getAttributeMap());
+
+        // Element indexes
+        assertEquals(3, document.getElementsByName(true, "p").size());
+        assertEquals(2, document.getElementsByName(false, "p").size());
+        assertEquals(1, document.getElementsByName(false, "P").size());
+        assertEquals(0, document.getElementsByName(true, "table").size());
+        assertSame(document.getElementsByName(true, "p"), document.getElementsByName(true, "P"));
+
+        // Selection on frozen documents (which uses indexes) must give the same results as on mutable ones
+        final Document mutable = new DOMMarkupParser(ParseConfiguration.htmlConfiguration()).parse(markup);
+        final String[] selectors =
+                new String[] { "p", "div/p", "div//p", "p.x", "//span/p", "/html/body/div", "div[1]//p", "P[0]" };
+        for (final String selector : selectors) {
+            assertEquals(selector,
+                    write(new DOMMarkupSelector(true, selector).select(mutable)),
+                    write(new DOMMarkupSelector(true, selector).select(document)));
+        }
+        assertEquals(3, document.getElementsByName(true, "p").size());
+        assertEquals(mutable.getElementsByName(true, "p").size(), document.getElementsByName(true, "p").size());
+
+        // Forks are modifiable and never affect the frozen document
+        final Document fork = document.fork();
+        assertFalse(fork.isFrozen());
+        assertEquals(written, write(fork));
+
+        final Element forkedDiv = (Element) fork.selectFirst(true, "div");
+        assertNotSame(div, forkedDiv);
+        assertFalse(forkedDiv.isFrozen());
+        assertSame(fork, forkedDiv.getParent().getParent().getParent());
+        forkedDiv.addAttribute("class", "changed");
+        forkedDiv.addChild(new Text("added"));
+        ((Text) fork.selectFirst(true, "p/text()")).setContent("ONE");
+        fork.removeChild(fork.getChild(0));
+
+        assertEquals(written, write(document));
+        assertEquals(
+                "<html><body><div id=\"a\" class=\"changed\"><p>ONE</p><P class=\"x\">two</P>added</div>" +
+                "<div><span><p>three</p></span></div></body></html>",
+                write(fork));
+
+        // Forks can be frozen in turn, and forked again
+        fork.freeze();
+        assertEquals(2, fork.getElementsByName(true, "div").size());
+        assertEquals(write(fork), write(fork.fork()));
+
+        // Forking a non-frozen document performs a full copy
+        final Document copy = mutable.fork();
+        ((Element) copy.selectFirst(true, "span")).clearChildren();
+        assertEquals(written, write(mutable));
+
+    }
+
+
+
+    private static void checkUnsupported(final Runnable runnable) {
+        try {
+            runnable.run();
+            fail();
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+
+    private static String write(final INode node) throws Exception {
+        final StringWriter writer = new StringWriter();
+        DOMWriter.write(node, writer);
+        return writer.toString();
+    }
+
+
+    private static String write(final Iterable<INode> nodes) throws Exception {
+        final StringWriter writer = new StringWriter();
+        for (final INode node : nodes) {
+            writer.write('|');
+            DOMWriter.write(node, writer);
+        }
+        return writer.toString();
+    }
+
+
+}
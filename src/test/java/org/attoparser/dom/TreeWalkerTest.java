@@ -0,0 +1,188 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.dom;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class TreeWalkerTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final Document document =
+                new DOMMarkupParser(ParseConfiguration.xmlConfiguration()).parse(
+                        "<a><b><c/>t1</b><d><e/></d><!--x--></a>");
+
+        // Indexed child access
+        final Element a = (Element) document.getChild(0);
+        assertEquals("a", a.getElementName());
+        assertEquals(3, a.numChildren());
+        assertEquals("d", ((Element) a.getChild(1)).getElementName());
+        try {
+            a.getChild(3);
+            fail();
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            new Element("empty").getChild(0);
+            fail();
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        // Cursor
+        final TreeWalker walker = new TreeWalker(document);
+        assertNull(walker.getCurrentNode());
+        assertEquals("#document|a|b|c|t1|d|e|!x", walk(walker));
+        assertNull(walker.next());
+
+        walker.reset(a);
+        final StringBuilder strBuilder = new StringBuilder();
+        INode node;
+        while ((node = walker.next()) != null) {
+            strBuilder.append(name(node)).append(walker.getDepth()).append('|');
+            if (node instanceof Element && "b".equals(((Element) node).getElementName())) {
+                walker.skipChildren();
+            }
+        }
+        assertEquals("a0|b1|d1|e2|!x1|", strBuilder.toString());
+
+        walker.reset(document);
+        assertSame(document, walker.next());
+        assertNull(walker.parent());
+        walker.next(); // a
+        walker.next(); // b
+        assertEquals("c", name(walker.next()));
+        assertEquals("b", name(walker.parent()));
+        assertEquals("d", name(walker.next()));
+        assertEquals("a", name(walker.parent()));
+        assertEquals(1, walker.getDepth());
+        assertNull(walker.next());
+
+        // Going up and continuing always terminates
+        walker.reset(document);
+        final StringBuilder upBuilder = new StringBuilder();
+        while ((node = walker.next()) != null) {
+            upBuilder.append(name(node)).append('|');
+            if (node instanceof Text) {
+                upBuilder.append('^').append(name(walker.parent())).append('|');
+            }
+        }
+        assertEquals("#document|a|b|c|t1|^b|d|e|!x|", upBuilder.toString());
+
+        // Non-nestable roots
+        walker.reset(new Text("alone"));
+        assertEquals("alone", walk(walker));
+
+        // Visitor
+        final StringBuilder visitBuilder = new StringBuilder();
+        final boolean completed = new TreeWalker(document).walk(new INodeVisitor() {
+            public VisitResult enter(final INode node) {
+                visitBuilder.append('+').append(name(node));
+                if (node instanceof Element && "d".equals(((Element) node).getElementName())) {
+                    return VisitResult.SKIP_CHILDREN;
+                }
+                return VisitResult.CONTINUE;
+            }
+            public void leave(final INode node) {
+                visitBuilder.append('-').append(name(node));
+            }
+        });
+        assertTrue(completed);
+        assertEquals("+#document+a+b+c-c+t1-t1-b+d-d+!x-!x-a-#document", visitBuilder.toString());
+
+        final StringBuilder terminateBuilder = new StringBuilder();
+        final boolean terminated = !new TreeWalker(document).walk(new INodeVisitor() {
+            public VisitResult enter(final INode node) {
+                terminateBuilder.append('+').append(name(node));
+                if (node instanceof Text) {
+                    return VisitResult.TERMINATE;
+                }
+                return VisitResult.CONTINUE;
+            }
+            public void leave(final INode node) {
+                terminateBuilder.append('-').append(name(node));
+            }
+        });
+        assertTrue(terminated);
+        assertEquals("+#document+a+b+c-c+t1", terminateBuilder.toString());
+
+        // Deep trees do not need recursion
+        Element deepest = new Element("root");
+        final Element deepRoot = deepest;
+        for (int i = 0; i < 100000; i++) {
+            final Element child = new Element("e");
+            deepest.addChild(child);
+            deepest = child;
+        }
+        final int[] count = new int[1];
+        new TreeWalker(deepRoot).walk(new INodeVisitor() {
+            public VisitResult enter(final INode node) {
+                count[0]++;
+                return VisitResult.CONTINUE;
+            }
+            public void leave(final INode node) {
+                // Nothing to do
+            }
+        });
+        assertEquals(100001, count[0]);
+
+    }
+
+
+
+    private static String walk(final TreeWalker walker) {
+        final StringBuilder strBuilder = new StringBuilder();
+        INode node;
+        while ((node = walker.next()) != null) {
+            if (strBuilder.length() > 0) {
+                strBuilder.append('|');
+            }
+            strBuilder.append(name(node));
+        }
+        return strBuilder.toString();
+    }
+
+
+    private static String name(final INode node) {
+        if (node instanceof Document) {
+            return "#document";
+        }
+        if (node instanceof Element) {
+            return ((Element) node).getElementName();
+        }
+        if (node instanceof Comment) {
+            return "!" + ((Comment) node).getContent();
+        }
+        if (node instanceof Text) {
+            return ((Text) node).getContent();
+        }
+        return node.getClass().getSimpleName();
+    }
+
+
+}
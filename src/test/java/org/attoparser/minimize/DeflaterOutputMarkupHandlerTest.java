@@ -0,0 +1,228 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.minimize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import junit.framework.TestCase;
+import org.attoparser.AbstractChainedMarkupHandler;
+import org.attoparser.IMarkupParser;
+import org.attoparser.MarkupParser;
+import org.attoparser.ParseException;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.minimize.DeflaterOutputMarkupHandler.CompressionFormat;
+import org.attoparser.minimize.MinimizeHtmlMarkupHandler.MinimizeMode;
+import org.attoparser.output.OutputMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class DeflaterOutputMarkupHandlerTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final IMarkupParser parser = new MarkupParser(ParseConfiguration.htmlConfiguration());
+
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<!DOCTYPE html>\n<html>\n  <head>\n    <title>Test</title>\n  </head>\n  <body>\n");
+        for (int i = 0; i < 3000; i++) {
+            strBuilder.append("    <div   class=\"item\" id=\"item").append(i).append("\">\n");
+            strBuilder.append("      <p>Item   number ").append(i).append(", caf\u00e9 \u20ac</p>\n");
+            strBuilder.append("      <ul><li>one <li>two</ul><hr />\n");
+            strBuilder.append("    </div>\n");
+        }
+        strBuilder.append("  </body>\n</html>\n");
+        final String document = strBuilder.toString();
+
+        for (final MinimizeMode minimizeMode : MinimizeMode.values()) {
+
+            final StringWriter writer = new StringWriter();
+            parser.parse(document, new MinimizeHtmlMarkupHandler(minimizeMode, new OutputMarkupHandler(writer)));
+            final String expected = writer.toString();
+
+            for (final CompressionFormat format : CompressionFormat.values()) {
+                for (final int level : new int[] { Deflater.DEFAULT_COMPRESSION, Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION }) {
+
+                    final CountingOutputStream outputStream = new CountingOutputStream();
+                    final DeflaterOutputMarkupHandler outputHandler =
+                            new DeflaterOutputMarkupHandler(outputStream, format, level, 4096);
+                    parser.parse(document, new MinimizeHtmlMarkupHandler(minimizeMode, outputHandler));
+
+                    assertEquals(expected, decompress(format, outputStream.toByteArray()));
+                    assertEquals(expected.getBytes("UTF-8").length, outputHandler.getUncompressedByteCount());
+                    // Flush points at block element boundaries
+                    assertTrue(outputStream.flushes > 10);
+                    if (!CompressionFormat.GZIP.equals(format) && isSyncFlushAvailable()) {
+                        // Everything output before a flush point can be decompressed from what was flushed
+                        final String flushed =
+                                inflatePartial(format, outputStream.toByteArray(), outputStream.firstFlushSize);
+                        assertTrue(flushed.getBytes("UTF-8").length >= 4096);
+                        assertTrue(expected.startsWith(flushed));
+                    }
+
+                }
+            }
+
+            // Flushing only at the end of the document
+            final CountingOutputStream outputStream = new CountingOutputStream();
+            parser.parse(document,
+                    new MinimizeHtmlMarkupHandler(minimizeMode,
+                            new DeflaterOutputMarkupHandler(outputStream, CompressionFormat.GZIP, Deflater.BEST_SPEED, -1)));
+            assertEquals(expected, decompress(CompressionFormat.GZIP, outputStream.toByteArray()));
+            assertEquals(1, outputStream.flushes);
+
+            // Externally created compressed stream
+            final ByteArrayOutputStream externalOutputStream = new ByteArrayOutputStream();
+            final DeflaterOutputStream compressedStream = new DeflaterOutputStream(externalOutputStream);
+            parser.parse(document,
+                    new MinimizeHtmlMarkupHandler(minimizeMode, new DeflaterOutputMarkupHandler(compressedStream, 1024)));
+            assertEquals(expected, decompress(CompressionFormat.ZLIB, externalOutputStream.toByteArray()));
+            compressedStream.close();
+
+        }
+
+        // Default: GZIP
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parser.parse("<div>  hello  </div>", new DeflaterOutputMarkupHandler(outputStream));
+        assertEquals("<div>  hello  </div>", decompress(CompressionFormat.GZIP, outputStream.toByteArray()));
+
+        // Compressor resources are released by close() also when parsing fails
+        final DeflaterOutputMarkupHandler failedHandler = new DeflaterOutputMarkupHandler(new ByteArrayOutputStream());
+        try {
+            parser.parse("<div>hello</div>", new AbstractChainedMarkupHandler(failedHandler) {
+                @Override
+                public void handleText(
+                        final char[] buffer, final int offset, final int len, final int line, final int col)
+                        throws ParseException {
+                    throw new ParseException("Failed");
+                }
+            });
+            fail();
+        } catch (final ParseException e) {
+            // expected
+        }
+        final Field deflaterField = DeflaterOutputMarkupHandler.class.getDeclaredField("deflater");
+        deflaterField.setAccessible(true);
+        final Deflater deflater = (Deflater) deflaterField.get(failedHandler);
+        deflater.getTotalIn();
+        failedHandler.close();
+        try {
+            deflater.getTotalIn();
+            fail();
+        } catch (final NullPointerException e) {
+            // expected: the deflater has been ended
+        }
+        failedHandler.close();
+
+        try {
+            new DeflaterOutputMarkupHandler(outputStream, CompressionFormat.GZIP, 12);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+
+    }
+
+
+
+
+    private static String decompress(final CompressionFormat format, final byte[] bytes) throws Exception {
+
+        final InputStream inputStream;
+        if (CompressionFormat.GZIP.equals(format)) {
+            inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        } else {
+            inputStream =
+                    new InflaterInputStream(
+                            new ByteArrayInputStream(bytes), new Inflater(CompressionFormat.DEFLATE.equals(format)));
+        }
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        inputStream.close();
+        return new String(outputStream.toByteArray(), "UTF-8");
+
+    }
+
+
+
+
+    private static boolean isSyncFlushAvailable() {
+        try {
+            Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+            return true;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+
+    private static String inflatePartial(final CompressionFormat format, final byte[] bytes, final int len)
+            throws Exception {
+
+        final Inflater inflater = new Inflater(CompressionFormat.DEFLATE.equals(format));
+        inflater.setInput(bytes, 0, len);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int inflated;
+        while ((inflated = inflater.inflate(buffer)) > 0) {
+            outputStream.write(buffer, 0, inflated);
+        }
+        inflater.end();
+        return new String(outputStream.toByteArray(), "UTF-8");
+
+    }
+
+
+
+
+    private static final class CountingOutputStream extends ByteArrayOutputStream {
+
+        private int flushes = 0;
+        private int firstFlushSize = -1;
+
+        @Override
+        public void flush() {
+            if (this.flushes == 0) {
+                this.firstFlushSize = size();
+            }
+            this.flushes++;
+        }
+
+    }
+
+
+}
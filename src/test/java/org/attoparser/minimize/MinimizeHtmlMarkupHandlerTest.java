@@ -23,13 +23,17 @@
 import java.io.Writer;
 
 import junit.framework.TestCase;
+import org.attoparser.AbstractChainedMarkupHandler;
+import org.attoparser.IMarkupHandler;
 import org.attoparser.IMarkupParser;
 import org.attoparser.MarkupParser;
+import org.attoparser.ParseException;
 import org.attoparser.config.ParseConfiguration;
 import org.attoparser.minimize.MinimizeHtmlMarkupHandler.MinimizeMode;
 import org.attoparser.output.OutputMarkupHandler;
 
 import static org.attoparser.minimize.MinimizeHtmlMarkupHandler.MinimizeMode.COMPLETE;
+import static org.attoparser.minimize.MinimizeHtmlMarkupHandler.MinimizeMode.COMPLETE_WITH_INLINE_CODE;
 import static org.attoparser.minimize.MinimizeHtmlMarkupHandler.MinimizeMode.ONLY_WHITE_SPACE;
 
 /*
@@ -100,6 +104,36 @@ public void test() throws Exception {
         check(htmlConfig, COMPLETE, "<pre>  \n\nlala\n\n </pre>", "<pre>  \n\nlala\n\n </pre>");
         check(htmlConfig, COMPLETE, "<textarea>  \n\nlala\n\n </textarea>", "<textarea>  \n\nlala\n\n </textarea>");
 
+        check(htmlConfig, COMPLETE, "<style> a { color : red; } </style>", "<style> a { color : red; } </style>");
+        check(htmlConfig, COMPLETE, "<script> var a = 1; </script>", "<script> var a = 1; </script>");
+
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE, "<option name=\"one\" selected=\"selected\" />", "<option name=one selected>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE, "<pre>  \n\nlala\n\n </pre>", "<pre>  \n\nlala\n\n </pre>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE,
+                "<style>\n  /* Comment */\n  a  ,  b > c {\n    color : red ;\n    font: 12px/1.5 \"Some  Font\";\n  }\n" +
+                "  div :first-child { width: calc(100% - 2px) !important; }\n  .a\\ b { content: '/* x */' }\n</style>",
+                "<style>a,b>c{color :red;font:12px/1.5 \"Some  Font\";}div :first-child{width:calc(100% - 2px) !important;}.a\\ b{content:'/* x */'}</style>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE,
+                "<style type=\"text/css\">a { color: red; }</style><style type=\"text/less\">a { color: red; }</style>",
+                "<style type=\"text/css\">a{color:red;}</style><style type=\"text/less\">a { color: red; }</style>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE,
+                "<script>\n  // Comment\n  var a = 1 ,  b = 'it\\'s  //  here' ;\n  /* Block\n comment */\n" +
+                "  function f ( x ) {\n    return x  +  +b  -  -a ;\n  }\n  var re = /[/]\\/\\/  x/g , d = a / 2 / b;\n" +
+                "  if (a)\n    f(a)\n  else\n    f(b)\n  var t = `a  ${ `b ${ a  +  1 }` }  c`;\n  x\n  ++y\n</script>",
+                "<script>var a=1,b='it\\'s  //  here';function f(x){return x + +b - -a;}\nvar re=/[/]\\/\\/  x/g,d=a / 2 / b;if(a)\nf(a)\nelse\nf(b)\nvar t=`a  ${`b ${a + 1}`}  c`;x\n++y</script>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE,
+                "<script>var t = `a\\${ x  /* y */ }b` ;</script>",
+                "<script>var t=`a\\${ x  /* y */ }b`;</script>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE,
+                "<script>return /a  b/.test(x); typeof /x  y/; a = b\n/ c / d</script>",
+                "<script>return /a  b/.test(x);typeof /x  y/;a=b\n/ c / d</script>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE,
+                "<script type=\"text/javascript\">var a = 1;</script><script type=\"text/template\"><div>  {{ a }}  </div></script>",
+                "<script type=\"text/javascript\">var a=1;</script><script type=\"text/template\"><div>  {{ a }}  </div></script>");
+        check(htmlConfig, COMPLETE_WITH_INLINE_CODE,
+                "<script type=\"module\">import x from './x.js'  ;</script><script>a = 1 /</script>",
+                "<script type=module>import x from './x.js';</script><script>a=1 /</script>");
+
     }
 
 
@@ -116,8 +150,38 @@ private static void check(final ParseConfiguration configuration, final Minimize
 
         assertEquals(expectedOutput, output);
 
+        if (!COMPLETE_WITH_INLINE_CODE.equals(minimizeMode)) {
+            return;
+        }
+
+        // Inline code split in one-char text events must produce the same output
+        final Writer splitWriter = new StringWriter();
+        parser.parse(input, new TextSplittingHandler(new MinimizeHtmlMarkupHandler(minimizeMode, new OutputMarkupHandler(splitWriter))));
+
+        assertEquals(expectedOutput, splitWriter.toString());
+
     }
 
 
 
+
+
+    private static final class TextSplittingHandler extends AbstractChainedMarkupHandler {
+
+        TextSplittingHandler(final IMarkupHandler next) {
+            super(next);
+        }
+
+        @Override
+        public void handleText(
+                final char[] buffer, final int offset, final int len,
+                final int line, final int col) throws ParseException {
+            for (int i = 0; i < len; i++) {
+                getNext().handleText(buffer, offset + i, 1, line, col);
+            }
+        }
+
+    }
+
+
 }
@@ -0,0 +1,118 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import junit.framework.TestCase;
+import org.attoparser.IMarkupParser;
+import org.attoparser.MarkupParser;
+import org.attoparser.ParseException;
+import org.attoparser.config.ParseConfiguration;
+
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class ByteOutputMarkupHandlerTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration xmlConfig = ParseConfiguration.xmlConfiguration();
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+
+        check(xmlConfig, "<div>hello</div>");
+        check(htmlConfig, "<ul><li>hello<li>goodbye</ul>");
+        check(htmlConfig, "<!DOCTYPE html PUBLIC \"hello\" \"goodbye\">\n\n<html>hello</html>");
+        check(xmlConfig, "<?xml version=\"1.0\"?><?proc x?>one<!-- hello! --><![CDATA[two]]>");
+        check(htmlConfig, "<div>one</p></div>");
+        check(htmlConfig, "<p   class = 'a'  id=\"b\"\n data-x=c>caf\u00e9 \u20ac \ud83d\ude00 \u00f1</p><br/><input disabled>");
+
+        // Unpaired surrogates are replaced, same as OutputStreamWriter does
+        check(xmlConfig, "<a>x\ud83dy</a>");
+        check(xmlConfig, "<a>x\ude00</a>");
+
+        // Large documents, long names and non-ASCII names
+        final StringBuilder strBuilder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            strBuilder.append("<element-with-a-rather-long-name-").append(i % 7).append(" attr").append(i % 90);
+            strBuilder.append("=\"v\u00e9").append(i).append("\">\u00e1\u00e9\u00ed\ud83d\ude00\u4e2d</element-with-a-rather-long-name-");
+            strBuilder.append(i % 7).append("><n\u00e9 a\u00e9='1'/>");
+        }
+        check(xmlConfig, strBuilder.toString());
+        check(htmlConfig, strBuilder.toString());
+
+        // Byte buffers without enough space
+        try {
+            new MarkupParser(xmlConfig).parse("<div>hello</div>", new ByteOutputMarkupHandler(ByteBuffer.allocate(5)));
+            fail();
+        } catch (final ParseException e) {
+            // expected
+        }
+
+    }
+
+
+    private static void check(final ParseConfiguration configuration, final String input) throws Exception {
+
+        final IMarkupParser parser = new MarkupParser(configuration);
+
+        final ByteArrayOutputStream expectedStream = new ByteArrayOutputStream();
+        final Writer writer = new OutputStreamWriter(expectedStream, "UTF-8");
+        parser.parse(input, new OutputMarkupHandler(writer));
+        writer.flush();
+        final byte[] expected = expectedStream.toByteArray();
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parser.parse(input, new ByteOutputMarkupHandler(outputStream));
+        assertEquals(new String(expected, "UTF-8"), new String(outputStream.toByteArray(), "UTF-8"));
+        assertTrue(java.util.Arrays.equals(expected, outputStream.toByteArray()));
+
+        final ByteArrayOutputStream smallBufferStream = new ByteArrayOutputStream();
+        final ByteOutputMarkupHandler smallBufferHandler = new ByteOutputMarkupHandler(smallBufferStream, 256);
+        parser.parse(input, smallBufferHandler);
+        assertTrue(java.util.Arrays.equals(expected, smallBufferStream.toByteArray()));
+        assertEquals(expected.length, smallBufferHandler.getByteCount());
+
+        final ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+        parser.parse(input, new ByteOutputMarkupHandler(Channels.newChannel(channelStream)));
+        assertTrue(java.util.Arrays.equals(expected, channelStream.toByteArray()));
+
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(expected.length + 10);
+        byteBuffer.put((byte) 'X');
+        parser.parse(input, new ByteOutputMarkupHandler(byteBuffer));
+        assertEquals(expected.length + 1, byteBuffer.position());
+        final byte[] bufferBytes = new byte[expected.length];
+        byteBuffer.flip();
+        byteBuffer.get();
+        byteBuffer.get(bufferBytes);
+        assertTrue(java.util.Arrays.equals(expected, bufferBytes));
+
+    }
+
+
+}
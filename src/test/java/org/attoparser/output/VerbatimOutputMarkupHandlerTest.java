@@ -0,0 +1,289 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.output;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.attoparser.AbstractChainedMarkupHandler;
+import org.attoparser.AbstractMarkupHandler;
+import org.attoparser.IMarkupHandler;
+import org.attoparser.MarkupParser;
+import org.attoparser.ParseException;
+import org.attoparser.ParseStatus;
+import org.attoparser.config.ParseConfiguration;
+
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class VerbatimOutputMarkupHandlerTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration xmlConfig = ParseConfiguration.xmlConfiguration();
+        final ParseConfiguration htmlConfig = ParseConfiguration.htmlConfiguration();
+
+        final String[] inputs = new String[] {
+                "<div>hello</div>",
+                "<!DOCTYPE html PUBLIC \"hello\" \"goodbye\">\n\n<html>hello</html>",
+                "<?xml version=\"1.0\"?><?proc x?>one<!-- hello! --><![CDATA[two]]>",
+                "<p   class = 'a'  id=\"b\"\n data-x=\"c\" >text</p ><br/><a href=\"x\">link</a>",
+                "<script type=\"text/javascript\">if (a &lt; b) { x = 1; }</script><a href='one' id=\"two\"/>"
+        };
+        final String[] htmlInputs = new String[] {
+                "<ul><li>hello<li>goodbye</ul>",
+                "<div>one</p></div>",
+                "<p class=\"a\">text<br><input disabled><a href=x title=\"t\">link</a>",
+                "<script type=\"text/javascript\">if (a < b) { x = '<a href=\"s\">'; }</script><a href='one' id=two/>"
+        };
+
+        for (final String input : inputs) {
+            check(xmlConfig, input);
+            check(htmlConfig, input);
+        }
+        for (final String input : htmlInputs) {
+            check(htmlConfig, input);
+        }
+
+        // Large documents, reported through several buffer refills
+        final StringBuilder strBuilder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            strBuilder.append("<div class=\"c").append(i % 7).append("\" id='d").append(i).append("'>");
+            strBuilder.append("<a  href=\"/page/").append(i).append("\" title='t'>link ").append(i).append("</a >");
+            strBuilder.append("<img src=\"/img/").append(i).append(".png\"/></div>\n");
+        }
+        check(xmlConfig, strBuilder.toString());
+        check(htmlConfig, strBuilder.toString());
+
+
+        // Untouched elements are written in one single operation
+        final CountingWriter countingWriter = new CountingWriter();
+        new MarkupParser(htmlConfig).parse(
+                "<div class=\"a\" id=\"b\"><a href=\"x\">link</a><br/></div>", new VerbatimOutputMarkupHandler(countingWriter));
+        assertEquals("<div class=\"a\" id=\"b\"><a href=\"x\">link</a><br/></div>", countingWriter.toString());
+        assertEquals(6, countingWriter.writes);
+
+        // Modified elements: only the modified parts are rebuilt
+        final CountingWriter rewrittenWriter = new CountingWriter();
+        new MarkupParser(htmlConfig).parse(
+                "<div class=\"a\" id=\"b\"><a href=\"x\">link</a><br/></div>",
+                new RewritingHandler(new VerbatimOutputMarkupHandler(rewrittenWriter)));
+        assertEquals("<div class=\"a\" id=\"b\"><a href=\"/rewritten\">link</a><br/></div>", rewrittenWriter.toString());
+        assertEquals(10, rewrittenWriter.writes);
+
+
+        // Absolute document offsets of structures
+        final String markup = strBuilder.toString();
+        final MarkupParser smallBufferParser = new MarkupParser(xmlConfig, 2, 64);
+        final OffsetCollectingHandler offsetHandler = new OffsetCollectingHandler();
+        smallBufferParser.parse(new StringReader(markup), offsetHandler);
+        assertEquals(2000, offsetHandler.imgOffsets.size());
+        int from = 0;
+        for (final Long imgOffset : offsetHandler.imgOffsets) {
+            from = markup.indexOf("<img", from);
+            assertEquals(from, imgOffset.longValue());
+            from++;
+        }
+
+        final OffsetCollectingHandler arrayOffsetHandler = new OffsetCollectingHandler();
+        final char[] markupBuffer = ("XXXX" + markup).toCharArray();
+        smallBufferParser.parse(markupBuffer, 4, markup.length(), arrayOffsetHandler);
+        assertEquals(offsetHandler.imgOffsets, arrayOffsetHandler.imgOffsets);
+
+    }
+
+
+
+
+    private static void check(final ParseConfiguration configuration, final String input) throws Exception {
+
+        final MarkupParser parser = new MarkupParser(configuration);
+        final MarkupParser smallBufferParser = new MarkupParser(configuration, 2, 64);
+
+        final StringWriter expected = new StringWriter();
+        parser.parse(input, new OutputMarkupHandler(expected));
+
+        final StringWriter output = new StringWriter();
+        parser.parse(input, new VerbatimOutputMarkupHandler(output));
+        assertEquals(expected.toString(), output.toString());
+
+        final StringWriter smallBufferOutput = new StringWriter();
+        smallBufferParser.parse(new StringReader(input), new VerbatimOutputMarkupHandler(smallBufferOutput));
+        assertEquals(expected.toString(), smallBufferOutput.toString());
+
+        final StringWriter expectedRewritten = new StringWriter();
+        parser.parse(input, new RewritingHandler(new OutputMarkupHandler(expectedRewritten)));
+
+        final StringWriter rewritten = new StringWriter();
+        parser.parse(input, new RewritingHandler(new VerbatimOutputMarkupHandler(rewritten)));
+        assertEquals(expectedRewritten.toString(), rewritten.toString());
+
+        final StringWriter smallBufferRewritten = new StringWriter();
+        smallBufferParser.parse(new StringReader(input), new RewritingHandler(new VerbatimOutputMarkupHandler(smallBufferRewritten)));
+        assertEquals(expectedRewritten.toString(), smallBufferRewritten.toString());
+
+    }
+
+
+
+
+    /*
+     * Rewrites href attributes, removes title attributes, adds an attribute to <img> and renames <li> to <item>
+     */
+    private static final class RewritingHandler extends AbstractChainedMarkupHandler {
+
+        private static final char[] REWRITTEN = "href=\"/rewritten\"".toCharArray();
+        private static final char[] ADDED = " alt=\"\"".toCharArray();
+        private static final char[] ITEM = "item".toCharArray();
+
+        private boolean inImg = false;
+
+        RewritingHandler(final IMarkupHandler next) {
+            super(next);
+        }
+
+        @Override
+        public void handleOpenElementStart(
+                final char[] buffer, final int nameOffset, final int nameLen,
+                final int line, final int col) throws ParseException {
+            if (isName("li", buffer, nameOffset, nameLen)) {
+                getNext().handleOpenElementStart(ITEM, 0, ITEM.length, line, col);
+            } else {
+                getNext().handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
+            }
+        }
+
+        @Override
+        public void handleStandaloneElementStart(
+                final char[] buffer, final int nameOffset, final int nameLen, final boolean minimized,
+                final int line, final int col) throws ParseException {
+            this.inImg = isName("img", buffer, nameOffset, nameLen);
+            getNext().handleStandaloneElementStart(buffer, nameOffset, nameLen, minimized, line, col);
+        }
+
+        @Override
+        public void handleStandaloneElementEnd(
+                final char[] buffer, final int nameOffset, final int nameLen, final boolean minimized,
+                final int line, final int col) throws ParseException {
+            if (this.inImg) {
+                getNext().handleInnerWhiteSpace(ADDED, 0, 1, line, col);
+                getNext().handleAttribute(ADDED, 1, 3, line, col, 4, 1, line, col, 6, 0, 5, 2, line, col);
+                this.inImg = false;
+            }
+            getNext().handleStandaloneElementEnd(buffer, nameOffset, nameLen, minimized, line, col);
+        }
+
+        @Override
+        public void handleAttribute(
+                final char[] buffer,
+                final int nameOffset, final int nameLen, final int nameLine, final int nameCol,
+                final int operatorOffset, final int operatorLen, final int operatorLine, final int operatorCol,
+                final int valueContentOffset, final int valueContentLen,
+                final int valueOuterOffset, final int valueOuterLen, final int valueLine, final int valueCol)
+                throws ParseException {
+            if (isName("title", buffer, nameOffset, nameLen)) {
+                return;
+            }
+            if (isName("href", buffer, nameOffset, nameLen)) {
+                getNext().handleAttribute(
+                        REWRITTEN, 0, 4, nameLine, nameCol, 4, 1, operatorLine, operatorCol,
+                        6, REWRITTEN.length - 7, 5, REWRITTEN.length - 5, valueLine, valueCol);
+                return;
+            }
+            getNext().handleAttribute(
+                    buffer, nameOffset, nameLen, nameLine, nameCol, operatorOffset, operatorLen, operatorLine, operatorCol,
+                    valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
+        }
+
+        private static boolean isName(final String name, final char[] buffer, final int offset, final int len) {
+            return name.equals(new String(buffer, offset, len));
+        }
+
+    }
+
+
+
+
+    private static final class OffsetCollectingHandler extends AbstractMarkupHandler {
+
+        private final List<Long> imgOffsets = new ArrayList<Long>();
+        private ParseStatus status;
+
+        @Override
+        public void setParseStatus(final ParseStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public void handleStandaloneElementStart(
+                final char[] buffer, final int nameOffset, final int nameLen, final boolean minimized,
+                final int line, final int col) throws ParseException {
+            assertTrue(this.status.isSourceBuffer(buffer));
+            assertEquals(this.status.getStructureOffset() + 1, nameOffset);
+            assertEquals(this.status.getStructureDocumentOffset() + 1, this.status.getDocumentOffset(nameOffset));
+            assertEquals('<', buffer[this.status.getStructureOffset()]);
+            assertEquals('>', buffer[this.status.getStructureOffset() + this.status.getStructureLen() - 1]);
+            this.imgOffsets.add(Long.valueOf(this.status.getStructureDocumentOffset()));
+        }
+
+    }
+
+
+
+
+    private static final class CountingWriter extends StringWriter {
+
+        private int writes = 0;
+
+        @Override
+        public void write(final int c) {
+            this.writes++;
+            super.write(c);
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            this.writes++;
+            super.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(final String str) {
+            this.writes++;
+            super.write(str);
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            this.writes++;
+            super.write(str, off, len);
+        }
+
+    }
+
+
+}
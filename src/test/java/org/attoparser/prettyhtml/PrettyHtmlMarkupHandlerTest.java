@@ -0,0 +1,116 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.prettyhtml;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.attoparser.MarkupParser;
+import org.attoparser.config.ParseConfiguration;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class PrettyHtmlMarkupHandlerTest extends TestCase {
+
+
+    private static final String INPUT =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!DOCTYPE html>\n<?proc some content?><html>\n" +
+            "<!-- a < b --><![CDATA[ x & y ]]>\n<body class=\"a 'b'\">\t<p>One & <b>two</b></div>\n" +
+            "<img src=x.png/><br>\n<ul><li>one<li>two</ul></body></html>";
+
+    private static final String EXPECTED_CONTENT =
+                "<div class=\"atto_source_content\" id=\"atto_source_content_Testdoc\"><span class=\"xml-declaration\">&lt;?xml version=\"1.0\" encoding=\"UTF-8\"?&gt;</span>" +
+                "<span class=\"text\"><br /></span><span class=\"doctype\">&lt;!DOCTYPE html&gt;</span>" +
+                "<span class=\"text\"><br /></span>" +
+                "<span class=\"processing-instruction\">&lt;?proc some content?&gt;</span>" +
+                "<span class=\"element\">&lt;html&gt;</span><span class=\"text\"><br /></span>" +
+                "<span class=\"comment\">&lt;!--&nbsp;a&nbsp;&lt;&nbsp;b&nbsp;--&gt;</span>" +
+                "<span class=\"cdata\">&lt;![CDATA[&nbsp;x&nbsp;&amp;&nbsp;y&nbsp;]]&gt;</span>" +
+                "<span class=\"text\"><br /></span>" +
+                "<span class=\"element\">&lt;body <span class=\"attr-name\">class</span>" +
+                "=<span class=\"attr-value\">&quot;a&nbsp;&#39;b&#39;&quot;</span>&gt;</span>" +
+                "<span class=\"text\">&nbsp;&nbsp;&nbsp;&nbsp;</span><span class=\"element\">&lt;p&gt;</span>" +
+                "<span class=\"text\">One&nbsp;&amp;&nbsp;</span><span class=\"element\">&lt;b&gt;</span>" +
+                "<span class=\"text\">two</span><span class=\"element\">&lt;/b&gt;</span>" +
+                "<span class=\"element-unmatched\">&lt;/div&gt;</span><span class=\"text\"><br /></span>" +
+                "<span class=\"element\">&lt;img <span class=\"attr-name\">src</span>" +
+                "=<span class=\"attr-value\">x.png</span>/&gt;</span><span class=\"element\">&lt;br&gt;</span>" +
+                "<span class=\"text\"><br /></span><span class=\"element-auto\">&lt;/p&gt;</span>" +
+                "<span class=\"element\">&lt;ul&gt;</span><span class=\"element\">&lt;li&gt;</span>" +
+                "<span class=\"text\">one</span><span class=\"element-auto\">&lt;/li&gt;</span>" +
+                "<span class=\"element\">&lt;li&gt;</span><span class=\"text\">two</span>" +
+                "<span class=\"element-auto\">&lt;/li&gt;</span><span class=\"element\">&lt;/ul&gt;</span>" +
+                "<span class=\"element\">&lt;/body&gt;</span><span class=\"element\">&lt;/html&gt;</span>" +
+                "</div></body>\n</html>\n";
+
+
+
+
+    public void test() throws Exception {
+
+        final ParseConfiguration config = ParseConfiguration.htmlConfiguration();
+
+        final StringWriter writer = new StringWriter();
+        new MarkupParser(config).parse(INPUT, new PrettyHtmlMarkupHandler("Test doc", writer));
+        final String output = writer.toString();
+
+        assertTrue(output.startsWith("<!DOCTYPE html>\n<html>\n<head>\n<title>Parser output: Test doc</title>\n"));
+        assertTrue(output.contains("#atto_source_content_Testdoc .element {"));
+        assertTrue(output.endsWith(EXPECTED_CONTENT));
+
+        // Streaming mode, with output buffers of different sizes
+        for (final int outputBufferSize : new int[] { 1, 7, 64, PrettyHtmlMarkupHandler.DEFAULT_STREAMING_BUFFER_SIZE }) {
+            final StringWriter streamingWriter = new StringWriter();
+            new MarkupParser(config).parse(INPUT, new PrettyHtmlMarkupHandler("Test doc", streamingWriter, outputBufferSize));
+            assertEquals(output, streamingWriter.toString());
+        }
+
+        // Splittable text read in small buffers: consecutive text events go into the same span
+        final ParseConfiguration splittableConfig = config.clone();
+        splittableConfig.setTextSplittable(true);
+        final StringBuilder strBuilder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            strBuilder.append("Some text number ").append(i).append(" with <b>markup</b> & \"entities\"\n");
+        }
+        final String largeInput = "<div>" + strBuilder.toString() + "</div>";
+
+        final StringWriter largeWriter = new StringWriter();
+        new MarkupParser(config).parse(largeInput, new PrettyHtmlMarkupHandler("Test doc", largeWriter));
+
+        final StringWriter splitWriter = new StringWriter();
+        new MarkupParser(splittableConfig, 4, 64).parse(
+                new StringReader(largeInput), new PrettyHtmlMarkupHandler("Test doc", splitWriter, 256));
+        assertEquals(largeWriter.toString(), splitWriter.toString());
+
+        try {
+            new PrettyHtmlMarkupHandler("Test doc", writer, -1);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+
+    }
+
+
+}
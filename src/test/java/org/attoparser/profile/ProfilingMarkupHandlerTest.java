@@ -0,0 +1,168 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.profile;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.attoparser.IMarkupHandler;
+import org.attoparser.IMarkupParser;
+import org.attoparser.MarkupParser;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.minimize.MinimizeHtmlMarkupHandler;
+import org.attoparser.output.OutputMarkupHandler;
+import org.attoparser.select.BlockSelectorMarkupHandler;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class ProfilingMarkupHandlerTest extends TestCase {
+
+
+
+    public void test() throws Exception {
+
+        final IMarkupParser parser = new MarkupParser(ParseConfiguration.htmlConfiguration());
+
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("<!DOCTYPE html>\n<html><body>");
+        for (int i = 0; i < 200; i++) {
+            strBuilder.append("<div class=\"content\">\n  <p id=\"p").append(i).append("\">  text   ").append(i);
+            strBuilder.append("</p>\n</div>\n<div class=\"other\"><br/></div>\n");
+        }
+        strBuilder.append("</body></html>");
+        final String document = strBuilder.toString();
+
+        final StringWriter expected = new StringWriter();
+        parser.parse(
+                document,
+                new BlockSelectorMarkupHandler(
+                        new MinimizeHtmlMarkupHandler(
+                                MinimizeHtmlMarkupHandler.MinimizeMode.ONLY_WHITE_SPACE,
+                                new OutputMarkupHandler(expected)),
+                        "div.content"));
+
+
+        final ReportingListener listener = new ReportingListener();
+        final MarkupProfile profile = new MarkupProfile(1, listener);
+
+        final StringWriter output = new StringWriter();
+        parser.parse(document, createChain(profile, output));
+        assertEquals(expected.toString(), output.toString());
+        assertEquals(1, listener.documents);
+
+        final List<MarkupProfile.Stage> stages = profile.getStages();
+        assertEquals(3, stages.size());
+        assertEquals("select", stages.get(0).getName());
+        assertEquals("minimize", stages.get(1).getName());
+        assertEquals("output", stages.get(2).getName());
+
+        final MarkupProfile.Stage select = stages.get(0);
+        final MarkupProfile.Stage output1 = stages.get(2);
+        assertEquals(1L, select.getCalls(MarkupProfile.Event.DOCTYPE));
+        assertEquals(602L, select.getCalls(MarkupProfile.Event.OPEN_ELEMENT_START));
+        assertEquals(200L, select.getCalls(MarkupProfile.Event.STANDALONE_ELEMENT_START));
+        // Only selected blocks reach the output
+        assertEquals(400L, output1.getCalls(MarkupProfile.Event.OPEN_ELEMENT_START));
+        assertEquals(0L, output1.getCalls(MarkupProfile.Event.STANDALONE_ELEMENT_START));
+
+        for (final MarkupProfile.Stage stage : stages) {
+            for (final MarkupProfile.Event event : MarkupProfile.Event.values()) {
+                // Without sampling, all calls are measured
+                assertEquals(stage.getCalls(event), stage.getSampledCalls(event));
+                assertTrue(stage.getExclusiveNanos(event) <= stage.getInclusiveNanos(event));
+            }
+        }
+        assertTrue(
+                stages.get(0).getEstimatedTotalInclusiveNanos() >= stages.get(1).getEstimatedTotalInclusiveNanos());
+        assertTrue(
+                stages.get(1).getEstimatedTotalInclusiveNanos() >= stages.get(2).getEstimatedTotalInclusiveNanos());
+        assertTrue(profile.getDocumentTimeNanos() >= stages.get(0).getEstimatedTotalInclusiveNanos());
+
+        assertTrue(listener.report.indexOf("select: calls=") >= 0);
+        assertTrue(listener.report.indexOf("minimize: calls=") >= 0);
+        assertTrue(listener.report.indexOf("OPEN_ELEMENT_START: calls=400") >= 0);
+
+
+        // Profiles are reset for each document
+        final StringWriter output2 = new StringWriter();
+        parser.parse(document, createChain(profile, output2));
+        assertEquals(2, listener.documents);
+        assertEquals(602L, profile.getStages().get(0).getCalls(MarkupProfile.Event.OPEN_ELEMENT_START));
+        assertEquals(1, new MarkupProfile().getSamplingInterval());
+
+
+        // With sampling, all calls are counted but only some of them measured
+        final ReportingListener sampledListener = new ReportingListener();
+        final MarkupProfile sampledProfile = new MarkupProfile(10, sampledListener);
+        final StringWriter sampledOutput = new StringWriter();
+        parser.parse(document, createChain(sampledProfile, sampledOutput));
+        parser.parse(document, createChain(sampledProfile, new StringWriter()));
+        assertEquals(expected.toString(), sampledOutput.toString());
+        assertEquals(2, sampledListener.documents);
+
+        final MarkupProfile.Stage sampledSelect = sampledProfile.getStages().get(0);
+        assertEquals(602L, sampledSelect.getCalls(MarkupProfile.Event.OPEN_ELEMENT_START));
+        assertTrue(sampledSelect.getSampledCalls(MarkupProfile.Event.OPEN_ELEMENT_START) < 602L);
+        assertTrue(sampledSelect.getSampledCalls(MarkupProfile.Event.OPEN_ELEMENT_START) > 0L);
+        // The first event is always sampled
+        assertEquals(1L, sampledSelect.getSampledCalls(MarkupProfile.Event.DOCUMENT_START));
+
+        try {
+            new MarkupProfile(0, null);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+
+    }
+
+
+
+
+    private static IMarkupHandler createChain(final MarkupProfile profile, final StringWriter writer) {
+        IMarkupHandler handler = new OutputMarkupHandler(writer);
+        handler = new ProfilingMarkupHandler("output", profile, handler);
+        handler = new MinimizeHtmlMarkupHandler(MinimizeHtmlMarkupHandler.MinimizeMode.ONLY_WHITE_SPACE, handler);
+        handler = new ProfilingMarkupHandler("minimize", profile, handler);
+        handler = new BlockSelectorMarkupHandler(handler, "div.content");
+        return new ProfilingMarkupHandler("select", profile, handler);
+    }
+
+
+
+
+    private static final class ReportingListener implements IMarkupProfileListener {
+
+        private int documents = 0;
+        private String report = null;
+
+        public void handleProfile(final MarkupProfile profile) {
+            this.documents++;
+            this.report = profile.getReport();
+        }
+
+    }
+
+
+}
@@ -0,0 +1,161 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2012-2022, The ATTOPARSER team (https://www.attoparser.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.attoparser.select;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.attoparser.config.ParseConfiguration;
+import org.attoparser.dom.DOMMarkupParser;
+import org.attoparser.dom.DOMWriter;
+import org.attoparser.dom.Document;
+import org.attoparser.dom.INode;
+
+/*
+ *
+ * @author Daniel Fernandez
+ * @since 2.0.8
+ */
+public class DOMMarkupSelectorTest extends TestCase {
+
+
+    public void test() throws Exception {
+
+        final String html =
+                "<!DOCTYPE html><html><body>" +
+                "<div class=\"one two\" id=\"a\"><p>p1</p><p title=\"t\">p2</p><span><p>p3</p></span></div>" +
+                "<div id=\"b\"><p>p4</p><!--c1--></div>" +
+                "<P>p5</P>" +
+                "</body></html>";
+
+        final Document htmlDoc = new DOMMarkupParser(ParseConfiguration.htmlConfiguration()).parse(html);
+
+        check(htmlDoc, true, "p", "<p>p1</p>|<p title=\"t\">p2</p>|<p>p3</p>|<p>p4</p>|<P>p5</P>");
+        check(htmlDoc, true, "div/p", "<p>p1</p>|<p title=\"t\">p2</p>|<p>p4</p>");
+        check(htmlDoc, true, "div//p", "<p>p1</p>|<p title=\"t\">p2</p>|<p>p3</p>|<p>p4</p>");
+        check(htmlDoc, true, "div.two/p[title]", "<p title=\"t\">p2</p>");
+        check(htmlDoc, true, "div#b/p", "<p>p4</p>");
+        check(htmlDoc, true, "div/p[1]", "<p title=\"t\">p2</p>");
+        check(htmlDoc, true, "div/p[0]", "<p>p1</p>|<p>p4</p>");
+        check(htmlDoc, true, "div[id='a']/p[even()]", "<p>p1</p>");
+        check(htmlDoc, true, "body/p", "<P>p5</P>");
+        check(htmlDoc, true, "/html/body/div/span", "<span><p>p3</p></span>");
+        check(htmlDoc, true, "/body", "");
+        check(htmlDoc, true, "comment()", "<!--c1-->");
+        check(htmlDoc, true, "doctype()", "<!DOCTYPE html>");
+        check(htmlDoc, true, "div#b/content()", "<p>p4</p>|<!--c1-->");
+        check(htmlDoc, true, "span/p/text()", "p3");
+        check(htmlDoc, true, "div[!id]", "");
+
+        // Index conditions on large amounts of siblings (matching is replayed only once per parent)
+        final StringBuilder listBuilder = new StringBuilder();
+        listBuilder.append("<div>");
+        for (int i = 0; i < 2; i++) {
+            listBuilder.append("<ul>");
+            for (int j = 0; j < 20000; j++) {
+                listBuilder.append("<li>").append(j).append("</li>");
+                if (j % 3 == 0) {
+                    listBuilder.append("<!-- c -->");
+                }
+            }
+            listBuilder.append("</ul>");
+        }
+        listBuilder.append("</div>");
+        final Document listDoc =
+                new DOMMarkupParser(ParseConfiguration.htmlConfiguration()).parse(listBuilder.toString());
+        final Document frozenListDoc = listDoc.fork();
+        frozenListDoc.freeze();
+        for (final Document doc : new Document[] { listDoc, frozenListDoc }) {
+            assertEquals(20000, count(doc.select(true, "ul/li[even()]")));
+            assertEquals(10000, count(doc.select(true, "ul[1]/li[odd()]")));
+            assertEquals(2, count(doc.select(true, "ul/li[19999]")));
+            assertEquals("<li>1</li>|<li>3</li>", write(doc.select(true, "ul[0]/li[odd()]")).substring(0, 21));
+            final INode last = doc.selectFirst(true, "ul[1]/li[19999]");
+            assertEquals("<li>19999</li>", write(java.util.Collections.singletonList(last)));
+            assertTrue(new DOMMarkupSelector(true, "ul[1]/li[odd()]").matches(doc, last));
+            assertFalse(new DOMMarkupSelector(true, "ul[0]/li[odd()]").matches(doc, last));
+        }
+
+        // Selection relative to a specific node
+        final Document xmlDoc =
+                new DOMMarkupParser(ParseConfiguration.xmlConfiguration()).parse("<a><B><c/></B><b><c x=\"1\"/></b></a>");
+        check(xmlDoc, false, "b/c", "<c x=\"1\"/>");
+        check(xmlDoc, false, "B/c", "<c/>");
+        check(xmlDoc, false, "/a/b/c[x='1']", "<c x=\"1\"/>");
+
+        final INode b = xmlDoc.selectFirst(false, "b");
+        assertNotNull(b);
+        check(new DOMMarkupSelector(false, "/c"), (org.attoparser.dom.Element) b, "<c x=\"1\"/>");
+        check(new DOMMarkupSelector(false, "/b"), (org.attoparser.dom.Element) b, "");
+
+        // Lazy results should reflect tree modifications made before iteration
+        final Iterable<INode> allC = xmlDoc.select(false, "c");
+        ((org.attoparser.dom.Element) b).clearChildren();
+        assertEquals("<c/>", write(allC));
+
+    }
+
+
+
+    private static void check(
+            final Document document, final boolean html, final String selector, final String expected) throws Exception {
+        assertEquals(expected, write(document.select(html, selector)));
+        check(new DOMMarkupSelector(html, selector), document, expected);
+    }
+
+
+    private static void check(
+            final DOMMarkupSelector selector, final org.attoparser.dom.INestableNode root, final String expected)
+            throws Exception {
+        assertEquals(expected, write(selector.select(root)));
+        final INode first = selector.selectFirst(root);
+        if (expected.length() == 0) {
+            assertNull(first);
+        } else {
+            assertNotNull(first);
+            assertTrue(selector.matches(root, first));
+        }
+    }
+
+
+    private static int count(final Iterable<INode> nodes) {
+        int count = 0;
+        for (final INode ignored : nodes) {
+            count++;
+        }
+        return count;
+    }
+
+
+    private static String write(final Iterable<INode> nodes) throws Exception {
+        final StringWriter writer = new StringWriter();
+        boolean first = true;
+        for (final INode node : nodes) {
+            if (!first) {
+                writer.write('|');
+            }
+            DOMWriter.write(node, writer);
+            first = false;
+        }
+        return writer.toString();
+    }
+
+
+}